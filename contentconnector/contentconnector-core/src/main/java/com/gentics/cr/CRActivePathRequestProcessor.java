@@ -1,8 +1,14 @@
 package com.gentics.cr;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.log4j.Logger;
 
@@ -12,8 +18,14 @@ import com.gentics.api.lib.exception.ParserException;
 import com.gentics.api.lib.expressionparser.ExpressionParserException;
 import com.gentics.api.lib.expressionparser.filtergenerator.DatasourceFilter;
 import com.gentics.api.lib.resolving.Resolvable;
+import com.gentics.cr.events.ContentChangedEvent;
+import com.gentics.cr.events.Event;
+import com.gentics.cr.events.EventManager;
+import com.gentics.cr.events.IEventReceiver;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.util.ArrayHelper;
+import com.gentics.cr.util.CRUtil;
+import com.gentics.cr.util.ContentStatePoller;
 import com.gentics.cr.util.RequestWrapper;
 
 /**
@@ -22,6 +34,11 @@ import com.gentics.cr.util.RequestWrapper;
  * Either a root element is given, or it will go up until there is no further
  * parent.
  * It does not support doNavigation.
+ * The mothers of the objects are cached per configuration, so the active
+ * path is usually fetched with one query for all parents. The cache is
+ * cleared on a {@link ContentChangedEvent} and when the content repository
+ * changed, which is checked every <code>activepathcacheinterval</code>
+ * milliseconds (default 10000).
  * Last changed: $Date: 2010-04-01 15:24:02 +0200 (Do, 01 Apr 2010) $
  * @version $Revision: 541 $
  * @author $Author: supnig@constantinopel.at $
@@ -37,6 +54,30 @@ public class CRActivePathRequestProcessor extends RequestProcessor {
 	 */
 	private static final Logger LOG = Logger
 			.getLogger(CRActivePathRequestProcessor.class);
+	/**
+	 * Key for the interval in milliseconds the parent map is checked for
+	 * changes of the content repository.
+	 */
+	private static final String CACHE_INTERVAL_KEY = "activepathcacheinterval";
+	/**
+	 * Mother id of objects without a mother in the parent map.
+	 */
+	private static final String NO_PARENT = "";
+	/**
+	 * Rule of the objects polled for changes of the content repository.
+	 */
+	private static final String VALIDATION_RULE =
+			"object.updatetimestamp > 0";
+	/**
+	 * Parent maps by configuration name.
+	 */
+	private static final ConcurrentMap<String, ParentMap> PARENT_MAPS =
+			new ConcurrentHashMap<String, ParentMap>();
+
+	/**
+	 * Interval in milliseconds the parent map is checked for changes.
+	 */
+	private final long cacheInterval;
 
 
 	/**
@@ -47,6 +88,7 @@ public class CRActivePathRequestProcessor extends RequestProcessor {
 	public CRActivePathRequestProcessor(final CRConfig config)
 			throws CRException {
 		super(config);
+		cacheInterval = config.getInteger(CACHE_INTERVAL_KEY, 10000);
 	}
 
 	/**
@@ -157,39 +199,228 @@ public class CRActivePathRequestProcessor extends RequestProcessor {
 	
 	
 	/**
-	 * Fetches the parents.
+	 * Fetches the parents. The ids of the parents are resolved with the cached
+	 * parent map of the configuration, only objects missing in the map are
+	 * loaded one by one. All parents are then fetched with one query.
 	 * @param ds datasource
 	 * @param current current child element
 	 * @param rootContentId id of the desired root
 	 * @param request request object
-	 * @return collection of parrents.
+	 * @return collection of parents, starting with the root.
 	 * @throws CRException 
 	 * @throws ExpressionParserException 
 	 * @throws ParserException 
 	 * @throws DatasourceException 
 	 */
-	private Collection<CRResolvableBean> getParents(final Datasource ds,
+	Collection<CRResolvableBean> getParents(final Datasource ds,
 			final CRResolvableBean current, final String rootContentId,
 			final CRRequest request) throws CRException,
 			DatasourceException, ParserException, ExpressionParserException {
-		Collection<CRResolvableBean> ret = null;
-		
-		String mother = current.getMother_id();
-		if (mother != null && !(current.getMother_type() + "." + mother)
-				.equals(rootContentId) && !"0".equals(mother)) {
-			CRRequest nRequest = request.Clone();
-			nRequest.setRequestFilter(null);
-			nRequest.setContentid(current.getMother_type() + "." + mother);
-			CRResolvableBean parent = loadSingle(ds, nRequest);
-			ret = getParents(ds, parent, rootContentId, nRequest);
-			if (ret == null) {
-				ret = new Vector<CRResolvableBean>();
+		ParentMap parents = getParentMap(ds);
+		parents.put(current.getContentid(), getMotherId(current));
+
+		List<String> path = new ArrayList<String>();
+		Map<String, CRResolvableBean> loaded =
+				new HashMap<String, CRResolvableBean>();
+		String id = parents.get(current.getContentid());
+		while (id != null && !id.equals(rootContentId) && !path.contains(id)) {
+			path.add(id);
+			String mother = parents.get(id);
+			if (mother == null) {
+				CRRequest nRequest = request.Clone();
+				nRequest.setRequestFilter(null);
+				nRequest.setContentid(id);
+				CRResolvableBean parent = loadSingle(ds, nRequest);
+				if (parent == null) {
+					break;
+				}
+				loaded.put(id, parent);
+				mother = getMotherId(parent);
+				parents.put(id, mother);
+			}
+			id = mother;
+			if (NO_PARENT.equals(id)) {
+				id = null;
+			}
+		}
+		if (path.isEmpty()) {
+			return null;
+		}
+
+		List<String> missing = new ArrayList<String>(path);
+		missing.removeAll(loaded.keySet());
+		if (!missing.isEmpty()) {
+			loaded.putAll(loadAll(ds, missing, request));
+		}
+
+		Vector<CRResolvableBean> ret = new Vector<CRResolvableBean>();
+		for (int i = path.size() - 1; i >= 0; i--) {
+			CRResolvableBean parent = loaded.get(path.get(i));
+			if (parent != null) {
+				ret.add(parent);
 			}
-			ret.add(parent);
 		}
 		return ret;
 	}
 
+	/**
+	 * Fetch the objects with the given contentids.
+	 * @param ds datasource
+	 * @param contentIds contentids of the objects
+	 * @param request request object
+	 * @return objects by contentid
+	 * @throws DatasourceException in case of error
+	 * @throws ParserException in case of error
+	 * @throws ExpressionParserException in case of error
+	 */
+	private Map<String, CRResolvableBean> loadAll(final Datasource ds,
+			final List<String> contentIds, final CRRequest request)
+			throws DatasourceException, ParserException,
+			ExpressionParserException {
+		Map<String, CRResolvableBean> beans =
+				new HashMap<String, CRResolvableBean>();
+		CRRequest nRequest = request.Clone();
+		nRequest.setContentid(null);
+		nRequest.setRequestFilter("object.contentid CONTAINSONEOF "
+				+ CRUtil.prepareParameterArrayForRule(
+						contentIds.toArray(new String[contentIds.size()])));
+		String[] attributes = getPrefillAttributes(request);
+		Collection<Resolvable> col = this.toResolvableCollection(ds.getResult(
+				nRequest.getPreparedFilter(config, ds), attributes));
+		if (col != null) {
+			for (Resolvable resolvable : col) {
+				CRResolvableBean bean =
+						new CRResolvableBean(resolvable, attributes);
+				beans.put(bean.getContentid(), bean);
+			}
+		}
+		return beans;
+	}
+
+	/**
+	 * @param bean object
+	 * @return contentid of the mother of the object or {@link #NO_PARENT}
+	 */
+	private static String getMotherId(final CRResolvableBean bean) {
+		String mother = bean.getMother_id();
+		if (mother == null || "0".equals(mother)) {
+			return NO_PARENT;
+		}
+		return bean.getMother_type() + "." + mother;
+	}
+
+	/**
+	 * Get the parent map of the configuration. The map is cleared when the
+	 * content repository was changed.
+	 * @param ds datasource to check for changes
+	 * @return parent map
+	 * @throws DatasourceException in case of error
+	 */
+	ParentMap getParentMap(final Datasource ds)
+			throws DatasourceException {
+		ParentMap parents = PARENT_MAPS.get(config.getName());
+		if (parents == null) {
+			parents = new ParentMap(config.getName(), cacheInterval);
+			ParentMap existing =
+					PARENT_MAPS.putIfAbsent(config.getName(), parents);
+			if (existing != null) {
+				parents = existing;
+			} else {
+				EventManager.getInstance().register(parents);
+			}
+		}
+		parents.validate(ds);
+		return parents;
+	}
+
+	/**
+	 * Map of the contentids of objects to the contentids of their mothers.
+	 * The map is cleared when a {@link ContentChangedEvent} is received or the
+	 * number of objects or the youngest updatetimestamp in the content
+	 * repository changed. The content repository is polled by one request at
+	 * a time, other requests keep using the map meanwhile.
+	 */
+	static final class ParentMap implements IEventReceiver {
+
+		/**
+		 * name of the configuration.
+		 */
+		private final String configName;
+
+		/**
+		 * contentids of the mothers by contentid.
+		 */
+		private final ConcurrentMap<String, String> parents =
+				new ConcurrentHashMap<String, String>();
+
+		/**
+		 * state of the content repository when the map was filled.
+		 */
+		private volatile String state;
+
+		/**
+		 * poller of the content repository state.
+		 */
+		private final ContentStatePoller poller;
+
+		/**
+		 * Create a new parent map.
+		 * @param configName name of the configuration
+		 * @param interval interval in milliseconds the content repository
+		 * is checked for changes
+		 */
+		ParentMap(final String configName, final long interval) {
+			this.configName = configName;
+			poller = new ContentStatePoller(VALIDATION_RULE, interval);
+		}
+
+		/**
+		 * @param contentId contentid of an object
+		 * @return contentid of the mother, {@link #NO_PARENT} if the object has
+		 * no mother or null if the object is not in the map.
+		 */
+		String get(final String contentId) {
+			return parents.get(contentId);
+		}
+
+		/**
+		 * @param contentId contentid of an object
+		 * @param motherId contentid of the mother or {@link #NO_PARENT}
+		 */
+		void put(final String contentId, final String motherId) {
+			if (contentId != null) {
+				parents.put(contentId, motherId);
+			}
+		}
+
+		/**
+		 * Clear the map if the content repository was changed since the
+		 * last check.
+		 * @param ds datasource to check
+		 * @throws DatasourceException in case of error
+		 */
+		void validate(final Datasource ds) throws DatasourceException {
+			String current = poller.getState(ds);
+			if (current != null && !current.equals(state)) {
+				parents.clear();
+				state = current;
+			}
+		}
+
+		/**
+		 * Clear the map when the content repository was changed.
+		 * @param event fired event
+		 */
+		public void processEvent(final Event event) {
+			if (ContentChangedEvent.CONTENT_CHANGED_EVENT_TYPE.equals(
+					event.getType()) && (event.getData() == null
+							|| configName.equals(event.getData()))) {
+				parents.clear();
+				state = null;
+			}
+		}
+	}
+
 	@Override
 	public void finalize() {
 	}
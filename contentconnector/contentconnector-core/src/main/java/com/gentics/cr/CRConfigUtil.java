@@ -277,10 +277,11 @@ public class CRConfigUtil extends CRConfig {
 	 * 
 	 * ATTENTION: The pool has to be released when the application shuts down using the releaseJDBCPool method
 	 * 
+	 * The caller waits at most pooling.maxwait milliseconds for a connection.
 	 * @return pooled jdbc connection.
 	 * @throws Exception
 	 */
-	public synchronized Connection getPooledJDBCConnection() throws Exception {
+	public Connection getPooledJDBCConnection() throws Exception {
 		return ConnectionProvider.getPooledJDBCConnection(this);
 	}
 
@@ -289,7 +290,7 @@ public class CRConfigUtil extends CRConfig {
 	 * getPooledJDBCConnection.
 	 * @throws Exception
 	 */
-	public synchronized void releaseJDBCPool() throws Exception {
+	public void releaseJDBCPool() throws Exception {
 		ConnectionProvider.releaseJDBCPool(this);
 	}
 
@@ -2,6 +2,7 @@ package com.gentics.cr;
 
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -9,6 +10,8 @@ import com.gentics.api.lib.datasource.Datasource;
 import com.gentics.api.lib.etc.ObjectTransformer;
 import com.gentics.api.portalnode.connector.PortalConnectorFactory;
 import com.gentics.api.portalnode.connector.PortalConnectorHelper;
+import com.gentics.cr.monitoring.MonitorFactory;
+import com.gentics.cr.monitoring.UseCase;
 import com.gentics.cr.portalnode.PortalNodeInteractor;
 import com.gentics.cr.util.CRUtil;
 
@@ -38,7 +41,7 @@ public final class CRDatabaseFactory {
 	/**
 	 * Count of active datasources.
 	 */
-	private long dbcount = 0;
+	private final AtomicLong dbcount = new AtomicLong();
 
 	/**
 	 * Singleton get Instance.
@@ -55,7 +58,10 @@ public final class CRDatabaseFactory {
 	public static void releaseDatasource(Datasource ds) {
 
 		if (ds != null) {
-			log.debug("Release Datasource " + ds.toString().replaceAll("([&?])password=[^&?]*", "$1password=*****"));
+			if (log.isDebugEnabled()) {
+				log.debug("Release Datasource "
+						+ ds.toString().replaceAll("([&?])password=[^&?]*", "$1password=*****"));
+			}
 			getInstance().releaseDS();
 			ds = null;
 		}
@@ -64,17 +70,29 @@ public final class CRDatabaseFactory {
 	/**
 	 * Release one datasource instance.
 	 */
-	private synchronized void releaseDS() {
-		dbcount--;
-		log.debug("Released DB, DBCount now: " + dbcount);
+	private void releaseDS() {
+		long count = dbcount.decrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Released DB, DBCount now: " + count);
+		}
 	}
 
 	/**
 	 * Increase the active datasources.
 	 */
-	private synchronized void accquireDS() {
-		dbcount++;
-		log.debug("Added DB, DBCount now: " + dbcount);
+	private void accquireDS() {
+		long count = dbcount.incrementAndGet();
+		if (log.isDebugEnabled()) {
+			log.debug("Added DB, DBCount now: " + count);
+		}
+	}
+
+	/**
+	 * Get the number of datasources that were acquired and not released yet.
+	 * @return number of active datasources
+	 */
+	public static long getActiveDatasources() {
+		return getInstance().dbcount.get();
 	}
 
 	/**
@@ -82,7 +100,7 @@ public final class CRDatabaseFactory {
 	 * @return true if the process was successful, otherwise false.
 	 */
 	private synchronized boolean destroyFactory() {
-		if (dbcount <= 0) {
+		if (dbcount.get() <= 0) {
 			PortalConnectorFactory.destroy();
 			log.debug("Factory, resources and threads have been closed.");
 			return true;
@@ -128,29 +146,35 @@ public final class CRDatabaseFactory {
 	 */
 	public static Datasource getDatasource(final CRConfigUtil requestProcessorConfig) {
 		Datasource ds = null;
-		Properties dsHandle = requestProcessorConfig.getDatasourceHandleProperties();
-		Properties dsProps = requestProcessorConfig.getDatasourceProperties();
-		if (dsHandle != null && dsHandle.size() != 0) {
-			if (dsHandle.containsKey("portalnodedb")) {
-				String key = (String) dsHandle.get("portalnodedb");
-				ds = PortalNodeInteractor.getPortalnodeDatasource(key);
-			} else if (dsProps != null && dsProps.size() != 0) {
-				boolean mccr = ObjectTransformer.getBoolean(dsProps.get("mccr"), false);
-				if (mccr) {
-					ds = PortalConnectorFactory.createWritableMultichannellingDatasource(CRUtil.propertiesToMap(dsHandle), CRUtil.propertiesToMap(dsProps));
+		UseCase getDatasourceCase = MonitorFactory.startUseCase("CRDatabaseFactory.getDatasource("
+				+ requestProcessorConfig.getName() + ")");
+		try {
+			Properties dsHandle = requestProcessorConfig.getDatasourceHandleProperties();
+			Properties dsProps = requestProcessorConfig.getDatasourceProperties();
+			if (dsHandle != null && dsHandle.size() != 0) {
+				if (dsHandle.containsKey("portalnodedb")) {
+					String key = (String) dsHandle.get("portalnodedb");
+					ds = PortalNodeInteractor.getPortalnodeDatasource(key);
+				} else if (dsProps != null && dsProps.size() != 0) {
+					boolean mccr = ObjectTransformer.getBoolean(dsProps.get("mccr"), false);
+					if (mccr) {
+						ds = PortalConnectorFactory.createWritableMultichannellingDatasource(CRUtil.propertiesToMap(dsHandle), CRUtil.propertiesToMap(dsProps));
+					} else {
+						ds = PortalConnectorFactory.createWriteableDatasource(dsHandle, dsProps);
+					}
+				
 				} else {
-					ds = PortalConnectorFactory.createWriteableDatasource(dsHandle, dsProps);
+					ds = PortalConnectorFactory.createWriteableDatasource(dsHandle);
+				}
+				log.debug("Datasource created for " + requestProcessorConfig.getName());
+				if (ds != null) {
+					getInstance().accquireDS();
 				}
-				
 			} else {
-				ds = PortalConnectorFactory.createWriteableDatasource(dsHandle);
-			}
-			log.debug("Datasource created for " + requestProcessorConfig.getName());
-			if (ds != null) {
-				getInstance().accquireDS();
+				log.debug("No Datasource created for " + requestProcessorConfig.getName());
 			}
-		} else {
-			log.debug("No Datasource created for " + requestProcessorConfig.getName());
+		} finally {
+			getDatasourceCase.stop();
 		}
 		return ds;
 	}
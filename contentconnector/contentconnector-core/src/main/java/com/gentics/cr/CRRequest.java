@@ -18,6 +18,7 @@ import com.gentics.api.lib.expressionparser.ExpressionParserException;
 import com.gentics.api.lib.expressionparser.filtergenerator.DatasourceFilter;
 import com.gentics.api.lib.resolving.Resolvable;
 import com.gentics.api.portalnode.connector.PortalConnectorFactory;
+import com.gentics.cr.util.BoundedCache;
 import com.gentics.cr.util.CRUtil;
 import com.gentics.cr.util.RequestWrapper;
 
@@ -40,6 +41,17 @@ public class CRRequest implements Cloneable, Serializable {
 	 * Log4j logger.
 	 */
 	private static Logger log = Logger.getLogger(CRRequest.class);
+
+	/**
+	 * Maximum number of parsed filter expressions kept in memory.
+	 */
+	private static final int EXPRESSION_CACHE_SIZE = 1000;
+
+	/**
+	 * Parsed filter expressions by their normalized filter string.
+	 */
+	private static final BoundedCache<String, Expression> EXPRESSIONS = new BoundedCache<String, Expression>(
+			EXPRESSION_CACHE_SIZE);
 	/**
 	 * key for storing the wordmatch parameter into.
 	 */
@@ -502,7 +514,7 @@ public class CRRequest implements Cloneable, Serializable {
 		}
 
 		// TEST IF REQUEST FILTER IS SAVE
-		Expression expression = PortalConnectorFactory.createExpression(this.getRequestFilter());
+		Expression expression = getExpression(this.getRequestFilter());
 		// IF NO EXCEPTION IS THROWN IN THE ABOVE STATEMENT, FILTER IS
 		// CONSIDERED TO BE SAVE
 
@@ -517,8 +529,11 @@ public class CRRequest implements Cloneable, Serializable {
 			filter = config.getApplicationRule();
 		}
 		log.debug("Using rule: " + filter);
-		expression = PortalConnectorFactory.createExpression(filter);
+		expression = getExpression(filter);
 
+		// the datasource filter holds the base resolvables of this request so
+		// it cannot be shared, values deployed with
+		// addObjectForFilterDeployment are bound here without parsing again
 		dsFilter = ds.createDatasourceFilter(expression);
 		Iterator<String> it = this.getObjectsToDeploy().keySet().iterator();
 		while (it.hasNext()) {
@@ -528,6 +543,60 @@ public class CRRequest implements Cloneable, Serializable {
 		return (dsFilter);
 	}
 
+	/**
+	 * Get the parsed expression for a filter. Filters are parsed once and the
+	 * expressions are cached by the filter with normalized whitespace.
+	 * @param filter filter to parse
+	 * @return parsed expression
+	 * @throws ParserException if the filter cannot be parsed
+	 */
+	private static Expression getExpression(final String filter) throws ParserException {
+		if (filter == null) {
+			return PortalConnectorFactory.createExpression(filter);
+		}
+		String key = normalizeFilter(filter);
+		Expression expression = EXPRESSIONS.get(key);
+		if (expression == null) {
+			expression = EXPRESSIONS.putIfAbsent(key, PortalConnectorFactory.createExpression(filter));
+		}
+		return expression;
+	}
+
+	/**
+	 * Normalize a filter for the expression cache by trimming it and
+	 * collapsing whitespace outside of string literals.
+	 * @param filter filter to normalize
+	 * @return normalized filter
+	 */
+	static String normalizeFilter(final String filter) {
+		StringBuilder normalized = new StringBuilder(filter.length());
+		char quote = 0;
+		boolean whitespace = false;
+		for (int i = 0; i < filter.length(); i++) {
+			char c = filter.charAt(i);
+			if (quote != 0) {
+				normalized.append(c);
+				if (c == '\\' && i + 1 < filter.length()) {
+					normalized.append(filter.charAt(++i));
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (Character.isWhitespace(c)) {
+				whitespace = true;
+			} else {
+				if (whitespace && normalized.length() > 0) {
+					normalized.append(' ');
+				}
+				whitespace = false;
+				if (c == '\'' || c == '"') {
+					quote = c;
+				}
+				normalized.append(c);
+			}
+		}
+		return normalized.toString();
+	}
+
 	/**
 	 * Sets if the RequestProcessor is to replace plinks in the configured
 	 * attributes (plink attributes).
@@ -153,6 +153,25 @@ public class CRResolvableBean extends AccessibleBean implements Serializable, Re
 		}
 	}
 
+	/**
+	 * Create a copy of a CRResolvableBean. The attributes are copied into a
+	 * new map, the children are not copied.
+	 * 
+	 * @param bean bean to copy
+	 */
+	public CRResolvableBean(final CRResolvableBean bean) {
+		this.contentid = bean.contentid;
+		this.obj_id = bean.obj_id;
+		this.obj_type = bean.obj_type;
+		this.mother_id = bean.mother_id;
+		this.mother_type = bean.mother_type;
+		this.resolvable = bean.resolvable;
+		this.childRepository = new Vector<CRResolvableBean>();
+		if (bean.attrMap != null) {
+			this.attrMap = new ConcurrentHashMap<String, Object>(bean.attrMap);
+		}
+	}
+
 	/**
 	 * Create new instance of CRResolvableBean.
 	 * 
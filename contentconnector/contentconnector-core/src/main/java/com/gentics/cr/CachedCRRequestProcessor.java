@@ -1,9 +1,17 @@
 package com.gentics.cr;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jcs.JCS;
 import org.apache.jcs.access.exception.CacheException;
@@ -16,9 +24,15 @@ import com.gentics.api.lib.exception.ParserException;
 import com.gentics.api.lib.expressionparser.ExpressionParserException;
 import com.gentics.api.lib.expressionparser.filtergenerator.DatasourceFilter;
 import com.gentics.api.lib.resolving.Resolvable;
+import com.gentics.cr.events.ContentChangedEvent;
+import com.gentics.cr.events.Event;
+import com.gentics.cr.events.EventManager;
+import com.gentics.cr.events.IEventReceiver;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.monitoring.MonitorFactory;
 import com.gentics.cr.monitoring.UseCase;
+import com.gentics.cr.util.CRUtil;
+import com.gentics.cr.util.ContentStatePoller;
 
 /**
  * CachedCRRequestProcessor fixes a bug in Gentics PortalConnector which
@@ -46,10 +60,91 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 	private HashMap<String, Resolvable> resolvables = null;
 
 	/**
-	 * Attribute to check if an object is up to date. So the attribute should
-	 * change whenever the object is changed.
+	 * Configuration key for the validation of cached results. <code>query</code>
+	 * (default) checks the updatetimestamps of the result with a query for
+	 * every request, <code>counter</code> polls a change counter of the
+	 * content repository in the configured interval and <code>event</code>
+	 * only invalidates the results when a {@link ContentChangedEvent} is fired.
+	 * The event is fired by the update checker jobs of the indexer when they
+	 * find changed objects, so <code>event</code> requires an indexer running
+	 * in the same application (or the application firing the event itself).
 	 */
-	private static final String UPDATEATTRIBUTE = "updatetimestamp";
+	public static final String CACHE_VALIDATION_KEY = "cachevalidation";
+
+	/**
+	 * Configuration key for the interval in milliseconds in which the change
+	 * counter is polled. Defaults to 10 seconds.
+	 */
+	public static final String CACHE_VALIDATION_INTERVAL_KEY = "cachevalidationinterval";
+
+	/**
+	 * Configuration key for the rule of the objects the change counter is
+	 * computed for, e.g. to restrict it to some object types.
+	 */
+	public static final String CACHE_VALIDATION_RULE_KEY = "cachevalidationrule";
+
+	/**
+	 * Configuration key for a comma separated list of additional event types
+	 * that invalidate the cached results.
+	 */
+	public static final String CACHE_VALIDATION_EVENTS_KEY = "cachevalidationevents";
+
+	/**
+	 * Validation of the results with a query per request.
+	 */
+	private static final String VALIDATION_QUERY = "query";
+
+	/**
+	 * Validation with a polled change counter.
+	 */
+	private static final String VALIDATION_COUNTER = "counter";
+
+	/**
+	 * Validation with events.
+	 */
+	private static final String VALIDATION_EVENT = "event";
+
+	/**
+	 * Configuration key to disable (default enabled) loading the navigation
+	 * tree with one query per tree level.
+	 */
+	public static final String BATCH_NAVIGATION_KEY = "batchnavigation";
+
+	/**
+	 * Maximum number of folders whose children are fetched with one query.
+	 */
+	private static final int NAVIGATION_BATCH_SIZE = 500;
+
+	/**
+	 * Attribute linking an object to its folder.
+	 */
+	private static final String FOLDER_ATTRIBUTE = "folder_id";
+
+	/**
+	 * Default rule for the change counter.
+	 */
+	private static final String DEFAULT_VALIDATION_RULE = "object.updatetimestamp > 0";
+
+	/**
+	 * Change counters by configuration name.
+	 */
+	private static final ConcurrentMap<String, ChangeCounter> COUNTERS = new ConcurrentHashMap<String, ChangeCounter>();
+
+	/**
+	 * configured validation mode.
+	 */
+	private String validation;
+
+	/**
+	 * change counter of the content repository, null for the query
+	 * validation.
+	 */
+	private ChangeCounter changeCounter;
+
+	/**
+	 * true if the navigation tree is loaded with one query per tree level.
+	 */
+	private boolean batchNavigation;
 
 	/**
 	 * Create a new instance of CRRequestProcessor.
@@ -58,6 +153,32 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 	 */
 	public CachedCRRequestProcessor(final CRConfig config) throws CRException {
 		super(config);
+		batchNavigation = config.getBoolean(BATCH_NAVIGATION_KEY, true);
+		validation = config.getString(CACHE_VALIDATION_KEY, VALIDATION_QUERY);
+		if (VALIDATION_COUNTER.equalsIgnoreCase(validation) || VALIDATION_EVENT.equalsIgnoreCase(validation)) {
+			changeCounter = getChangeCounter(config);
+		} else if (!VALIDATION_QUERY.equalsIgnoreCase(validation)) {
+			logger.error("Unknown cache validation " + validation + ", validating the results with a query.");
+		}
+	}
+
+	/**
+	 * Get the change counter shared by all request processors of the config.
+	 * @param config configuration of the request processor
+	 * @return change counter
+	 */
+	private static ChangeCounter getChangeCounter(final CRConfig config) {
+		ChangeCounter counter = COUNTERS.get(config.getName());
+		if (counter == null) {
+			counter = new ChangeCounter(config);
+			ChangeCounter existing = COUNTERS.putIfAbsent(config.getName(), counter);
+			if (existing != null) {
+				counter = existing;
+			} else {
+				EventManager.getInstance().register(counter);
+			}
+		}
+		return counter;
 	}
 
 	/**
@@ -99,9 +220,14 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 
 				// convert all objects to serializeable beans
 				if (col != null) {
+					List<CRResolvableBean> folders = new ArrayList<CRResolvableBean>();
 					for (Iterator<Resolvable> it = col.iterator(); it.hasNext();) {
 						CRResolvableBean crBean = new CRResolvableBean(it.next(), request.getAttributeArray());
-						if (this.config.getFolderType().equals(crBean.getObj_type()) && doNavigation) {
+						if (batchNavigation && doNavigation) {
+							if (this.config.getFolderType().equals(crBean.getObj_type())) {
+								folders.add(crBean);
+							}
+						} else if (this.config.getFolderType().equals(crBean.getObj_type()) && doNavigation) {
 							// Process child elements
 							String fltr = "object.folder_id=='" + crBean.getContentid() + "'";
 							if (request.getChildFilter() != null) {
@@ -114,6 +240,9 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 						}
 						collection.add(this.replacePlinks(crBean, request));
 					}
+					if (!folders.isEmpty()) {
+						loadChildren(ds, request, folders);
+					}
 				}
 
 			} catch (ParserException e) {
@@ -133,6 +262,125 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 		return collection;
 	}
 
+	/**
+	 * Load the navigation tree below the given folders with one query per tree
+	 * level instead of one query per folder. The children of all folders of a
+	 * level are fetched at once, grouped by their folder in memory and the
+	 * start and count of the request are applied per folder.
+	 * @param ds {@link Datasource} to get the objects from
+	 * @param request request of the root objects
+	 * @param folders folders to load the children for
+	 * @throws ParserException if the child filter cannot be parsed
+	 * @throws ExpressionParserException if the child filter cannot be parsed
+	 */
+	private void loadChildren(final Datasource ds, final CRRequest request, final List<CRResolvableBean> folders)
+			throws ParserException, ExpressionParserException {
+		UseCase navigationCase = MonitorFactory.startUseCase("CRRequestProcessor.loadChildren(" + config.getName()
+				+ ")");
+		Set<String> loaded = new HashSet<String>();
+		List<CRResolvableBean> level = folders;
+		while (!level.isEmpty()) {
+			List<String> folderIds = new ArrayList<String>(level.size());
+			for (CRResolvableBean folder : level) {
+				// guard against cyclic folder structures
+				if (loaded.add(folder.getContentid())) {
+					folderIds.add(folder.getContentid());
+				}
+			}
+			Map<String, List<CRResolvableBean>> childrenByFolder = loadChildLevel(ds, request, folderIds);
+			List<CRResolvableBean> nextLevel = new ArrayList<CRResolvableBean>();
+			for (CRResolvableBean folder : level) {
+				List<CRResolvableBean> children = childrenByFolder.get(folder.getContentid());
+				if (children == null) {
+					continue;
+				}
+				folder.fillChildRepository(children);
+				for (CRResolvableBean child : children) {
+					if (this.config.getFolderType().equals(child.getObj_type())) {
+						nextLevel.add(child);
+					}
+				}
+			}
+			level = nextLevel;
+		}
+		navigationCase.stop();
+	}
+
+	/**
+	 * Fetch the children of the given folders.
+	 * @param ds {@link Datasource} to get the objects from
+	 * @param request request of the root objects
+	 * @param folderIds contentids of the folders
+	 * @return children by the contentid of their folder
+	 * @throws ParserException if the child filter cannot be parsed
+	 * @throws ExpressionParserException if the child filter cannot be parsed
+	 */
+	private Map<String, List<CRResolvableBean>> loadChildLevel(final Datasource ds, final CRRequest request,
+			final List<String> folderIds) throws ParserException, ExpressionParserException {
+		Map<String, List<CRResolvableBean>> childrenByFolder = new HashMap<String, List<CRResolvableBean>>();
+		String[] prefillAttributes = request.getAttributeArray();
+		int start = request.getStart().intValue();
+		int count = request.getCount().intValue();
+		Map<String, Integer> skipped = new HashMap<String, Integer>();
+		for (int i = 0; i < folderIds.size(); i += NAVIGATION_BATCH_SIZE) {
+			List<String> batch = folderIds.subList(i, Math.min(i + NAVIGATION_BATCH_SIZE, folderIds.size()));
+			String fltr = "object." + FOLDER_ATTRIBUTE + " CONTAINSONEOF "
+					+ CRUtil.prepareParameterArrayForRule(batch.toArray(new String[batch.size()]));
+			if (request.getChildFilter() != null) {
+				fltr += " AND (" + request.getChildFilter() + ")";
+			}
+			CRRequest childReq = request.Clone();
+			childReq.setRequestFilter(fltr);
+			DatasourceFilter dsFilter = childReq.getPreparedFilter(config, ds);
+			if (this.resolvables != null) {
+				for (Map.Entry<String, Resolvable> entry : this.resolvables.entrySet()) {
+					dsFilter.addBaseResolvable(entry.getKey(), entry.getValue());
+				}
+			}
+			Collection<Resolvable> col = getResult(ds, dsFilter, prefillAttributes, 0, -1, request.getSorting());
+			if (col == null) {
+				continue;
+			}
+			for (Resolvable reso : col) {
+				String folderId = getFolderId(reso);
+				if (folderId == null) {
+					continue;
+				}
+				List<CRResolvableBean> children = childrenByFolder.get(folderId);
+				if (children == null) {
+					children = new ArrayList<CRResolvableBean>();
+					childrenByFolder.put(folderId, children);
+				}
+				Integer skippedChildren = skipped.get(folderId);
+				if (skippedChildren == null) {
+					skippedChildren = Integer.valueOf(0);
+				}
+				if (skippedChildren.intValue() < start) {
+					skipped.put(folderId, Integer.valueOf(skippedChildren.intValue() + 1));
+				} else if (count < 0 || children.size() < count) {
+					CRResolvableBean crBean = new CRResolvableBean(reso, request.getAttributeArray());
+					children.add(this.replacePlinks(crBean, request));
+				}
+			}
+		}
+		return childrenByFolder;
+	}
+
+	/**
+	 * @param reso child object
+	 * @return contentid of the folder of the object
+	 */
+	private static String getFolderId(final Resolvable reso) {
+		Object folder = reso.get(FOLDER_ATTRIBUTE);
+		if (folder instanceof Resolvable) {
+			folder = ((Resolvable) folder).get("contentid");
+		}
+		if (folder == null) {
+			return null;
+		}
+		return folder.toString();
+	}
+
 	/**
 	 * This Method implements a caching due to a lack of performance in the
 	 * CNDatasource when getting a large result with prefilled Attributes.
@@ -158,6 +406,12 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 		Collection<Resolvable> cachedResult;
 		String cacheKey = config.getName() + "-" + dsFilter.getExpressionString();
 
+		if (changeCounter != null) {
+			collection = getCounterValidatedResult(ds, dsFilter, prefillAttributes, first, last, sorting, cacheKey);
+			getResultCase.stop();
+			return collection;
+		}
+
 		try {
 			UseCase getResultFastCase = MonitorFactory.startUseCase("CRRequestProcessor.getResult(" + config.getName()
 					+ ")#fastResult");
@@ -188,6 +442,42 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 		return collection;
 	}
 
+	/**
+	 * Get the result from the cache without a query if the change counter did
+	 * not change since the result was cached. The counter is part of the
+	 * cache key, so results cached before a change are never returned.
+	 * @param ds {@link Datasource} to get the objects from
+	 * @param dsFilter filter describing the objects to fetch
+	 * @param prefillAttributes attributes that should be prefilled
+	 * @param first index of the first item to fetch
+	 * @param last index of the last item to fetch
+	 * @param sorting {@link Sorting} that should be used.
+	 * @param cacheKey key of the result without the counter
+	 * @return {@link Collection} of {@link Resolvable}s described by the filter.
+	 */
+	private Collection<Resolvable> getCounterValidatedResult(final Datasource ds, final DatasourceFilter dsFilter,
+			final String[] prefillAttributes, final int first, final int last, final Sorting[] sorting,
+			final String cacheKey) {
+		Collection<Resolvable> collection = null;
+		try {
+			String counterKey = cacheKey + "#" + changeCounter.getValue(ds, VALIDATION_COUNTER.equalsIgnoreCase(validation));
+			initCache();
+			Object cacheResultObject = resultCache.get(counterKey);
+			if (cacheResultObject != null) {
+				collection = toResolvableCollection(cacheResultObject);
+			} else {
+				UseCase getResultUncachedCase = MonitorFactory.startUseCase("CRRequestProcessor.getResult("
+						+ config.getName() + ")#uncached");
+				collection = toResolvableCollection(ds.getResult(dsFilter, prefillAttributes, first, last, sorting));
+				saveResult(counterKey, collection);
+				getResultUncachedCase.stop();
+			}
+		} catch (DatasourceException e) {
+			logger.error("Cannot get the result from the Datasource.", e);
+		}
+		return collection;
+	}
+
 	/**
 	 * Compares two resultsets for their updateTime.
 	 * @param left first Resolvable
@@ -223,7 +513,7 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 	 * given updatetime
 	 */
 	private static int checkUpdatetime(final Resolvable resolvable, final int updatetime) {
-		Object updatetimestampObject = resolvable.get(UPDATEATTRIBUTE);
+		Object updatetimestampObject = resolvable.get(ContentStatePoller.UPDATEATTRIBUTE);
 		if (updatetimestampObject instanceof Integer) {
 			int updatetimestamp = ((Integer) updatetimestampObject).intValue();
 			if (updatetimestamp > updatetime) {
@@ -275,6 +565,86 @@ public class CachedCRRequestProcessor extends RequestProcessor {
 		}
 	}
 
+	/**
+	 * Change counter of a content repository. The counter consists of the
+	 * number of events that signaled a change and, when polled, of the
+	 * number of objects and the youngest updatetimestamp in the content
+	 * repository.
+	 */
+	private static final class ChangeCounter implements IEventReceiver {
+
+		/**
+		 * name of the configuration.
+		 */
+		private final String configName;
+
+		/**
+		 * event types that signal a change.
+		 */
+		private final Set<String> eventTypes = new HashSet<String>();
+
+		/**
+		 * number of events signaling a change.
+		 */
+		private final AtomicLong events = new AtomicLong();
+
+		/**
+		 * poller of the content repository state.
+		 */
+		private final ContentStatePoller poller;
+
+		/**
+		 * Create a new counter.
+		 * @param config configuration of the content repository
+		 */
+		ChangeCounter(final CRConfig config) {
+			configName = config.getName();
+			poller = new ContentStatePoller(config.getString(CACHE_VALIDATION_RULE_KEY, DEFAULT_VALIDATION_RULE),
+					config.getInteger(CACHE_VALIDATION_INTERVAL_KEY, 10000));
+			eventTypes.add(ContentChangedEvent.CONTENT_CHANGED_EVENT_TYPE);
+			String additionalEvents = config.getString(CACHE_VALIDATION_EVENTS_KEY);
+			if (additionalEvents != null && !"".equals(additionalEvents)) {
+				for (String type : additionalEvents.split(",")) {
+					eventTypes.add(type.trim());
+				}
+			}
+		}
+
+		/**
+		 * Get the current value of the counter.
+		 * @param ds datasource to poll
+		 * @param poll true if the content repository should be polled when
+		 * the interval has elapsed
+		 * @return current value
+		 * @throws DatasourceException if the content repository cannot be polled
+		 */
+		String getValue(final Datasource ds, final boolean poll) throws DatasourceException {
+			String polledValue = "";
+			if (poll) {
+				polledValue = poller.getState(ds);
+			}
+			return events.get() + "-" + polledValue;
+		}
+
+		/**
+		 * Count the events that signal a change of the content repository. A
+		 * {@link ContentChangedEvent} is counted if it names no configuration
+		 * or this one, the additionally configured event types are counted
+		 * whatever their data is (e.g. the index location of an
+		 * IndexingFinishedEvent).
+		 * @param event fired event
+		 */
+		public void processEvent(final Event event) {
+			if (ContentChangedEvent.CONTENT_CHANGED_EVENT_TYPE.equals(event.getType())) {
+				if (event.getData() == null || configName.equals(event.getData())) {
+					events.incrementAndGet();
+				}
+			} else if (eventTypes.contains(event.getType())) {
+				events.incrementAndGet();
+			}
+		}
+	}
+
 	@Override
 	public void finalize() {
 		// TODO Auto-generated method stub
@@ -1,13 +1,20 @@
 package com.gentics.cr;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
@@ -26,7 +33,9 @@ import com.gentics.api.lib.resolving.Resolvable;
 import com.gentics.api.portalnode.connector.PortalConnectorFactory;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.util.ArrayHelper;
+import com.gentics.cr.util.BoundedCache;
 import com.gentics.cr.util.CRUtil;
+import com.gentics.cr.util.ContentStatePoller;
 
 /**
  * <p>
@@ -59,6 +68,14 @@ import com.gentics.cr.util.CRUtil;
  * rp.1.rpClass=com.gentics.cr.OptimisticNavigationRequestProcessor
  * rp.1.usenodeidinchildrule=true
  * </pre>
+ * <p>
+ * Navigation trees are cached in memory by filter and requested attributes
+ * and served without database access. The cached trees are checked for
+ * changes every <code>navigationcacheinterval</code> milliseconds (default
+ * 10000) in the background and rebuilt when the number of objects or the
+ * youngest updatetimestamp changed. The cache can be disabled with
+ * <code>navigationcache=false</code>.
+ * </p>
  * 
  * @author l.osang@gentics.com, c.supnig@gentics.com, s.vogel@gentics.com
  * 
@@ -77,12 +94,50 @@ public class OptimisticNavigationRequestProcessor extends RequestProcessor {
 
 	private static final String NODE_ID_CHILDREN_FEATURE_KEY = "usenodeidinchildrule";
 
+	/**
+	 * Key to disable (default enabled) the navigation cache in the config.
+	 */
+	private static final String NAVIGATION_CACHE_KEY = "navigationcache";
+
+	/**
+	 * Key for the interval in milliseconds the cached navigation trees are
+	 * checked for changes in the config.
+	 */
+	private static final String NAVIGATION_CACHE_INTERVAL_KEY = "navigationcacheinterval";
+
+	/**
+	 * Maximum number of cached navigation trees.
+	 */
+	private static final int NAVIGATION_CACHE_SIZE = 200;
+
+	/**
+	 * Cached navigation trees by config, filter and requested attributes.
+	 */
+	private static final BoundedCache<String, NavigationTree> TREES = new BoundedCache<String, NavigationTree>(
+			NAVIGATION_CACHE_SIZE);
+
+	/**
+	 * Thread checking the cached navigation trees for changes and rebuilding
+	 * them.
+	 */
+	private static final ExecutorService REBUILDER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable r) {
+			Thread thread = new Thread(r, OptimisticNavigationRequestProcessor.class.getSimpleName() + ".rebuilder");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
 	/** String of content map folder id column, default: "folder_id". */
 	private String folderIdContentmapName = "folder_id";
 	/** String of content map node id column, default: "node_id". */
 	private String nodeIdContentMapName = "node_id";
 	/** Boolean, if node id should be recognized for childfilter */
 	private boolean usenodeidsinchildrule = false;
+	/** Boolean, if navigation trees are served from the navigation cache */
+	private boolean useNavigationCache = true;
+	/** Interval in milliseconds the cached trees are checked for changes */
+	private long navigationCacheInterval = 10000;
 
 	/**
 	 * Create a new instance of CRRequestProcessor.
@@ -103,6 +158,9 @@ public class OptimisticNavigationRequestProcessor extends RequestProcessor {
 
 		usenodeidsinchildrule = ObjectTransformer.getBoolean(config.getString(NODE_ID_CHILDREN_FEATURE_KEY), false);
 		logger.debug("Using node id in child rule: " + usenodeidsinchildrule);
+
+		useNavigationCache = config.getBoolean(NAVIGATION_CACHE_KEY, true);
+		navigationCacheInterval = config.getInteger(NAVIGATION_CACHE_INTERVAL_KEY, 10000);
 	}
 
 	/**
@@ -119,6 +177,26 @@ public class OptimisticNavigationRequestProcessor extends RequestProcessor {
 	 */
 	public Collection<CRResolvableBean> getObjects(final CRRequest request, final boolean doNavigation)
 			throws CRException {
+		if (request != null && doNavigation && useNavigationCache && isCacheable(request)) {
+			return getCachedNavigation(request);
+		}
+		return loadObjects(request, doNavigation);
+	}
+
+	/**
+	 * Fetch the matching objects using the given CRRequest from the
+	 * datasource.
+	 * 
+	 * @param request
+	 *            CRRequest
+	 * @param doNavigation
+	 *            defines if to fetch children
+	 * @return resulting objects
+	 * @throws CRException
+	 *             if the objects cannot be fetched
+	 */
+	private Collection<CRResolvableBean> loadObjects(final CRRequest request, final boolean doNavigation)
+			throws CRException {
 		Datasource ds = null;
 		DatasourceFilter dsFilter;
 		Vector<CRResolvableBean> collection = new Vector<CRResolvableBean>();
@@ -265,6 +343,199 @@ public class OptimisticNavigationRequestProcessor extends RequestProcessor {
 		return collection;
 	}
 
+	/**
+	 * Get the navigation tree for a request from the navigation cache. The
+	 * tree is built on the first request, afterwards copies of the cached tree
+	 * are served and the tree is checked for changes in the background.
+	 * 
+	 * @param request
+	 *            request of the navigation
+	 * @return copy of the navigation tree
+	 * @throws CRException
+	 *             if the tree cannot be built
+	 */
+	private Collection<CRResolvableBean> getCachedNavigation(final CRRequest request) throws CRException {
+		String key = getNavigationKey(request);
+		NavigationTree tree = TREES.get(key);
+		if (tree == null) {
+			CRRequest treeRequest = createTreeRequest(request);
+			// the fingerprint is taken first, so a change while the tree is
+			// loaded is detected by the next check
+			String fingerprint = fingerprint(treeRequest);
+			tree = new NavigationTree(treeRequest, loadObjects(treeRequest, true), fingerprint, 1);
+			NavigationTree existing = TREES.putIfAbsent(key, tree);
+			if (existing != null) {
+				tree = existing;
+			}
+		} else if (tree.needsCheck(navigationCacheInterval)) {
+			scheduleCheck(key, tree);
+		}
+
+		Vector<CRResolvableBean> collection = new Vector<CRResolvableBean>(tree.roots.size());
+		for (CRResolvableBean root : tree.roots) {
+			collection.add(replacePlinks(copyTree(root), request));
+		}
+		return collection;
+	}
+
+	/**
+	 * Check a cached tree for changes in the background and replace it with a
+	 * rebuilt tree if the content repository was changed.
+	 * 
+	 * @param key
+	 *            key of the tree in the navigation cache
+	 * @param tree
+	 *            the cached tree
+	 */
+	private void scheduleCheck(final String key, final NavigationTree tree) {
+		if (!tree.checking.compareAndSet(false, true)) {
+			return;
+		}
+		REBUILDER.execute(new Runnable() {
+			public void run() {
+				try {
+					String fingerprint = fingerprint(tree.request);
+					if (fingerprint.equals(tree.fingerprint)) {
+						tree.lastCheck = System.currentTimeMillis();
+					} else {
+						NavigationTree rebuilt = new NavigationTree(tree.request, loadObjects(tree.request, true),
+								fingerprint, tree.version + 1);
+						TREES.replace(key, tree, rebuilt);
+						logger.debug("Rebuilt navigation tree " + key + " in version " + rebuilt.version);
+					}
+				} catch (CRException e) {
+					logger.error("Could not check navigation tree " + key + ", serving the cached tree.", e);
+					tree.lastCheck = System.currentTimeMillis();
+				} finally {
+					tree.checking.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the state of the objects of a navigation tree. The state consists of
+	 * the number of objects and the youngest updatetimestamp of the roots and
+	 * the children. The number of objects changes when objects are removed.
+	 * 
+	 * @param treeRequest
+	 *            request of the tree
+	 * @return state of the tree objects
+	 * @throws CRException
+	 *             if the datasource cannot be queried
+	 */
+	private String fingerprint(final CRRequest treeRequest) throws CRException {
+		Datasource ds = null;
+		try {
+			ds = this.config.getDatasource();
+			if (ds == null) {
+				throw (new DatasourceException("No Datasource available."));
+			}
+			CRRequest childRequest = buildChildFilter(treeRequest, new HashSet<String>());
+			return ContentStatePoller.poll(ds, treeRequest.getPreparedFilter(config, ds)) + "/"
+					+ ContentStatePoller.poll(ds, childRequest.getPreparedFilter(config, ds));
+		} catch (ParserException e) {
+			throw new CRException(e);
+		} catch (ExpressionParserException e) {
+			throw new CRException(e);
+		} catch (DatasourceException e) {
+			throw new CRException(e);
+		} finally {
+			CRDatabaseFactory.releaseDatasource(ds);
+		}
+	}
+
+	/**
+	 * @param request
+	 *            request of a navigation
+	 * @return true if the navigation does not depend on objects deployed to
+	 *         the filter and can be cached
+	 */
+	private boolean isCacheable(final CRRequest request) {
+		return (this.resolvables == null || this.resolvables.isEmpty()) && request.getObjectsToDeploy().isEmpty()
+				&& getEffectiveFilter(request) != null;
+	}
+
+	/**
+	 * Get the filter a request is executed with. Like
+	 * {@link CRRequest#getPreparedFilter(CRConfig, Datasource)} the request
+	 * filter is preferred and the contentid is only used if no request filter
+	 * is set.
+	 * 
+	 * @param request
+	 *            request of a navigation
+	 * @return filter of the request or null if neither a filter nor a
+	 *         contentid is set
+	 */
+	private static String getEffectiveFilter(final CRRequest request) {
+		String filter = request.getRequestFilter();
+		String contentid = request.getContentid();
+		if ((filter == null || "".equals(filter)) && contentid != null && !"".equals(contentid)) {
+			filter = "object.contentid=='" + contentid + "'";
+		}
+		return filter;
+	}
+
+	/**
+	 * @param request
+	 *            request of a navigation
+	 * @return key of the navigation tree in the navigation cache
+	 */
+	private String getNavigationKey(final CRRequest request) {
+		StringBuilder key = new StringBuilder(config.getName());
+		key.append('|').append(getEffectiveFilter(request));
+		key.append('|').append(request.getChildFilter());
+		key.append('|').append(request.getStart()).append('|').append(request.getCount());
+		key.append('|').append(StringUtils.join(request.getAttributeArray(), ','));
+		Sorting[] sorting = request.getSorting();
+		if (sorting != null) {
+			for (Sorting sortingElement : sorting) {
+				key.append('|').append(sortingElement.getColumnName()).append(':')
+						.append(sortingElement.getSortOrder());
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Create the request a cached tree is built with. The request holds only
+	 * the parameters the tree depends on, plinks are replaced in the copies
+	 * served for each request.
+	 * 
+	 * @param request
+	 *            request of a navigation
+	 * @return request for the cached tree
+	 */
+	private static CRRequest createTreeRequest(final CRRequest request) {
+		CRRequest treeRequest = new CRRequest();
+		treeRequest.setRequestFilter(request.getRequestFilter());
+		treeRequest.setContentid(request.getContentid());
+		treeRequest.setChildFilter(request.getChildFilter());
+		treeRequest.setAttributeArray(request.getAttributeArray());
+		treeRequest.setSorting(request.getSorting());
+		treeRequest.set("start", request.getStart());
+		treeRequest.set("count", request.getCount());
+		return treeRequest;
+	}
+
+	/**
+	 * @param bean
+	 *            root of a cached tree
+	 * @return copy of the tree, the attributes of the beans are copied
+	 */
+	private static CRResolvableBean copyTree(final CRResolvableBean bean) {
+		CRResolvableBean copy = new CRResolvableBean(bean);
+		Collection<CRResolvableBean> children = bean.getChildRepository();
+		if (children != null && !children.isEmpty()) {
+			Vector<CRResolvableBean> childCopies = new Vector<CRResolvableBean>(children.size());
+			for (CRResolvableBean child : children) {
+				childCopies.add(copyTree(child));
+			}
+			copy.setChildRepository(childCopies);
+		}
+		return copy;
+	}
+
 	private CRRequest buildChildFilter(CRRequest request, Set<String> nodeIds) {
 		// get original sorting order for child sorting
 		// sort childrepositories with that
@@ -378,6 +649,73 @@ public class OptimisticNavigationRequestProcessor extends RequestProcessor {
 		}
 	}
 
+	/**
+	 * Navigation tree in the navigation cache. The tree is never modified after
+	 * it was built, a changed tree is replaced by a new version.
+	 */
+	private static final class NavigationTree {
+
+		/**
+		 * request the tree was built with.
+		 */
+		private final CRRequest request;
+
+		/**
+		 * roots of the tree.
+		 */
+		private final List<CRResolvableBean> roots;
+
+		/**
+		 * state of the tree objects when the tree was built.
+		 */
+		private final String fingerprint;
+
+		/**
+		 * version of the tree, incremented with each rebuild.
+		 */
+		private final long version;
+
+		/**
+		 * time of the last check for changes.
+		 */
+		private volatile long lastCheck = System.currentTimeMillis();
+
+		/**
+		 * true while the tree is checked for changes.
+		 */
+		private final AtomicBoolean checking = new AtomicBoolean(false);
+
+		/**
+		 * Create a new tree.
+		 * 
+		 * @param request
+		 *            request the tree was built with
+		 * @param roots
+		 *            roots of the tree
+		 * @param fingerprint
+		 *            state of the tree objects
+		 * @param version
+		 *            version of the tree
+		 */
+		NavigationTree(final CRRequest request, final Collection<CRResolvableBean> roots, final String fingerprint,
+				final long version) {
+			this.request = request;
+			this.roots = Collections.unmodifiableList(new ArrayList<CRResolvableBean>(roots));
+			this.fingerprint = fingerprint;
+			this.version = version;
+		}
+
+		/**
+		 * @param interval
+		 *            check interval in milliseconds
+		 * @return true if the tree was not checked for changes within the
+		 *         interval
+		 */
+		boolean needsCheck(final long interval) {
+			return System.currentTimeMillis() - lastCheck > interval;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -15,11 +15,9 @@ import org.apache.log4j.Logger;
 
 import com.gentics.api.lib.etc.ObjectTransformer;
 import com.gentics.api.lib.resolving.Resolvable;
-import com.gentics.api.portalnode.connector.PortalConnectorHelper;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.plink.PathResolver;
 import com.gentics.cr.plink.PlinkProcessor;
-import com.gentics.cr.plink.PlinkReplacer;
 import com.gentics.cr.template.ITemplateManager;
 
 /**
@@ -123,7 +121,7 @@ public abstract class RequestProcessor {
 				if (attr instanceof String) {
 					crBean.set(
 						plinkAttrArray[i],
-						PortalConnectorHelper.replacePLinks((String) attr, new PlinkReplacer(this.plinkProc, request)));
+						this.plinkProc.replacePLinks((String) attr, request));
 				}
 			}
 		}
@@ -168,6 +166,27 @@ public abstract class RequestProcessor {
 	 */
 	public abstract Collection<CRResolvableBean> getObjects(CRRequest request, boolean doNavigation) throws CRException;
 
+	/**
+	 * Pass the matching objects of the given CRRequest to a callback. Request
+	 * processors that can produce the objects incrementally override this
+	 * method so consumers can process the objects before the whole result is
+	 * loaded. The default implementation passes the objects of
+	 * {@link #getObjects(CRRequest)}, so the whole result is held in memory.
+	 * @param request request to get the objects for
+	 * @param callback callback receiving the objects
+	 * @throws CRException if the objects cannot be loaded or the callback fails
+	 */
+	public void streamObjects(final CRRequest request, final ResultCallback callback) throws CRException {
+		Collection<CRResolvableBean> coll = getObjects(request);
+		if (coll != null) {
+			for (CRResolvableBean bean : coll) {
+				if (!callback.process(bean)) {
+					break;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Get the matching objects and sub objects using the given CRRequest.
 	 * @param request TODO javadoc
@@ -301,7 +320,7 @@ public abstract class RequestProcessor {
 						long start = new Date().getTime();
 
 						// replace plinks
-						s = PortalConnectorHelper.replacePLinks(s, new PlinkReplacer(this.plinkProc, request));
+						s = this.plinkProc.replacePLinks(s, request);
 
 						// endtime
 						long end = new Date().getTime();
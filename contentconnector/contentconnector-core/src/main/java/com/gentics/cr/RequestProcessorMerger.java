@@ -4,7 +4,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.gentics.cr.exceptions.CRException;
 
@@ -22,6 +32,36 @@ public class RequestProcessorMerger {
 	 */
 	public static final String USE_SECONDARY_KEY = "secondary";
 
+	/**
+	 * Maximum number of keys in one secondary request.
+	 */
+	private static final int BATCH_SIZE = 500;
+
+	/**
+	 * Maximum number of secondary requests running concurrently.
+	 */
+	private static final int MAX_PARALLEL_BATCHES = Math.max(1, Math.min(4, Runtime.getRuntime()
+			.availableProcessors()));
+
+	/**
+	 * Pool running the secondary requests of large merges. The pool does not
+	 * queue requests, a request is run by the calling thread if all pool
+	 * threads are busy. So a secondary request processor that merges large
+	 * results itself (e.g. a {@link RPMergerRequestProcessor}) cannot
+	 * deadlock waiting for batches queued behind the batches waiting for it.
+	 */
+	private static final ExecutorService BATCH_POOL = new ThreadPoolExecutor(0, MAX_PARALLEL_BATCHES, 60L,
+			TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger number = new AtomicInteger(0);
+
+				public Thread newThread(final Runnable r) {
+					Thread thread = new Thread(r, RequestProcessorMerger.class.getSimpleName() + ".pool-"
+							+ number.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			}, new ThreadPoolExecutor.CallerRunsPolicy());
+
 	/**
 	 * Fills the attributes defined in the requests attribute array to each element of the collection col.
 	 * @param rp
@@ -34,47 +74,19 @@ public class RequestProcessorMerger {
 			throws CRException {
 		LinkedHashMap<Object, CRResolvableBean> resultMap = new LinkedHashMap<Object, CRResolvableBean>();
 
-		StringBuilder mergefilter = new StringBuilder();
-
-		boolean first = true;
-
 		for (CRResolvableBean crBean : col) {
-			Object id = crBean.get(idAttribute);
-			String key = "";
-			if (id instanceof String) {
-				key = (String) id;
-			} else {
-				key = id.toString();
+			String key = toKey(crBean.get(idAttribute));
+			if (key != null) {
+				resultMap.put(key, crBean);
 			}
-			if (first) {
-				first = false;
-				mergefilter.append("\"");
-				mergefilter.append(key);
-				mergefilter.append("\"");
-			} else {
-				mergefilter.append(",");
-				mergefilter.append("\"");
-				mergefilter.append(key);
-				mergefilter.append("\"");
-			}
-			resultMap.put(key, crBean);
 		}
 
-		request.setRequestFilter("object." + idAttribute + " CONTAINSONEOF [" + mergefilter.toString() + "]");
-
-		Collection<CRResolvableBean> res = rp.getObjects(request);
+		Collection<CRResolvableBean> res = getObjects(rp, request, idAttribute, resultMap.keySet());
 		String[] attributes = request.getAttributeArray();
 		//MERGE
 		for (Iterator<CRResolvableBean> resBeanIterator = res.iterator(); resBeanIterator.hasNext();) {
 			CRResolvableBean resBean = resBeanIterator.next();
-			Object keyObject = resBean.get(idAttribute);
-			String key = "";
-			if (keyObject instanceof String) {
-				key = (String) keyObject;
-			} else {
-				key = keyObject.toString();
-			}
-			CRResolvableBean finishedBean = resultMap.get(key);
+			CRResolvableBean finishedBean = resultMap.get(toKey(resBean.get(idAttribute)));
 			if (finishedBean != null) {
 				for (String att : attributes) {
 					Object val = resBean.get(att);
@@ -107,32 +119,20 @@ public class RequestProcessorMerger {
 		LinkedHashMap<Object, CRResolvableBean> resultMap = new LinkedHashMap<Object, CRResolvableBean>();
 		LinkedHashMap<Object, CRResolvableBean> resultMap2 = new LinkedHashMap<Object, CRResolvableBean>();
 
-		String mergefilter = "";
-
-		boolean first = true;
-
 		for (CRResolvableBean crBean : rp1res) {
-			Object id = crBean.get(uniquemergeattribute);
-			if (first) {
-				first = false;
-				mergefilter += "\"" + id + "\"";
-			} else {
-				mergefilter += "," + "\"" + id + "\"";
-			}
-			resultMap.put(id, crBean);
+			resultMap.put(toKey(crBean.get(uniquemergeattribute)), crBean);
 		}
 		rp1res = null;
 		CRRequest request2 = new CRRequest();
 		request2.setAttributeArray(request.getAttributeArray());
 		request2.setDoReplacePlinks(request.getDoReplacePlinks());
 		request2.setDoVelocity(request.getDoVelocity());
-		request2.setRequestFilter("object." + uniquemergeattribute + " CONTAINSONEOF [" + mergefilter + "]");
-		Collection<CRResolvableBean> rp2res = secondaryRP.getObjects(request2);
+		Collection<CRResolvableBean> rp2res = getObjects(secondaryRP, request2, uniquemergeattribute,
+			resultMap.keySet());
 		String[] attributes = request.getAttributeArray();
 
 		for (CRResolvableBean crBean : rp2res) {
-			Object id = crBean.get(uniquemergeattribute);
-			resultMap2.put(id, crBean);
+			resultMap2.put(toKey(crBean.get(uniquemergeattribute)), crBean);
 		}
 
 		String secMerge = (String) request.get("secondary");
@@ -146,6 +146,102 @@ public class RequestProcessorMerger {
 		return result;
 	}
 
+	/**
+	 * Fetch the objects with the given values of the merge attribute. The
+	 * values are split into batches of {@link #BATCH_SIZE} keys, which are
+	 * requested concurrently. The first batch is requested by the calling
+	 * thread.
+	 * @param rp request processor to fetch the objects from
+	 * @param request request used as template for the batch requests
+	 * @param attribute merge attribute
+	 * @param keys values of the merge attribute
+	 * @return fetched objects
+	 * @throws CRException if a batch cannot be fetched
+	 */
+	private static Collection<CRResolvableBean> getObjects(final RequestProcessor rp, final CRRequest request,
+			final String attribute, final Collection<Object> keys) throws CRException {
+		List<CRRequest> batches = new ArrayList<CRRequest>();
+		List<Object> keyList = new ArrayList<Object>(keys);
+		keyList.remove(null);
+		for (int i = 0; i < keyList.size() || i == 0; i += BATCH_SIZE) {
+			CRRequest batchRequest = request.Clone();
+			batchRequest.setRequestFilter(createFilter(attribute,
+				keyList.subList(i, Math.min(i + BATCH_SIZE, keyList.size()))));
+			batches.add(batchRequest);
+		}
+
+		if (batches.size() == 1) {
+			return rp.getObjects(batches.get(0));
+		}
+
+		List<Future<Collection<CRResolvableBean>>> futures = new ArrayList<Future<Collection<CRResolvableBean>>>();
+		Collection<CRResolvableBean> result = new ArrayList<CRResolvableBean>(keyList.size());
+		try {
+			for (final CRRequest batchRequest : batches.subList(1, batches.size())) {
+				futures.add(BATCH_POOL.submit(new Callable<Collection<CRResolvableBean>>() {
+					public Collection<CRResolvableBean> call() throws CRException {
+						return rp.getObjects(batchRequest);
+					}
+				}));
+			}
+			Collection<CRResolvableBean> first = rp.getObjects(batches.get(0));
+			if (first != null) {
+				result.addAll(first);
+			}
+			for (Future<Collection<CRResolvableBean>> future : futures) {
+				Collection<CRResolvableBean> res = future.get();
+				if (res != null) {
+					result.addAll(res);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CRException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CRException) {
+				throw (CRException) e.getCause();
+			}
+			throw new CRException(e);
+		} finally {
+			for (Future<Collection<CRResolvableBean>> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param attribute merge attribute
+	 * @param keys values of the merge attribute
+	 * @return filter for the objects with the given values
+	 */
+	private static String createFilter(final String attribute, final List<Object> keys) {
+		StringBuilder filter = new StringBuilder("object.").append(attribute).append(" CONTAINSONEOF [");
+		boolean first = true;
+		for (Object key : keys) {
+			if (first) {
+				first = false;
+			} else {
+				filter.append(',');
+			}
+			filter.append('"').append(key).append('"');
+		}
+		return filter.append(']').toString();
+	}
+
+	/**
+	 * @param id value of the merge attribute
+	 * @return value as String, so values of different types are merged
+	 */
+	private static String toKey(final Object id) {
+		if (id == null) {
+			return null;
+		} else if (id instanceof String) {
+			return (String) id;
+		}
+		return id.toString();
+	}
+
 	/**
 	 * Use beans of first RP and put attributes of secondary RP int beans of first RP.
 	 * @param result
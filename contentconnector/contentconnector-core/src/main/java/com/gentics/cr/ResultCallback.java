@@ -0,0 +1,19 @@
+package com.gentics.cr;
+
+import com.gentics.cr.exceptions.CRException;
+
+/**
+ * Callback receiving the objects of a result while it is read.
+ * @see RequestProcessor#streamObjects(CRRequest, ResultCallback)
+ */
+public interface ResultCallback {
+
+	/**
+	 * Process an object of the result.
+	 * @param bean object of the result
+	 * @return true to continue reading the result, false to stop
+	 * @throws CRException if the object cannot be processed, reading the
+	 * result is stopped
+	 */
+	boolean process(CRResolvableBean bean) throws CRException;
+}
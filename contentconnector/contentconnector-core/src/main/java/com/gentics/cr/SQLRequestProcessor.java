@@ -2,14 +2,18 @@ package com.gentics.cr;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,6 +21,7 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import com.gentics.cr.exceptions.CRException;
+import com.gentics.cr.sql.BoundStatement;
 import com.gentics.cr.util.generics.Lists;
 
 /**
@@ -53,6 +58,18 @@ public class SQLRequestProcessor extends RequestProcessor {
 	 * @see #mergeOnIdColumn
 	 */
 	private static final String MERGE_ON_IDCOLUMN_KEY = "merge_on_idcolumn";
+	/**
+	 * Configuration key to get the connections from the connection pool of the
+	 * configuration instead of opening a new connection for each request. The
+	 * pool is sized with the pooling.* datasource handle properties.
+	 * @see com.gentics.cr.sql.ConnectionProvider
+	 */
+	private static final String POOLED_KEY = "pooled";
+	/**
+	 * Configuration key for the number of rows fetched from the database at
+	 * once (default 0 uses the default of the driver).
+	 */
+	private static final String FETCHSIZE_KEY = "fetchsize";
 
 	private String dshDriverClass = "";
 	private String dshUrl = "";
@@ -67,6 +84,18 @@ public class SQLRequestProcessor extends RequestProcessor {
 	 */
 	private boolean mergeOnIdColumn = false;
 
+	/**
+	 * defines whetever the connections are taken from the connection pool of
+	 * the configuration.
+	 */
+	private boolean pooled = false;
+
+	/**
+	 * number of rows fetched from the database at once, 0 for the default of
+	 * the driver.
+	 */
+	private int fetchSize = 0;
+
 	/**
 	* Create a new instance of SQLRequestProcessor
 	* @param config
@@ -90,6 +119,17 @@ public class SQLRequestProcessor extends RequestProcessor {
 		idcolumn = dsprops.getProperty(IDCOLUMN_KEY);
 
 		mergeOnIdColumn = config.getBoolean(MERGE_ON_IDCOLUMN_KEY, mergeOnIdColumn);
+		pooled = config.getBoolean(POOLED_KEY, pooled);
+		fetchSize = config.getInteger(FETCHSIZE_KEY, fetchSize);
+
+		if (!pooled) {
+			try {
+				Class.forName(this.dshDriverClass);
+			} catch (ClassNotFoundException e) {
+				logger.error("Datasource driver not found.", e);
+				throw new CRException(e);
+			}
+		}
 	}
 
 	private static final Pattern CONTAINSONEOFPATTERN = Pattern.compile("object\\.([a-zA-Z0-9_]*)[ ]*CONTAINSONEOF[ ]*\\[(.*)\\]");
@@ -141,31 +181,59 @@ public class SQLRequestProcessor extends RequestProcessor {
 	*/
 	@Override
 	public Collection<CRResolvableBean> getObjects(CRRequest request, boolean doNavigation) throws CRException {
-		ArrayList<CRResolvableBean> result = new ArrayList<CRResolvableBean>();
+		final ArrayList<CRResolvableBean> result = new ArrayList<CRResolvableBean>();
+		streamObjects(request, new ResultCallback() {
+			public boolean process(final CRResolvableBean bean) {
+				result.add(bean);
+				return true;
+			}
+		});
+		return result;
+	}
 
-		Statement stmt = null;
+	/**
+	 * Pass the matching objects to a callback while the result is read, so
+	 * consumers that do not need the whole result do not have to keep it in
+	 * memory. Start and count of the request are applied while reading. Merged
+	 * objects are passed to the callback after the whole result was read.
+	 * @param request request to get the objects for
+	 * @param callback callback receiving the objects
+	 * @throws CRException if the callback fails
+	 */
+	@Override
+	public void streamObjects(final CRRequest request, final ResultCallback callback) throws CRException {
+		int start = Math.max(0, request.getStart().intValue());
+		int count = request.getCount().intValue();
+		if (count == 0) {
+			return;
+		}
+
+		PreparedStatement stmt = null;
 		ResultSet rset = null;
 		Connection conn = null;
-		String statementString = getStatement(request.getRequestFilter(), request.getAttributeArray(idcolumn));
+		BoundStatement statement = BoundStatement.bind(getStatement(request.getRequestFilter(),
+			request.getAttributeArray(idcolumn)));
 		try {
-			Class.forName(this.dshDriverClass);
-			conn = DriverManager.getConnection(this.dshUrl);
+			conn = getConnection();
 
-			stmt = conn.createStatement();
-			logger.debug("Using statement: " + statementString);
-			rset = stmt.executeQuery(statementString);
+			logger.debug("Using statement: " + statement);
+			stmt = statement.prepare(conn);
+			if (fetchSize != 0) {
+				stmt.setFetchSize(fetchSize);
+			}
+			if (!mergeOnIdColumn && count > 0) {
+				stmt.setMaxRows(start + count);
+			}
+			rset = stmt.executeQuery();
 
 			if (mergeOnIdColumn) {
-				result = getMergedObjectsFromResultSet(rset);
+				readMergedObjects(rset, start, count, callback);
 			} else {
-				result = getObjectsFromResultSet(rset);
+				readObjects(rset, start, count, callback);
 			}
 
 		} catch (SQLException e) {
-			logger.error("Error executing query: " + statementString, e);
-		} catch (ClassNotFoundException e) {
-			logger.error("Datasource driver not found.", e);
-			throw new CRException(e);
+			logger.error("Error executing query: " + statement, e);
 		} finally {
 			try {
 				if (rset != null) {
@@ -186,7 +254,27 @@ public class SQLRequestProcessor extends RequestProcessor {
 			} catch (SQLException e) {
 			}
 		}
-		return result;
+	}
+
+	/**
+	 * Get a connection to the database, either from the connection pool of the
+	 * configuration or a new one.
+	 * @return connection, the caller has to close it
+	 * @throws SQLException if no connection can be opened
+	 * @throws CRException if the connection pool cannot be created
+	 */
+	private Connection getConnection() throws SQLException, CRException {
+		if (!pooled) {
+			return DriverManager.getConnection(this.dshUrl);
+		}
+		try {
+			return ((CRConfigUtil) config).getPooledJDBCConnection();
+		} catch (SQLException e) {
+			throw e;
+		} catch (Exception e) {
+			logger.error("Could not get a connection from the pool.", e);
+			throw new CRException(e);
+		}
 	}
 
 	/**
@@ -212,91 +300,110 @@ public class SQLRequestProcessor extends RequestProcessor {
 	}
 
 	/**
-	 * Get merged objects as {@link CRResolvableBean}s from ResultSet. If we got more
-	 * than one row from.
+	 * Read merged objects as {@link CRResolvableBean}s from the ResultSet. The
+	 * rows are grouped by the id column, only the objects within start and
+	 * count are kept in memory.
 	 * @param rset {@link ResultSet} to get the objects from.
-	 * @return list of {@link CRResolvableBean}s, <code>null</code> in case of
-	 * an error.
+	 * @param start number of objects to skip
+	 * @param count maximum number of objects, -1 for all objects
+	 * @param callback callback receiving the objects
+	 * @throws SQLException in case the result cannot be read
+	 * @throws CRException if the callback fails
 	 */
-	private ArrayList<CRResolvableBean> getMergedObjectsFromResultSet(final ResultSet rset) {
-		ArrayList<CRResolvableBean> objects = new ArrayList<CRResolvableBean>();
+	private void readMergedObjects(final ResultSet rset, final int start, final int count,
+			final ResultCallback callback) throws SQLException, CRException {
+		Map<String, CRResolvableBean> objects = new LinkedHashMap<String, CRResolvableBean>();
+		Set<String> skipped = new HashSet<String>();
 		String[] colnames = getColumnNamesFromResultSet(rset);
-		try {
-			while (rset.next()) {
-				CRResolvableBean bean = new ComparableBean();
-				int idcolumnId = Arrays.asList(colnames).indexOf(idcolumn);
-				if (idcolumnId != -1) {
-					String id = rset.getObject(idcolumnId + 1).toString();
-					bean.setContentid(id);
-					int indexOfBeanInObjects = objects.indexOf(bean);
-					if (indexOfBeanInObjects != -1) {
-						bean = objects.get(indexOfBeanInObjects);
-					} else {
-						objects.add(bean);
-					}
+		int idcolumnId = Arrays.asList(colnames).indexOf(idcolumn);
+		if (idcolumnId == -1) {
+			return;
+		}
+		while (rset.next()) {
+			String id = rset.getObject(idcolumnId + 1).toString();
+			CRResolvableBean bean = objects.get(id);
+			if (bean == null) {
+				if (skipped.contains(id)) {
+					continue;
+				} else if (skipped.size() < start) {
+					skipped.add(id);
+					continue;
+				} else if (count > 0 && objects.size() >= count) {
+					continue;
 				}
-				for (int i = 1; i <= colnames.length; i++) {
-					String attributeName = colnames[i - 1];
-					if (rset.getObject(i) != null) {
-						Object attributeValue = rset.getObject(i);
-						Object oldattributeValue = bean.get(attributeName);
-						if (oldattributeValue != null && !oldattributeValue.equals(attributeValue)) {
-							List<Object> values;
-							if (oldattributeValue instanceof List) {
-								values = Lists.toSpecialList(oldattributeValue, Object.class);
-
-							} else {
-								values = new Vector<Object>();
-								values.add(oldattributeValue);
-							}
-							values.add(attributeValue);
-							attributeValue = values;
+				bean = new ComparableBean();
+				bean.setContentid(id);
+				objects.put(id, bean);
+			}
+			for (int i = 1; i <= colnames.length; i++) {
+				String attributeName = colnames[i - 1];
+				Object attributeValue = rset.getObject(i);
+				if (attributeValue != null) {
+					Object oldattributeValue = bean.get(attributeName);
+					if (oldattributeValue != null && !oldattributeValue.equals(attributeValue)) {
+						List<Object> values;
+						if (oldattributeValue instanceof List) {
+							values = Lists.toSpecialList(oldattributeValue, Object.class);
+
+						} else {
+							values = new Vector<Object>();
+							values.add(oldattributeValue);
 						}
-						bean.set(attributeName, attributeValue);
+						values.add(attributeValue);
+						attributeValue = values;
 					}
+					bean.set(attributeName, attributeValue);
 				}
 			}
-		} catch (SQLException e) {
-			logger.error("Error getting result items.", e);
-			return null;
 		}
-		return objects;
+		for (CRResolvableBean bean : objects.values()) {
+			if (!callback.process(bean)) {
+				return;
+			}
+		}
 	}
 
 	/**
-	 * Get Objects as resolvables from ResultSet.
+	 * Read objects as resolvables from the ResultSet, each row is one object.
 	 * @param rset {@link ResultSet} to get the objects from.
-	 * @return list of {@link CRResolvableBean}s, <code>null</code> in case of
-	 * an error.
+	 * @param start number of objects to skip
+	 * @param count maximum number of objects, -1 for all objects
+	 * @param callback callback receiving the objects
+	 * @throws SQLException in case the result cannot be read
+	 * @throws CRException if the callback fails
 	 */
-	private ArrayList<CRResolvableBean> getObjectsFromResultSet(final ResultSet rset) {
-		ArrayList<CRResolvableBean> objects = new ArrayList<CRResolvableBean>();
+	private void readObjects(final ResultSet rset, final int start, final int count, final ResultCallback callback)
+			throws SQLException, CRException {
 		String[] colnames = getColumnNamesFromResultSet(rset);
-
-		try {
-			while (rset.next()) {
-				CRResolvableBean bean = new CRResolvableBean();
-				for (int i = 1; i <= colnames.length; i++) {
-					String colname = colnames[i - 1];
-					if (colname != null && colname.equalsIgnoreCase(idcolumn)) {
-						Object o = rset.getObject(i);
-						bean.setContentid(o.toString());
-					}
-					if (rset.getObject(i) != null) {
-						bean.set(colname, rset.getObject(i));
-					}
+		int row = 0;
+		while (rset.next()) {
+			if (row++ < start) {
+				continue;
+			}
+			CRResolvableBean bean = new CRResolvableBean();
+			for (int i = 1; i <= colnames.length; i++) {
+				String colname = colnames[i - 1];
+				Object value = rset.getObject(i);
+				if (value != null && colname != null && colname.equalsIgnoreCase(idcolumn)) {
+					bean.setContentid(value.toString());
+				}
+				if (value != null) {
+					bean.set(colname, value);
 				}
-				objects.add(bean);
 			}
-		} catch (SQLException e) {
-			logger.error("Error getting result items.", e);
-			return null;
+			if (!callback.process(bean) || count > 0 && row - start >= count) {
+				return;
+			}
 		}
-		return objects;
 	}
 
+	/**
+	 * The connection pool of the configuration is shared with the other
+	 * request processors using the configuration and is therefore not
+	 * released here, it has to be released when the application shuts down.
+	 * @see CRConfigUtil#releaseJDBCPool()
+	 */
 	@Override
 	public void finalize() {
-		// TODO Auto-generated method stub
 	}
 }
@@ -0,0 +1,42 @@
+package com.gentics.cr.events;
+
+/**
+ * Event signaling that the content of a content repository was changed
+ * (e.g. after a publish run). Receivers use it to invalidate their caches.
+ */
+public class ContentChangedEvent extends Event {
+
+	/**
+	 * Type of the event.
+	 */
+	public static final String CONTENT_CHANGED_EVENT_TYPE = "CONTENTCHANGEDEVENT";
+
+	/**
+	 * Name of the changed configuration.
+	 */
+	private String configName;
+
+	/**
+	 * Create a new event.
+	 * @param configName name of the configuration of the changed content
+	 * repository, null if all content repositories may have changed
+	 */
+	public ContentChangedEvent(final String configName) {
+		this.configName = configName;
+	}
+
+	/**
+	 * @return name of the configuration of the changed content repository or
+	 * null if all content repositories may have changed
+	 */
+	@Override
+	public Object getData() {
+		return configName;
+	}
+
+	@Override
+	public String getType() {
+		return CONTENT_CHANGED_EVENT_TYPE;
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.gentics.cr.plink;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.gentics.api.portalnode.connector.PLinkInformation;
+import com.gentics.api.portalnode.connector.PLinkReplacer;
+
+/**
+ *  Helper Class to be passed to PortalConnectorHelper.replacePLinks.
+ *  Collects the contentids of all PLinks in the content so the link targets
+ *  can be loaded at once before the PLinks are replaced.
+ *
+ */
+public class PLinkCollector implements PLinkReplacer {
+
+	/**
+	 * contentids of the collected PLinks in the order of their occurrence.
+	 */
+	private Set<String> contentIds = new LinkedHashSet<String>();
+
+	/**
+	 * Collects the contentid of the PLink.
+	 * @param plink PLink to collect
+	 * @return an empty String as the replaced content is not used
+	 */
+	public String replacePLink(final PLinkInformation plink) {
+		if (plink.getContentId() != null) {
+			contentIds.add(plink.getContentId());
+		}
+		return "";
+	}
+
+	/**
+	 * @return contentids of all collected PLinks without duplicates
+	 */
+	public Collection<String> getContentIds() {
+		return contentIds;
+	}
+}
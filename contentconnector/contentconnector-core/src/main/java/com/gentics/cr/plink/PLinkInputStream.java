@@ -1,98 +1,108 @@
 package com.gentics.cr.plink;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 
-import com.gentics.api.portalnode.connector.CCPLinkInformation;
 import com.gentics.api.portalnode.connector.PLinkReplacer;
 
+/**
+ * InputStream replacing the plinks of the underlying stream. The underlying
+ * stream is read in chunks which are passed through a
+ * {@link PLinkOutputStream}, so plinks split between two chunks are replaced
+ * as well.
+ */
 public class PLinkInputStream extends InputStream {
 
+	private static final int CHUNK_SIZE = 8192;
+
 	private InputStream is;
 
-	private PLinkReplacer pr;
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+
+	/**
+	 * replaced content that was not read yet.
+	 */
+	private final ReplacedBuffer replaced = new ReplacedBuffer();
 
-	private static final byte[] plinkTemplate = new byte[] { '<', 'p', 'l', 'i', 'n', 'k' };
+	private final PLinkOutputStream replacer;
 
-	private byte plinkClose = '>';
+	private int readPos = 0;
 
-	private final Queue<Byte> backBuf = new LinkedList<Byte>();
+	private boolean eof = false;
 
 	public PLinkInputStream(InputStream inputStream, PLinkReplacer plinkReplacer) {
 		is = inputStream;
-		pr = plinkReplacer;
+		replacer = new PLinkOutputStream(replaced, plinkReplacer);
 	}
 
 	@Override
 	public int read() throws IOException {
-		if (!backBuf.isEmpty()) {
-			return backBuf.poll();
+		if (!fill()) {
+			return -1;
+		}
+		return replaced.getBuffer()[readPos++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
 		}
-		int b = is.read();
-		if (b == plinkTemplate[0]) {
-			b = peekAndReplace();
+		if (!fill()) {
+			return -1;
 		}
-		return b;
+		int count = Math.min(len, replaced.size() - readPos);
+		System.arraycopy(replaced.getBuffer(), readPos, b, off, count);
+		readPos += count;
+		return count;
 	}
 
-	private byte peekAndReplace() throws IOException {
-		List<Byte> peekFailBuffer = new ArrayList<Byte>();
-		int templatePos = 1;
-		int c = -1;
-		peekFailBuffer.add((byte) plinkTemplate[0]);
+	@Override
+	public int available() throws IOException {
+		return replaced.size() - readPos;
+	}
 
-		while (templatePos < plinkTemplate.length && (c = is.read()) == plinkTemplate[templatePos]) {
-			templatePos++;
-			peekFailBuffer.add((byte) c);
-		}
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
 
-		if (templatePos == plinkTemplate.length) {
-			//fount PLINK
-			StringBuffer plinkBuffer = new StringBuffer();
-			c = is.read();
-			while (c != plinkClose && c != -1) {
-				plinkBuffer.append((char) c);
-				c = is.read();
-			}
-			String currentPLink = plinkBuffer.toString();
-			int posID = currentPLink.indexOf("id=");
-			if (posID >= 0) {
-				posID = posID + "id=\"".length();
-				int posIDEnd = currentPLink.indexOf('"', posID + 1);
-				if (posIDEnd == -1) {
-					posIDEnd = currentPLink.indexOf('\'', posID + 1);
-				}
-				// found valid plink
-				if (posIDEnd >= 0) {
-					String linkID = currentPLink.substring(posID, posIDEnd);
-					String out = pr.replacePLink(new CCPLinkInformation(linkID));
-					byte[] bytes = out.getBytes();
-					for (byte b : bytes) {
-						backBuf.offer(b);
-					}
-				}
+	/**
+	 * Make sure there is replaced content to read.
+	 * @return false if the end of the stream was reached
+	 * @throws IOException in case the underlying stream cannot be read
+	 */
+	private boolean fill() throws IOException {
+		while (readPos >= replaced.size()) {
+			if (eof) {
+				return false;
 			}
-		} else {
-			if (c != -1) {
-				peekFailBuffer.add((byte) c);
-			}
-			for (Byte b : peekFailBuffer) {
-				backBuf.offer(b);
+			replaced.reset();
+			readPos = 0;
+			int read = is.read(chunk, 0, CHUNK_SIZE);
+			if (read == -1) {
+				eof = true;
+				replacer.close();
+			} else {
+				replacer.write(chunk, 0, read);
 			}
 		}
+		return true;
+	}
 
-		Byte ret = null;
-		if (backBuf.isEmpty()) {
-			ret = (byte) is.read();
-		} else {
-			ret = backBuf.poll();
+	/**
+	 * Buffer giving access to its content without copying it.
+	 */
+	private static class ReplacedBuffer extends ByteArrayOutputStream {
+
+		ReplacedBuffer() {
+			super(CHUNK_SIZE);
 		}
 
-		return ret;
+		byte[] getBuffer() {
+			return buf;
+		}
 	}
 
 }
@@ -2,28 +2,40 @@ package com.gentics.cr.plink;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 import com.gentics.api.portalnode.connector.CCPLinkInformation;
 import com.gentics.api.portalnode.connector.PLinkReplacer;
 
+/**
+ * OutputStream replacing the plinks written to it. Buffers are scanned for
+ * the start of a plink and the runs in between are copied to the underlying
+ * stream in one call. A plink that is split between two writes is completed
+ * with the next write.
+ */
 public class PLinkOutputStream extends OutputStream {
 
+	private static final byte[] plinkTemplate = new byte[] { '<', 'p', 'l', 'i', 'n', 'k' };
+
+	private static final byte plinkClose = '>';
+
 	private OutputStream os;
-	private PLinkReplacer pr;
 
-	private static final byte[] plinkTemplate = new byte[] { '<', 'p', 'l', 'i', 'n', 'k' };
+	private PLinkReplacer pr;
 
+	/**
+	 * number of bytes of the plink template matched so far, the plink is open
+	 * if the whole template was matched.
+	 */
 	private int nextPlinkPos = 0;
 
-	private byte plinkClose = '>';
-
-	private List<Byte> backBuffer;
+	/**
+	 * content of the currently open plink.
+	 */
+	private byte[] plinkBuffer = new byte[64];
 
-	private StringBuffer plinkBuffer = null;
+	private int plinkLength = 0;
 
-	private boolean plinkOpen = false;
+	private final byte[] singleByte = new byte[1];
 
 	public PLinkOutputStream(OutputStream outputStream, PLinkReplacer pLinkReplacer) {
 		os = outputStream;
@@ -32,56 +44,120 @@ public class PLinkOutputStream extends OutputStream {
 
 	@Override
 	public void write(int b) throws IOException {
+		singleByte[0] = (byte) b;
+		write(singleByte, 0, 1);
+	}
 
-		if (plinkOpen) {
-			if (b == plinkClose) {
-				String currentPLink = plinkBuffer.toString();
-				int posID = currentPLink.indexOf("id=");
-				if (posID >= 0) {
-					posID = posID + "id=\"".length();
-					int posIDEnd = currentPLink.indexOf('"', posID + 1);
-					if (posIDEnd == -1) {
-						posIDEnd = currentPLink.indexOf('\'', posID + 1);
-					}
-					// found valid plink
-					if (posIDEnd >= 0) {
-						String linkID = currentPLink.substring(posID, posIDEnd);
-						String out = pr.replacePLink(new CCPLinkInformation(linkID));
-						os.write(out.getBytes());
-					}
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		int pos = off;
+		int end = off + len;
+		while (pos < end) {
+			if (nextPlinkPos == plinkTemplate.length) {
+				// inside of a plink
+				int close = indexOf(b, plinkClose, pos, end);
+				if (close < 0) {
+					appendToPlink(b, pos, end - pos);
+					return;
 				}
-
+				appendToPlink(b, pos, close - pos);
+				replacePlink();
+				pos = close + 1;
+			} else if (nextPlinkPos > 0) {
+				// continue a partial match of the template
+				while (pos < end && nextPlinkPos < plinkTemplate.length && b[pos] == plinkTemplate[nextPlinkPos]) {
+					nextPlinkPos++;
+					pos++;
+				}
+				if (pos == end || nextPlinkPos == plinkTemplate.length) {
+					continue;
+				}
+				// no plink, the current byte cannot start a plink either as
+				// the start byte does not occur again in the template
+				os.write(plinkTemplate, 0, nextPlinkPos);
 				nextPlinkPos = 0;
-				plinkOpen = false;
-				plinkBuffer = null;
 			} else {
-				plinkBuffer.append((char) b);
+				int start = indexOf(b, plinkTemplate[0], pos, end);
+				if (start < 0) {
+					os.write(b, pos, end - pos);
+					return;
+				}
+				if (start > pos) {
+					os.write(b, pos, start - pos);
+				}
+				nextPlinkPos = 1;
+				pos = start + 1;
 			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		os.flush();
+	}
+
+	/**
+	 * Writes a started template that turned out not to be a plink and flushes
+	 * the underlying stream. The underlying stream is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (nextPlinkPos > 0 && nextPlinkPos < plinkTemplate.length) {
+			os.write(plinkTemplate, 0, nextPlinkPos);
+		}
+		nextPlinkPos = 0;
+		plinkLength = 0;
+		os.flush();
+	}
+
+	private void appendToPlink(final byte[] b, final int off, final int len) {
+		if (plinkLength + len > plinkBuffer.length) {
+			byte[] newBuffer = new byte[Math.max(plinkBuffer.length * 2, plinkLength + len)];
+			System.arraycopy(plinkBuffer, 0, newBuffer, 0, plinkLength);
+			plinkBuffer = newBuffer;
+		}
+		System.arraycopy(b, off, plinkBuffer, plinkLength, len);
+		plinkLength += len;
+	}
+
+	private void replacePlink() throws IOException {
+		String linkID = getLinkId(new String(plinkBuffer, 0, plinkLength, "ISO-8859-1"));
+		if (linkID != null) {
+			String out = pr.replacePLink(new CCPLinkInformation(linkID));
+			os.write(out.getBytes());
+		}
+		nextPlinkPos = 0;
+		plinkLength = 0;
+	}
 
-		} else {
-			if (nextPlinkPos == 0 && b == plinkTemplate[nextPlinkPos]) {
-				backBuffer = new ArrayList<Byte>();
+	/**
+	 * Get the id of a plink.
+	 * @param currentPLink content of the plink tag between the tag name and the closing bracket
+	 * @return id of the plink or null if the plink is not valid
+	 */
+	static String getLinkId(final String currentPLink) {
+		int posID = currentPLink.indexOf("id=");
+		if (posID >= 0) {
+			posID = posID + "id=\"".length();
+			int posIDEnd = currentPLink.indexOf('"', posID + 1);
+			if (posIDEnd == -1) {
+				posIDEnd = currentPLink.indexOf('\'', posID + 1);
+			}
+			// found valid plink
+			if (posIDEnd >= 0) {
+				return currentPLink.substring(posID, posIDEnd);
 			}
+		}
+		return null;
+	}
 
-			if (b == plinkTemplate[nextPlinkPos]) {
-				backBuffer.add((byte) b);
-				if (nextPlinkPos == plinkTemplate.length - 1) {
-					plinkOpen = true;
-					plinkBuffer = new StringBuffer();
-				}
-				nextPlinkPos++;
-			} else if (nextPlinkPos != 0 && b != plinkTemplate[nextPlinkPos]
-					&& nextPlinkPos != (plinkTemplate.length - 1)) {
-				for (byte bb : backBuffer) {
-					os.write(bb);
-				}
-				os.write(b);
-				backBuffer = null;
-				nextPlinkPos = 0;
-			} else {
-				os.write(b);
+	private static int indexOf(final byte[] b, final byte value, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			if (b[i] == value) {
+				return i;
 			}
 		}
+		return -1;
 	}
 
 }
@@ -0,0 +1,225 @@
+package com.gentics.cr.plink;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jcs.JCS;
+import org.apache.jcs.access.exception.CacheException;
+import org.apache.log4j.Logger;
+
+/**
+ * Cache for the links generated by the {@link PlinkProcessor} of one
+ * configuration. The links are cached per target object together with the
+ * updatetimestamp of the target when the links were generated, so the links
+ * of a single target can be invalidated when the target changes instead of
+ * flushing the links of all sites. As all information about a target is kept
+ * in one cache element it is dropped together with the links when the
+ * element is evicted.
+ */
+public final class PlinkCache {
+
+	/**
+	 * Log4j logger for error and debug messages.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(PlinkCache.class);
+
+	/**
+	 * Timestamp recorded for targets without an updatetimestamp.
+	 */
+	private static final long NO_TIMESTAMP = -1;
+
+	/**
+	 * Caches by configuration name.
+	 */
+	private static final ConcurrentMap<String, PlinkCache> CACHES = new ConcurrentHashMap<String, PlinkCache>();
+
+	/**
+	 * JCS region holding the {@link TargetLinks} by contentid of the target.
+	 */
+	private final JCS cache;
+
+	/**
+	 * Create a new cache using the given JCS region.
+	 * @param cache JCS region for the links
+	 */
+	private PlinkCache(final JCS cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Get the cache for a configuration.
+	 * @param configName name of the configuration
+	 * @return plink cache of the configuration
+	 * @throws CacheException if the JCS region cannot be initialized
+	 */
+	public static PlinkCache getInstance(final String configName) throws CacheException {
+		PlinkCache plinkCache = CACHES.get(configName);
+		if (plinkCache == null) {
+			plinkCache = new PlinkCache(JCS.getInstance("gentics-cr-" + configName + "-plinks"));
+			PlinkCache existing = CACHES.putIfAbsent(configName, plinkCache);
+			if (existing != null) {
+				plinkCache = existing;
+			} else {
+				LOGGER.debug("Initialized cache zone for \"" + configName + "-plinks\".");
+			}
+		}
+		return plinkCache;
+	}
+
+	/**
+	 * Get a cached link.
+	 * @param contentid contentid of the link target
+	 * @param cacheKey key of the link
+	 * @return cached link or null
+	 */
+	public String get(final String contentid, final String cacheKey) {
+		TargetLinks target = getTarget(contentid);
+		if (target == null) {
+			return null;
+		}
+		return target.links.get(cacheKey);
+	}
+
+	/**
+	 * Cache a link. If the link was generated from a newer version of the
+	 * target than the cached links, the cached links are replaced.
+	 * @param contentid contentid of the link target
+	 * @param cacheKey key of the link
+	 * @param link link to cache
+	 * @param updatetimestamp updatetimestamp of the link target, null if unknown
+	 */
+	public synchronized void put(final String contentid, final String cacheKey, final String link,
+			final Object updatetimestamp) {
+		TargetLinks target = getTarget(contentid);
+		long timestamp = toTimestamp(updatetimestamp);
+		if (target == null || (timestamp != NO_TIMESTAMP && timestamp != target.timestamp)) {
+			target = new TargetLinks(timestamp);
+		}
+		target.links.put(cacheKey, link);
+		try {
+			// put the element again so the change also reaches non memory caches
+			cache.put(contentid, target);
+		} catch (CacheException e) {
+			LOGGER.warn("Could not add link to object " + contentid + " to cache");
+		}
+	}
+
+	/**
+	 * @param contentid contentid of a link target
+	 * @param interval check interval in milliseconds
+	 * @return true if links to the target are cached and the target was not
+	 * checked against the datasource within the interval
+	 */
+	public boolean needsCheck(final String contentid, final long interval) {
+		TargetLinks target = getTarget(contentid);
+		return target != null && System.currentTimeMillis() - target.checked > interval;
+	}
+
+	/**
+	 * Check the cached links of a target against its current updatetimestamp
+	 * and invalidate them if the target was changed. Use
+	 * {@link #invalidate(String)} if the target does not exist anymore.
+	 * @param contentid contentid of the link target
+	 * @param updatetimestamp current updatetimestamp of the target, null if the
+	 * target has no updatetimestamp
+	 */
+	public void validate(final String contentid, final Object updatetimestamp) {
+		TargetLinks target = getTarget(contentid);
+		if (target == null) {
+			return;
+		}
+		if (target.timestamp != toTimestamp(updatetimestamp)) {
+			invalidate(contentid);
+		} else {
+			target.checked = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Remove all cached links to a target.
+	 * @param contentid contentid of the link target
+	 */
+	public synchronized void invalidate(final String contentid) {
+		try {
+			cache.remove(contentid);
+			LOGGER.debug("Invalidated cached links to " + contentid);
+		} catch (CacheException e) {
+			LOGGER.warn("Could not remove links to " + contentid + " from cache");
+		}
+	}
+
+	/**
+	 * Remove all cached links of the configuration.
+	 */
+	public synchronized void clear() {
+		try {
+			cache.clear();
+		} catch (CacheException e) {
+			LOGGER.warn("Could not clear the plink cache");
+		}
+	}
+
+	/**
+	 * @param contentid contentid of a link target
+	 * @return cached links of the target or null
+	 */
+	private TargetLinks getTarget(final String contentid) {
+		Object cached = cache.get(contentid);
+		if (cached instanceof TargetLinks) {
+			return (TargetLinks) cached;
+		}
+		return null;
+	}
+
+	/**
+	 * @param updatetimestamp updatetimestamp attribute of an object
+	 * @return timestamp or {@link #NO_TIMESTAMP} if the attribute is not set
+	 */
+	private static long toTimestamp(final Object updatetimestamp) {
+		if (updatetimestamp instanceof Number) {
+			return ((Number) updatetimestamp).longValue();
+		} else if (updatetimestamp != null) {
+			try {
+				return Long.parseLong(updatetimestamp.toString());
+			} catch (NumberFormatException e) {
+				return NO_TIMESTAMP;
+			}
+		}
+		return NO_TIMESTAMP;
+	}
+
+	/**
+	 * Cached links of one target.
+	 */
+	private static final class TargetLinks implements Serializable {
+
+		/**
+		 * Serial id.
+		 */
+		private static final long serialVersionUID = 6181373957718207474L;
+
+		/**
+		 * Links by cache key.
+		 */
+		private final ConcurrentMap<String, String> links = new ConcurrentHashMap<String, String>();
+
+		/**
+		 * updatetimestamp of the target when the links were cached.
+		 */
+		private final long timestamp;
+
+		/**
+		 * Time of the last check of the target against the datasource.
+		 */
+		private volatile long checked = System.currentTimeMillis();
+
+		/**
+		 * Create the links of a target.
+		 * @param timestamp updatetimestamp of the target
+		 */
+		private TargetLinks(final long timestamp) {
+			this.timestamp = timestamp;
+		}
+	}
+}
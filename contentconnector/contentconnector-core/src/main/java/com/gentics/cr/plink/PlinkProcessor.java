@@ -1,26 +1,36 @@
 package com.gentics.cr.plink;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 
-import org.apache.jcs.JCS;
 import org.apache.jcs.access.exception.CacheException;
 import org.apache.log4j.Logger;
 
 import com.gentics.api.lib.datasource.Datasource;
+import com.gentics.api.lib.datasource.DatasourceException;
 import com.gentics.api.lib.datasource.DatasourceNotAvailableException;
+import com.gentics.api.lib.exception.ParserException;
+import com.gentics.api.lib.expressionparser.Expression;
+import com.gentics.api.lib.expressionparser.ExpressionParserException;
+import com.gentics.api.lib.expressionparser.filtergenerator.DatasourceFilter;
 import com.gentics.api.lib.resolving.Resolvable;
 import com.gentics.api.portalnode.connector.PLinkInformation;
 import com.gentics.api.portalnode.connector.PortalConnectorFactory;
+import com.gentics.api.portalnode.connector.PortalConnectorHelper;
 import com.gentics.cr.CRConfig;
 import com.gentics.cr.CRDatabaseFactory;
 import com.gentics.cr.CRRequest;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.template.ITemplateManager;
+import com.gentics.cr.util.CRUtil;
 
 /**
  * CRPlinkProcessor should be initialized once and passed to CRPlinkReplacer on
@@ -39,7 +49,10 @@ public class PlinkProcessor {
 
 	private static Logger log = Logger.getLogger(PlinkProcessor.class);
 
-	private static JCS plinkCache;
+	/**
+	 * cache of the generated links, null if the cache is disabled.
+	 */
+	private PlinkCache plinkCache;
 
 	/**
 	 * configuration key to enable (default) or disable the JCS cache for resolving PLinks.
@@ -48,6 +61,45 @@ public class PlinkProcessor {
 
 	private boolean plinkcache = true;
 
+	/**
+	 * configuration key to enable (default) or disable loading all link targets
+	 * of a content with a single query before the plinks are replaced.
+	 */
+	public static final String PLINK_BATCH_KEY = "plinkbatch";
+
+	/**
+	 * configuration key for a comma separated list of attributes that are
+	 * prefilled when the link targets are loaded in a batch. Defaults to the
+	 * attributes used by the {@link PathResolver} and the default plink
+	 * template, templates using other attributes should add them here.
+	 * updatetimestamp is always prefilled.
+	 */
+	public static final String PLINK_PREFILL_ATTRIBUTES_KEY = "plinkprefillattributes";
+
+	/**
+	 * configuration key for the interval in milliseconds in which cached links
+	 * are checked against the updatetimestamp of their targets. Defaults to 60
+	 * seconds.
+	 */
+	public static final String PLINK_CACHE_CHECK_INTERVAL_KEY = "plinkcachecheckinterval";
+
+	/**
+	 * Attributes prefilled when the link targets are loaded in a batch and
+	 * {@link #PLINK_PREFILL_ATTRIBUTES_KEY} is not configured.
+	 */
+	private static final String[] DEFAULT_PREFILL_ATTRIBUTES = new String[] { "filename", "folder_id", "name" };
+
+	/**
+	 * Attribute that changes whenever a link target is changed.
+	 */
+	private static final String UPDATEATTRIBUTE = "updatetimestamp";
+
+	private boolean batchResolve = true;
+
+	private long checkInterval = 60000;
+
+	private String[] prefillAttributes = DEFAULT_PREFILL_ATTRIBUTES;
+
 	/**
 	 * Create new instance of plink processor.
 	 * @param config
@@ -69,6 +121,21 @@ public class PlinkProcessor {
 			plinkcache = Boolean.parseBoolean(plinkCacheEnabledString);
 		}
 
+		if (config != null) {
+			batchResolve = config.getBoolean(PLINK_BATCH_KEY, true);
+			checkInterval = config.getInteger(PLINK_CACHE_CHECK_INTERVAL_KEY, (int) checkInterval);
+			String prefillString = config.getString(PLINK_PREFILL_ATTRIBUTES_KEY);
+			if (prefillString != null && !"".equals(prefillString)) {
+				prefillAttributes = prefillString.split("\\s*,\\s*");
+			}
+			if (!Arrays.asList(prefillAttributes).contains(UPDATEATTRIBUTE)) {
+				String[] attributes = new String[prefillAttributes.length + 1];
+				System.arraycopy(prefillAttributes, 0, attributes, 0, prefillAttributes.length);
+				attributes[prefillAttributes.length] = UPDATEATTRIBUTE;
+				prefillAttributes = attributes;
+			}
+		}
+
 		if (plinkcache) {
 			try {
 				String configName = "shared";
@@ -77,19 +144,23 @@ public class PlinkProcessor {
 				} else {
 					log.error("Attention i'm using a shared plinkcache because i'm missing my config or the config name.");
 				}
-				plinkCache = JCS.getInstance("gentics-cr-" + configName + "-plinks");
-				log.debug("Initialized cache zone for \"" + configName + "-plinks\".");
+				plinkCache = PlinkCache.getInstance(configName);
 
 			} catch (CacheException e) {
 
 				log.warn("Could not initialize Cache for PlinkProcessor.");
 
 			}
-		} else {
-			plinkCache = null;
 		}
 	}
 
+	/**
+	 * @return cache of the generated links or null if the cache is disabled
+	 */
+	public PlinkCache getPlinkCache() {
+		return plinkCache;
+	}
+
 	/**
 	 * Deploy objects to the velocity context.
 	 * @param map
@@ -108,48 +179,68 @@ public class PlinkProcessor {
 	 * @param request
 	 */
 	public String getLink(final PLinkInformation plink, final CRRequest request) {
+		return getLink(plink, request, null);
+	}
+
+	/**
+	 * get a generated link according to the information in plinkinformation.
+	 * @param plink
+	 * @param request
+	 * @param preloadedObjects objects loaded by {@link #preloadObjects(Collection, CRRequest)},
+	 * links to objects that are not contained are resolved with a single lookup.
+	 * May be null.
+	 */
+	public String getLink(final PLinkInformation plink, final CRRequest request,
+			final Map<String, Resolvable> preloadedObjects) {
 
 		// starttime
 		long start = new Date().getTime();
 
 		String link = "";
 		String contentid = plink.getContentId();
-		String cacheKey = contentid;
-
-		String type = "";
-		if (request.getRequest() != null && request.getRequest() instanceof HttpServletRequest) {
-			type = ((HttpServletRequest) request.getRequest()).getParameter("format");
-			String typeArg = ((HttpServletRequest) request.getRequest()).getParameter("type");
-			if (typeArg != null && !typeArg.equals("")) {
-				type = typeArg;
-			}
-			// reset to an empty string if php or null
-			// otherwise just use the given type for the cache-key
-			if (type == null || type.equals("php")) {
-				type = "";
-			}
-			// if the link refers to a binary-file, always use an empty type (this falls back to "php")
-			if (contentid.startsWith(config.getBinaryType() + ".")) {
-				type = "";
-			}
-			cacheKey += "-" + type;
+		String cacheKey = getCacheKey(contentid, request);
+		Object updatetimestamp = null;
+		Resolvable plinkObject = null;
+		if (preloadedObjects != null) {
+			plinkObject = preloadedObjects.get(contentid);
 		}
 
 		// load link from cache
 		if (plinkCache != null) {
-			link = (String) plinkCache.get(cacheKey);
+			link = plinkCache.get(contentid, cacheKey);
+			if (link != null && !"".equals(link)) {
+				if (!plinkCache.needsCheck(contentid, checkInterval)) {
+					return link;
+				}
+				// check the target of the cached link with a single lookup
+				try {
+					if (plinkObject == null) {
+						plinkObject = loadObject(contentid);
+					}
+				} catch (DatasourceNotAvailableException e) {
+					log.error("Could not check the target of the cached link to " + contentid, e);
+					return link;
+				}
+				if (plinkObject == null) {
+					plinkCache.invalidate(contentid);
+				} else {
+					plinkCache.validate(contentid, plinkObject.get(UPDATEATTRIBUTE));
+				}
+				link = plinkCache.get(contentid, cacheKey);
+				if (link != null && !"".equals(link)) {
+					return link;
+				}
+			}
 		}
 
 		// no cache object so try to prepare a link
 		if (("".equals(link) || link == null) && !config.getPortalNodeCompMode()) {
 
 			// Render Content with contentid as template name
-			Resolvable plinkObject;
-			Datasource ds = null;
 			try {
-				ds = this.config.getDatasource();
-				plinkObject = PortalConnectorFactory.getContentObject(contentid, ds);
-				
+				if (plinkObject == null) {
+					plinkObject = loadObject(contentid);
+				}
 
 				ITemplateManager myTemplateEngine = this.config.getTemplateManager();
 				// Put objects in the plink template
@@ -169,14 +260,15 @@ public class PlinkProcessor {
 				}
 
 				link = myTemplateEngine.render("link", this.config.getPlinkTemplate());
+				if (plinkObject != null) {
+					updatetimestamp = plinkObject.get(UPDATEATTRIBUTE);
+				}
 
 			} catch (DatasourceNotAvailableException e) {
 				CRException ex = new CRException(e);
 				log.error(ex.getMessage() + ex.getStringStackTrace());
 			} catch (CRException ex) {
 				log.error(ex.getMessage() + ex.getStringStackTrace());
-			} finally {
-				CRDatabaseFactory.releaseDatasource(ds);
 			}
 			// endtime
 			long end = new Date().getTime();
@@ -197,17 +289,143 @@ public class PlinkProcessor {
 		}
 
 		// add link to cache
-		try {
+		if (plinkCache != null) {
+			plinkCache.put(contentid, cacheKey, link, updatetimestamp);
+		}
 
-			if (plinkCache != null) {
-				plinkCache.put(cacheKey, link);
-			}
+		return link;
+	}
 
-		} catch (CacheException e) {
+	/**
+	 * Load a link target from the datasource.
+	 * @param contentid contentid of the link target
+	 * @return link target or null if it does not exist
+	 * @throws DatasourceNotAvailableException if the datasource is not available
+	 */
+	protected Resolvable loadObject(final String contentid) throws DatasourceNotAvailableException {
+		Datasource ds = null;
+		try {
+			ds = this.config.getDatasource();
+			return PortalConnectorFactory.getContentObject(contentid, ds);
+		} finally {
+			CRDatabaseFactory.releaseDatasource(ds);
+		}
+	}
 
-			log.warn("Could not add link to object " + contentid + " to cache");
+	/**
+	 * Replace all plinks in the given content. If batch resolving is enabled
+	 * (default) the content is scanned for plinks first and all objects whose
+	 * links are not cached are loaded with a single datasource query, so
+	 * rendering the links does not need a lookup per link.
+	 * @param content content containing plinks
+	 * @param request request used to build the links
+	 * @return content with replaced plinks
+	 */
+	public String replacePLinks(final String content, final CRRequest request) {
+		if (content == null) {
+			return null;
 		}
+		if (!batchResolve || config.getPortalNodeCompMode()) {
+			return PortalConnectorHelper.replacePLinks(content, new PlinkReplacer(this, request));
+		}
+		PLinkCollector collector = new PLinkCollector();
+		PortalConnectorHelper.replacePLinks(content, collector);
+		if (collector.getContentIds().isEmpty()) {
+			return content;
+		}
+		Map<String, Resolvable> preloadedObjects = preloadObjects(collector.getContentIds(), request);
+		return PortalConnectorHelper.replacePLinks(content, new PlinkReplacer(this, request, preloadedObjects));
+	}
 
-		return link;
+	/**
+	 * Load all objects with the given contentids whose links are not cached
+	 * yet with a single datasource query. Targets of cached links that were not
+	 * checked within the check interval are loaded as well and their cached
+	 * links are invalidated if the updatetimestamp of the target changed.
+	 * @param contentids contentids of the link targets
+	 * @param request request used to build the cache keys
+	 * @return loaded objects by contentid, empty if all links are cached
+	 */
+	public Map<String, Resolvable> preloadObjects(final Collection<String> contentids, final CRRequest request) {
+		Map<String, Resolvable> objects = new HashMap<String, Resolvable>();
+		List<String> missing = new ArrayList<String>(contentids.size());
+		List<String> check = new ArrayList<String>();
+		for (String contentid : contentids) {
+			if (plinkCache == null || plinkCache.get(contentid, getCacheKey(contentid, request)) == null) {
+				missing.add(contentid);
+			} else if (plinkCache.needsCheck(contentid, checkInterval)) {
+				missing.add(contentid);
+				check.add(contentid);
+			}
+		}
+		if (missing.isEmpty()) {
+			return objects;
+		}
+		long start = new Date().getTime();
+		Datasource ds = null;
+		try {
+			ds = this.config.getDatasource();
+			if (ds == null) {
+				log.error("No Datasource available to preload the objects for " + missing.size() + " plinks.");
+				return objects;
+			}
+			Expression expression = PortalConnectorFactory.createExpression("object.contentid CONTAINSONEOF "
+					+ CRUtil.prepareParameterArrayForRule(missing.toArray(new String[missing.size()])));
+			DatasourceFilter filter = ds.createDatasourceFilter(expression);
+			Collection<?> result = ds.getResult(filter, prefillAttributes);
+			if (result != null) {
+				for (Object o : result) {
+					Resolvable reso = (Resolvable) o;
+					objects.put((String) reso.get("contentid"), reso);
+				}
+			}
+			for (String contentid : check) {
+				Resolvable reso = objects.get(contentid);
+				if (reso == null) {
+					plinkCache.invalidate(contentid);
+				} else {
+					plinkCache.validate(contentid, reso.get(UPDATEATTRIBUTE));
+				}
+			}
+		} catch (ParserException e) {
+			// the links are resolved one by one in this case
+			log.error("Could not preload the objects for " + missing.size() + " plinks.", e);
+		} catch (ExpressionParserException e) {
+			log.error("Could not preload the objects for " + missing.size() + " plinks.", e);
+		} catch (DatasourceException e) {
+			log.error("Could not preload the objects for " + missing.size() + " plinks.", e);
+		} finally {
+			CRDatabaseFactory.releaseDatasource(ds);
+		}
+		log.debug("plink preloading time for " + missing.size() + " links: " + (new Date().getTime() - start));
+		return objects;
+	}
+
+	/**
+	 * Create the key for the plink cache.
+	 * @param contentid contentid of the link target
+	 * @param request request the link is generated for
+	 * @return cache key
+	 */
+	private String getCacheKey(final String contentid, final CRRequest request) {
+		String cacheKey = contentid;
+		if (request != null && request.getRequest() != null && request.getRequest() instanceof HttpServletRequest) {
+			String type = ((HttpServletRequest) request.getRequest()).getParameter("format");
+			String typeArg = ((HttpServletRequest) request.getRequest()).getParameter("type");
+			if (typeArg != null && !typeArg.equals("")) {
+				type = typeArg;
+			}
+			// reset to an empty string if php or null
+			// otherwise just use the given type for the cache-key
+			if (type == null || type.equals("php")) {
+				type = "";
+			}
+			// if the link refers to a binary-file, always use an empty type (this falls back to "php")
+			if (contentid.startsWith(config.getBinaryType() + ".")) {
+				type = "";
+			}
+			cacheKey += "-" + type;
+		}
+		return cacheKey;
 	}
 }
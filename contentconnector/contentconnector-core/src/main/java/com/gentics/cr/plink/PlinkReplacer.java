@@ -1,7 +1,11 @@
 package com.gentics.cr.plink;
 
+import java.util.Map;
+
+import com.gentics.api.lib.resolving.Resolvable;
 import com.gentics.api.portalnode.connector.PLinkInformation;
 import com.gentics.api.portalnode.connector.PLinkReplacer;
+import com.gentics.api.portalnode.connector.PortalConnectorHelper;
 import com.gentics.cr.CRRequest;
 
 /**
@@ -19,6 +23,11 @@ public class PlinkReplacer implements PLinkReplacer {
 	protected PlinkProcessor plinkProc;
 	protected CRRequest request;
 
+	/**
+	 * link targets loaded before the replacement, may be null.
+	 */
+	protected Map<String, Resolvable> preloadedObjects;
+
 	/**
 	 * Create instance.
 	 * @param proc {@link PlinkProcessor} to handle the PLinks
@@ -30,6 +39,19 @@ public class PlinkReplacer implements PLinkReplacer {
 		this.request = request;
 	}
 
+	/**
+	 * Create instance that uses already loaded link targets.
+	 * @param proc {@link PlinkProcessor} to handle the PLinks
+	 * @param request {@link CRRequest} from the servlet to build an url back to the servlet
+	 * @param preloadedObjects link targets by contentid, see
+	 * {@link PlinkProcessor#preloadObjects(java.util.Collection, CRRequest)}
+	 */
+	public PlinkReplacer(final PlinkProcessor proc, final CRRequest request,
+			final Map<String, Resolvable> preloadedObjects) {
+		this(proc, request);
+		this.preloadedObjects = preloadedObjects;
+	}
+
 	/**
 	 * Create an instance without a request.
 	 * @param proc {@link PlinkProcessor} to handle the PLinks
@@ -43,6 +65,19 @@ public class PlinkReplacer implements PLinkReplacer {
 	 * @param plink 
 	 */
 	public String replacePLink(final PLinkInformation plink) {
-		return this.plinkProc.getLink(plink, request);
+		return this.plinkProc.getLink(plink, request, preloadedObjects);
+	}
+
+	/**
+	 * Replace all plinks in the content. The link targets are loaded in a
+	 * batch if the PlinkProcessor is configured to do so.
+	 * @param content content containing plinks
+	 * @return content with replaced plinks
+	 */
+	public String replacePLinks(final String content) {
+		if (request == null || preloadedObjects != null) {
+			return PortalConnectorHelper.replacePLinks(content, this);
+		}
+		return this.plinkProc.replacePLinks(content, request);
 	}
 }
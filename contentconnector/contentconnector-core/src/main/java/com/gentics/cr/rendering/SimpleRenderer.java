@@ -4,6 +4,7 @@ import com.gentics.api.portalnode.connector.PLinkReplacer;
 import com.gentics.api.portalnode.connector.PortalConnectorHelper;
 import com.gentics.cr.CRConfig;
 import com.gentics.cr.exceptions.CRException;
+import com.gentics.cr.plink.PlinkReplacer;
 import com.gentics.cr.template.ITemplateManager;
 
 /**
@@ -55,7 +56,9 @@ public class SimpleRenderer {
 	 */
 	public String render(String source) throws CRException {
 		// replace plinks (if configured to do so)
-		if (this.doPlinks && this.pr != null) {
+		if (this.doPlinks && this.pr instanceof PlinkReplacer) {
+			source = ((PlinkReplacer) this.pr).replacePLinks(source);
+		} else if (this.doPlinks && this.pr != null) {
 			source = PortalConnectorHelper.replacePLinks(source, this.pr);
 		}
 
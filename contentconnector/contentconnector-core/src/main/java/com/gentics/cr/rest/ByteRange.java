@@ -0,0 +1,167 @@
+package com.gentics.cr.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Byte range of a HTTP Range request (RFC 2616, section 14.35).
+ */
+final class ByteRange {
+
+	/**
+	 * Maximum number of ranges of a request. Requests with more ranges are
+	 * answered with the whole content.
+	 */
+	static final int MAX_RANGES = 20;
+
+	/**
+	 * Orders ranges by their first byte.
+	 */
+	private static final Comparator<ByteRange> START_ORDER = new Comparator<ByteRange>() {
+		public int compare(final ByteRange r1, final ByteRange r2) {
+			return r1.start < r2.start ? -1 : (r1.start == r2.start ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Unit of the supported ranges.
+	 */
+	private static final String BYTES_UNIT = "bytes=";
+
+	/**
+	 * first byte of the range.
+	 */
+	private final long start;
+
+	/**
+	 * last byte of the range (inclusive).
+	 */
+	private final long end;
+
+	/**
+	 * Create a new range.
+	 * @param start first byte of the range
+	 * @param end last byte of the range (inclusive)
+	 */
+	ByteRange(final long start, final long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Parse the value of a Range header.
+	 * @param header value of the Range header, e.g. bytes=0-499,-500
+	 * @param length length of the content
+	 * @return satisfiable ranges of the header ordered by their first byte,
+	 * overlapping and adjacent ranges are coalesced (RFC 7233, section 4.1).
+	 * An empty list if no range is satisfiable or null if the header is
+	 * invalid and has to be ignored
+	 */
+	static List<ByteRange> parse(final String header, final long length) {
+		if (header == null || !header.trim().startsWith(BYTES_UNIT)) {
+			return null;
+		}
+		String[] specs = header.trim().substring(BYTES_UNIT.length()).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+		List<ByteRange> ranges = new ArrayList<ByteRange>(specs.length);
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0) {
+				return null;
+			}
+			try {
+				String first = spec.substring(0, dash).trim();
+				String last = spec.substring(dash + 1).trim();
+				if (first.length() == 0) {
+					// suffix range: the last n bytes
+					long suffix = Long.parseLong(last);
+					if (suffix < 0) {
+						return null;
+					}
+					if (suffix > 0 && length > 0) {
+						ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+					}
+				} else {
+					long rangeStart = Long.parseLong(first);
+					long rangeEnd = last.length() == 0 ? length - 1 : Long.parseLong(last);
+					if (rangeStart < 0 || rangeEnd < rangeStart) {
+						return null;
+					}
+					if (rangeStart < length) {
+						ranges.add(new ByteRange(rangeStart, Math.min(rangeEnd, length - 1)));
+					}
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return coalesce(ranges);
+	}
+
+	/**
+	 * Merge overlapping and adjacent ranges, so a request cannot have the
+	 * same bytes sent many times.
+	 * @param ranges satisfiable ranges
+	 * @return ranges ordered by their first byte without overlaps
+	 */
+	private static List<ByteRange> coalesce(final List<ByteRange> ranges) {
+		if (ranges.size() < 2) {
+			return ranges;
+		}
+		Collections.sort(ranges, START_ORDER);
+		List<ByteRange> coalesced = new ArrayList<ByteRange>(ranges.size());
+		ByteRange current = ranges.get(0);
+		for (int i = 1; i < ranges.size(); i++) {
+			ByteRange next = ranges.get(i);
+			if (next.start <= current.end + 1) {
+				if (next.end > current.end) {
+					current = new ByteRange(current.start, next.end);
+				}
+			} else {
+				coalesced.add(current);
+				current = next;
+			}
+		}
+		coalesced.add(current);
+		return coalesced;
+	}
+
+	/**
+	 * @return first byte of the range
+	 */
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return last byte of the range (inclusive)
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return number of bytes of the range
+	 */
+	long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * @param total length of the content
+	 * @return value of the Content-Range header of the range
+	 */
+	String toContentRange(final long total) {
+		return "bytes " + start + "-" + end + "/" + total;
+	}
+
+	@Override
+	public String toString() {
+		return start + "-" + end;
+	}
+}
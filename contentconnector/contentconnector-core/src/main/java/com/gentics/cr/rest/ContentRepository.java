@@ -56,6 +56,26 @@ public abstract class ContentRepository implements Serializable {
 
 	protected String response_encoding;
 
+	/**
+	 * Number of streamed objects after which the stream is flushed.
+	 */
+	protected static final int STREAM_FLUSH_INTERVAL = 100;
+
+	/**
+	 * Stream the repository is streamed to.
+	 */
+	private transient OutputStream outputStream;
+
+	/**
+	 * Number of objects written to the stream.
+	 */
+	private transient int streamedObjects;
+
+	/**
+	 * True if objects have been written to the stream.
+	 */
+	private transient boolean committed;
+
 	/**
 	 * Holds objects that can later be deployed in the render context.
 	 */
@@ -235,6 +255,68 @@ public abstract class ContentRepository implements Serializable {
 	 */
 	public abstract void toStream(OutputStream stream) throws CRException;
 
+	/**
+	 * Start streaming the repository to a stream. The objects are passed with
+	 * {@link #streamObject(CRResolvableBean)} as they are produced, the
+	 * stream is finished with {@link #endStream()}. Repositories that do not
+	 * implement {@link StreamingContentRepository} collect the objects and
+	 * write them on {@link #endStream()} with {@link #toStream(OutputStream)}.
+	 * @param stream stream to write the repository to
+	 */
+	public final void startStream(final OutputStream stream) {
+		this.outputStream = stream;
+		this.streamedObjects = 0;
+		this.committed = false;
+	}
+
+	/**
+	 * Pass an object to the repository while streaming. The first object
+	 * commits the response, the stream is flushed after the first object and
+	 * after each {@link #STREAM_FLUSH_INTERVAL} objects so the client receives
+	 * the result while it is produced.
+	 * @param resolvableBean object to write
+	 * @throws CRException if the object cannot be written
+	 */
+	public final void streamObject(final CRResolvableBean resolvableBean) throws CRException {
+		if (!(this instanceof StreamingContentRepository)) {
+			addObject(resolvableBean);
+			return;
+		}
+		StreamingContentRepository streaming = (StreamingContentRepository) this;
+		if (!committed) {
+			committed = true;
+			streaming.writeStreamStart(outputStream);
+		}
+		streaming.writeStreamObject(resolvableBean);
+		streamedObjects++;
+		if (streamedObjects == 1 || streamedObjects % STREAM_FLUSH_INTERVAL == 0) {
+			streaming.flushStream();
+		}
+	}
+
+	/**
+	 * Finish streaming the repository. If no object has been written yet, the
+	 * repository is written with {@link #toStream(OutputStream)}, so an empty
+	 * result is answered as before.
+	 * @throws CRException if the repository cannot be written
+	 */
+	public final void endStream() throws CRException {
+		if (committed) {
+			((StreamingContentRepository) this).writeStreamEnd();
+		} else {
+			toStream(outputStream);
+		}
+	}
+
+	/**
+	 * @return true if objects have already been written to the stream, an
+	 * error can no longer be written with
+	 * {@link #respondWithError(OutputStream, CRException, boolean)} then.
+	 */
+	public final boolean isCommitted() {
+		return committed;
+	}
+
 	/**
 	 * Responds with an Error to the stream.
 	 * 
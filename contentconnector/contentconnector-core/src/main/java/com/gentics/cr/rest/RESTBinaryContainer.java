@@ -23,6 +23,7 @@ import com.gentics.cr.RequestProcessor;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.exceptions.CRException.ERRORTYPE;
 import com.gentics.cr.util.CRBinaryRequestBuilder;
+import com.gentics.cr.util.response.CompressingResponse;
 import com.gentics.cr.util.response.IResponseTypeSetter;
 import com.gentics.lib.http.HTTPRequest;
 import com.sun.jersey.api.core.HttpResponseContext;
@@ -159,7 +160,7 @@ public class RESTBinaryContainer {
 					}
 				}
 			}
-			req.setAttributeArray(new String[] { "mimetype" });
+			req.setAttributeArray(new String[] { "mimetype", "updatetimestamp" });
 			// load by url if no contentid
 			if (req.isUrlRequest()) {
 				crBean = rp.getContentByUrl(req);
@@ -189,8 +190,15 @@ public class RESTBinaryContainer {
 				responsetypesetter.setResponseCode(HTTPRequest.HTTP_OK);
 				// output data.
 				if (crBean.isBinary()) {
-					log.debug("Size of content: " + crBean.getBinaryContent().length);
-					stream.write(crBean.getBinaryContent());
+					byte[] content = crBean.getBinaryContent();
+					log.debug("Size of content: " + content.length);
+					Object timestamp = crBean.get("updatetimestamp");
+					// compressed binaries are cached by contentid and updatetimestamp
+					if (timestamp == null || !(responsetypesetter instanceof CompressingResponse)
+							|| !((CompressingResponse) responsetypesetter).writeCompressed(
+								crBean.getContentid() + "-" + timestamp, content)) {
+						stream.write(content);
+					}
 
 				} else {
 					OutputStreamWriter wr = new OutputStreamWriter(stream, this.responseEncoding);
@@ -5,12 +5,16 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.util.DateUtil;
 import org.apache.log4j.Logger;
 
 import com.gentics.api.lib.resolving.Resolvable;
@@ -26,7 +30,9 @@ import com.gentics.cr.plink.PlinkReplacer;
 import com.gentics.cr.rendering.ContentRendererFactory;
 import com.gentics.cr.rendering.IContentRenderer;
 import com.gentics.cr.util.CRBinaryRequestBuilder;
+import com.gentics.cr.util.response.CompressingResponse;
 import com.gentics.cr.util.response.IResponseTypeSetter;
+import com.gentics.cr.util.response.ResponseCompression;
 
 /**
  * Container for Binary responses.
@@ -78,6 +84,16 @@ public class RESTBinaryStreamingContainer {
 	 */
 	private static final String LIVEEDITORXHTML_KEY = "container.liveeditorXHTML";
 
+	/**
+	 * Attribute holding the time of the last update in seconds.
+	 */
+	private static final String UPDATETIMESTAMP = "updatetimestamp";
+
+	/**
+	 * Boundary of multipart/byteranges responses.
+	 */
+	private static final String MULTIPART_BOUNDARY = "CONTENTCONNECTOR_BYTERANGES";
+
 	/**
 	 * get conten type as string.
 	 * 
@@ -171,7 +187,7 @@ public class RESTBinaryStreamingContainer {
 					}
 				}
 			}
-			req.setAttributeArray(new String[] { "mimetype" });
+			req.setAttributeArray(new String[] { "mimetype", UPDATETIMESTAMP });
 			// load by url if no contentid
 			if (req.isUrlRequest()) {
 				crBean = rp.getBeanByURL(req);
@@ -200,8 +216,7 @@ public class RESTBinaryStreamingContainer {
 				responsetypesetter.setContentType(this.getContentType());
 				// output data.
 				if (crBean.isBinary()) {
-					stream.write(crBean.getBinaryContent());
-
+					writeBinary(crBean, reqBuilder.getRequest(), stream, responsetypesetter);
 				} else {
 
 					PLinkOutputStream plos = new PLinkOutputStream(stream, new PlinkReplacer(plinkProcessor, req));
@@ -229,4 +244,179 @@ public class RESTBinaryStreamingContainer {
 		}
 
 	}
+
+	/**
+	 * Write the binary content of an object. The response carries an ETag
+	 * (built from contentid and updatetimestamp) and a Last-Modified header.
+	 * Conditional GET requests with If-None-Match or If-Modified-Since are
+	 * answered with 304 without loading the content. Range requests (also
+	 * with If-Range) are answered with the requested byte ranges.
+	 * @param crBean object to write
+	 * @param request request, HTTP headers are only evaluated for
+	 * {@link HttpServletRequest}s
+	 * @param stream output stream
+	 * @param responsetypesetter response type setter
+	 * @throws IOException if the content cannot be written
+	 */
+	private void writeBinary(final CRResolvableBean crBean, final Object request, final OutputStream stream,
+			final IResponseTypeSetter responsetypesetter) throws IOException {
+		HttpServletRequest httpRequest = null;
+		if (request instanceof HttpServletRequest) {
+			httpRequest = (HttpServletRequest) request;
+		}
+		String etag = null;
+		long lastModified = -1;
+		long timestamp = getUpdateTimestamp(crBean);
+		if (timestamp > 0) {
+			etag = "\"" + crBean.getContentid() + "-" + timestamp + "\"";
+			lastModified = timestamp * 1000;
+			responsetypesetter.setHeader("ETag", etag);
+			responsetypesetter.setHeader("Last-Modified", DateUtil.formatDate(new Date(lastModified)));
+		}
+		responsetypesetter.setHeader("Accept-Ranges", "bytes");
+
+		String notModifiedETag = null;
+		if (httpRequest != null && etag != null) {
+			notModifiedETag = getNotModifiedETag(httpRequest, etag, lastModified);
+		}
+		if (notModifiedETag != null) {
+			responsetypesetter.setResponseCode(HttpStatus.SC_NOT_MODIFIED);
+			// the 304 is not encoded, so echo the tag of the variant the client has
+			responsetypesetter.setHeader("ETag", notModifiedETag);
+			return;
+		}
+
+		byte[] content = crBean.getBinaryContent();
+		if (content == null) {
+			return;
+		}
+		List<ByteRange> ranges = null;
+		if (httpRequest != null && httpRequest.getHeader("Range") != null
+				&& isRangeApplicable(httpRequest, etag, lastModified)) {
+			ranges = ByteRange.parse(httpRequest.getHeader("Range"), content.length);
+		}
+
+		if (ranges == null) {
+			if (etag != null && responsetypesetter instanceof CompressingResponse
+					&& ((CompressingResponse) responsetypesetter).writeCompressed(
+						crBean.getContentid() + "-" + timestamp, content)) {
+				return;
+			}
+			responsetypesetter.setHeader("Content-Length", Integer.toString(content.length));
+			stream.write(content);
+		} else if (ranges.isEmpty()) {
+			responsetypesetter.setHeader("Content-Range", "bytes */" + content.length);
+			responsetypesetter.setResponseCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		} else if (ranges.size() == 1) {
+			ByteRange range = ranges.get(0);
+			responsetypesetter.setResponseCode(HttpStatus.SC_PARTIAL_CONTENT);
+			responsetypesetter.setHeader("Content-Range", range.toContentRange(content.length));
+			responsetypesetter.setHeader("Content-Length", Long.toString(range.getLength()));
+			stream.write(content, (int) range.getStart(), (int) range.getLength());
+		} else {
+			responsetypesetter.setResponseCode(HttpStatus.SC_PARTIAL_CONTENT);
+			responsetypesetter.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+			for (ByteRange range : ranges) {
+				StringBuilder partHeader = new StringBuilder("\r\n--").append(MULTIPART_BOUNDARY).append("\r\n");
+				partHeader.append("Content-Type: ").append(this.contenttype).append("\r\n");
+				partHeader.append("Content-Range: ").append(range.toContentRange(content.length)).append("\r\n\r\n");
+				stream.write(partHeader.toString().getBytes("ISO-8859-1"));
+				stream.write(content, (int) range.getStart(), (int) range.getLength());
+			}
+			stream.write(("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes("ISO-8859-1"));
+		}
+	}
+
+	/**
+	 * @param request request
+	 * @param etag ETag of the identity content
+	 * @param lastModified time of the last modification in milliseconds
+	 * @return ETag of the variant the client already has if it is current
+	 * (identity or compressed), null if the content has to be sent
+	 */
+	private static String getNotModifiedETag(final HttpServletRequest request, final String etag,
+			final long lastModified) {
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method)) {
+			return null;
+		}
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			// If-Modified-Since is ignored if If-None-Match is present
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if ("*".equals(tag) || etag.equals(tag)) {
+					return etag;
+				}
+				if (CompressingResponse.getEncodedETag(etag, ResponseCompression.GZIP).equals(tag)
+						|| CompressingResponse.getEncodedETag(etag, ResponseCompression.DEFLATE).equals(tag)) {
+					return tag;
+				}
+			}
+			return null;
+		}
+		long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+		// the header has a precision of seconds
+		if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+			return etag;
+		}
+		return null;
+	}
+
+	/**
+	 * @param request request with a Range header
+	 * @param etag ETag of the content or null if the content has no ETag
+	 * @param lastModified time of the last modification in milliseconds
+	 * @return true if the Range header is applied, false if the whole content
+	 * has to be sent because the If-Range condition does not match
+	 */
+	private static boolean isRangeApplicable(final HttpServletRequest request, final String etag,
+			final long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return etag != null && etag.equals(ifRange);
+		}
+		long date = getDateHeader(request, "If-Range");
+		return date >= 0 && lastModified >= 0 && lastModified / 1000 <= date / 1000;
+	}
+
+	/**
+	 * @param request request
+	 * @param name name of the header
+	 * @return value of the header in milliseconds or -1 if the header is not
+	 * set or not a date
+	 */
+	private static long getDateHeader(final HttpServletRequest request, final String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param crBean object
+	 * @return updatetimestamp of the object in seconds or 0 if the object has
+	 * no updatetimestamp
+	 */
+	private static long getUpdateTimestamp(final CRResolvableBean crBean) {
+		Object timestamp = crBean.get(UPDATETIMESTAMP);
+		if (timestamp instanceof Number) {
+			return ((Number) timestamp).longValue();
+		} else if (timestamp != null) {
+			try {
+				return Long.parseLong(timestamp.toString());
+			} catch (NumberFormatException e) {
+				log.debug("Invalid updatetimestamp " + timestamp + " of " + crBean.getContentid());
+			}
+		}
+		return 0;
+	}
 }
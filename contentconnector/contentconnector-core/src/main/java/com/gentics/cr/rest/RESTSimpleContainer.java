@@ -14,9 +14,11 @@ import com.gentics.cr.CRConfigUtil;
 import com.gentics.cr.CRRequest;
 import com.gentics.cr.CRResolvableBean;
 import com.gentics.cr.RequestProcessor;
+import com.gentics.cr.ResultCallback;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.util.CRRequestBuilder;
 import com.gentics.cr.util.ContentRepositoryConfig;
+import com.gentics.cr.util.response.CompressingResponse;
 import com.gentics.cr.util.response.IResponseTypeSetter;
 
 /**
@@ -44,6 +46,17 @@ public class RESTSimpleContainer {
 	 * Logger instance.
 	 */
 	private static final Logger LOG = Logger.getLogger(RESTSimpleContainer.class);
+	/**
+	 * Configuration key to enable streaming the objects to the repository
+	 * while they are loaded. Defaults to false, an error occurring after the
+	 * first object has been sent cannot be returned to the client anymore and
+	 * results in a truncated response. Only request processors overriding
+	 * {@link RequestProcessor#streamObjects(CRRequest, ResultCallback)}, like
+	 * the SQLRequestProcessor, read the result incrementally. Other request
+	 * processors still load the whole result into memory before it is
+	 * streamed, for them only the response is written earlier.
+	 */
+	public static final String STREAM_RESULTS_KEY = "cr.streamresults";
 	/**
 	 * Configuration.
 	 */
@@ -125,25 +138,43 @@ public class RESTSimpleContainer {
 				req.addObjectForFilterDeployment(entry.getKey(), entry.getValue());
 				cr.addAdditionalDeployableObject(entry.getKey(), entry.getValue());
 			}
-			// Query the Objects from RequestProcessor
-			coll = rp.getObjects(req);
-			// add the objects to repository as serializable beans
-			if (coll != null) {
-				for (Iterator<CRResolvableBean> it = coll.iterator(); it.hasNext();) {
-					cr.addObject(it.next());
+			if (config.getBoolean(STREAM_RESULTS_KEY, false)) {
+				// pass the objects to the repository while they are loaded
+				if (responsetypesetter instanceof CompressingResponse) {
+					// the flushes would not reach the client through the
+					// compressing stream
+					((CompressingResponse) responsetypesetter).disableCompression();
+				}
+				final ContentRepository repository = cr;
+				repository.startStream(stream);
+				rp.streamObjects(req, new ResultCallback() {
+					public boolean process(final CRResolvableBean bean) throws CRException {
+						repository.streamObject(bean);
+						return true;
+					}
+				});
+				repository.endStream();
+			} else {
+				// Query the Objects from RequestProcessor
+				coll = rp.getObjects(req);
+				// add the objects to repository as serializable beans
+				if (coll != null) {
+					for (Iterator<CRResolvableBean> it = coll.iterator(); it.hasNext();) {
+						cr.addObject(it.next());
+					}
 				}
+				cr.toStream(stream);
 			}
-			cr.toStream(stream);
 		} catch (CRException ex) {
 			//CR Error Handling
 			//CRException is passed down from methods that want to post
 			//the occured error to the client
-			cr.respondWithError((OutputStream) stream, ex, debug);
+			respondWithError(cr, stream, ex, debug);
 			LOG.error(ex.getMessage(), ex);
 		} catch (Exception ex) {
 			CRException crex = new CRException(ex);
 			LOG.error("Exception occured", crex);
-			cr.respondWithError((OutputStream) stream, crex, debug);
+			respondWithError(cr, stream, crex, debug);
 			LOG.error(ex.getMessage(), crex);
 		} finally {
 			try {
@@ -154,4 +185,21 @@ public class RESTSimpleContainer {
 			}
 		}
 	}
+
+	/**
+	 * Respond with an error unless the repository already wrote objects to
+	 * the stream, the error is only logged then.
+	 * @param cr repository
+	 * @param stream stream
+	 * @param ex error
+	 * @param debug true to write the stack trace
+	 */
+	private void respondWithError(final ContentRepository cr, final OutputStream stream, final CRException ex,
+			final boolean debug) {
+		if (cr.isCommitted()) {
+			LOG.error("Cannot send error, the response has already been committed.");
+		} else {
+			cr.respondWithError(stream, ex, debug);
+		}
+	}
 }
@@ -0,0 +1,44 @@
+package com.gentics.cr.rest;
+
+import java.io.OutputStream;
+
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.exceptions.CRException;
+
+/**
+ * Implemented by {@link ContentRepository}s that write the objects to the
+ * stream while they are produced. The methods are called by
+ * {@link ContentRepository#streamObject(CRResolvableBean)} and
+ * {@link ContentRepository#endStream()}, repositories not implementing this
+ * interface collect the streamed objects and write them with
+ * {@link ContentRepository#toStream(OutputStream)}.
+ */
+public interface StreamingContentRepository {
+
+	/**
+	 * Write the start of the repository before the first streamed object.
+	 * @param stream stream to write the repository to
+	 * @throws CRException if the start cannot be written
+	 */
+	void writeStreamStart(OutputStream stream) throws CRException;
+
+	/**
+	 * Write a streamed object.
+	 * @param resolvableBean object to write
+	 * @throws CRException if the object cannot be written
+	 */
+	void writeStreamObject(CRResolvableBean resolvableBean) throws CRException;
+
+	/**
+	 * Write the end of the repository after the last streamed object and close
+	 * the stream.
+	 * @throws CRException if the end cannot be written
+	 */
+	void writeStreamEnd() throws CRException;
+
+	/**
+	 * Flush the objects written so far to the stream.
+	 * @throws CRException if the stream cannot be flushed
+	 */
+	void flushStream() throws CRException;
+}
@@ -0,0 +1,623 @@
+package com.gentics.cr.rest.javabin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import com.gentics.cr.CRError;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.exceptions.CRException;
+
+/**
+ * Compact, versioned binary format for {@link CRResolvableBean} trees.
+ * <p>
+ * A stream starts with the magic bytes CRB and the format version, followed
+ * by records: a bean, an error or the end of the stream. Numbers are written
+ * as variable length integers, attribute names, object types and mother types
+ * are written once per stream and referenced by their index afterwards. Byte
+ * arrays are written as they are. Values of types without an own encoding are
+ * written with java serialization.
+ * </p>
+ * <p>
+ * A codec instance holds the string table of one stream and must not be
+ * shared between streams.
+ * </p>
+ */
+public final class CompactBeanCodec {
+
+	/**
+	 * Content type of the format.
+	 */
+	public static final String CONTENT_TYPE = "application/x-gentics-crbin";
+
+	/**
+	 * Magic bytes at the start of a stream.
+	 */
+	private static final byte[] MAGIC = { 'C', 'R', 'B' };
+
+	/**
+	 * Version of the format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Record marking the end of the stream.
+	 */
+	private static final int RECORD_END = 0;
+
+	/**
+	 * Record holding a bean.
+	 */
+	private static final int RECORD_BEAN = 1;
+
+	/**
+	 * Record holding an error.
+	 */
+	private static final int RECORD_ERROR = 2;
+
+	/**
+	 * Value types.
+	 */
+	private static final int NULL = 0;
+	private static final int STRING = 1;
+	private static final int BYTES = 2;
+	private static final int INT = 3;
+	private static final int LONG = 4;
+	private static final int DOUBLE = 5;
+	private static final int FLOAT = 6;
+	private static final int TRUE = 7;
+	private static final int FALSE = 8;
+	private static final int DATE = 9;
+	private static final int LIST = 10;
+	private static final int OBJECT_ARRAY = 11;
+	private static final int STRING_ARRAY = 12;
+	private static final int MAP = 13;
+	private static final int BEAN = 14;
+	private static final int SERIALIZED = 15;
+
+	/**
+	 * Stream written to.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Stream read from.
+	 */
+	private final DataInputStream in;
+
+	/**
+	 * Indexes of the strings already written.
+	 */
+	private final Map<String, Integer> writtenStrings = new HashMap<String, Integer>();
+
+	/**
+	 * Strings already read.
+	 */
+	private final List<String> readStrings = new ArrayList<String>();
+
+	/**
+	 * Create a codec writing to a stream.
+	 * @param out stream to write to, should be buffered
+	 */
+	private CompactBeanCodec(final OutputStream out) {
+		this.out = out;
+		this.in = null;
+	}
+
+	/**
+	 * Create a codec reading from a stream.
+	 * @param in stream to read from
+	 */
+	private CompactBeanCodec(final InputStream in) {
+		this.out = null;
+		this.in = new DataInputStream(in);
+	}
+
+	/**
+	 * Create a writer and write the start of the stream.
+	 * @param out stream to write to, should be buffered
+	 * @return codec to write the records with
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static CompactBeanCodec startWriting(final OutputStream out) throws IOException {
+		CompactBeanCodec codec = new CompactBeanCodec(out);
+		out.write(MAGIC);
+		out.write(VERSION);
+		return codec;
+	}
+
+	/**
+	 * Write a stream holding the given beans.
+	 * @param beans beans to write
+	 * @param out stream to write to, should be buffered
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static void writeBeans(final Collection<CRResolvableBean> beans, final OutputStream out)
+			throws IOException {
+		CompactBeanCodec codec = startWriting(out);
+		for (CRResolvableBean bean : beans) {
+			codec.writeBeanRecord(bean);
+		}
+		codec.endWriting();
+	}
+
+	/**
+	 * Write a stream holding the given error.
+	 * @param error error to write
+	 * @param out stream to write to, should be buffered
+	 * @throws IOException if the stream cannot be written
+	 */
+	public static void writeError(final CRError error, final OutputStream out) throws IOException {
+		CompactBeanCodec codec = startWriting(out);
+		codec.writeVarInt(RECORD_ERROR);
+		codec.writeString(error.getType());
+		codec.writeString(error.getMessage());
+		codec.writeString(error.getStringStackTrace());
+		codec.writeString(error.getErrorType() == null ? null : error.getErrorType().name());
+		codec.endWriting();
+	}
+
+	/**
+	 * Read a stream.
+	 * @param in stream to read from
+	 * @return the beans of the stream or the {@link CRError} if the stream
+	 * holds an error
+	 * @throws IOException if the stream cannot be read or is not a stream of
+	 * this format
+	 */
+	public static Object read(final InputStream in) throws IOException {
+		CompactBeanCodec codec = new CompactBeanCodec(in);
+		byte[] magic = new byte[MAGIC.length];
+		codec.in.readFully(magic);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (magic[i] != MAGIC[i]) {
+				throw new IOException("Stream is not in " + CONTENT_TYPE + " format.");
+			}
+		}
+		int version = codec.in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported " + CONTENT_TYPE + " version " + version + ".");
+		}
+		Vector<CRResolvableBean> beans = new Vector<CRResolvableBean>();
+		while (true) {
+			int record = codec.readVarInt();
+			if (record == RECORD_END) {
+				return beans;
+			} else if (record == RECORD_BEAN) {
+				beans.add(codec.readBean());
+			} else if (record == RECORD_ERROR) {
+				CRError error = new CRError(codec.readString(), codec.readString(), codec.readString());
+				String errorType = codec.readString();
+				if (errorType != null) {
+					try {
+						error.setErrorType(CRException.ERRORTYPE.valueOf(errorType));
+					} catch (IllegalArgumentException e) {
+						error.setErrorType(CRException.ERRORTYPE.GENERAL_ERROR);
+					}
+				}
+				return error;
+			} else {
+				throw new IOException("Unknown record " + record + ".");
+			}
+		}
+	}
+
+	/**
+	 * Write a bean as record of the stream.
+	 * @param bean bean to write
+	 * @throws IOException if the bean cannot be written
+	 */
+	public void writeBeanRecord(final CRResolvableBean bean) throws IOException {
+		writeVarInt(RECORD_BEAN);
+		writeBean(bean);
+	}
+
+	/**
+	 * Write the end of the stream. The stream is not closed.
+	 * @throws IOException if the end cannot be written
+	 */
+	public void endWriting() throws IOException {
+		writeVarInt(RECORD_END);
+		out.flush();
+	}
+
+	/**
+	 * Write a bean with its attributes and children.
+	 * @param bean bean to write
+	 * @throws IOException if the bean cannot be written
+	 */
+	private void writeBean(final CRResolvableBean bean) throws IOException {
+		writeString(bean.getContentid());
+		writeString(bean.getObj_id());
+		writeInternedString(bean.getObj_type());
+		writeString(bean.getMother_id());
+		writeInternedString(bean.getMother_type());
+		Map<String, Object> attributes = bean.getAttrMap();
+		if (attributes == null) {
+			writeVarInt(0);
+		} else {
+			writeVarInt(attributes.size());
+			for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+				writeInternedString(attribute.getKey());
+				writeValue(attribute.getValue());
+			}
+		}
+		Collection<CRResolvableBean> children = bean.getChildRepository();
+		if (children == null) {
+			writeVarInt(0);
+		} else {
+			writeVarInt(children.size() + 1);
+			for (CRResolvableBean child : children) {
+				writeBean(child);
+			}
+		}
+	}
+
+	/**
+	 * Read a bean with its attributes and children.
+	 * @return bean
+	 * @throws IOException if the bean cannot be read
+	 */
+	private CRResolvableBean readBean() throws IOException {
+		CRResolvableBean bean = new CRResolvableBean();
+		bean.setContentid(readString());
+		bean.setObj_id(readString());
+		bean.setObj_type(readInternedString());
+		bean.setMother_id(readString());
+		bean.setMother_type(readInternedString());
+		int attributes = readLength();
+		for (int i = 0; i < attributes; i++) {
+			String name = readInternedString();
+			Object value = readValue();
+			bean.set(name, value);
+		}
+		int children = readVarInt();
+		if (children > 0) {
+			Vector<CRResolvableBean> childRepository = new Vector<CRResolvableBean>(children - 1);
+			for (int i = 1; i < children; i++) {
+				childRepository.add(readBean());
+			}
+			bean.setChildRepository(childRepository);
+		}
+		return bean;
+	}
+
+	/**
+	 * Write a value of an attribute.
+	 * @param value value to write
+	 * @throws IOException if the value cannot be written
+	 */
+	private void writeValue(final Object value) throws IOException {
+		if (value == null) {
+			writeVarInt(NULL);
+		} else if (value instanceof String) {
+			writeVarInt(STRING);
+			writeString((String) value);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			writeVarInt(BYTES);
+			writeVarInt(bytes.length);
+			out.write(bytes);
+		} else if (value.getClass() == Integer.class) {
+			writeVarInt(INT);
+			writeVarLong(zigZag(((Integer) value).longValue()));
+		} else if (value.getClass() == Long.class) {
+			writeVarInt(LONG);
+			writeVarLong(zigZag(((Long) value).longValue()));
+		} else if (value.getClass() == Double.class) {
+			writeVarInt(DOUBLE);
+			writeFixedLong(Double.doubleToLongBits(((Double) value).doubleValue()));
+		} else if (value.getClass() == Float.class) {
+			writeVarInt(FLOAT);
+			writeFixedInt(Float.floatToIntBits(((Float) value).floatValue()));
+		} else if (value instanceof Boolean) {
+			writeVarInt(((Boolean) value).booleanValue() ? TRUE : FALSE);
+		} else if (value.getClass() == Date.class) {
+			writeVarInt(DATE);
+			writeVarLong(zigZag(((Date) value).getTime()));
+		} else if (value instanceof String[]) {
+			String[] strings = (String[]) value;
+			writeVarInt(STRING_ARRAY);
+			writeVarInt(strings.length);
+			for (String string : strings) {
+				writeString(string);
+			}
+		} else if (value instanceof Object[]) {
+			Object[] values = (Object[]) value;
+			writeVarInt(OBJECT_ARRAY);
+			writeVarInt(values.length);
+			for (Object element : values) {
+				writeValue(element);
+			}
+		} else if (value instanceof Collection<?>) {
+			Collection<?> values = (Collection<?>) value;
+			writeVarInt(LIST);
+			writeVarInt(values.size());
+			for (Object element : values) {
+				writeValue(element);
+			}
+		} else if (value instanceof Map<?, ?>) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			writeVarInt(MAP);
+			writeVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(entry.getKey());
+				writeValue(entry.getValue());
+			}
+		} else if (value instanceof CRResolvableBean) {
+			writeVarInt(BEAN);
+			writeBean((CRResolvableBean) value);
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(value);
+			oos.close();
+			writeVarInt(SERIALIZED);
+			writeVarInt(bytes.size());
+			bytes.writeTo(out);
+		}
+	}
+
+	/**
+	 * Read a value of an attribute.
+	 * @return value
+	 * @throws IOException if the value cannot be read
+	 */
+	private Object readValue() throws IOException {
+		int type = readVarInt();
+		switch (type) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString();
+		case BYTES:
+			byte[] bytes = new byte[readLength()];
+			in.readFully(bytes);
+			return bytes;
+		case INT:
+			return Integer.valueOf((int) unZigZag(readVarLong()));
+		case LONG:
+			return Long.valueOf(unZigZag(readVarLong()));
+		case DOUBLE:
+			return Double.valueOf(Double.longBitsToDouble(in.readLong()));
+		case FLOAT:
+			return Float.valueOf(Float.intBitsToFloat(in.readInt()));
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case DATE:
+			return new Date(unZigZag(readVarLong()));
+		case STRING_ARRAY:
+			String[] strings = new String[readLength()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString();
+			}
+			return strings;
+		case OBJECT_ARRAY:
+			Object[] values = new Object[readLength()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = readValue();
+			}
+			return values;
+		case LIST:
+			int size = readLength();
+			List<Object> list = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(readValue());
+			}
+			return list;
+		case MAP:
+			int entries = readLength();
+			Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+			for (int i = 0; i < entries; i++) {
+				Object key = readValue();
+				map.put(key, readValue());
+			}
+			return map;
+		case BEAN:
+			return readBean();
+		case SERIALIZED:
+			byte[] serialized = new byte[readLength()];
+			in.readFully(serialized);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			try {
+				return ois.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Could not read value: " + e.getMessage());
+			} finally {
+				ois.close();
+			}
+		default:
+			throw new IOException("Unknown value type " + type + ".");
+		}
+	}
+
+	/**
+	 * Write a string, null is allowed.
+	 * @param string string to write
+	 * @throws IOException if the string cannot be written
+	 */
+	private void writeString(final String string) throws IOException {
+		if (string == null) {
+			writeVarInt(0);
+		} else {
+			byte[] bytes = string.getBytes("UTF-8");
+			writeVarInt(bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @return string read, may be null
+	 * @throws IOException if the string cannot be read
+	 */
+	private String readString() throws IOException {
+		int length = readVarInt();
+		if (length == 0) {
+			return null;
+		}
+		if (length < 0) {
+			throw new IOException("Invalid string length " + length + ".");
+		}
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Write a string that is likely to be repeated in the stream. The string is
+	 * written once, afterwards its index is written.
+	 * @param string string to write, null is allowed
+	 * @throws IOException if the string cannot be written
+	 */
+	private void writeInternedString(final String string) throws IOException {
+		if (string == null) {
+			writeVarInt(0);
+			return;
+		}
+		Integer index = writtenStrings.get(string);
+		if (index != null) {
+			writeVarInt(index.intValue() + 2);
+		} else {
+			writtenStrings.put(string, Integer.valueOf(writtenStrings.size()));
+			writeVarInt(1);
+			writeString(string);
+		}
+	}
+
+	/**
+	 * @return string read, may be null
+	 * @throws IOException if the string cannot be read
+	 */
+	private String readInternedString() throws IOException {
+		int reference = readVarInt();
+		if (reference == 0) {
+			return null;
+		} else if (reference == 1) {
+			String string = readString();
+			readStrings.add(string);
+			return string;
+		}
+		int index = reference - 2;
+		if (index < 0 || index >= readStrings.size()) {
+			throw new IOException("Invalid string reference " + reference + ".");
+		}
+		return readStrings.get(index);
+	}
+
+	/**
+	 * Write a non negative int as variable length integer.
+	 * @param value value to write
+	 * @throws IOException if the value cannot be written
+	 */
+	private void writeVarInt(final int value) throws IOException {
+		writeVarLong(value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Write a long as variable length integer, 7 bits per byte.
+	 * @param value value to write, treated as unsigned
+	 * @throws IOException if the value cannot be written
+	 */
+	private void writeVarLong(final long value) throws IOException {
+		long v = value;
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Write a long with 8 bytes.
+	 * @param value value to write
+	 * @throws IOException if the value cannot be written
+	 */
+	private void writeFixedLong(final long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			out.write((int) (value >>> shift) & 0xFF);
+		}
+	}
+
+	/**
+	 * Write an int with 4 bytes.
+	 * @param value value to write
+	 * @throws IOException if the value cannot be written
+	 */
+	private void writeFixedInt(final int value) throws IOException {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			out.write((value >>> shift) & 0xFF);
+		}
+	}
+
+	/**
+	 * @return int read
+	 * @throws IOException if the value cannot be read
+	 */
+	private int readVarInt() throws IOException {
+		return (int) readVarLong();
+	}
+
+	/**
+	 * @return length read
+	 * @throws IOException if the length cannot be read or is invalid
+	 */
+	private int readLength() throws IOException {
+		int length = readVarInt();
+		if (length < 0) {
+			throw new IOException("Invalid length " + length + ".");
+		}
+		return length;
+	}
+
+	/**
+	 * @return long read
+	 * @throws IOException if the value cannot be read
+	 */
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid variable length integer.");
+	}
+
+	/**
+	 * @param value signed value
+	 * @return value mapped to an unsigned value with small absolute values
+	 * mapped to small values
+	 */
+	private static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * @param value unsigned value
+	 * @return signed value
+	 */
+	private static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,148 @@
+package com.gentics.cr.rest.javabin;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.gentics.cr.CRError;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.exceptions.CRException;
+import com.gentics.cr.rest.ContentRepository;
+import com.gentics.cr.rest.StreamingContentRepository;
+
+/**
+ * Contentrepository writing the objects in the compact binary format of
+ * {@link CompactBeanCodec}. Used by the HTTP client request processors
+ * instead of {@link JavaBinContentRepository} to transfer objects with less
+ * overhead than java serialization.
+ */
+public class CompactBinContentRepository extends ContentRepository implements StreamingContentRepository {
+
+	/**
+	 * Serial id.
+	 */
+	private static final long serialVersionUID = -2570871296341526398L;
+
+	/**
+	 * Buffered stream of the response currently streamed.
+	 */
+	private transient OutputStream streamOut;
+
+	/**
+	 * Codec of the response currently streamed.
+	 */
+	private transient CompactBeanCodec codec;
+
+	/**
+	 * Create instance.
+	 * @param attr attributes
+	 */
+	public CompactBinContentRepository(final String[] attr) {
+		super(attr);
+		this.setResponseEncoding("UTF-8");
+	}
+
+	/**
+	 * Create instance.
+	 * @param attr attributes
+	 * @param encoding encoding
+	 */
+	public CompactBinContentRepository(final String[] attr, final String encoding) {
+		super(attr);
+		this.setResponseEncoding(encoding);
+	}
+
+	/**
+	 * Create instance.
+	 * @param attr attributes
+	 * @param encoding encoding
+	 * @param options options
+	 */
+	public CompactBinContentRepository(final String[] attr, final String encoding, final String[] options) {
+		super(attr, encoding, options);
+	}
+
+	/**
+	 * Returns contenttype {@link CompactBeanCodec#CONTENT_TYPE}.
+	 * @return contenttype
+	 */
+	public String getContentType() {
+		return CompactBeanCodec.CONTENT_TYPE;
+	}
+
+	/**
+	 * Respond with Error.
+	 * @param stream stream
+	 * @param ex exception
+	 * @param isDebug true to write the stack trace
+	 */
+	public void respondWithError(final OutputStream stream, final CRException ex, final boolean isDebug) {
+		CRError e = new CRError(ex);
+		if (!isDebug) {
+			e.setStringStackTrace(null);
+		}
+		try {
+			OutputStream out = new BufferedOutputStream(stream);
+			CompactBeanCodec.writeError(e, out);
+			out.flush();
+		} catch (IOException ioe) {
+			log.error("Unable to write error.", ioe);
+		}
+	}
+
+	/**
+	 * Writes objects to stream.
+	 * @param stream stream
+	 * @throws CRException if no objects were found
+	 */
+	public void toStream(final OutputStream stream) throws CRException {
+		if (this.resolvableColl.isEmpty()) {
+			//No Data Found
+			throw new CRException("NoDataFound", "Data could not be found.", CRException.ERRORTYPE.NO_DATA_FOUND);
+		}
+		try {
+			OutputStream out = new BufferedOutputStream(stream);
+			CompactBeanCodec.writeBeans(this.resolvableColl, out);
+			out.flush();
+		} catch (IOException e) {
+			log.error("Unable to write objects.", e);
+		}
+	}
+
+	public void writeStreamStart(final OutputStream stream) throws CRException {
+		try {
+			streamOut = new BufferedOutputStream(stream);
+			codec = CompactBeanCodec.startWriting(streamOut);
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
+
+	public void writeStreamObject(final CRResolvableBean resolvableBean) throws CRException {
+		try {
+			codec.writeBeanRecord(resolvableBean);
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
+
+	public void writeStreamEnd() throws CRException {
+		try {
+			codec.endWriting();
+			streamOut.close();
+		} catch (IOException e) {
+			throw new CRException(e);
+		} finally {
+			codec = null;
+			streamOut = null;
+		}
+	}
+
+	public void flushStream() throws CRException {
+		try {
+			streamOut.flush();
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
+}
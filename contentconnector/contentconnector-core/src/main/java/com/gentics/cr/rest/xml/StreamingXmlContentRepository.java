@@ -0,0 +1,99 @@
+package com.gentics.cr.rest.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.exceptions.CRException;
+import com.gentics.cr.rest.StreamingContentRepository;
+
+/**
+ * {@link XmlContentRepository} writing the objects to the stream while they
+ * are produced. The document is the same as written by
+ * {@link XmlContentRepository#toStream(OutputStream)}. The streaming is not
+ * part of {@link XmlContentRepository} itself because its subclasses write
+ * their own documents in toStream.
+ */
+public class StreamingXmlContentRepository extends XmlContentRepository implements StreamingContentRepository {
+
+	/**
+	 * Serial id.
+	 */
+	private static final long serialVersionUID = 2871650436512307844L;
+
+	/**
+	 * XML writer of the document currently streamed.
+	 */
+	private transient XMLStreamWriter writer;
+
+	/**
+	 * Create new instance with UTF-8 as encoding.
+	 * @param attr attributes
+	 */
+	public StreamingXmlContentRepository(final String[] attr) {
+		super(attr);
+	}
+
+	/**
+	 * Create new instance.
+	 * @param attr attributes
+	 * @param encoding response encoding
+	 */
+	public StreamingXmlContentRepository(final String[] attr, final String encoding) {
+		super(attr, encoding);
+	}
+
+	/**
+	 * Create new instance.
+	 * @param attr attributes
+	 * @param encoding response encoding
+	 * @param options options
+	 */
+	public StreamingXmlContentRepository(final String[] attr, final String encoding, final String[] options) {
+		super(attr, encoding, options);
+	}
+
+	public void writeStreamStart(final OutputStream stream) throws CRException {
+		try {
+			writer = startDocument(stream);
+		} catch (XMLStreamException e) {
+			throw new CRException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new CRException(e);
+		}
+	}
+
+	public void writeStreamObject(final CRResolvableBean resolvableBean) throws CRException {
+		try {
+			writeElement(writer, resolvableBean);
+		} catch (XMLStreamException e) {
+			throw new CRException(e);
+		}
+	}
+
+	public void writeStreamEnd() throws CRException {
+		try {
+			endDocument();
+		} catch (XMLStreamException e) {
+			throw new CRException(e);
+		} catch (IOException e) {
+			throw new CRException(e);
+		} finally {
+			writer = null;
+		}
+	}
+
+	public void flushStream() throws CRException {
+		try {
+			flushDocument();
+		} catch (XMLStreamException e) {
+			throw new CRException(e);
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
+}
@@ -1,9 +1,11 @@
 package com.gentics.cr.rest.xml;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
@@ -12,6 +14,9 @@ import java.util.Map.Entry;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -42,6 +47,27 @@ public class XmlContentRepository extends ContentRepository {
 	 */
 	private static final long serialVersionUID = -6929053170765114770L;
 
+	/**
+	 * Factory for the stream writers, the factory is thread safe once it is
+	 * configured.
+	 */
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	/**
+	 * End marker of a CDATA section.
+	 */
+	private static final String CDATA_END = "]]>";
+
+	/**
+	 * Writer of the document currently written.
+	 */
+	private transient Writer streamWriter;
+
+	/**
+	 * XML writer of the document currently written.
+	 */
+	private transient XMLStreamWriter xmlWriter;
+
 	/**
 	 * the root element in the xml code.
 	 */
@@ -169,7 +195,9 @@ public class XmlContentRepository extends ContentRepository {
 	}
 
 	/**
-	 * Write XML Elements to the specified stream.
+	 * Write XML Elements to the specified stream. The elements are written
+	 * with a {@link XMLStreamWriter} directly to the stream, the document is
+	 * not built in memory.
 	 * @param stream 
 	 * @throws CRException 
 	 */
@@ -178,31 +206,16 @@ public class XmlContentRepository extends ContentRepository {
 		if (this.resolvableColl.isEmpty()) {
 			//No Data Found
 			throw new CRException("NoDataFound", "Data could not be found.", ERRORTYPE.NO_DATA_FOUND);
-		} else {
-			//Elements found/status ok
-			this.rootElement.setAttribute("status", "ok");
-
-			for (Iterator<CRResolvableBean> it = this.resolvableColl.iterator(); it.hasNext();) {
-				CRResolvableBean crBean = it.next();
-
-				Element objElement = processElement(crBean);
-				this.rootElement.appendChild(objElement);
-			}
 		}
 
 		// output xml
 		try {
-			OutputStreamWriter wr = new OutputStreamWriter(stream, this.getResponseEncoding());
-
-			StreamResult strRes = new StreamResult(wr);
-			TransformerFactory.newInstance().newTransformer().transform(this.src, strRes);
-			wr.flush();
-			wr.close();
-		} catch (TransformerConfigurationException e) {
-			e.printStackTrace();
-		} catch (TransformerException e) {
-			e.printStackTrace();
-		} catch (TransformerFactoryConfigurationError e) {
+			XMLStreamWriter writer = startDocument(stream);
+			for (CRResolvableBean crBean : this.resolvableColl) {
+				writeElement(writer, crBean);
+			}
+			endDocument();
+		} catch (XMLStreamException e) {
 			e.printStackTrace();
 		} catch (UnsupportedEncodingException e) {
 			e.printStackTrace();
@@ -212,38 +225,87 @@ public class XmlContentRepository extends ContentRepository {
 	}
 
 	/**
-	 * Create an element from the provided bean.
-	 * @param crBean bean to transform into an xml element.
-	 * @return transformed element.
+	 * Flush the elements written so far to the stream.
+	 * @throws XMLStreamException if the elements cannot be written
+	 * @throws IOException if the stream cannot be flushed
+	 */
+	protected final void flushDocument() throws XMLStreamException, IOException {
+		xmlWriter.flush();
+		streamWriter.flush();
+	}
+
+	/**
+	 * Write the XML declaration and the start of the root element.
+	 * @param stream stream to write the document to
+	 * @return writer the objects are written to
+	 * @throws XMLStreamException if the start cannot be written
+	 * @throws UnsupportedEncodingException if the response encoding is not
+	 * supported
+	 */
+	protected final XMLStreamWriter startDocument(final OutputStream stream) throws XMLStreamException,
+			UnsupportedEncodingException {
+		streamWriter = new BufferedWriter(new OutputStreamWriter(stream, this.getResponseEncoding()));
+		xmlWriter = OUTPUT_FACTORY.createXMLStreamWriter(streamWriter);
+		xmlWriter.writeStartDocument(this.getResponseEncoding(), "1.0");
+		if (this.rootElement != null) {
+			xmlWriter.writeStartElement(this.rootElement.getTagName());
+		} else {
+			xmlWriter.writeStartElement("Contentrepository");
+		}
+		//Elements found/status ok
+		xmlWriter.writeAttribute("status", "ok");
+		return xmlWriter;
+	}
+
+	/**
+	 * Close the root element and the document and close the stream.
+	 * @throws XMLStreamException if the end cannot be written
+	 * @throws IOException if the stream cannot be closed
 	 */
-	private Element processElement(final CRResolvableBean crBean) {
-		Element objElement = doc.createElement("Object");
+	protected final void endDocument() throws XMLStreamException, IOException {
+		xmlWriter.writeEndElement();
+		xmlWriter.writeEndDocument();
+		xmlWriter.flush();
+		xmlWriter.close();
+		streamWriter.close();
+		xmlWriter = null;
+		streamWriter = null;
+	}
+
+	/**
+	 * Write the element of the provided bean.
+	 * @param writer writer to write the element to
+	 * @param crBean bean to write as xml element.
+	 * @throws XMLStreamException if the element cannot be written
+	 */
+	@SuppressWarnings("unchecked")
+	protected final void writeElement(final XMLStreamWriter writer, final CRResolvableBean crBean)
+			throws XMLStreamException {
+		writer.writeStartElement("Object");
 
-		objElement.setAttribute("contentid", "" + crBean.getContentid());
-		objElement.setAttribute("obj_id", "" + crBean.getObj_id());
-		objElement.setAttribute("obj_type", "" + crBean.getObj_type());
-		objElement.setAttribute("mother_id", crBean.getMother_id() == null ? "" : "" + crBean.getMother_id());
-		objElement.setAttribute("mother_type", crBean.getMother_type() == null ? "" : "" + crBean.getMother_type());
+		writer.writeAttribute("contentid", "" + crBean.getContentid());
+		writer.writeAttribute("obj_id", "" + crBean.getObj_id());
+		writer.writeAttribute("obj_type", "" + crBean.getObj_type());
+		writer.writeAttribute("mother_id", crBean.getMother_id() == null ? "" : "" + crBean.getMother_id());
+		writer.writeAttribute("mother_type", crBean.getMother_type() == null ? "" : "" + crBean.getMother_type());
 
 		if (crBean.getAttrMap() != null && !crBean.getAttrMap().isEmpty()) {
-			Element attrContainer = doc.createElement("attributes");
-			Iterator<String> bit = crBean.getAttrMap().keySet().iterator();
-			while (bit.hasNext()) {
-				String entry = bit.next();
+			writer.writeStartElement("attributes");
+			for (Entry<String, Object> attribute : crBean.getAttrMap().entrySet()) {
+				String entry = attribute.getKey();
 				if (!"".equals(entry)) {
-					Object bValue = crBean.getAttrMap().get(entry);
-					String value = "";
+					Object bValue = attribute.getValue();
 					if (bValue != null) {
-						if (!entry.equals("binarycontent") && (bValue.getClass().isArray() || bValue.getClass() == ArrayList.class)) {
+						if (!entry.equals("binarycontent")
+								&& (bValue.getClass().isArray() || bValue.getClass() == ArrayList.class)) {
 							Object[] arr;
 							if (bValue.getClass() == ArrayList.class) {
 								arr = ((ArrayList<Object>) bValue).toArray();
 							} else {
 								arr = (Object[]) bValue;
 							}
+							String value = "";
 							for (int i = 0; i < arr.length; i++) {
-								Element attrElement = doc.createElement(entry);
-								attrContainer.appendChild(attrElement);
 								if (arr[i].getClass() == String.class) {
 									value = (String) arr[i];
 								} else {
@@ -253,53 +315,44 @@ public class XmlContentRepository extends ContentRepository {
 										e.printStackTrace();
 									}
 								}
-								Text text = doc.createCDATASection(value);
-								attrElement.appendChild(text);
+								writer.writeStartElement(entry);
+								writeCData(writer, value);
+								writer.writeEndElement();
 							}
 						} else {
-							Element attrElement = doc.createElement(entry);
-							attrContainer.appendChild(attrElement);
-
-							valueToNode(doc, attrElement, entry, bValue);
-							
+							writer.writeStartElement(entry);
+							writeValue(writer, entry, bValue);
+							writer.writeEndElement();
 						}
-
 					} else {
-						Element attrElement = doc.createElement(entry);
-						attrContainer.appendChild(attrElement);
-
-						Text text = doc.createCDATASection(value);
-						attrElement.appendChild(text);
+						writer.writeStartElement(entry);
+						writeCData(writer, "");
+						writer.writeEndElement();
 					}
 				}
 			}
-			objElement.appendChild(attrContainer);
+			writer.writeEndElement();
 		}
 
 		if (crBean.getChildRepository() != null && crBean.getChildRepository().size() > 0) {
-			Element childContainer = doc.createElement("children");
-
-			for (Iterator<CRResolvableBean> it = crBean.getChildRepository().iterator(); it.hasNext();) {
-
-				CRResolvableBean chBean = it.next();
-
-				Element chElement = processElement(chBean);
-				childContainer.appendChild(chElement);
+			writer.writeStartElement("children");
+			for (CRResolvableBean chBean : crBean.getChildRepository()) {
+				writeElement(writer, chBean);
 			}
-
-			objElement.appendChild(childContainer);
+			writer.writeEndElement();
 		}
-		return objElement;
+		writer.writeEndElement();
 	}
 
 	/**
-	 * Convert the value to a XML Node.
-	 * @param d the current xml document.
-	 * @param attrElement attribute.
+	 * Write the value of an attribute.
+	 * @param writer writer to write the value to
 	 * @param entry attribute name
 	 * @param bValue value.
+	 * @throws XMLStreamException if the value cannot be written
 	 */
-	private void valueToNode(final Document d, final Element attrElement, final String entry, final Object bValue) {
+	private void writeValue(final XMLStreamWriter writer, final String entry, final Object bValue)
+			throws XMLStreamException {
 		String value = "";
 		if (entry.equals("binarycontent")) {
 			try {
@@ -312,36 +365,49 @@ public class XmlContentRepository extends ContentRepository {
 					e.printStackTrace();
 				}
 			}
-		} else {
-			if (bValue instanceof String) {
-				value = (String) bValue;
-			} else if (bValue instanceof Map<?, ?>) {
-				Map<?, ?> map = (Map<?, ?>) bValue;
-				for (Entry<?, ?> e : map.entrySet()) {
-					String key = e.getKey().toString();
-					Object mValue = e.getValue();
-					if (mValue instanceof String[]) {
-						String[] arr = (String[]) mValue;
-						for (String s : arr) {
-							Element elem = doc.createElement(key);
-							Text text = doc.createCDATASection(s);
-							elem.appendChild(text);
-							attrElement.appendChild(elem);
-						}
-						return;
-					} else {
-						Element elem = doc.createElement(key);
-						Text text = doc.createCDATASection(mValue.toString());
-						elem.appendChild(text);
-						attrElement.appendChild(elem);
-						return;
+		} else if (bValue instanceof String) {
+			value = (String) bValue;
+		} else if (bValue instanceof Map<?, ?>) {
+			// only the first entry of a map is written
+			Iterator<? extends Entry<?, ?>> it = ((Map<?, ?>) bValue).entrySet().iterator();
+			if (it.hasNext()) {
+				Entry<?, ?> e = it.next();
+				String key = e.getKey().toString();
+				Object mValue = e.getValue();
+				if (mValue instanceof String[]) {
+					for (String s : (String[]) mValue) {
+						writer.writeStartElement(key);
+						writeCData(writer, s);
+						writer.writeEndElement();
 					}
+				} else {
+					writer.writeStartElement(key);
+					writeCData(writer, mValue.toString());
+					writer.writeEndElement();
 				}
-			} else {
-				value = bValue.toString();
+				return;
 			}
+		} else {
+			value = bValue.toString();
+		}
+		writeCData(writer, value);
+	}
+
+	/**
+	 * Write a CDATA section. Like the DOM serializer the section is split if
+	 * the text contains the end marker of a CDATA section.
+	 * @param writer writer to write the section to
+	 * @param text text of the section
+	 * @throws XMLStreamException if the section cannot be written
+	 */
+	private static void writeCData(final XMLStreamWriter writer, final String text) throws XMLStreamException {
+		int start = 0;
+		int end = text.indexOf(CDATA_END);
+		while (end >= 0) {
+			writer.writeCData(text.substring(start, end + 2));
+			start = end + 2;
+			end = text.indexOf(CDATA_END, start);
 		}
-		Text text = doc.createCDATASection(value);
-		attrElement.appendChild(text);
+		writer.writeCData(text.substring(start));
 	}
 }
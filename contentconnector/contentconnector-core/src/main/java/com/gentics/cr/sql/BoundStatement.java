@@ -0,0 +1,180 @@
+package com.gentics.cr.sql;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SQL statement with the literals of the where clause replaced by bind
+ * parameters. Statements that differ only in their literals share the same
+ * SQL string, so the database and the statement cache of the connection pool
+ * can reuse the parsed statement.
+ */
+public final class BoundStatement {
+
+	/**
+	 * SQL with placeholders.
+	 */
+	private final String sql;
+
+	/**
+	 * values of the placeholders.
+	 */
+	private final List<Object> parameters;
+
+	/**
+	 * Create a new bound statement.
+	 * @param sql SQL with placeholders
+	 * @param parameters values of the placeholders
+	 */
+	private BoundStatement(final String sql, final List<Object> parameters) {
+		this.sql = sql;
+		this.parameters = Collections.unmodifiableList(parameters);
+	}
+
+	/**
+	 * Replace the string and number literals of a statement with bind
+	 * parameters. Strings may be quoted with single or double quotes, quotes
+	 * are escaped by doubling them or with a backslash.
+	 * @param statement SQL statement with literals
+	 * @return bound statement
+	 */
+	public static BoundStatement bind(final String statement) {
+		StringBuilder sql = new StringBuilder(statement.length());
+		List<Object> parameters = new ArrayList<Object>();
+		int length = statement.length();
+		int pos = 0;
+		while (pos < length) {
+			char c = statement.charAt(pos);
+			if (c == '\'' || c == '"') {
+				StringBuilder value = new StringBuilder();
+				int end = readString(statement, pos, value);
+				if (end < 0) {
+					// unterminated string, leave it to the database
+					sql.append(statement.substring(pos));
+					break;
+				}
+				sql.append('?');
+				parameters.add(value.toString());
+				pos = end;
+			} else if (Character.isDigit(c) && (pos == 0 || !isIdentifierPart(statement.charAt(pos - 1)))) {
+				int end = pos;
+				while (end < length && (Character.isDigit(statement.charAt(end)) || statement.charAt(end) == '.')) {
+					end++;
+				}
+				String number = statement.substring(pos, end);
+				Object value = toNumber(number);
+				if (value == null || end < length && isIdentifierPart(statement.charAt(end))) {
+					sql.append(number);
+				} else {
+					sql.append('?');
+					parameters.add(value);
+				}
+				pos = end;
+			} else {
+				sql.append(c);
+				pos++;
+			}
+		}
+		return new BoundStatement(sql.toString(), parameters);
+	}
+
+	/**
+	 * @return SQL with placeholders
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return values of the placeholders
+	 */
+	public List<Object> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Prepare the statement and set its parameters.
+	 * @param conn connection to prepare the statement with
+	 * @return prepared statement, the caller has to close it
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(final Connection conn) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		try {
+			for (int i = 0; i < parameters.size(); i++) {
+				stmt.setObject(i + 1, parameters.get(i));
+			}
+		} catch (SQLException e) {
+			stmt.close();
+			throw e;
+		}
+		return stmt;
+	}
+
+	@Override
+	public String toString() {
+		return sql + " " + parameters;
+	}
+
+	/**
+	 * Read a quoted string.
+	 * @param statement statement containing the string
+	 * @param start position of the opening quote
+	 * @param value buffer the unquoted value is appended to
+	 * @return position after the closing quote or -1 if the string is not
+	 * terminated
+	 */
+	private static int readString(final String statement, final int start, final StringBuilder value) {
+		char quote = statement.charAt(start);
+		int pos = start + 1;
+		while (pos < statement.length()) {
+			char c = statement.charAt(pos);
+			if (c == '\\' && pos + 1 < statement.length()) {
+				value.append(statement.charAt(pos + 1));
+				pos += 2;
+			} else if (c == quote) {
+				if (pos + 1 < statement.length() && statement.charAt(pos + 1) == quote) {
+					value.append(quote);
+					pos += 2;
+				} else {
+					return pos + 1;
+				}
+			} else {
+				value.append(c);
+				pos++;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param number number literal
+	 * @return value of the literal or null if it is not a valid number
+	 */
+	private static Object toNumber(final String number) {
+		try {
+			if (number.indexOf('.') < 0) {
+				return Long.valueOf(number);
+			}
+			return new BigDecimal(number);
+		} catch (NumberFormatException e) {
+			if (number.indexOf('.') < 0) {
+				return new BigDecimal(number);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * @param c character
+	 * @return true if the character can be part of an identifier
+	 */
+	private static boolean isIdentifierPart(final char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+	}
+}
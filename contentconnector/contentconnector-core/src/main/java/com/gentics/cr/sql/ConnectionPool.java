@@ -0,0 +1,282 @@
+package com.gentics.cr.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.dbcp.ConnectionFactory;
+import org.apache.commons.dbcp.DriverManagerConnectionFactory;
+import org.apache.commons.dbcp.PoolableConnectionFactory;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool.impl.GenericKeyedObjectPoolFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.apache.log4j.Logger;
+
+import com.gentics.cr.monitoring.MonitorFactory;
+import com.gentics.cr.monitoring.UseCase;
+
+/**
+ * JDBC connection pool of one configuration. Connections are borrowed
+ * directly from the pool, a caller waits at most the configured time for a
+ * connection before the request fails. The pool counts the acquisitions, the
+ * time spent waiting for connections and the timeouts.
+ */
+public final class ConnectionPool {
+
+	/**
+	 * Log4j logger for error and debug messages.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class);
+
+	/**
+	 * Datasource handle property for the maximum number of active connections.
+	 */
+	private static final String MAX_ACTIVE_KEY = "pooling.maxactive";
+
+	/**
+	 * Datasource handle property for the maximum number of idle connections.
+	 */
+	private static final String MAX_IDLE_KEY = "pooling.maxidle";
+
+	/**
+	 * Datasource handle property for the maximum time in milliseconds to wait
+	 * for a connection.
+	 */
+	private static final String MAX_WAIT_KEY = "pooling.maxwait";
+
+	/**
+	 * Datasource handle property for the maximum number of cached prepared
+	 * statements per connection.
+	 */
+	private static final String MAX_STATEMENTS_KEY = "pooling.maxopenpreparedstatements";
+
+	/**
+	 * Default maximum time in milliseconds to wait for a connection.
+	 */
+	private static final int DEFAULT_MAX_WAIT = 10000;
+
+	/**
+	 * Default maximum number of cached prepared statements per connection.
+	 */
+	private static final int DEFAULT_MAX_STATEMENTS = 100;
+
+	/**
+	 * name of the pool.
+	 */
+	private final String name;
+
+	/**
+	 * pool of the connections.
+	 */
+	private final GenericObjectPool pool;
+
+	/**
+	 * maximum time in milliseconds to wait for a connection.
+	 */
+	private final long maxWait;
+
+	/**
+	 * number of acquired connections.
+	 */
+	private final AtomicLong acquisitions = new AtomicLong();
+
+	/**
+	 * number of requests that timed out waiting for a connection.
+	 */
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * total time in nanoseconds spent waiting for connections.
+	 */
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	/**
+	 * longest time in nanoseconds spent waiting for a connection.
+	 */
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/**
+	 * Create a new pool.
+	 * @param name name of the pool
+	 * @param pool pool of the connections
+	 * @param maxWait maximum time in milliseconds to wait for a connection
+	 */
+	private ConnectionPool(final String name, final GenericObjectPool pool, final long maxWait) {
+		this.name = name;
+		this.pool = pool;
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Create the pool of a configuration. The pool is sized with the
+	 * datasource handle properties pooling.maxactive (default 8),
+	 * pooling.maxidle (default 8) and pooling.maxwait (milliseconds, default
+	 * 10000, -1 waits until a connection is available). Prepared statements are
+	 * cached per connection, at most pooling.maxopenpreparedstatements (default
+	 * 100) per connection, 0 disables the cache.
+	 * @param name name of the pool
+	 * @param connectionURI jdbc url of the database
+	 * @param props datasource handle properties
+	 * @return created pool
+	 */
+	static ConnectionPool create(final String name, final String connectionURI, final Properties props) {
+		int maxActive = getInt(props, MAX_ACTIVE_KEY, GenericObjectPool.DEFAULT_MAX_ACTIVE);
+		int maxIdle = getInt(props, MAX_IDLE_KEY, GenericObjectPool.DEFAULT_MAX_IDLE);
+		long maxWait = getInt(props, MAX_WAIT_KEY, DEFAULT_MAX_WAIT);
+		int maxStatements = getInt(props, MAX_STATEMENTS_KEY, DEFAULT_MAX_STATEMENTS);
+
+		GenericObjectPool connectionPool = new GenericObjectPool(null, maxActive,
+				GenericObjectPool.WHEN_EXHAUSTED_BLOCK, maxWait, maxIdle);
+		connectionPool.setTestOnBorrow(Boolean.parseBoolean(props.getProperty("pooling.testOnBorrow")));
+
+		ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(connectionURI, null);
+
+		// cache the prepared statements of each connection
+		KeyedObjectPoolFactory statementPoolFactory = null;
+		if (maxStatements > 0) {
+			statementPoolFactory = new GenericKeyedObjectPoolFactory(null, -1,
+					GenericKeyedObjectPool.WHEN_EXHAUSTED_FAIL, 0, 1, maxStatements);
+		}
+
+		// registers itself as factory of the connection pool
+		new PoolableConnectionFactory(connectionFactory, connectionPool, statementPoolFactory,
+				props.getProperty("pooling.validationQuery"), false, true);
+
+		LOGGER.debug("Connection pool for " + name + " has been set up (maxActive: " + maxActive + ", maxIdle: "
+				+ maxIdle + ", maxWait: " + maxWait + ", maxOpenPreparedStatements: " + maxStatements + ").");
+		return new ConnectionPool(name, connectionPool, maxWait);
+	}
+
+	/**
+	 * Borrow a connection from the pool. Closing the connection returns it to
+	 * the pool.
+	 * @return connection
+	 * @throws SQLException if no connection is available within the maximum
+	 * wait time or a new connection cannot be opened
+	 */
+	public Connection getConnection() throws SQLException {
+		UseCase borrowCase = MonitorFactory.startUseCase("ConnectionPool.getConnection(" + name + ")");
+		long start = System.nanoTime();
+		try {
+			Connection conn = (Connection) pool.borrowObject();
+			acquisitions.incrementAndGet();
+			return conn;
+		} catch (NoSuchElementException e) {
+			timeouts.incrementAndGet();
+			throw new SQLException("Timeout waiting " + maxWait + " ms for a connection of pool " + name
+					+ " (active: " + pool.getNumActive() + ").");
+		} catch (SQLException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLException("Could not get a connection of pool " + name + ".", e);
+		} finally {
+			long waited = System.nanoTime() - start;
+			waitNanos.addAndGet(waited);
+			long max = maxWaitNanos.get();
+			while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+				max = maxWaitNanos.get();
+			}
+			borrowCase.stop();
+		}
+	}
+
+	/**
+	 * Close the pool and all idle connections.
+	 */
+	void close() {
+		try {
+			pool.close();
+		} catch (Exception e) {
+			LOGGER.error("Could not close connection pool " + name, e);
+		}
+	}
+
+	/**
+	 * @return the underlying object pool
+	 */
+	GenericObjectPool getObjectPool() {
+		return pool;
+	}
+
+	/**
+	 * @return name of the pool
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of connections currently borrowed from the pool
+	 */
+	public int getNumActive() {
+		return pool.getNumActive();
+	}
+
+	/**
+	 * @return number of idle connections in the pool
+	 */
+	public int getNumIdle() {
+		return pool.getNumIdle();
+	}
+
+	/**
+	 * @return number of connections acquired from the pool
+	 */
+	public long getAcquisitions() {
+		return acquisitions.get();
+	}
+
+	/**
+	 * @return number of requests that timed out waiting for a connection
+	 */
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	/**
+	 * @return average time in milliseconds spent waiting for a connection
+	 */
+	public double getAverageWaitMillis() {
+		long count = acquisitions.get() + timeouts.get();
+		if (count == 0) {
+			return 0;
+		}
+		return waitNanos.get() / 1000000d / count;
+	}
+
+	/**
+	 * @return longest time in milliseconds spent waiting for a connection
+	 */
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1000000d;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool " + name + " (active: " + getNumActive() + ", idle: " + getNumIdle()
+				+ ", acquisitions: " + getAcquisitions() + ", timeouts: " + getTimeouts() + ", average wait: "
+				+ getAverageWaitMillis() + " ms, max wait: " + getMaxWaitMillis() + " ms)";
+	}
+
+	/**
+	 * @param props properties
+	 * @param key key of the property
+	 * @param defaultValue default value
+	 * @return value of the property as int or the default value if it is not
+	 * set or not a number
+	 */
+	private static int getInt(final Properties props, final String key, final int defaultValue) {
+		String value = props.getProperty(key);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warn("Invalid value " + value + " for " + key + ", using " + defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+}
@@ -2,21 +2,20 @@ package com.gentics.cr.sql;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.util.HashMap;
+import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.commons.dbcp.ConnectionFactory;
-import org.apache.commons.dbcp.DriverManagerConnectionFactory;
-import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDriver;
-import org.apache.commons.pool.ObjectPool;
-import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.log4j.Logger;
 
 import com.gentics.cr.CRConfigUtil;
 
 /**
- * 
+ * Provides pooled JDBC connections, one {@link ConnectionPool} per
+ * configuration. Once the pool of a configuration is created, connections
+ * are acquired without a global lock.
  * Last changed: $Date: 2010-04-01 15:24:02 +0200 (Do, 01 Apr 2010) $
  * @version $Revision: 541 $
  * @author $Author: supnig@constantinopel.at $
@@ -24,32 +23,36 @@ import com.gentics.cr.CRConfigUtil;
  */
 public class ConnectionProvider {
 	private static Logger log = Logger.getLogger(ConnectionProvider.class);
-	private static HashMap<String, Boolean> connectionpools;
+
+	/**
+	 * Connection pools by configuration name.
+	 */
+	private static final ConcurrentMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<String, ConnectionPool>();
 
 	/**
 	  * Get a pooled JDBCConnection and create a new pool if none exists.
 	  * Such a direct connection can be used for custom request processors that require a pooled connection
-	  * 
+	  *
 	  * ATTENTION: The pool has to be released when the application shuts down using the releaseJDBCPool method
-	  * 
+	  *
 	  * @throws Exception
 	  */
-	public static synchronized Connection getPooledJDBCConnection(CRConfigUtil config) throws Exception {
-		//CREATE CONNECTION POOL
-		if (!isPoolCreated(config.getName())) {
-			Properties props = config.getDatasourceHandleProperties();
-
-			String connectionuri = props.getProperty("url");
-			String driverclass = props.getProperty("driverClass");
-			try {
-				Class.forName(driverclass);
-			} catch (ClassNotFoundException e) {
-				log.error("Could not load driver class.", e);
-			}
-			setupPoolingDriver(connectionuri, config.getName());
-			setPoolCreated(config.getName());
+	public static Connection getPooledJDBCConnection(CRConfigUtil config) throws Exception {
+		ConnectionPool pool = POOLS.get(config.getName());
+		if (pool == null) {
+			pool = createPool(config);
 		}
-		return DriverManager.getConnection("jdbc:apache:commons:dbcp:" + config.getName());
+		return pool.getConnection();
+	}
+
+	/**
+	 * Get the connection pool of a configuration, e.g. to read its metrics.
+	 * @param name name of the configuration
+	 * @return connection pool or null if no pool was created for the
+	 * configuration
+	 */
+	public static ConnectionPool getPool(final String name) {
+		return POOLS.get(name);
 	}
 
 	/**
@@ -57,83 +60,54 @@ public class ConnectionProvider {
 	   * @throws Exception
 	   */
 	public static synchronized void releaseJDBCPool(CRConfigUtil config) throws Exception {
-		if (isPoolCreated(config.getName())) {
+		ConnectionPool pool = POOLS.remove(config.getName());
+		if (pool != null) {
 			try {
-				PoolingDriver driver = (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
-				driver.closePool(config.getName());
-				setPoolReleased(config.getName());
+				getPoolingDriver().closePool(config.getName());
 				log.debug("Connection pool for " + config.getName() + " has been released.");
 			} catch (Exception e) {
 				log.error("Could not unload JDBCPool " + config.getName(), e);
+				pool.close();
 			}
 		} else {
 			log.error("JDBCPool " + config.getName() + " could not be found.");
 		}
 	}
 
-	private static synchronized void setupPoolingDriver(String connectionURI, String name) throws Exception {
-
-		//
-		// First, we'll need a ObjectPool that serves as the
-		// actual pool of connections.
-		//
-		// We'll use a GenericObjectPool instance, although
-		// any ObjectPool implementation will suffice.
-		//
-		ObjectPool connectionPool = new GenericObjectPool(null);
-
-		//
-		// Next, we'll create a ConnectionFactory that the
-		// pool will use to create Connections.
-		// We'll use the DriverManagerConnectionFactory,
-		// using the connect string passed in the command line
-		// arguments.
-		//
-		//ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(connectionURI, null);
-
-		//
-		// Now we'll create the PoolableConnectionFactory, which wraps
-		// the "real" Connections created by the ConnectionFactory with
-		// the classes that implement the pooling functionality.
-		//
-		/* @SuppressWarnings("unused")
-		PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory,
-				connectionPool, null, null, false, true);
-		*/
-		//
-		// Finally, we create the PoolingDriver itself...
-		//
-		Class.forName("org.apache.commons.dbcp.PoolingDriver");
-		PoolingDriver driver = (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
-
-		//
-		// ...and register our pool with it.
-		//
-		driver.registerPool(name, connectionPool);
-		log.debug("Connection pool for " + name + " has been set up.");
-		// Now we can just use the connect string "jdbc:apache:commons:dbcp:example"
-		// to access our pool of Connections.
-		//	    
-	}
-
-	private static synchronized boolean isPoolCreated(String name) {
-		if (connectionpools == null)
-			return false;
-		Boolean b = connectionpools.get(name);
-		if (b == null)
-			return false;
-		return b.booleanValue();
-	}
+	/**
+	 * Create the pool of a configuration. Only the creation and the release
+	 * of a pool are synchronized, acquiring connections from an existing pool
+	 * is not.
+	 * @param config configuration
+	 * @return pool of the configuration
+	 * @throws Exception if the pooling driver cannot be loaded
+	 */
+	private static synchronized ConnectionPool createPool(final CRConfigUtil config) throws Exception {
+		ConnectionPool pool = POOLS.get(config.getName());
+		if (pool == null) {
+			Properties props = config.getDatasourceHandleProperties();
 
-	private static synchronized void setPoolCreated(String name) {
-		if (connectionpools == null)
-			connectionpools = new HashMap<String, Boolean>();
-		connectionpools.put(name, true);
+			String connectionuri = props.getProperty("url");
+			String driverclass = props.getProperty("driverClass");
+			try {
+				Class.forName(driverclass);
+			} catch (ClassNotFoundException e) {
+				log.error("Could not load driver class.", e);
+			}
+			pool = ConnectionPool.create(config.getName(), connectionuri, props);
+			// keep the pool available with the url jdbc:apache:commons:dbcp:<config name>
+			Class.forName("org.apache.commons.dbcp.PoolingDriver");
+			getPoolingDriver().registerPool(config.getName(), pool.getObjectPool());
+			POOLS.put(config.getName(), pool);
+		}
+		return pool;
 	}
 
-	private static synchronized void setPoolReleased(String name) {
-		if (connectionpools != null) {
-			connectionpools.remove(name);
-		}
+	/**
+	 * @return the dbcp pooling driver
+	 * @throws SQLException if the pooling driver is not registered
+	 */
+	private static PoolingDriver getPoolingDriver() throws SQLException {
+		return (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
 	}
 }
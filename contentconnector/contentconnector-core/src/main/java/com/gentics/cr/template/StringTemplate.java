@@ -1,5 +1,6 @@
 package com.gentics.cr.template;
 
+import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -47,14 +48,33 @@ public class StringTemplate implements ITemplate {
 	 * key.
 	 */
 	public StringTemplate(final String template) throws CRException {
+		this.source = template;
+		this.key = createKey(template);
+	}
+
+	/**
+	 * Create the key for a template source.
+	 * @param source velocity code of the template
+	 * @return hex encoded md5 hash of the source
+	 * @throws CRException if the MD5 algorithm is not found for generating the
+	 * key.
+	 */
+	public static String createKey(final String source) throws CRException {
 		try {
-			this.source = template;
 			MessageDigest digest = MessageDigest.getInstance("MD5");
-			digest.update(this.source.getBytes());
-			this.key = new String(digest.digest());
+			digest.update(source.getBytes("UTF-8"));
+			byte[] hash = digest.digest();
+			StringBuilder key = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xf, 16));
+				key.append(Character.forDigit(b & 0xf, 16));
+			}
+			return key.toString();
 		} catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
 			throw new CRException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new CRException(e);
 		}
 	}
 
@@ -2,17 +2,12 @@ package com.gentics.cr.template;
 
 import java.io.StringWriter;
 import java.util.HashMap;
-import java.util.Iterator;
 
 import org.apache.log4j.Logger;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
-import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
-import org.apache.velocity.runtime.resource.util.StringResourceRepository;
-import org.apache.velocity.runtime.resource.util.StringResourceRepositoryImpl;
 
 import com.gentics.cr.exceptions.CRException;
 
@@ -33,9 +28,9 @@ public class VelocityTemplateManager implements ITemplateManager {
 	private HashMap<String, Object> objectstoput;
 
 	/**
-	 * Templatecache.
+	 * Initial size of the writer a template is rendered to.
 	 */
-	private HashMap<String, Template> templates;
+	private static final int INITIAL_WRITER_SIZE = 1024;
 
 	/**
 	 * Create Instance.
@@ -44,7 +39,6 @@ public class VelocityTemplateManager implements ITemplateManager {
 	public VelocityTemplateManager(final String encoding) {
 		this.encoding = encoding;
 		this.objectstoput = new HashMap<String, Object>();
-		this.templates = new HashMap<String, Template>();
 	}
 
 	/**
@@ -57,36 +51,23 @@ public class VelocityTemplateManager implements ITemplateManager {
 	}
 
 	/**
-	 * implements {@link com.gentics.cr.template.ITemplateManager#render(String, String)}
+	 * implements {@link com.gentics.cr.template.ITemplateManager#render(String, String)}.
+	 * The compiled template is looked up by its source, the name is only used
+	 * for logging.
 	 */
 	public String render(String templateName, String templateSource) throws CRException {
 		String renderedTemplate = null;
 		long s1 = System.currentTimeMillis();
+		// templates can render other templates while they are merged (e.g.
+		// $nav.subtree), so every call needs its own objects and writer
+		HashMap<String, Object> objects = this.objectstoput;
+		this.objectstoput = new HashMap<String, Object>();
 
-		StringResourceRepository rep = StringResourceLoader.getRepository();
-		if (rep == null) {
-			rep = new StringResourceRepositoryImpl();
-			StringResourceLoader.setRepository(StringResourceLoader.REPOSITORY_NAME_DEFAULT, rep);
-		}
-		rep.setEncoding(this.encoding);
 		try {
+			Template template = VelocityTemplateManagerFactory.getCompiledTemplate(templateSource, this.encoding);
 
-			Template template = this.templates.get(templateName);
-			if (template == null) {
-				rep.putStringResource(templateName, templateSource);
-
-				template = Velocity.getTemplate(templateName);
-				rep.removeStringResource(templateName);
-				this.templates.put(templateName, template);
-			}
-
-			VelocityContext context = new VelocityContext();
-			Iterator<String> it = this.objectstoput.keySet().iterator();
-			while (it.hasNext()) {
-				String key = it.next();
-				context.put(key, this.objectstoput.get(key));
-			}
-			StringWriter ret = new StringWriter();
+			VelocityContext context = new VelocityContext(objects);
+			StringWriter ret = new StringWriter(INITIAL_WRITER_SIZE);
 			template.merge(context, ret);
 			renderedTemplate = ret.toString();
 		} catch (ResourceNotFoundException e) {
@@ -95,10 +76,9 @@ public class VelocityTemplateManager implements ITemplateManager {
 			throw new CRException(e);
 		} catch (Exception e) {
 			throw new CRException(e);
-		} finally {
-			this.objectstoput = new HashMap<String, Object>();
 		}
-		log.debug("Velocity has been rendered in " + (System.currentTimeMillis() - s1) + "ms");
+		log.debug("Velocity template " + templateName + " has been rendered in " + (System.currentTimeMillis() - s1)
+				+ "ms");
 		return renderedTemplate;
 	}
 
@@ -6,16 +6,14 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Properties;
 
-import org.apache.jcs.JCS;
-import org.apache.jcs.access.exception.CacheException;
 import org.apache.log4j.Logger;
 import org.apache.velocity.Template;
 import org.apache.velocity.app.Velocity;
-import org.apache.velocity.exception.ParseErrorException;
-import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
 import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.apache.velocity.runtime.resource.util.StringResourceRepositoryImpl;
 
+import com.gentics.cr.util.BoundedCache;
 import com.gentics.cr.util.CRUtil;
 
 /**
@@ -31,9 +29,18 @@ public class VelocityTemplateManagerFactory {
 
 	private static final String VELOCITYMACRO_FILENAME = "velocitymacros.vm";
 
-	private static boolean configured = false;
+	private static volatile boolean configured = false;
 
-	private static JCS cache;
+	/**
+	 * Maximum number of compiled templates kept in memory.
+	 */
+	private static final int TEMPLATE_CACHE_SIZE = 500;
+
+	/**
+	 * Compiled templates by encoding and md5 hash of their source.
+	 */
+	private static final BoundedCache<String, Template> TEMPLATES = new BoundedCache<String, Template>(
+			TEMPLATE_CACHE_SIZE);
 
 	/**
 	 * Get a configured VelocityTemplateManager.
@@ -43,28 +50,33 @@ public class VelocityTemplateManagerFactory {
 	 * #getConfiguredVelocityTemplateManagerInstance(String, String, String)}
 	 * @throws Exception
 	 */
-	public static synchronized VelocityTemplateManager getConfiguredVelocityTemplateManagerInstance(String encoding,
+	public static VelocityTemplateManager getConfiguredVelocityTemplateManagerInstance(String encoding,
 			String macropath) throws Exception {
 		return VelocityTemplateManagerFactory.getConfiguredVelocityTemplateManagerInstance(encoding, macropath, "");
 
 	}
 
 	/**
-	 * Get a configured VelocityTemplateManager.
+	 * Get a configured VelocityTemplateManager. Velocity is only configured
+	 * on the first call, later calls just create the (lightweight) manager.
 	 * @param encoding if null defaults to utf-8
 	 * @param macropath
 	 * @param propFile
 	 * @return new instance of {@link com.gentics.cr.template.VelocityTemplateManager} with the specified encoding.
 	 * @throws Exception
 	 */
-	public static synchronized VelocityTemplateManager getConfiguredVelocityTemplateManagerInstance(String encoding,
+	public static VelocityTemplateManager getConfiguredVelocityTemplateManagerInstance(String encoding,
 			String macropath, String propFile) throws Exception {
 		if (encoding == null) {
 			encoding = "utf-8";
 		}
 		if (!configured) {
-			configure(encoding, macropath, propFile);
-			configured = true;
+			synchronized (VelocityTemplateManagerFactory.class) {
+				if (!configured) {
+					configure(encoding, macropath, propFile);
+					configured = true;
+				}
+			}
 		}
 		return (new VelocityTemplateManager(encoding));
 
@@ -78,48 +90,47 @@ public class VelocityTemplateManagerFactory {
 	 * @return template (either a cached one, found using the key: name + source or a newly created one).
 	 */
 	public static Template getTemplate(String name, String source, String encoding) {
-		if (encoding == null)
-			encoding = "utf-8";
 		try {
-
-			cache = JCS.getInstance("gentics-cr-velocitytemplates");
-			log.debug("Initialized cache zone for \"gentics-cr-velocitytemplates\".");
-
-		} catch (CacheException e) {
-
-			log.warn("Could not initialize Cache for Velocity templates.", e);
+			return getCompiledTemplate(source, encoding);
+		} catch (Exception e) {
+			log.warn("Could not create Velocity Template " + name + ".", e);
 		}
+		return null;
+	}
 
-		Template template = null;
-
-		if (cache != null) {
-			template = (Template) cache.get(name + source);
+	/**
+	 * Get the compiled template for a template source. Compiled templates are
+	 * cached by the md5 hash of their source, so templates rendered under the
+	 * same name with different sources do not replace each other and the
+	 * same source is only parsed once.
+	 * @param source velocity code of the template
+	 * @param encoding encoding as string or null => defaults to utf-8
+	 * @return compiled template
+	 * @throws Exception if the template cannot be parsed
+	 */
+	public static Template getCompiledTemplate(final String source, String encoding) throws Exception {
+		if (encoding == null) {
+			encoding = "utf-8";
 		}
-
+		String key = encoding + "-" + StringTemplate.createKey(source);
+		Template template = TEMPLATES.get(key);
 		if (template == null) {
 			StringResourceRepository rep = StringResourceLoader.getRepository();
-			rep.setEncoding(encoding);
-			rep.putStringResource(name, source);
-			try {
-				template = Velocity.getTemplate(name);
-			} catch (ResourceNotFoundException e1) {
-				log.warn("Could not create Velocity Template.", e1);
-			} catch (ParseErrorException e1) {
-				log.warn("Could not create Velocity Template.", e1);
-			} catch (Exception e1) {
-				log.warn("Could not create Velocity Template.", e1);
+			if (rep == null) {
+				rep = new StringResourceRepositoryImpl();
+				StringResourceLoader.setRepository(StringResourceLoader.REPOSITORY_NAME_DEFAULT, rep);
 			}
-			rep.removeStringResource(name);
-			if (cache != null) {
-				try {
-					cache.put(name + source, template);
-				} catch (CacheException e) {
-					log.warn("Could not put Velocity Template to cache.");
-					e.printStackTrace();
-				}
+			// the key is unique for the source so concurrent compilations of
+			// other templates cannot interfere
+			rep.putStringResource(key, source, encoding);
+			try {
+				template = Velocity.getTemplate(key, encoding);
+			} finally {
+				rep.removeStringResource(key);
 			}
+			template = TEMPLATES.putIfAbsent(key, template);
 		}
-		return (template);
+		return template;
 	}
 
 	private static void configure(String encoding, String macropath) throws Exception {
@@ -0,0 +1,107 @@
+package com.gentics.cr.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe in memory cache with a maximum number of entries. When the
+ * maximum is exceeded the oldest entries are evicted first. Meant for small
+ * caches of objects that are expensive to create but cannot be serialized
+ * into a JCS region (e.g. compiled templates or parsed expressions).
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class BoundedCache<K, V> {
+
+	/**
+	 * cached entries.
+	 */
+	private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<K, V>();
+
+	/**
+	 * keys in the order they were added.
+	 */
+	private final Queue<K> order = new ConcurrentLinkedQueue<K>();
+
+	/**
+	 * maximum number of entries.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Create a new cache.
+	 * @param maxSize maximum number of entries
+	 */
+	public BoundedCache(final int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * @param key key of the entry
+	 * @return cached value or null
+	 */
+	public V get(final K key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Add an entry to the cache if there is no entry for the key yet.
+	 * @param key key of the entry
+	 * @param value value to cache
+	 * @return the value that is cached for the key, which is the given value
+	 * unless another thread added an entry for the key before
+	 */
+	public V putIfAbsent(final K key, final V value) {
+		V existing = entries.putIfAbsent(key, value);
+		if (existing != null) {
+			return existing;
+		}
+		order.add(key);
+		while (entries.size() > maxSize) {
+			K eldest = order.poll();
+			if (eldest == null) {
+				break;
+			}
+			entries.remove(eldest);
+		}
+		return value;
+	}
+
+	/**
+	 * Replace the entry for a key if it is still mapped to the given value.
+	 * An entry that was evicted in the meantime is not added again.
+	 * @param key key of the entry
+	 * @param oldValue value expected to be cached
+	 * @param newValue value to cache instead
+	 * @return true if the value was replaced
+	 */
+	public boolean replace(final K key, final V oldValue, final V newValue) {
+		return entries.replace(key, oldValue, newValue);
+	}
+
+	/**
+	 * @param key key of the entry to remove
+	 */
+	public void remove(final K key) {
+		if (entries.remove(key) != null) {
+			order.remove(key);
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		entries.clear();
+		order.clear();
+	}
+
+	/**
+	 * @return number of cached entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+}
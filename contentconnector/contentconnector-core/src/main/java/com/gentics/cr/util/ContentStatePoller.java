@@ -0,0 +1,142 @@
+package com.gentics.cr.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.gentics.api.lib.datasource.Datasource;
+import com.gentics.api.lib.datasource.Datasource.Sorting;
+import com.gentics.api.lib.datasource.DatasourceException;
+import com.gentics.api.lib.exception.ParserException;
+import com.gentics.api.lib.expressionparser.ExpressionParserException;
+import com.gentics.api.lib.expressionparser.filtergenerator.DatasourceFilter;
+import com.gentics.api.lib.resolving.Resolvable;
+import com.gentics.api.portalnode.connector.PortalConnectorFactory;
+import com.gentics.cr.monitoring.MonitorFactory;
+import com.gentics.cr.monitoring.UseCase;
+
+/**
+ * Polls the state of the objects in a content repository to detect changes
+ * without loading the objects. The state consists of the number of objects
+ * and the youngest updatetimestamp, the number of objects changes when
+ * objects are removed. The datasource is polled at most once per interval,
+ * callers that find another thread polling get the last state without
+ * waiting.
+ */
+public class ContentStatePoller {
+
+	/**
+	 * Log4j logger for error and debug messages.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(ContentStatePoller.class);
+
+	/**
+	 * Attribute that changes whenever an object is changed.
+	 */
+	public static final String UPDATEATTRIBUTE = "updatetimestamp";
+
+	/**
+	 * rule of the polled objects.
+	 */
+	private final String rule;
+
+	/**
+	 * poll interval in milliseconds.
+	 */
+	private final long interval;
+
+	/**
+	 * last polled state, null before the first poll.
+	 */
+	private volatile String state;
+
+	/**
+	 * time of the last poll.
+	 */
+	private volatile long lastPoll = 0;
+
+	/**
+	 * true while a thread polls the datasource.
+	 */
+	private final AtomicBoolean polling = new AtomicBoolean(false);
+
+	/**
+	 * Create a new poller.
+	 * @param rule rule of the objects to poll
+	 * @param interval poll interval in milliseconds
+	 */
+	public ContentStatePoller(final String rule, final long interval) {
+		this.rule = rule;
+		this.interval = interval;
+	}
+
+	/**
+	 * Get the state of the objects. The datasource is polled if the interval
+	 * has elapsed and no other thread is polling it, a failed poll is not
+	 * repeated before the interval has elapsed again.
+	 * @param ds datasource to poll
+	 * @return state of the objects, null if the datasource was not polled
+	 * successfully yet
+	 * @throws DatasourceException if the datasource cannot be polled
+	 */
+	public String getState(final Datasource ds) throws DatasourceException {
+		if (System.currentTimeMillis() - lastPoll > interval && polling.compareAndSet(false, true)) {
+			try {
+				if (System.currentTimeMillis() - lastPoll > interval) {
+					try {
+						state = poll(ds, rule);
+					} finally {
+						lastPoll = System.currentTimeMillis();
+					}
+				}
+			} finally {
+				polling.set(false);
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Poll the state of the objects matching a rule.
+	 * @param ds datasource to poll
+	 * @param rule rule of the objects
+	 * @return number of objects and youngest updatetimestamp
+	 * @throws DatasourceException if the datasource cannot be polled or the
+	 * rule cannot be parsed
+	 */
+	public static String poll(final Datasource ds, final String rule) throws DatasourceException {
+		try {
+			return poll(ds, ds.createDatasourceFilter(PortalConnectorFactory.createExpression(rule)));
+		} catch (ParserException e) {
+			LOGGER.error("Cannot parse the rule " + rule, e);
+			throw new DatasourceException("Cannot parse the rule " + rule);
+		} catch (ExpressionParserException e) {
+			LOGGER.error("Cannot parse the rule " + rule, e);
+			throw new DatasourceException("Cannot parse the rule " + rule);
+		}
+	}
+
+	/**
+	 * Poll the state of the objects matching a filter.
+	 * @param ds datasource to poll
+	 * @param filter filter of the objects
+	 * @return number of objects and youngest updatetimestamp
+	 * @throws DatasourceException if the datasource cannot be polled
+	 */
+	public static String poll(final Datasource ds, final DatasourceFilter filter) throws DatasourceException {
+		UseCase pollCase = MonitorFactory.startUseCase("ContentStatePoller.poll");
+		try {
+			int count = ds.getCount(filter);
+			Collection<?> youngest = ds.getResult(filter, new String[] { UPDATEATTRIBUTE }, 0, 1,
+				new Sorting[] { new Sorting(UPDATEATTRIBUTE, Datasource.SORTORDER_DESC) });
+			Object timestamp = null;
+			if (youngest != null && !youngest.isEmpty()) {
+				timestamp = ((Resolvable) youngest.iterator().next()).get(UPDATEATTRIBUTE);
+			}
+			return count + "-" + timestamp;
+		} finally {
+			pollCase.stop();
+		}
+	}
+}
@@ -25,7 +25,7 @@ public class RepositoryFactory {
 
 		/**
 		 * RepositoryType for
-		 * {@link com.gentics.cr.rest.xml.XmlContentRepository}.
+		 * {@link com.gentics.cr.rest.xml.StreamingXmlContentRepository}.
 		 */
 		XML,
 		/**
@@ -66,7 +66,12 @@ public class RepositoryFactory {
 		 * RepositoryType for
 		 * {@link com.gentics.cr.rest.xml.CSSitemapContentRepository}.
 		 */
-		CSSITEMAP
+		CSSITEMAP,
+		/**
+		 * RepositoryType for
+		 * {@link com.gentics.cr.rest.javabin.CompactBinContentRepository}.
+		 */
+		CRBIN
 	}
 
 	/**
@@ -131,8 +136,9 @@ public class RepositoryFactory {
 			classmap.put(RepositoryType.PHP, com.gentics.cr.rest.php.PHPContentRepository.class);
 			classmap.put(RepositoryType.JAVAXML, com.gentics.cr.rest.javaxml.JavaXmlContentRepository.class);
 			classmap.put(RepositoryType.JAVABIN, com.gentics.cr.rest.javabin.JavaBinContentRepository.class);
+			classmap.put(RepositoryType.CRBIN, com.gentics.cr.rest.javabin.CompactBinContentRepository.class);
 			classmap.put(RepositoryType.VELOCITY, com.gentics.cr.rest.velocity.VelocityContentRepository.class);
-			classmap.put(RepositoryType.XML, com.gentics.cr.rest.xml.XmlContentRepository.class);
+			classmap.put(RepositoryType.XML, com.gentics.cr.rest.xml.StreamingXmlContentRepository.class);
 			classmap.put(RepositoryType.CSSITEMAP, com.gentics.cr.rest.xml.CSSitemapContentRepository.class);
 			classmap.put(RepositoryType.MNOGOSEARCHXML, com.gentics.cr.rest.xml.MnogosearchXmlContentRepository.class);
 
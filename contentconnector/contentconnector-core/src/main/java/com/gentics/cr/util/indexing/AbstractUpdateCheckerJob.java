@@ -16,6 +16,8 @@ import com.gentics.cr.CRConfigUtil;
 import com.gentics.cr.CRRequest;
 import com.gentics.cr.CRResolvableBean;
 import com.gentics.cr.RequestProcessor;
+import com.gentics.cr.events.ContentChangedEvent;
+import com.gentics.cr.events.EventManager;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.exceptions.WrongOrderException;
 import com.gentics.cr.monitoring.MonitorFactory;
@@ -325,6 +327,12 @@ public abstract class AbstractUpdateCheckerJob implements Runnable {
 		} finally {
 			objectsToUpdateCase.stop();
 		}
+		if (updateObjects != null && !updateObjects.isEmpty()) {
+			// the content repository was changed, let caches of request
+			// processors reading it know. The job does not know the names of
+			// their configurations, so all of them are notified.
+			EventManager.getInstance().fireEvent(new ContentChangedEvent(null));
+		}
 		return updateObjects;
 	}
 
@@ -0,0 +1,298 @@
+package com.gentics.cr.util.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response that compresses its body with the negotiated content coding.
+ * The body is buffered up to the threshold of the {@link ResponseCompression}
+ * and only compressed if it exceeds the threshold and its content type is
+ * compressible. Partial, not modified and already encoded responses are not
+ * compressed. The response type setter passes all calls to the wrapped
+ * response type setter, a Content-Length header is held back until it is
+ * known whether the body is compressed. The ETag of a compressed body gets
+ * the content coding as suffix, so it differs from the ETag of the identity
+ * body. If compression is enabled every response carries
+ * Vary: Accept-Encoding, also if it is not compressed, because a request with
+ * a different Accept-Encoding header could get a different body.
+ */
+public class CompressingResponse implements IResponseTypeSetter {
+
+	/**
+	 * Content-Length header.
+	 */
+	private static final String CONTENT_LENGTH = "Content-Length";
+
+	/**
+	 * ETag header.
+	 */
+	private static final String ETAG = "ETag";
+
+	/**
+	 * Vary header.
+	 */
+	private static final String VARY = "Vary";
+
+	/**
+	 * Compression settings.
+	 */
+	private final ResponseCompression compression;
+
+	/**
+	 * negotiated content coding, null if the response is not compressed.
+	 */
+	private String encoding;
+
+	/**
+	 * output stream of the wrapped response.
+	 */
+	private final OutputStream stream;
+
+	/**
+	 * wrapped response type setter.
+	 */
+	private final IResponseTypeSetter responsetypesetter;
+
+	/**
+	 * output stream of this response.
+	 */
+	private final OutputStream outputStream;
+
+	/**
+	 * content type of the response.
+	 */
+	private String contentType;
+
+	/**
+	 * Content-Length held back until the coding of the body is known.
+	 */
+	private String contentLength;
+
+	/**
+	 * ETag of the identity body, replaced when the body is compressed.
+	 */
+	private String etag;
+
+	/**
+	 * Create a new response.
+	 * @param compression compression settings
+	 * @param encoding negotiated content coding, null to not compress
+	 * @param stream output stream of the wrapped response
+	 * @param responsetypesetter wrapped response type setter
+	 */
+	CompressingResponse(final ResponseCompression compression, final String encoding, final OutputStream stream,
+			final IResponseTypeSetter responsetypesetter) {
+		this.compression = compression;
+		this.encoding = encoding;
+		this.stream = stream;
+		this.responsetypesetter = responsetypesetter;
+		if (compression.isEnabled()) {
+			responsetypesetter.setHeader(VARY, "Accept-Encoding");
+		}
+		if (encoding == null) {
+			outputStream = stream;
+		} else {
+			outputStream = new CompressingOutputStream();
+		}
+	}
+
+	/**
+	 * @return output stream the body of the response has to be written to
+	 */
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public void setContentType(final String type) {
+		this.contentType = type;
+		responsetypesetter.setContentType(type);
+	}
+
+	@Override
+	public void setResponseCode(final int responseCode) {
+		if (responseCode == 204 || responseCode == 206 || responseCode == 304) {
+			encoding = null;
+		}
+		responsetypesetter.setResponseCode(responseCode);
+	}
+
+	/**
+	 * Do not compress the response. Has to be called before the body is
+	 * written. Used for responses that are flushed while they are produced:
+	 * the {@link java.util.zip.GZIPOutputStream} of Java 6 cannot flush the
+	 * data compressed so far, so the flushes of a compressed response would
+	 * not reach the client.
+	 */
+	public void disableCompression() {
+		encoding = null;
+	}
+
+	@Override
+	public void setHeader(final String name, final String value) {
+		if (ETAG.equalsIgnoreCase(name)) {
+			etag = value;
+		}
+		if (CONTENT_LENGTH.equalsIgnoreCase(name) && encoding != null) {
+			contentLength = value;
+			return;
+		}
+		if ("Content-Range".equalsIgnoreCase(name) || "Content-Encoding".equalsIgnoreCase(name)) {
+			encoding = null;
+		}
+		responsetypesetter.setHeader(name, value);
+	}
+
+	/**
+	 * Write a binary compressed with the negotiated content coding. The
+	 * compressed binary is cached if the cache of the compression settings is
+	 * enabled.
+	 * @param key key of the binary, it has to change when the binary changes
+	 * (e.g. contentid and updatetimestamp)
+	 * @param content content of the binary
+	 * @return true if the compressed binary was written, false if the binary
+	 * is not compressed and has to be written to the output stream
+	 * @throws IOException if the binary cannot be written
+	 */
+	public boolean writeCompressed(final String key, final byte[] content) throws IOException {
+		if (encoding == null || content == null || content.length < compression.getThreshold()
+				|| !ResponseCompression.isCompressible(contentType) || !(outputStream instanceof CompressingOutputStream)
+				|| ((CompressingOutputStream) outputStream).isStarted()) {
+			return false;
+		}
+		byte[] compressed = compression.getCompressed(key, content, encoding);
+		setEncodingHeaders();
+		contentLength = null;
+		responsetypesetter.setHeader(CONTENT_LENGTH, Integer.toString(compressed.length));
+		((CompressingOutputStream) outputStream).writeEncoded(compressed);
+		return true;
+	}
+
+	/**
+	 * Set the headers of a compressed response.
+	 */
+	private void setEncodingHeaders() {
+		responsetypesetter.setHeader("Content-Encoding", encoding);
+		if (etag != null) {
+			responsetypesetter.setHeader(ETAG, getEncodedETag(etag, encoding));
+		}
+	}
+
+	/**
+	 * Get the ETag of a body compressed with a content coding. The compressed
+	 * body is a different representation than the identity body, so it must
+	 * not have the same strong ETag.
+	 * @param etag ETag of the identity body, e.g. "1000.1-1234"
+	 * @param encoding content coding
+	 * @return ETag of the compressed body, e.g. "1000.1-1234-gzip"
+	 */
+	public static String getEncodedETag(final String etag, final String encoding) {
+		if (etag.length() > 1 && etag.endsWith("\"")) {
+			return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+		}
+		return etag + "-" + encoding;
+	}
+
+	/**
+	 * Stream buffering the body until it is known whether it is compressed.
+	 */
+	private class CompressingOutputStream extends OutputStream {
+
+		/**
+		 * body buffered until the threshold is exceeded.
+		 */
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		/**
+		 * stream the body is written to once the coding is known.
+		 */
+		private OutputStream target;
+
+		/**
+		 * true if the stream is closed.
+		 */
+		private boolean closed;
+
+		/**
+		 * @return true if bytes of the body have been written
+		 */
+		boolean isStarted() {
+			return target != null || buffer.size() > 0;
+		}
+
+		/**
+		 * Write an already encoded body to the wrapped stream.
+		 * @param bytes encoded body
+		 * @throws IOException if the body cannot be written
+		 */
+		void writeEncoded(final byte[] bytes) throws IOException {
+			target = stream;
+			buffer = null;
+			stream.write(bytes);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			if (target == null) {
+				if (buffer.size() + len <= compression.getThreshold()) {
+					buffer.write(b, off, len);
+					return;
+				}
+				start(true);
+			}
+			target.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (closed) {
+				return;
+			}
+			if (target == null && encoding == null) {
+				// the response is not compressed, send the buffered bytes
+				start(false);
+			}
+			if (target != null) {
+				target.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (target == null) {
+				start(false);
+			}
+			target.close();
+		}
+
+		/**
+		 * Select the coding of the body and write the buffered bytes.
+		 * @param large true if the body exceeds the threshold
+		 * @throws IOException if the buffered bytes cannot be written
+		 */
+		private void start(final boolean large) throws IOException {
+			if (large && encoding != null && ResponseCompression.isCompressible(contentType)) {
+				setEncodingHeaders();
+				target = compression.compress(stream, encoding);
+			} else {
+				if (contentLength != null) {
+					responsetypesetter.setHeader(CONTENT_LENGTH, contentLength);
+				}
+				target = stream;
+			}
+			contentLength = null;
+			buffer.writeTo(target);
+			buffer = null;
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.gentics.cr.util.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jcs.JCS;
+import org.apache.jcs.access.exception.CacheException;
+import org.apache.log4j.Logger;
+
+import com.gentics.cr.CRConfig;
+import com.gentics.cr.rest.javabin.CompactBeanCodec;
+
+/**
+ * Compression settings of the responses of a configuration. Negotiates the
+ * content coding with the Accept-Encoding header of a request and wraps the
+ * response in a {@link CompressingResponse}. Compressed binaries can be kept
+ * in the cache region gentics-cr-&lt;config name&gt;-compressed, so they are
+ * only compressed once per update.
+ */
+public class ResponseCompression {
+
+	/**
+	 * Log4j logger for error and debug messages.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(ResponseCompression.class);
+
+	/**
+	 * Configuration key to enable the compression of responses. Defaults to
+	 * true, so existing configurations compress their responses unless they
+	 * set it to false.
+	 */
+	public static final String COMPRESSION_KEY = "response.compression";
+
+	/**
+	 * Configuration key for the minimum size in bytes of a compressed
+	 * response. Defaults to 1024.
+	 */
+	public static final String THRESHOLD_KEY = "response.compression.threshold";
+
+	/**
+	 * Configuration key for the compression level (1 fastest - 9 best).
+	 * Defaults to 6.
+	 */
+	public static final String LEVEL_KEY = "response.compression.level";
+
+	/**
+	 * Configuration key to enable the cache of compressed binaries. Defaults to
+	 * false.
+	 */
+	public static final String CACHE_KEY = "response.compression.cache";
+
+	/**
+	 * gzip content coding.
+	 */
+	public static final String GZIP = "gzip";
+
+	/**
+	 * deflate content coding.
+	 */
+	public static final String DEFLATE = "deflate";
+
+	/**
+	 * true if responses are compressed.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * minimum size in bytes of a compressed response.
+	 */
+	private final int threshold;
+
+	/**
+	 * compression level.
+	 */
+	private final int level;
+
+	/**
+	 * cache of compressed binaries, null if the cache is disabled.
+	 */
+	private JCS cache;
+
+	/**
+	 * Create the compression settings of a configuration.
+	 * @param config configuration
+	 */
+	public ResponseCompression(final CRConfig config) {
+		enabled = config.getBoolean(COMPRESSION_KEY, true);
+		threshold = Math.max(0, config.getInteger(THRESHOLD_KEY, 1024));
+		level = Math.min(Deflater.BEST_COMPRESSION, Math.max(Deflater.BEST_SPEED, config.getInteger(LEVEL_KEY, 6)));
+		if (enabled && config.getBoolean(CACHE_KEY, false)) {
+			try {
+				cache = JCS.getInstance("gentics-cr-" + config.getName() + "-compressed");
+				LOGGER.debug("Initialized cache zone for \"" + config.getName() + "-compressed\".");
+			} catch (CacheException e) {
+				LOGGER.warn("Could not initialize cache for compressed responses.", e);
+			}
+		}
+	}
+
+	/**
+	 * Wrap a response. The response is only compressed if the client accepts
+	 * a supported content coding.
+	 * @param acceptEncoding Accept-Encoding header of the request
+	 * @param stream output stream of the response
+	 * @param responsetypesetter response type setter of the response
+	 * @return wrapped response, its output stream and response type setter
+	 * have to be used instead of the given ones
+	 */
+	public CompressingResponse wrap(final String acceptEncoding, final OutputStream stream,
+			final IResponseTypeSetter responsetypesetter) {
+		String encoding = null;
+		if (enabled) {
+			encoding = negotiate(acceptEncoding);
+		}
+		return new CompressingResponse(this, encoding, stream, responsetypesetter);
+	}
+
+	/**
+	 * Select the content coding of a response. gzip is preferred over deflate
+	 * if both are accepted.
+	 * @param acceptEncoding Accept-Encoding header of the request
+	 * @return {@link #GZIP}, {@link #DEFLATE} or null if the response must not
+	 * be compressed
+	 */
+	public static String negotiate(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		boolean gzip = false;
+		boolean deflate = false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase();
+			boolean accepted = true;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						accepted = Float.parseFloat(param.substring(2).trim()) > 0;
+					} catch (NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			if (GZIP.equals(name) || "x-gzip".equals(name)) {
+				gzip = accepted;
+			} else if (DEFLATE.equals(name)) {
+				deflate = accepted;
+			} else if ("*".equals(name) && accepted) {
+				gzip = true;
+			}
+		}
+		if (gzip) {
+			return GZIP;
+		} else if (deflate) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	/**
+	 * @param contentType content type of a response, may include parameters
+	 * @return true if responses of the content type are worth compressing,
+	 * this includes the binary transfer formats read by the HTTP client
+	 * request processors
+	 */
+	public static boolean isCompressible(final String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		int semicolon = type.indexOf(';');
+		if (semicolon >= 0) {
+			type = type.substring(0, semicolon);
+		}
+		type = type.trim();
+		return type.startsWith("text/") || type.endsWith("+xml") || type.endsWith("+json")
+				|| type.equals("application/json") || type.equals("application/xml")
+				|| type.equals("application/javascript") || type.equals("application/x-javascript")
+				|| type.equals("application/x-php") || type.equals("application/x-java-serialized-object")
+				|| type.equals(CompactBeanCodec.CONTENT_TYPE);
+	}
+
+	/**
+	 * Wrap a stream with a compressing stream. Flushing the stream only
+	 * passes the bytes the compressor has already emitted (Java 6 has no sync
+	 * flush), responses that are flushed while they are produced must not be
+	 * compressed.
+	 * @param stream stream to write the compressed bytes to
+	 * @param encoding content coding
+	 * @return compressing stream, closing it finishes the compressed data and
+	 * closes the given stream
+	 * @throws IOException if the stream cannot be created
+	 */
+	OutputStream compress(final OutputStream stream, final String encoding) throws IOException {
+		if (GZIP.equals(encoding)) {
+			return new GZIPOutputStream(stream) {
+				{
+					def.setLevel(level);
+				}
+			};
+		}
+		return new DeflaterOutputStream(stream, new Deflater(level)) {
+			@Override
+			public void close() throws IOException {
+				super.close();
+				def.end();
+			}
+		};
+	}
+
+	/**
+	 * Get the compressed content of a binary. The compressed content is cached
+	 * if the cache is enabled.
+	 * @param key key of the binary, e.g. contentid and updatetimestamp
+	 * @param content content of the binary
+	 * @param encoding content coding
+	 * @return compressed content
+	 * @throws IOException if the content cannot be compressed
+	 */
+	byte[] getCompressed(final String key, final byte[] content, final String encoding) throws IOException {
+		String cacheKey = encoding + "|" + key;
+		if (cache != null) {
+			Object cached = cache.get(cacheKey);
+			if (cached instanceof byte[]) {
+				return (byte[]) cached;
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 2 + 64);
+		OutputStream compressing = compress(bytes, encoding);
+		compressing.write(content);
+		compressing.close();
+		byte[] compressed = bytes.toByteArray();
+		if (cache != null) {
+			try {
+				cache.put(cacheKey, compressed);
+			} catch (CacheException e) {
+				LOGGER.warn("Could not cache compressed content of " + key, e);
+			}
+		}
+		return compressed;
+	}
+
+	/**
+	 * @return minimum size in bytes of a compressed response
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @return true if responses are compressed
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return true if compressed binaries are cached
+	 */
+	public boolean isCacheEnabled() {
+		return cache != null;
+	}
+}
@@ -0,0 +1,136 @@
+package com.gentics.cr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gentics.api.lib.datasource.Datasource;
+import com.gentics.cr.exceptions.CRException;
+
+public class CRActivePathRequestProcessorTest {
+
+	private static final String[] ATTRIBUTES = { "name" };
+
+	private static CRConfigUtil config;
+
+	private static HSQLTestHandler testHandler;
+
+	private static CRActivePathRequestProcessor requestProcessor;
+
+	/**
+	 * Folders without mothers in the repository, the mothers are set in the
+	 * parent map or on the requested bean by the tests.
+	 */
+	private static List<String> folders = new ArrayList<String>();
+
+	private Datasource ds;
+
+	private CRActivePathRequestProcessor.ParentMap parents;
+
+	@BeforeClass
+	public static void setUp() throws CRException, URISyntaxException {
+		config = HSQLTestConfigFactory.getDefaultHSQLConfiguration(CRActivePathRequestProcessorTest.class.getName());
+		// the repository is not polled again while the tests run
+		config.set("RP.1.activepathcacheinterval", "600000");
+		requestProcessor = new CRActivePathRequestProcessor(config.getRequestProcessorConfig(1));
+		testHandler = new HSQLTestHandler(config.getRequestProcessorConfig(1));
+		for (int i = 0; i < 12; i++) {
+			CRResolvableBean folder = new CRResolvableBean();
+			folder.setObj_type(CRResolvableBean.DEFAULT_DIR_TYPE);
+			folder.set("name", "folder" + i);
+			folders.add(testHandler.createBean(folder, ATTRIBUTES).getContentid());
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() throws CRException {
+		requestProcessor.finalize();
+		testHandler.cleanUp();
+	}
+
+	@Before
+	public void getParentMap() throws Exception {
+		ds = config.getRequestProcessorConfig(1).getDatasource();
+		parents = requestProcessor.getParentMap(ds);
+	}
+
+	@After
+	public void releaseDatasource() {
+		CRDatabaseFactory.releaseDatasource(ds);
+	}
+
+	@Test
+	public void testFullPathInMap() throws Exception {
+		parents.put(folder(1), folder(0));
+		parents.put(folder(0), "");
+		assertPath(getParents(child(2, 1), null), 0, 1);
+	}
+
+	@Test
+	public void testPartialPathInMap() throws Exception {
+		// folder 3 is loaded from the repository and has no mother there
+		parents.put(folder(4), folder(3));
+		assertPath(getParents(child(5, 4), null), 3, 4);
+		assertEquals("", parents.get(folder(3)));
+	}
+
+	@Test
+	public void testMotherCycle() throws Exception {
+		parents.put(folder(7), folder(6));
+		parents.put(folder(6), folder(7));
+		assertPath(getParents(child(8, 7), null), 6, 7);
+	}
+
+	@Test
+	public void testRootInPath() throws Exception {
+		parents.put(folder(10), folder(9));
+		parents.put(folder(9), folder(0));
+		parents.put(folder(0), "");
+		assertPath(getParents(child(11, 10), folder(9)), 10);
+		assertNull(getParents(child(11, 10), folder(10)));
+	}
+
+	private Collection<CRResolvableBean> getParents(final CRResolvableBean current, final String rootContentId)
+			throws Exception {
+		CRRequest request = new CRRequest();
+		request.setAttributeArray(ATTRIBUTES);
+		return requestProcessor.getParents(ds, current, rootContentId, request);
+	}
+
+	private static String folder(final int index) {
+		return folders.get(index);
+	}
+
+	/**
+	 * @return bean of the folder with the given index and mother
+	 */
+	private static CRResolvableBean child(final int index, final int mother) {
+		CRResolvableBean bean = new CRResolvableBean(folder(index));
+		String[] motherId = folder(mother).split("\\.");
+		bean.setMother_type(motherId[0]);
+		bean.setMother_id(motherId[1]);
+		return bean;
+	}
+
+	private static void assertPath(final Collection<CRResolvableBean> path, final int... expected) {
+		List<String> expectedIds = new ArrayList<String>();
+		for (int index : expected) {
+			expectedIds.add(folder(index));
+		}
+		List<String> ids = new ArrayList<String>();
+		for (CRResolvableBean bean : path) {
+			ids.add(bean.getContentid());
+		}
+		assertEquals(expectedIds, ids);
+	}
+}
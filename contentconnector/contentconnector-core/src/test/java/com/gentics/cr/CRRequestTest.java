@@ -0,0 +1,16 @@
+package com.gentics.cr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CRRequestTest {
+
+	@Test
+	public void testNormalizeFilter() {
+		assertEquals("object.obj_type == 10002 AND object.name == 'a  b'",
+			CRRequest.normalizeFilter("  object.obj_type ==\t10002\n AND   object.name == 'a  b' "));
+		assertEquals("object.name == \"it's  \\\" x\"", CRRequest.normalizeFilter("object.name  ==  \"it's  \\\" x\""));
+		assertEquals("", CRRequest.normalizeFilter("   "));
+	}
+}
@@ -0,0 +1,100 @@
+package com.gentics.cr;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gentics.cr.conf.gentics.ConfigDirectory;
+import com.gentics.cr.configuration.SimpleCRConfig;
+import com.gentics.cr.exceptions.CRException;
+
+public class RequestProcessorMergerTest {
+
+	private static final Pattern KEY = Pattern.compile("\"([^\"]*)\"");
+
+	@BeforeClass
+	public static void init() throws URISyntaxException {
+		ConfigDirectory.useThis();
+	}
+
+	@Test
+	public void testFillAttributesInBatches() throws CRException {
+		Collection<CRResolvableBean> beans = createBeans("a", 1200);
+		RequestProcessorMerger.fillAttributes(new KeyRequestProcessor(null), beans, createRequest(), "id");
+		for (CRResolvableBean bean : beans) {
+			assertEquals("name-" + bean.get("id"), bean.get("name"));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testNestedMerges() throws CRException {
+		// every batch of the outer merge runs a merge with several batches
+		// itself, which must not deadlock the batch pool
+		Collection<CRResolvableBean> beans = createBeans("a", 5000);
+		RequestProcessorMerger.fillAttributes(new KeyRequestProcessor(new KeyRequestProcessor(null)), beans,
+			createRequest(), "id");
+		for (CRResolvableBean bean : beans) {
+			assertEquals("name-" + bean.get("id"), bean.get("name"));
+		}
+	}
+
+	private static CRRequest createRequest() {
+		CRRequest request = new CRRequest();
+		request.setAttributeArray(new String[] { "name" });
+		return request;
+	}
+
+	private static List<CRResolvableBean> createBeans(final String prefix, final int count) {
+		List<CRResolvableBean> beans = new ArrayList<CRResolvableBean>(count);
+		for (int i = 0; i < count; i++) {
+			CRResolvableBean bean = new CRResolvableBean();
+			bean.set("id", prefix + i);
+			beans.add(bean);
+		}
+		return beans;
+	}
+
+	/**
+	 * Request processor returning a bean for every key in the filter of the
+	 * batch requests. If a nested request processor is given, every request
+	 * merges a large result of the nested request processor.
+	 */
+	private static class KeyRequestProcessor extends RequestProcessor {
+
+		private final RequestProcessor nested;
+
+		KeyRequestProcessor(final RequestProcessor nested) throws CRException {
+			super(new SimpleCRConfig());
+			this.nested = nested;
+		}
+
+		@Override
+		public Collection<CRResolvableBean> getObjects(final CRRequest request, final boolean doNavigation)
+				throws CRException {
+			if (nested != null) {
+				RequestProcessorMerger.fillAttributes(nested, createBeans("b", 1500), createRequest(), "id");
+			}
+			Collection<CRResolvableBean> result = new ArrayList<CRResolvableBean>();
+			Matcher matcher = KEY.matcher(request.getRequestFilter());
+			while (matcher.find()) {
+				CRResolvableBean bean = new CRResolvableBean();
+				bean.set("id", matcher.group(1));
+				bean.set("name", "name-" + matcher.group(1));
+				result.add(bean);
+			}
+			return result;
+		}
+
+		@Override
+		public void finalize() {
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.gentics.cr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gentics.cr.exceptions.CRException;
+
+public class SQLRequestProcessorTest {
+
+	private static final String DS_NAME = "sqlrequestprocessortest";
+
+	private static final String URL = "jdbc:hsqldb:mem:" + DS_NAME;
+
+	/**
+	 * Rows ordered by SEQ, the rows of id a are not adjacent.
+	 */
+	private static final String[][] ROWS = new String[][] { { "1", "a", "a1" }, { "2", "b", "b1" }, { "3", "a", "a2" },
+			{ "4", "c", "c1" }, { "5", "d", "d1" } };
+
+	private static final String FILTER = "SEQ > 0 ORDER BY SEQ";
+
+	@BeforeClass
+	public static void setUp() throws SQLException, ClassNotFoundException {
+		Class.forName("org.hsqldb.jdbcDriver");
+		Connection conn = DriverManager.getConnection(URL);
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.execute("CREATE TABLE ITEMS (SEQ INTEGER, ID VARCHAR(10), NAME VARCHAR(20))");
+			for (String[] row : ROWS) {
+				stmt.execute("INSERT INTO ITEMS VALUES (" + row[0] + ", '" + row[1] + "', '" + row[2] + "')");
+			}
+			stmt.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	@AfterClass
+	public static void tearDown() throws SQLException {
+		Connection conn = DriverManager.getConnection(URL);
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.execute("DROP TABLE ITEMS");
+			stmt.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	@Test
+	public void testAllRows() throws Exception {
+		assertEquals(Arrays.asList("a1", "b1", "a2", "c1", "d1"), getNames(createRequestProcessor(false), 0, -1));
+	}
+
+	@Test
+	public void testWindow() throws Exception {
+		RequestProcessor rp = createRequestProcessor(false);
+		assertEquals(Arrays.asList("b1", "a2"), getNames(rp, 1, 2));
+		assertEquals(Arrays.asList("d1"), getNames(rp, 4, 10));
+		assertEquals(new ArrayList<Object>(), getNames(rp, 5, 10));
+	}
+
+	@Test
+	public void testMergedWindow() throws Exception {
+		RequestProcessor rp = createRequestProcessor(true);
+		assertEquals(Arrays.asList("b1", "c1"), getNames(rp, 1, 2));
+		assertEquals(Arrays.asList("d1"), getNames(rp, 3, -1));
+	}
+
+	@Test
+	public void testMergeNonAdjacentRows() throws Exception {
+		Collection<CRResolvableBean> objects = createRequestProcessor(true).getObjects(createRequest(0, 1));
+		assertEquals(1, objects.size());
+		CRResolvableBean bean = objects.iterator().next();
+		assertEquals("a", bean.getContentid());
+		assertEquals(Arrays.asList("a1", "a2"), bean.get("NAME"));
+	}
+
+	@Test
+	public void testCallbackStopsReading() throws Exception {
+		for (boolean merge : new boolean[] { false, true }) {
+			final List<CRResolvableBean> objects = new ArrayList<CRResolvableBean>();
+			createRequestProcessor(merge).streamObjects(createRequest(0, -1), new ResultCallback() {
+				public boolean process(final CRResolvableBean bean) {
+					objects.add(bean);
+					return objects.size() < 2;
+				}
+			});
+			assertEquals("Reading did not stop (merge: " + merge + ")", 2, objects.size());
+		}
+	}
+
+	@Test
+	public void testCountZero() throws Exception {
+		assertTrue(createRequestProcessor(false).getObjects(createRequest(0, 0)).isEmpty());
+		assertTrue(createRequestProcessor(true).getObjects(createRequest(0, 0)).isEmpty());
+	}
+
+	private static RequestProcessor createRequestProcessor(final boolean merge) throws CRException,
+			URISyntaxException {
+		CRConfigUtil config = HSQLTestConfigFactory.getDefaultHSQLConfiguration(DS_NAME);
+		config.set("RP.1.rpClass", SQLRequestProcessor.class.getName());
+		config.set("RP.1.ds.table", "ITEMS");
+		config.set("RP.1.ds.idcolumn", "ID");
+		config.set("RP.1.merge_on_idcolumn", Boolean.toString(merge));
+		return config.getNewRequestProcessorInstance(1);
+	}
+
+	private static CRRequest createRequest(final int start, final int count) {
+		CRRequest request = new CRRequest();
+		request.setRequestFilter(FILTER);
+		request.setStartString(Integer.toString(start));
+		request.setCountString(Integer.toString(count));
+		return request;
+	}
+
+	private static List<Object> getNames(final RequestProcessor rp, final int start, final int count)
+			throws CRException {
+		List<Object> names = new ArrayList<Object>();
+		for (CRResolvableBean bean : rp.getObjects(createRequest(start, count))) {
+			names.add(bean.get("NAME"));
+		}
+		return names;
+	}
+}
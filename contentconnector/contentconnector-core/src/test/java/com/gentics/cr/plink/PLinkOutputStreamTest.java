@@ -51,6 +51,27 @@ public class PLinkOutputStreamTest {
 			testString("test abc blah <plink id=\"10007.1\" test lkjasdf sdfjlkj> test"));
 	}
 
+	@Test
+	public void testPLOSChunked() throws IOException {
+		String input = "a <plink id=\"10007.1\"> b <pli c <<plink id='10007.2' x> d <plin";
+		String expected = "a 10007.1 b <pli c <10007.2 d <plin";
+		byte[] bytes = input.getBytes("UTF-8");
+		for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			PLinkOutputStream plOs = new PLinkOutputStream(os, new PLinkReplacer() {
+
+				public String replacePLink(PLinkInformation info) {
+					return info.getContentId();
+				}
+			});
+			for (int off = 0; off < bytes.length; off += chunkSize) {
+				plOs.write(bytes, off, Math.min(chunkSize, bytes.length - off));
+			}
+			plOs.close();
+			assertEquals("Could not replace plink with chunk size " + chunkSize, expected, os.toString("UTF-8"));
+		}
+	}
+
 	private String testString(String input) throws IOException {
 		ByteArrayOutputStream os = new ByteArrayOutputStream();
 
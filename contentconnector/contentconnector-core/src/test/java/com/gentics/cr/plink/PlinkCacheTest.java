@@ -0,0 +1,145 @@
+package com.gentics.cr.plink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jcs.access.exception.CacheException;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gentics.api.lib.resolving.Resolvable;
+import com.gentics.api.portalnode.connector.CCPLinkInformation;
+import com.gentics.cr.CRConfigUtil;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.conf.gentics.ConfigDirectory;
+
+public class PlinkCacheTest {
+
+	private PlinkCache cache;
+
+	@Before
+	public void setUp() throws CacheException {
+		ConfigDirectory.useThis();
+		cache = PlinkCache.getInstance("plinkcachetest");
+		cache.clear();
+	}
+
+	@Test
+	public void testInvalidateChangedTarget() {
+		cache.put("10007.1", "10007.1-", "/link.html", 100);
+		cache.put("10007.1", "10007.1-json", "/link.json", 100);
+		cache.validate("10007.1", "100");
+		assertEquals("/link.html", cache.get("10007.1", "10007.1-"));
+		cache.validate("10007.1", 101);
+		assertNull(cache.get("10007.1", "10007.1-"));
+		assertNull(cache.get("10007.1", "10007.1-json"));
+	}
+
+	@Test
+	public void testTargetWithoutTimestamp() {
+		cache.put("10007.2", "10007.2-", "/link.html", null);
+		assertFalse(cache.needsCheck("10007.2", 60000));
+		assertTrue(cache.needsCheck("10007.2", -1));
+		// an unchanged target without updatetimestamp keeps its links
+		cache.validate("10007.2", null);
+		assertEquals("/link.html", cache.get("10007.2", "10007.2-"));
+		assertFalse(cache.needsCheck("10007.2", 60000));
+	}
+
+	@Test
+	public void testNeedsCheckOnlyForCachedTargets() {
+		assertFalse(cache.needsCheck("10007.3", -1));
+		cache.put("10007.3", "10007.3-", "/link.html", 1);
+		cache.invalidate("10007.3");
+		assertFalse(cache.needsCheck("10007.3", -1));
+	}
+
+	@Test
+	public void testPutRefreshesTimestamp() {
+		cache.put("10007.4", "10007.4-", "/old.html", 100);
+		cache.put("10007.4", "10007.4-json", "/new.json", 101);
+		// the link of the old version of the target is dropped
+		assertNull(cache.get("10007.4", "10007.4-"));
+		cache.validate("10007.4", 101);
+		assertEquals("/new.json", cache.get("10007.4", "10007.4-json"));
+		// links generated without updatetimestamp keep the known one
+		cache.put("10007.4", "10007.4-php", "/new.php", null);
+		cache.validate("10007.4", 101);
+		assertEquals("/new.json", cache.get("10007.4", "10007.4-json"));
+		assertEquals("/new.php", cache.get("10007.4", "10007.4-php"));
+	}
+
+	@Test
+	public void testGetLinkChecksUnchangedTarget() {
+		CountingPlinkProcessor processor = createProcessor(100);
+		cache.put("10007.5", "10007.5", "/cached.html", 100);
+		assertEquals("/cached.html", processor.getLink(new CCPLinkInformation("10007.5"), null));
+		assertEquals(1, processor.lookups.get());
+	}
+
+	@Test
+	public void testGetLinkInvalidatesChangedTarget() {
+		CountingPlinkProcessor processor = createProcessor(101);
+		cache.put("10007.6", "10007.6", "/cached.html", 100);
+		String link = processor.getLink(new CCPLinkInformation("10007.6"), null);
+		assertFalse("Link to a changed target was served from the cache", "/cached.html".equals(link));
+		// the changed target is looked up once for the check and the link
+		assertEquals(1, processor.lookups.get());
+		assertNotNull(cache.get("10007.6", "10007.6"));
+	}
+
+	@Test
+	public void testGetLinkInvalidatesDeletedTarget() {
+		CountingPlinkProcessor processor = createProcessor(0);
+		processor.deleted = true;
+		cache.put("10007.7", "10007.7", "/cached.html", 100);
+		assertFalse("/cached.html".equals(processor.getLink(new CCPLinkInformation("10007.7"), null)));
+	}
+
+	/**
+	 * Create a processor with batch resolving disabled that checks the cached
+	 * links on every access.
+	 * @param updatetimestamp updatetimestamp of the link targets
+	 * @return processor
+	 */
+	private static CountingPlinkProcessor createProcessor(final int updatetimestamp) {
+		CRConfigUtil config = new CRConfigUtil();
+		config.setName("plinkcachetest");
+		config.set(PlinkProcessor.PLINK_BATCH_KEY, "false");
+		config.set(PlinkProcessor.PLINK_CACHE_CHECK_INTERVAL_KEY, "-1");
+		return new CountingPlinkProcessor(config, updatetimestamp);
+	}
+
+	/**
+	 * Serves the link targets from memory and counts the lookups.
+	 */
+	private static class CountingPlinkProcessor extends PlinkProcessor {
+
+		private final AtomicInteger lookups = new AtomicInteger();
+
+		private final int updatetimestamp;
+
+		private boolean deleted;
+
+		CountingPlinkProcessor(final CRConfigUtil config, final int updatetimestamp) {
+			super(config);
+			this.updatetimestamp = updatetimestamp;
+		}
+
+		@Override
+		protected Resolvable loadObject(final String contentid) {
+			lookups.incrementAndGet();
+			if (deleted) {
+				return null;
+			}
+			CRResolvableBean target = new CRResolvableBean(contentid);
+			target.set("updatetimestamp", updatetimestamp);
+			return target;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.gentics.cr.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteRangeTest {
+
+	@Test
+	public void testSingleRange() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=0-499", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals("bytes 0-499/1000", ranges.get(0).toContentRange(1000));
+		assertEquals(500, ranges.get(0).getLength());
+	}
+
+	@Test
+	public void testOpenAndSuffixRanges() {
+		assertEquals("[900-999]", ByteRange.parse("bytes=900-", 1000).toString());
+		assertEquals("[900-999]", ByteRange.parse("bytes=-100", 1000).toString());
+		assertEquals("[950-999]", ByteRange.parse("bytes=950-2000", 1000).toString());
+		// overlapping ranges are coalesced
+		assertEquals("[900-999]", ByteRange.parse("bytes=900-, -100,950-2000", 1000).toString());
+	}
+
+	@Test
+	public void testCoalesce() {
+		assertEquals("[0-999]", ByteRange.parse("bytes=0-,0-,0-,0-,0-,0-,0-,0-,0-,0-", 1000).toString());
+		// adjacent ranges are merged, the ranges are ordered by their start
+		assertEquals("[0-199, 500-599]", ByteRange.parse("bytes=500-599,100-199,0-99", 1000).toString());
+		assertEquals("[0-99, 101-199]", ByteRange.parse("bytes=101-199,0-99", 1000).toString());
+		assertEquals("[0-299]", ByteRange.parse("bytes=0-99,50-299,60-70", 1000).toString());
+	}
+
+	@Test
+	public void testUnsatisfiable() {
+		assertTrue(ByteRange.parse("bytes=1000-1100", 1000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+	}
+
+	@Test
+	public void testInvalid() {
+		assertNull(ByteRange.parse("items=0-1", 1000));
+		assertNull(ByteRange.parse("bytes=5-1", 1000));
+		assertNull(ByteRange.parse("bytes=a-b", 1000));
+		assertNull(ByteRange.parse("bytes=10", 1000));
+	}
+}
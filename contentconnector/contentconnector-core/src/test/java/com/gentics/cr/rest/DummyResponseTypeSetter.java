@@ -1,5 +1,8 @@
 package com.gentics.cr.rest;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.gentics.cr.util.response.IResponseTypeSetter;
 
 public class DummyResponseTypeSetter implements IResponseTypeSetter {
@@ -8,6 +11,8 @@ public class DummyResponseTypeSetter implements IResponseTypeSetter {
 	
 	int responseCode = 0;
 	
+	Map<String, String> headers = new HashMap<String, String>();
+	
 	@Override
 	public void setContentType(String type) {
 		this.type = type; 
@@ -26,4 +31,13 @@ public class DummyResponseTypeSetter implements IResponseTypeSetter {
 		return this.responseCode;
 	}
 
+	@Override
+	public void setHeader(String name, String value) {
+		this.headers.put(name, value);
+	}
+	
+	public String getHeader(String name) {
+		return this.headers.get(name);
+	}
+
 }
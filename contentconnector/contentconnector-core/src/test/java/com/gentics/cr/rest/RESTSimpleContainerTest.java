@@ -0,0 +1,117 @@
+package com.gentics.cr.rest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gentics.api.lib.resolving.Resolvable;
+import com.gentics.cr.CRConfig;
+import com.gentics.cr.CRConfigUtil;
+import com.gentics.cr.CRRequest;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.RequestProcessor;
+import com.gentics.cr.ResultCallback;
+import com.gentics.cr.conf.gentics.ConfigDirectory;
+import com.gentics.cr.exceptions.CRException;
+
+public class RESTSimpleContainerTest {
+
+	private RESTSimpleContainer container;
+
+	@Before
+	public void setUp() {
+		ConfigDirectory.useThis();
+		StreamingRequestProcessor.objects.clear();
+		StreamingRequestProcessor.failAfterObjects = false;
+		CRConfigUtil config = new CRConfigUtil();
+		config.setName(RESTSimpleContainerTest.class.getSimpleName());
+		config.set(RESTSimpleContainer.STREAM_RESULTS_KEY, "true");
+		config.set("rp.1.rpClass", StreamingRequestProcessor.class.getName());
+		config.set("rp.1." + RequestProcessor.CONTENTCACHE_KEY, "false");
+		config.set("rp.1.plinkcache", "false");
+		container = new RESTSimpleContainer(config);
+	}
+
+	@After
+	public void tearDown() {
+		container.finalize();
+	}
+
+	@Test
+	public void testStreamedObjects() throws UnsupportedEncodingException {
+		StreamingRequestProcessor.objects.add(new CRResolvableBean("10007.1"));
+		StreamingRequestProcessor.objects.add(new CRResolvableBean("10007.2"));
+		String response = process();
+		assertTrue(response, response.contains("10007.1"));
+		assertTrue(response, response.contains("10007.2"));
+		assertTrue(response, response.trim().endsWith("</Contentrepository>"));
+		assertFalse(response, response.contains("<Error"));
+	}
+
+	@Test
+	public void testEmptyResult() throws UnsupportedEncodingException {
+		String response = process();
+		assertTrue("Empty streamed result did not respond with NoDataFound: " + response,
+			response.contains("NoDataFound"));
+	}
+
+	@Test
+	public void testErrorAfterCommit() throws UnsupportedEncodingException {
+		StreamingRequestProcessor.objects.add(new CRResolvableBean("10007.3"));
+		StreamingRequestProcessor.failAfterObjects = true;
+		String response = process();
+		assertTrue(response, response.contains("10007.3"));
+		// the error must not be appended to the committed response
+		assertFalse("Error was appended to the committed response: " + response, response.contains("<Error"));
+		assertFalse(response, response.contains("</Contentrepository>"));
+	}
+
+	private String process() throws UnsupportedEncodingException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		container.processService(new CRRequest(), null, new HashMap<String, Resolvable>(), stream,
+			new DummyResponseTypeSetter(), false);
+		return stream.toString("UTF-8");
+	}
+
+	/**
+	 * Streams the static objects and optionally fails after the last one.
+	 */
+	public static class StreamingRequestProcessor extends RequestProcessor {
+
+		private static List<CRResolvableBean> objects = new ArrayList<CRResolvableBean>();
+
+		private static boolean failAfterObjects;
+
+		public StreamingRequestProcessor(final CRConfig config) throws CRException {
+			super(config);
+		}
+
+		@Override
+		public Collection<CRResolvableBean> getObjects(final CRRequest request, final boolean doNavigation)
+				throws CRException {
+			return objects;
+		}
+
+		@Override
+		public void streamObjects(final CRRequest request, final ResultCallback callback) throws CRException {
+			super.streamObjects(request, callback);
+			if (failAfterObjects) {
+				throw new CRException("StreamingError", "Result could not be read completely.");
+			}
+		}
+
+		@Override
+		public void finalize() {
+		}
+	}
+}
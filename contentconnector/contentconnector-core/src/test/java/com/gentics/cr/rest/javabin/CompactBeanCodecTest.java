@@ -0,0 +1,128 @@
+package com.gentics.cr.rest.javabin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import com.gentics.cr.CRError;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.exceptions.CRException;
+
+public class CompactBeanCodecTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRoundTrip() throws IOException {
+		CRResolvableBean bean = new CRResolvableBean("10007.1");
+		bean.setObj_type("10007");
+		bean.setMother_id("10002.1");
+		bean.setMother_type("10002");
+		bean.set("name", "Page \u00e4");
+		bean.set("binarycontent", new byte[] { 1, 2, 3 });
+		bean.set("updatetimestamp", Integer.valueOf(1300000000));
+		bean.set("size", Long.valueOf(-5));
+		bean.set("ratio", Double.valueOf(0.5));
+		bean.set("online", Boolean.TRUE);
+		bean.set("edate", new Date(1234567890L));
+		bean.set("keywords", Arrays.asList("a", "b"));
+		bean.set("tags", new String[] { "x", "y" });
+		bean.set("price", new BigDecimal("1.25"));
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("key", "value");
+		bean.set("map", map);
+
+		CRResolvableBean child = new CRResolvableBean("10007.2");
+		child.setObj_type("10007");
+		child.set("name", "Child");
+		Vector<CRResolvableBean> children = new Vector<CRResolvableBean>();
+		children.add(child);
+		bean.setChildRepository(children);
+
+		Object read = CompactBeanCodec.read(new ByteArrayInputStream(write(Arrays.asList(bean, child))));
+		assertTrue(read instanceof Collection);
+		List<CRResolvableBean> beans = new ArrayList<CRResolvableBean>((Collection<CRResolvableBean>) read);
+		assertEquals(2, beans.size());
+
+		CRResolvableBean readBean = beans.get(0);
+		assertEquals("10007.1", readBean.getContentid());
+		assertEquals("10007", readBean.getObj_type());
+		assertEquals("10002.1", readBean.getMother_id());
+		assertEquals("10002", readBean.getMother_type());
+		assertEquals("Page \u00e4", readBean.get("name"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) readBean.get("binarycontent"));
+		assertEquals(Integer.valueOf(1300000000), readBean.get("updatetimestamp"));
+		assertEquals(Long.valueOf(-5), readBean.get("size"));
+		assertEquals(Double.valueOf(0.5), readBean.get("ratio"));
+		assertEquals(Boolean.TRUE, readBean.get("online"));
+		assertEquals(new Date(1234567890L), readBean.get("edate"));
+		assertEquals(Arrays.asList("a", "b"), readBean.get("keywords"));
+		assertArrayEquals(new String[] { "x", "y" }, (String[]) readBean.get("tags"));
+		assertEquals(new BigDecimal("1.25"), readBean.get("price"));
+		assertEquals(map, readBean.get("map"));
+		assertEquals(1, readBean.getChildRepository().size());
+		assertEquals("Child", readBean.getChildRepository().iterator().next().get("name"));
+		assertEquals("10007", beans.get(1).getObj_type());
+	}
+
+	@Test
+	public void testError() throws IOException {
+		CRError error = new CRError("NoDataFound", "Data could not be found.");
+		error.setErrorType(CRException.ERRORTYPE.NO_DATA_FOUND);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactBeanCodec.writeError(error, out);
+
+		Object read = CompactBeanCodec.read(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(read instanceof CRError);
+		CRError readError = (CRError) read;
+		assertEquals("NoDataFound", readError.getType());
+		assertEquals("Data could not be found.", readError.getMessage());
+		assertNull(readError.getStringStackTrace());
+		assertEquals(CRException.ERRORTYPE.NO_DATA_FOUND, readError.getErrorType());
+	}
+
+	@Test
+	public void testSmallerThanSerialization() throws IOException {
+		List<CRResolvableBean> beans = new ArrayList<CRResolvableBean>();
+		for (int i = 0; i < 100; i++) {
+			CRResolvableBean bean = new CRResolvableBean("10007." + i);
+			bean.setObj_type("10007");
+			bean.set("name", "Page " + i);
+			bean.set("updatetimestamp", Integer.valueOf(1300000000 + i));
+			beans.add(bean);
+		}
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(serialized);
+		oos.writeObject(new Vector<CRResolvableBean>(beans));
+		oos.close();
+
+		assertTrue(write(beans).length < serialized.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidStream() throws IOException {
+		CompactBeanCodec.read(new ByteArrayInputStream(new byte[] { 'a', 'c', 'e', 'd' }));
+	}
+
+	private static byte[] write(final Collection<CRResolvableBean> beans) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactBeanCodec.writeBeans(beans, out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,118 @@
+package com.gentics.cr.rest.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.gentics.cr.CRResolvableBean;
+
+public class XmlContentRepositoryTest {
+
+	private XmlContentRepository repository;
+
+	@Before
+	public void setUp() {
+		repository = new XmlContentRepository(new String[] { "name" }, "UTF-8");
+	}
+
+	@Test
+	public void testCDataEndMarker() throws Exception {
+		CRResolvableBean bean = new CRResolvableBean("10007.1");
+		bean.set("content", "<p>a]]>b</p>]]>");
+		repository.addObject(bean);
+
+		String xml = write();
+		assertTrue("CDATA section was not split: " + xml,
+			xml.contains("<![CDATA[<p>a]]]]><![CDATA[>b</p>]]]]><![CDATA[>]]>"));
+		assertEquals("<p>a]]>b</p>]]>", getTexts(parse(xml), "content")[0]);
+	}
+
+	@Test
+	public void testMultivalueAttributes() throws Exception {
+		CRResolvableBean bean = new CRResolvableBean("10007.2");
+		bean.set("list", new ArrayList<Object>(Arrays.asList("a", "b]]>c", "")));
+		bean.set("array", new String[] { "x", "y" });
+		repository.addObject(bean);
+
+		Document doc = parse(write());
+		assertEquals(Arrays.asList("a", "b]]>c", ""), Arrays.asList(getTexts(doc, "list")));
+		assertEquals(Arrays.asList("x", "y"), Arrays.asList(getTexts(doc, "array")));
+	}
+
+	@Test
+	public void testMapAttributes() throws Exception {
+		CRResolvableBean bean = new CRResolvableBean("10007.3");
+		Map<String, Object> suggestions = new HashMap<String, Object>();
+		suggestions.put("tst", new String[] { "test", "tess" });
+		bean.set("suggestions", suggestions);
+		Map<String, Object> single = new HashMap<String, Object>();
+		single.put("key", "value]]>");
+		bean.set("single", single);
+		repository.addObject(bean);
+
+		Document doc = parse(write());
+		Element suggestionsElement = (Element) doc.getElementsByTagName("suggestions").item(0);
+		NodeList tst = suggestionsElement.getElementsByTagName("tst");
+		assertEquals(2, tst.getLength());
+		assertEquals("test", tst.item(0).getTextContent());
+		assertEquals("tess", tst.item(1).getTextContent());
+		Element singleElement = (Element) doc.getElementsByTagName("single").item(0);
+		assertEquals("value]]>", singleElement.getElementsByTagName("key").item(0).getTextContent());
+	}
+
+	@Test
+	public void testObjectsAndChildren() throws Exception {
+		CRResolvableBean bean = new CRResolvableBean("10007.4");
+		bean.set("name", "parent");
+		CRResolvableBean child = new CRResolvableBean("10007.5");
+		child.set("name", "child");
+		bean.setChildRepository(new ArrayList<CRResolvableBean>(Arrays.asList(child)));
+		repository.addObject(bean);
+		repository.addObject(new CRResolvableBean("10002.6"));
+
+		Document doc = parse(write());
+		Element root = doc.getDocumentElement();
+		assertEquals("Contentrepository", root.getTagName());
+		assertEquals("ok", root.getAttribute("status"));
+		NodeList objects = doc.getElementsByTagName("Object");
+		assertEquals(3, objects.getLength());
+		assertEquals("10007.4", ((Element) objects.item(0)).getAttribute("contentid"));
+		assertEquals("10007.5", ((Element) objects.item(1)).getAttribute("contentid"));
+		assertEquals("10002", ((Element) objects.item(2)).getAttribute("obj_type"));
+		assertEquals(Arrays.asList("parent", "child"), Arrays.asList(getTexts(doc, "name")));
+	}
+
+	private String write() throws Exception {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		repository.toStream(stream);
+		return stream.toString("UTF-8");
+	}
+
+	private static Document parse(final String xml) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+	}
+
+	private static String[] getTexts(final Document doc, final String tagName) {
+		NodeList nodes = doc.getElementsByTagName(tagName);
+		String[] texts = new String[nodes.getLength()];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i] = nodes.item(i).getTextContent();
+		}
+		return texts;
+	}
+}
@@ -0,0 +1,32 @@
+package com.gentics.cr.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BoundStatementTest {
+
+	@Test
+	public void testBindLiterals() {
+		BoundStatement statement = BoundStatement.bind("SELECT * FROM t WHERE name = 'it''s' AND id IN ('1','2') AND x = 10");
+		assertEquals("SELECT * FROM t WHERE name = ? AND id IN (?,?) AND x = ?", statement.getSql());
+		assertEquals(Arrays.<Object> asList("it's", "1", "2", Long.valueOf(10)), statement.getParameters());
+	}
+
+	@Test
+	public void testKeepIdentifiers() {
+		BoundStatement statement = BoundStatement.bind("SELECT col1 FROM t2 WHERE t2.col_3 = \"a \\\" b\" AND v > 1.5");
+		assertEquals("SELECT col1 FROM t2 WHERE t2.col_3 = ? AND v > ?", statement.getSql());
+		assertEquals("a \" b", statement.getParameters().get(0));
+		assertEquals("1.5", statement.getParameters().get(1).toString());
+	}
+
+	@Test
+	public void testUnterminatedString() {
+		BoundStatement statement = BoundStatement.bind("SELECT * FROM t WHERE name = 'abc");
+		assertEquals("SELECT * FROM t WHERE name = 'abc", statement.getSql());
+		assertEquals(0, statement.getParameters().size());
+	}
+}
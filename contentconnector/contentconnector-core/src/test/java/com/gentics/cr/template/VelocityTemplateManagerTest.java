@@ -0,0 +1,80 @@
+package com.gentics.cr.template;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gentics.cr.exceptions.CRException;
+
+public class VelocityTemplateManagerTest {
+
+	private static final String TEMPLATE = "<li>$node.name$node.subtree</li>";
+
+	private ITemplateManager manager;
+
+	@Before
+	public void setUp() throws Exception {
+		manager = VelocityTemplateManagerFactory.getConfiguredVelocityTemplateManagerInstance("utf-8", null);
+	}
+
+	@Test
+	public void testRender() throws CRException {
+		manager.put("name", "world");
+		assertEquals("hello world", manager.render("hello", "hello $name"));
+		// objects are only used for one rendering
+		assertEquals("hello $name", manager.render("hello", "hello $name"));
+	}
+
+	@Test
+	public void testNestedRenderWithSharedManager() throws CRException {
+		Node tree = new Node(manager, "a", new Node(manager, "b", new Node(manager, "c")), new Node(manager, "d"));
+		assertEquals("<li>a<li>b<li>c</li></li><li>d</li></li>", tree.render());
+	}
+
+	@Test
+	public void testNestedRenderWithNewManagers() throws Exception {
+		Node tree = new Node(null, "a", new Node(null, "b", new Node(null, "c")), new Node(null, "d"));
+		assertEquals("<li>a<li>b<li>c</li></li><li>d</li></li>", tree.render());
+	}
+
+	/**
+	 * Node rendering its children while it is rendered itself, like
+	 * {@link com.gentics.cr.nav.NavObject#getSubTree()}.
+	 */
+	public static class Node {
+
+		private final ITemplateManager manager;
+
+		private final String name;
+
+		private final Node[] children;
+
+		public Node(final ITemplateManager manager, final String name, final Node... children) {
+			this.manager = manager;
+			this.name = name;
+			this.children = children;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getSubtree() throws Exception {
+			StringBuilder subtree = new StringBuilder();
+			for (Node child : children) {
+				subtree.append(child.render());
+			}
+			return subtree.toString();
+		}
+
+		public String render() throws CRException {
+			ITemplateManager templateManager = manager;
+			if (templateManager == null) {
+				templateManager = new VelocityTemplateManager("utf-8");
+			}
+			templateManager.put("node", this);
+			return templateManager.render("node", TEMPLATE);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.gentics.cr.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void testPutIfAbsent() {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>(10);
+		assertEquals("a", cache.putIfAbsent("key", "a"));
+		assertEquals("Existing entry was replaced", "a", cache.putIfAbsent("key", "b"));
+		assertEquals("a", cache.get("key"));
+	}
+
+	@Test
+	public void testEvictsOldestEntries() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(3);
+		for (int i = 0; i < 5; i++) {
+			cache.putIfAbsent(i, i);
+		}
+		assertEquals(3, cache.size());
+		assertNull("Oldest entry was not evicted", cache.get(0));
+		assertNull("Oldest entry was not evicted", cache.get(1));
+		assertEquals(Integer.valueOf(4), cache.get(4));
+	}
+
+	@Test
+	public void testRemove() {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>(2);
+		cache.putIfAbsent("a", "a");
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		cache.putIfAbsent("b", "b");
+		cache.putIfAbsent("c", "c");
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testReplace() {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>(2);
+		cache.putIfAbsent("a", "a");
+		assertTrue(cache.replace("a", "a", "b"));
+		assertEquals("b", cache.get("a"));
+		assertFalse("Entry with another value was replaced", cache.replace("a", "a", "c"));
+		cache.remove("a");
+		assertFalse("Removed entry was added again", cache.replace("a", "b", "c"));
+		assertNull(cache.get("a"));
+	}
+}
@@ -0,0 +1,74 @@
+package com.gentics.cr.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.net.URISyntaxException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gentics.api.lib.datasource.Datasource;
+import com.gentics.api.lib.datasource.DatasourceException;
+import com.gentics.cr.CRConfigUtil;
+import com.gentics.cr.CRDatabaseFactory;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.HSQLTestConfigFactory;
+import com.gentics.cr.HSQLTestHandler;
+import com.gentics.cr.exceptions.CRException;
+
+public class ContentStatePollerTest {
+
+	private static final String RULE = "object.obj_type == " + CRResolvableBean.DEFAULT_DIR_TYPE;
+
+	private static CRConfigUtil config;
+
+	private static HSQLTestHandler testHandler;
+
+	@BeforeClass
+	public static void setUp() throws CRException, URISyntaxException {
+		config = HSQLTestConfigFactory.getDefaultHSQLConfiguration(ContentStatePollerTest.class.getName());
+		testHandler = new HSQLTestHandler(config.getRequestProcessorConfig(1));
+	}
+
+	@AfterClass
+	public static void tearDown() throws CRException {
+		testHandler.cleanUp();
+	}
+
+	@Test
+	public void testStateChangesWithObjects() throws CRException, DatasourceException {
+		Datasource ds = config.getRequestProcessorConfig(1).getDatasource();
+		try {
+			String before = ContentStatePoller.poll(ds, RULE);
+			createFolder("first");
+			String after = ContentStatePoller.poll(ds, RULE);
+			assertFalse("State did not change when an object was added", before.equals(after));
+			assertEquals(after, ContentStatePoller.poll(ds, RULE));
+		} finally {
+			CRDatabaseFactory.releaseDatasource(ds);
+		}
+	}
+
+	@Test
+	public void testPollInterval() throws CRException, DatasourceException {
+		Datasource ds = config.getRequestProcessorConfig(1).getDatasource();
+		try {
+			ContentStatePoller poller = new ContentStatePoller(RULE, 60000);
+			String state = poller.getState(ds);
+			createFolder("second");
+			assertEquals("State was polled again within the interval", state, poller.getState(ds));
+			assertFalse(state.equals(new ContentStatePoller(RULE, 60000).getState(ds)));
+		} finally {
+			CRDatabaseFactory.releaseDatasource(ds);
+		}
+	}
+
+	private static void createFolder(final String name) throws CRException {
+		CRResolvableBean folder = new CRResolvableBean();
+		folder.setObj_type(CRResolvableBean.DEFAULT_DIR_TYPE);
+		folder.set("name", name);
+		testHandler.createBean(folder, new String[] { "name" });
+	}
+}
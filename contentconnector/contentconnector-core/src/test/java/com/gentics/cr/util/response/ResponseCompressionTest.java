@@ -0,0 +1,217 @@
+package com.gentics.cr.util.response;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gentics.cr.CRConfigUtil;
+
+public class ResponseCompressionTest {
+
+	private ResponseCompression compression;
+
+	private ByteArrayOutputStream body;
+
+	private HeaderSetter headers;
+
+	@Before
+	public void setUp() {
+		CRConfigUtil config = new CRConfigUtil();
+		config.setName("ResponseCompressionTest");
+		config.set(ResponseCompression.THRESHOLD_KEY, "100");
+		compression = new ResponseCompression(config);
+		body = new ByteArrayOutputStream();
+		headers = new HeaderSetter();
+	}
+
+	@Test
+	public void testNegotiate() {
+		assertEquals("gzip", ResponseCompression.negotiate("gzip, deflate"));
+		assertEquals("deflate", ResponseCompression.negotiate("gzip;q=0, deflate"));
+		assertEquals("gzip", ResponseCompression.negotiate("*"));
+		assertNull(ResponseCompression.negotiate("identity"));
+		assertNull(ResponseCompression.negotiate(null));
+	}
+
+	@Test
+	public void testCompressible() {
+		assertTrue(ResponseCompression.isCompressible("text/xml; charset=utf-8"));
+		assertTrue(ResponseCompression.isCompressible("application/json"));
+		assertTrue(ResponseCompression.isCompressible("application/x-java-serialized-object"));
+		assertFalse(ResponseCompression.isCompressible("image/png"));
+		assertFalse(ResponseCompression.isCompressible(null));
+	}
+
+	@Test
+	public void testCompressLargeResponse() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("application/json");
+		response.setHeader("Content-Length", "1000");
+		byte[] content = content(1000);
+		OutputStream stream = response.getOutputStream();
+		stream.write(content);
+		stream.close();
+
+		assertEquals("gzip", headers.headers.get("Content-Encoding"));
+		assertNull(headers.headers.get("Content-Length"));
+		assertArrayEquals(content, gunzip(body.toByteArray()));
+	}
+
+	@Test
+	public void testSmallResponseUncompressed() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("application/json");
+		response.setHeader("Content-Length", "10");
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(10));
+		stream.close();
+
+		assertNull(headers.headers.get("Content-Encoding"));
+		assertEquals("10", headers.headers.get("Content-Length"));
+		assertEquals(10, body.size());
+	}
+
+	@Test
+	public void testPartialResponseUncompressed() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("text/plain");
+		response.setResponseCode(206);
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(1000));
+		stream.close();
+
+		assertNull(headers.headers.get("Content-Encoding"));
+		assertEquals(1000, body.size());
+	}
+
+	@Test
+	public void testWriteCompressed() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("text/css");
+		byte[] content = content(1000);
+		assertTrue(response.writeCompressed("10008.1-1", content));
+		response.getOutputStream().close();
+
+		assertEquals("gzip", headers.headers.get("Content-Encoding"));
+		assertEquals(Integer.toString(body.size()), headers.headers.get("Content-Length"));
+		assertArrayEquals(content, gunzip(body.toByteArray()));
+	}
+
+	@Test
+	public void testCompressedETag() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("text/css");
+		response.setHeader("ETag", "\"10008.1-1\"");
+		assertTrue(response.writeCompressed("10008.1-1", content(1000)));
+		response.getOutputStream().close();
+		assertEquals("\"10008.1-1-gzip\"", headers.headers.get("ETag"));
+
+		headers = new HeaderSetter();
+		response = compression.wrap("gzip", new ByteArrayOutputStream(), headers);
+		response.setContentType("text/css");
+		response.setHeader("ETag", "\"10008.1-1\"");
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(1000));
+		stream.close();
+		assertEquals("\"10008.1-1-gzip\"", headers.headers.get("ETag"));
+	}
+
+	@Test
+	public void testUncompressedETag() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("text/css");
+		response.setHeader("ETag", "\"10008.1-1\"");
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(10));
+		stream.close();
+		assertEquals("\"10008.1-1\"", headers.headers.get("ETag"));
+	}
+
+	@Test
+	public void testVaryOnUncompressedResponses() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("text/css");
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(10));
+		stream.close();
+		assertNull(headers.headers.get("Content-Encoding"));
+		assertEquals("Accept-Encoding", headers.headers.get("Vary"));
+
+		headers = new HeaderSetter();
+		compression.wrap(null, new ByteArrayOutputStream(), headers).getOutputStream().close();
+		assertEquals("Accept-Encoding", headers.headers.get("Vary"));
+
+		CRConfigUtil config = new CRConfigUtil();
+		config.setName("ResponseCompressionTestDisabled");
+		config.set(ResponseCompression.COMPRESSION_KEY, "false");
+		headers = new HeaderSetter();
+		new ResponseCompression(config).wrap("gzip", new ByteArrayOutputStream(), headers).getOutputStream().close();
+		assertNull(headers.headers.get("Vary"));
+	}
+
+	@Test
+	public void testDisabledCompressionFlushes() throws IOException {
+		CompressingResponse response = compression.wrap("gzip", body, headers);
+		response.setContentType("application/json");
+		response.disableCompression();
+		OutputStream stream = response.getOutputStream();
+		stream.write(content(10));
+		stream.flush();
+		assertEquals(10, body.size());
+		stream.write(content(1000));
+		stream.close();
+
+		assertNull(headers.headers.get("Content-Encoding"));
+		assertEquals(1010, body.size());
+	}
+
+	private static byte[] content(final int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) ('a' + i % 26);
+		}
+		return content;
+	}
+
+	private static byte[] gunzip(final byte[] bytes) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int read;
+		while ((read = in.read(buf)) > 0) {
+			out.write(buf, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static class HeaderSetter implements IResponseTypeSetter {
+
+		private Map<String, String> headers = new HashMap<String, String>();
+
+		@Override
+		public void setContentType(String type) {
+		}
+
+		@Override
+		public void setResponseCode(int responsteCode) {
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			headers.put(name, value);
+		}
+	}
+}
@@ -1,19 +1,27 @@
 package com.gentics.cr.http;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Vector;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.HttpVersion;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.ProtocolException;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.log4j.Logger;
 
@@ -23,6 +31,8 @@ import com.gentics.cr.CRRequest;
 import com.gentics.cr.CRResolvableBean;
 import com.gentics.cr.RequestProcessor;
 import com.gentics.cr.exceptions.CRException;
+import com.gentics.cr.rest.javabin.CompactBeanCodec;
+import com.gentics.cr.util.BoundedCache;
 
 /**
  * based on com.gentics.cr.http.HTTPClientRequestProcessor.
@@ -34,13 +44,66 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 
 	private static final String URL_KEY = "URL";
 	/**
-	 * Key to configure the used http version. Defaults to HTTP/1.0
+	 * Key to configure the used http version. Defaults to HTTP/1.1, which
+	 * keeps the connections to the remote servlet alive.
 	 *
 	 * Can be configured in the following manner: HTTP/<major>.<minor>
 	 */
 	private static final String HTTP_VERSION_KEY = "HTTPVERSION";
+	/**
+	 * Key to configure the repository type requested from the remote servlet.
+	 * Defaults to JavaBIN (java serialization), CRBIN requests the compact
+	 * binary format of {@link CompactBeanCodec}.
+	 */
+	private static final String TYPE_KEY = "TYPE";
+	/**
+	 * Key to configure the maximum number of connections to the remote host.
+	 * Defaults to 20.
+	 */
+	private static final String MAX_CONNECTIONS_PER_HOST_KEY = "MAXCONNECTIONSPERHOST";
+	/**
+	 * Key to configure the maximum number of connections. Defaults to 100.
+	 */
+	private static final String MAX_TOTAL_CONNECTIONS_KEY = "MAXTOTALCONNECTIONS";
+	/**
+	 * Key to configure the timeout in milliseconds to open a connection.
+	 * Defaults to 0 (no timeout).
+	 */
+	private static final String CONNECTION_TIMEOUT_KEY = "CONNECTIONTIMEOUT";
+	/**
+	 * Key to configure the timeout in milliseconds waiting for data. Defaults to
+	 * 0 (no timeout).
+	 */
+	private static final String SOCKET_TIMEOUT_KEY = "SOCKETTIMEOUT";
+	/**
+	 * Key to configure if gzip compressed responses are accepted. Defaults to
+	 * true.
+	 */
+	private static final String COMPRESSION_KEY = "COMPRESSION";
+	/**
+	 * Key to configure the maximum number of responses kept in the local
+	 * response cache. Defaults to 0 (no cache). The responses are cached by
+	 * the request URL only, so the cache must not be enabled if the remote
+	 * servlet answers the same URL differently per client (e.g. depending on
+	 * the session or permissions of the user). Responses marked with
+	 * Cache-Control no-store or private or varying on other headers than
+	 * Accept-Encoding are not cached.
+	 */
+	private static final String RESPONSE_CACHE_SIZE_KEY = "RESPONSECACHESIZE";
+	/**
+	 * Key to configure the time in milliseconds a cached response is used
+	 * without asking the remote servlet. Afterwards it is revalidated with
+	 * If-None-Match / If-Modified-Since if the response had an ETag or
+	 * Last-Modified header, otherwise it is requested again. Defaults to 60000.
+	 */
+	private static final String RESPONSE_CACHE_TTL_KEY = "RESPONSECACHETTL";
 	private String path = "";
-	private HttpVersion httpVersion = HttpVersion.HTTP_1_0;
+	private String type = "JavaBIN";
+	private HttpVersion httpVersion = HttpVersion.HTTP_1_1;
+	private boolean compression;
+	private BoundedCache<String, CachedResponse> responseCache;
+	private long responseCacheTtl;
+	private MultiThreadedHttpConnectionManager connectionManager;
 	protected HttpClient client;
 
 	/**
@@ -52,11 +115,24 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 		super(config);
 		this.name = config.getName();
 		//LOAD ADDITIONAL CONFIG
-		client = new HttpClient(new MultiThreadedHttpConnectionManager());
+		connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setDefaultMaxConnectionsPerHost(config.getInteger(MAX_CONNECTIONS_PER_HOST_KEY, 20));
+		params.setMaxTotalConnections(config.getInteger(MAX_TOTAL_CONNECTIONS_KEY, 100));
+		params.setConnectionTimeout(config.getInteger(CONNECTION_TIMEOUT_KEY, 0));
+		params.setSoTimeout(config.getInteger(SOCKET_TIMEOUT_KEY, 0));
+		client = new HttpClient(connectionManager);
+		compression = config.getBoolean(COMPRESSION_KEY, true);
+		int responseCacheSize = config.getInteger(RESPONSE_CACHE_SIZE_KEY, 0);
+		if (responseCacheSize > 0) {
+			responseCache = new BoundedCache<String, CachedResponse>(responseCacheSize);
+			responseCacheTtl = config.getInteger(RESPONSE_CACHE_TTL_KEY, 60000);
+		}
 		this.path = (String) config.get(URL_KEY);
 		if (this.path == null) {
 			log.error("COULD NOT GET URL FROM CONFIG (add RP.<rpnumber>.url=<url> to config). OVERTHINK YOUR CONFIG!");
 		}
+		this.type = config.getString(TYPE_KEY, this.type);
 		String httpVersionString = config.getString(HTTP_VERSION_KEY);
 		if (httpVersionString != null) {
 			try {
@@ -79,12 +155,34 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 
 		String reqUrl = buildGetUrlString(request);
 
+		CachedResponse cached = null;
+		if (responseCache != null) {
+			cached = responseCache.get(reqUrl);
+			if (cached != null && cached.isFresh(responseCacheTtl)) {
+				log.debug("Request: " + reqUrl + " served from response cache");
+				addObjects(resultlist, readCachedResponse(cached));
+				return resultlist;
+			}
+		}
+
 		GetMethod method = new GetMethod(reqUrl);
 
 		method.getParams().setVersion(httpVersion);
 
 		//Set request charset
 		method.setRequestHeader("Content-type", "text/xml; charset=UTF-8");
+		if (compression) {
+			method.setRequestHeader("Accept-Encoding", "gzip");
+		}
+		if (cached != null) {
+			// revalidate the cached response
+			if (cached.etag != null) {
+				method.setRequestHeader("If-None-Match", cached.etag);
+			}
+			if (cached.lastModified != null) {
+				method.setRequestHeader("If-Modified-Since", cached.lastModified);
+			}
+		}
 		// Provide custom retry handler is necessary
 		method.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(3, false));
 
@@ -92,37 +190,41 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 			// Execute the method.
 			int statusCode = client.executeMethod(method);
 			log.info("Request: " + reqUrl + " Status: " + statusCode);
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+				cached.validated();
+				addObjects(resultlist, readCachedResponse(cached));
+				return resultlist;
+			}
 			if (statusCode != HttpStatus.SC_OK) {
 				log.error("Request failed: " + method.getStatusLine());
 			}
 
-			Collection<CRResolvableBean> result = new Vector<CRResolvableBean>();
-			ObjectInputStream objstream = new ObjectInputStream(method.getResponseBodyAsStream());
 			Object responseObject;
 			try {
-				responseObject = objstream.readObject();
-
-				objstream.close();
-
-				if (responseObject instanceof Collection<?>) {
-					result = this.toCRResolvableBeanCollection(responseObject);
-				} else if (responseObject instanceof CRError) {
-					CRError ex = (CRError) responseObject;
-					throw new CRException(ex);
+				String contentType = getHeader(method, "Content-Type");
+				InputStream body = method.getResponseBodyAsStream();
+				if (body != null && "gzip".equalsIgnoreCase(getHeader(method, "Content-Encoding"))) {
+					body = new GZIPInputStream(body);
+				}
+				if (responseCache != null && statusCode == HttpStatus.SC_OK && body != null && isCacheable(method)) {
+					CachedResponse response = new CachedResponse(readFully(body), contentType, getHeader(
+						method, "ETag"), getHeader(method, "Last-Modified"));
+					responseObject = readResponse(new ByteArrayInputStream(response.body), contentType);
+					if (responseObject instanceof Collection<?>) {
+						responseCache.remove(reqUrl);
+						responseCache.putIfAbsent(reqUrl, response);
+					}
 				} else {
-					log.error("COULD NOT CAST RESULT. Perhaps remote agent does not work properly");
+					if (cached != null) {
+						responseCache.remove(reqUrl);
+					}
+					responseObject = readResponse(body, contentType);
 				}
-
 			} catch (ClassNotFoundException e) {
 				log.error("Coult not load object from http response", e);
 				throw new CRException(e);
 			}
-
-			if (result != null) {
-				for (CRResolvableBean crBean : result) {
-					resultlist.add(crBean);
-				}
-			}
+			addObjects(resultlist, responseObject);
 
 		} catch (HttpException e) {
 			log.error("Fatal protocol violation", e);
@@ -138,6 +240,31 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 		return resultlist;
 	}
 
+	/**
+	 * Add the objects of a response to the result list.
+	 * @param resultlist result list
+	 * @param responseObject response object
+	 * @throws CRException if the response is an error
+	 */
+	private void addObjects(final ArrayList<CRResolvableBean> resultlist, final Object responseObject)
+			throws CRException {
+		Collection<CRResolvableBean> result = new Vector<CRResolvableBean>();
+		if (responseObject instanceof Collection<?>) {
+			result = this.toCRResolvableBeanCollection(responseObject);
+		} else if (responseObject instanceof CRError) {
+			CRError ex = (CRError) responseObject;
+			throw new CRException(ex);
+		} else {
+			log.error("COULD NOT CAST RESULT. Perhaps remote agent does not work properly");
+		}
+
+		if (result != null) {
+			for (CRResolvableBean crBean : result) {
+				resultlist.add(crBean);
+			}
+		}
+	}
+
 	protected String buildGetUrlString(CRRequest request) {
 		GetUrlBuilder urlBuilder = new GetUrlBuilder(this.path);
 
@@ -148,17 +275,190 @@ public abstract class AbstractHTTPClientRequestProcessor extends RequestProcesso
 		urlBuilder.appendArray("sorting", request.getSortArray());
 		urlBuilder.appendSkipFalse(request, RequestProcessor.META_RESOLVABLE_KEY);
 		urlBuilder.appendSkipNull(request, RequestProcessor.HIGHLIGHT_QUERY_KEY);
-		urlBuilder.append("type", "JavaBIN");
+		urlBuilder.append("type", type);
 
 		appendCustomGetParam(urlBuilder, request);
 
 		return urlBuilder.toString();
 	}
 
+	/**
+	 * Read the response object, the format is selected by the content type of
+	 * the response.
+	 * @param body body of the response
+	 * @param contentType content type of the response
+	 * @return collection of the objects or {@link CRError}
+	 * @throws IOException if the response cannot be read
+	 * @throws ClassNotFoundException if a class of the response is unknown
+	 */
+	private static Object readResponse(final InputStream body, final String contentType) throws IOException,
+			ClassNotFoundException {
+		if (body == null) {
+			return null;
+		}
+		if (contentType != null && contentType.startsWith(CompactBeanCodec.CONTENT_TYPE)) {
+			try {
+				return CompactBeanCodec.read(new BufferedInputStream(body));
+			} finally {
+				body.close();
+			}
+		}
+		ObjectInputStream objstream = new ObjectInputStream(body);
+		try {
+			return objstream.readObject();
+		} finally {
+			objstream.close();
+		}
+	}
+
+	/**
+	 * Read the objects of a cached response. The objects are read again for
+	 * every request, so the cached objects cannot be changed by the caller.
+	 * @param cached cached response
+	 * @return collection of the objects
+	 * @throws CRException if the response cannot be read
+	 */
+	private static Object readCachedResponse(final CachedResponse cached) throws CRException {
+		try {
+			return readResponse(new ByteArrayInputStream(cached.body), cached.contentType);
+		} catch (IOException e) {
+			throw new CRException(e);
+		} catch (ClassNotFoundException e) {
+			throw new CRException(e);
+		}
+	}
+
+	/**
+	 * @param method executed method
+	 * @param name name of the header
+	 * @return value of the response header or null
+	 */
+	private static String getHeader(final HttpMethod method, final String name) {
+		Header header = method.getResponseHeader(name);
+		if (header == null) {
+			return null;
+		}
+		return header.getValue();
+	}
+
+	/**
+	 * @param method executed method
+	 * @return true if the response may be kept in the response cache, false
+	 * if it is marked with Cache-Control no-store or private or varies on
+	 * other request headers than Accept-Encoding
+	 */
+	private static boolean isCacheable(final HttpMethod method) {
+		for (Header header : method.getResponseHeaders("Cache-Control")) {
+			for (String directive : header.getValue().split(",")) {
+				String name = directive.trim().toLowerCase();
+				int equals = name.indexOf('=');
+				if (equals >= 0) {
+					name = name.substring(0, equals).trim();
+				}
+				if ("no-store".equals(name) || "private".equals(name)) {
+					return false;
+				}
+			}
+		}
+		for (Header header : method.getResponseHeaders("Vary")) {
+			for (String field : header.getValue().split(",")) {
+				String name = field.trim();
+				if (name.length() > 0 && !"Accept-Encoding".equalsIgnoreCase(name)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param in stream to read
+	 * @return bytes of the stream, the stream is closed
+	 * @throws IOException if the stream cannot be read
+	 */
+	private static byte[] readFully(final InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
 	protected abstract void appendCustomGetParam(GetUrlBuilder urlBuilder, CRRequest request);
 
 	@Override
 	public void finalize() {
+		connectionManager.shutdown();
+		if (responseCache != null) {
+			responseCache.clear();
+		}
+	}
+
+	/**
+	 * Response kept in the response cache.
+	 */
+	private static final class CachedResponse {
+
+		/**
+		 * body of the response.
+		 */
+		private final byte[] body;
+
+		/**
+		 * content type of the response.
+		 */
+		private final String contentType;
+
+		/**
+		 * ETag of the response, may be null.
+		 */
+		private final String etag;
+
+		/**
+		 * Last-Modified header of the response, may be null.
+		 */
+		private final String lastModified;
 
+		/**
+		 * time the response was last fetched or revalidated.
+		 */
+		private volatile long validatedAt = System.currentTimeMillis();
+
+		/**
+		 * Create a new cached response.
+		 * @param body body of the response
+		 * @param contentType content type of the response
+		 * @param etag ETag of the response
+		 * @param lastModified Last-Modified header of the response
+		 */
+		private CachedResponse(final byte[] body, final String contentType, final String etag,
+				final String lastModified) {
+			this.body = body;
+			this.contentType = contentType;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @param ttl time in milliseconds a response is used without
+		 * revalidation
+		 * @return true if the response can be used without revalidation
+		 */
+		private boolean isFresh(final long ttl) {
+			return System.currentTimeMillis() - validatedAt < ttl;
+		}
+
+		/**
+		 * Mark the response as revalidated.
+		 */
+		private void validated() {
+			validatedAt = System.currentTimeMillis();
+		}
 	}
 }
@@ -0,0 +1,194 @@
+package com.gentics.cr.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gentics.cr.CRRequest;
+import com.gentics.cr.CRResolvableBean;
+import com.gentics.cr.RequestProcessor;
+import com.gentics.cr.configuration.SimpleCRConfig;
+import com.gentics.cr.exceptions.CRException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HTTPClientRequestProcessorTest {
+
+	private static final String ETAG = "\"10007.1-1234\"";
+
+	private HttpServer server;
+
+	private RemoteServlet servlet;
+
+	@Before
+	public void setUp() throws IOException {
+		servlet = new RemoteServlet();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/rest", servlet);
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testFreshCacheHit() throws CRException {
+		RequestProcessor rp = createRequestProcessor(60000);
+		assertObjects(rp.getObjects(createRequest()));
+		assertObjects(rp.getObjects(createRequest()));
+		assertEquals("Fresh response was requested again", 1, servlet.requests.get());
+		rp.finalize();
+	}
+
+	@Test
+	public void testNotModifiedRefresh() throws CRException {
+		RequestProcessor rp = createRequestProcessor(0);
+		assertObjects(rp.getObjects(createRequest()));
+		assertNull(servlet.ifNoneMatch);
+		assertObjects(rp.getObjects(createRequest()));
+		assertEquals(2, servlet.requests.get());
+		assertEquals(ETAG, servlet.ifNoneMatch);
+		assertEquals(1, servlet.notModified.get());
+		rp.finalize();
+	}
+
+	@Test
+	public void testGzipBody() throws CRException {
+		servlet.gzip = true;
+		RequestProcessor rp = createRequestProcessor(60000);
+		assertObjects(rp.getObjects(createRequest()));
+		assertEquals("gzip", servlet.acceptEncoding);
+		assertEquals(1, servlet.gzipped.get());
+		assertObjects(rp.getObjects(createRequest()));
+		assertEquals(1, servlet.requests.get());
+		rp.finalize();
+	}
+
+	@Test
+	public void testNoStore() throws CRException {
+		servlet.cacheControl = "no-store";
+		assertNotCached();
+	}
+
+	@Test
+	public void testPrivate() throws CRException {
+		servlet.cacheControl = "max-age=60, private";
+		assertNotCached();
+	}
+
+	private void assertNotCached() throws CRException {
+		RequestProcessor rp = createRequestProcessor(0);
+		assertObjects(rp.getObjects(createRequest()));
+		assertObjects(rp.getObjects(createRequest()));
+		assertEquals(2, servlet.requests.get());
+		assertNull("Uncacheable response was revalidated", servlet.ifNoneMatch);
+		assertEquals(0, servlet.notModified.get());
+		rp.finalize();
+	}
+
+	private RequestProcessor createRequestProcessor(final int ttl) throws CRException {
+		SimpleCRConfig config = new SimpleCRConfig();
+		config.set(RequestProcessor.CONTENTCACHE_KEY, "false");
+		config.set("URL", "http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+		config.set("RESPONSECACHESIZE", "10");
+		config.set("RESPONSECACHETTL", Integer.toString(ttl));
+		return new HTTPClientRequestProcessor(config);
+	}
+
+	private static CRRequest createRequest() {
+		CRRequest request = new CRRequest();
+		request.setRequestFilter("object.obj_type == 10007");
+		request.setAttributeArray(new String[] { "name" });
+		return request;
+	}
+
+	private static void assertObjects(final Collection<CRResolvableBean> objects) {
+		assertEquals(2, objects.size());
+		CRResolvableBean first = objects.iterator().next();
+		assertEquals("10007.1", first.getContentid());
+		assertEquals("first", first.get("name"));
+	}
+
+	/**
+	 * Answers every request with two objects in the JavaBIN format and
+	 * supports revalidation with If-None-Match.
+	 */
+	private static class RemoteServlet implements HttpHandler {
+
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private final AtomicInteger notModified = new AtomicInteger();
+
+		private final AtomicInteger gzipped = new AtomicInteger();
+
+		private volatile String ifNoneMatch;
+
+		private volatile String acceptEncoding;
+
+		private volatile String cacheControl;
+
+		private volatile boolean gzip;
+
+		public void handle(final HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			if (cacheControl != null) {
+				exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+			}
+			if (ETAG.equals(ifNoneMatch)) {
+				notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			byte[] body = createBody();
+			if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				gzipped.incrementAndGet();
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				GZIPOutputStream out = new GZIPOutputStream(bytes);
+				out.write(body);
+				out.close();
+				body = bytes.toByteArray();
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/x-java-serialized-object");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+
+		private static byte[] createBody() throws IOException {
+			Vector<CRResolvableBean> objects = new Vector<CRResolvableBean>();
+			CRResolvableBean first = new CRResolvableBean("10007.1");
+			first.set("name", "first");
+			objects.add(first);
+			CRResolvableBean second = new CRResolvableBean("10007.2");
+			second.set("name", "second");
+			objects.add(second);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(objects);
+			out.close();
+			return bytes.toByteArray();
+		}
+	}
+}
@@ -1,21 +1,18 @@
 package com.gentics.cr.rest.json;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.io.Writer;
 
-import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import com.gentics.cr.CRResolvableBean;
 import com.gentics.cr.exceptions.CRException;
 import com.gentics.cr.exceptions.CRException.ERRORTYPE;
 import com.gentics.cr.rest.ContentRepository;
+import com.gentics.cr.rest.StreamingContentRepository;
 
 /**
  * Implementaion of Json rappresentation for a REST contentrepositroy.
@@ -27,12 +24,22 @@ import com.gentics.cr.rest.ContentRepository;
  * @author $Author: supnig@constantinopel.at $
  * 
  */
-public class JSONContentRepository extends ContentRepository {
+public class JSONContentRepository extends ContentRepository implements StreamingContentRepository {
 
 	private static final long serialVersionUID = 0003L;
 
 	private JSONObject rootObject;
 
+	/**
+	 * Writer of the response currently streamed.
+	 */
+	private transient Writer streamWriter;
+
+	/**
+	 * JSON writer of the response currently streamed.
+	 */
+	private transient JSONStreamWriter jsonWriter;
+
 	/**
 	 * Create instance Set response encoding to UTF-8.
 	 * 
@@ -112,7 +119,8 @@ public class JSONContentRepository extends ContentRepository {
 	}
 
 	/**
-	 * Writes the objects as JSON Stream.
+	 * Writes the objects as JSON Stream. The objects are written directly to
+	 * the stream without building a JSON object tree first.
 	 * 
 	 * @param stream
 	 * @throws CRException
@@ -122,28 +130,11 @@ public class JSONContentRepository extends ContentRepository {
 		if (this.resolvableColl.isEmpty()) {
 			// No Data Found
 			throw new CRException("NoDataFound", "Data could not be found.", ERRORTYPE.NO_DATA_FOUND);
-		} else {
-			this.rootObject.element("status", "ok");
-
-			JSONArray jsArray = new JSONArray();
-
-			for (Iterator<CRResolvableBean> it = this.resolvableColl.iterator(); it.hasNext();) {
-
-				CRResolvableBean crBean = it.next();
-
-				JSONObject objElement = processElement(crBean);
-
-				jsArray.add(objElement);
-
-			}
-			this.rootObject.element("Objects", jsArray);
 		}
 
 		try {
-			// use JSONObject.write instead toString is not a good solution
-			OutputStreamWriter wr = new OutputStreamWriter(stream, this.getResponseEncoding());
-
-			this.rootObject.write(wr);
+			Writer wr = new BufferedWriter(new OutputStreamWriter(stream, this.getResponseEncoding()));
+			new JSONStreamWriter(wr).writeResponse(this.resolvableColl);
 			wr.flush();
 			wr.close();
 		} catch (IOException ioex) {
@@ -152,99 +143,61 @@ public class JSONContentRepository extends ContentRepository {
 
 	}
 
-	@SuppressWarnings("unchecked")
-	private JSONObject processElement(CRResolvableBean crBean) {
-		JSONObject objElement = new JSONObject();
-
-		objElement.element("contentid", "" + crBean.getContentid());
-		objElement.element("obj_id", "" + crBean.getObj_id());
-		objElement.element("obj_type", "" + crBean.getObj_type());
-		objElement.element("mother_id", ((crBean.getMother_id() == null) ? "" : "" + crBean.getMother_id()));
-		objElement.element("mother_type", ((crBean.getMother_type() == null) ? "" : "" + crBean.getMother_type()));
-
-		if (crBean.getAttrMap() != null && (!crBean.getAttrMap().isEmpty())) {
-			JSONObject attrContainer = new JSONObject();
-
-			Iterator<String> bit = crBean.getAttrMap().keySet().iterator();
-			while (bit.hasNext()) {
-
-				String entry = bit.next();
-				// Element attrElement = doc.createElement(entry);
-				Object bValue = crBean.getAttrMap().get(entry);
-
-				if (bValue != null) {
-					// deal with multivalue attributes
-					if ((bValue.getClass().isArray() && !(bValue instanceof byte[])) || bValue instanceof List) {
-						JSONArray value = new JSONArray();
-						List<Object> arr;
-						if (bValue instanceof List) {
-							arr = new ArrayList<Object>();
-							List<Object> ob_arr = (List<Object>) bValue;
-							for (Object obj : ob_arr) {
-								String v = "";
-								v = convertToString(obj);
-								arr.add(v);
-							}
-						} else {
-							arr = new ArrayList<Object>();
-							Object[] ob_arr = (Object[]) bValue;
-							for (Object obj : ob_arr) {
-								String v = "";
-								v = convertToString(obj);
-								arr.add(v);
-							}
-						}
-						value.addAll(arr);
-						attrContainer.element(entry, value);
-					} else if (bValue instanceof Map<?, ?>) {
-						attrContainer.element(entry, bValue);
-					}
-					// dealt with single value attributes (String, Number,
-					// ByteArray)
-					else {
-						String value = "";
-						value = convertToString(bValue);
-						attrContainer.element(entry, value);
-					}
-				}
-			}
-			objElement.element("attributes", attrContainer);
-		}
-		if (crBean.getChildRepository() != null && crBean.getChildRepository().size() > 0) {
-			// JSONObject childContainer = new JSONObject();
-			JSONArray childContainer = new JSONArray();
-			for (Iterator it = crBean.getChildRepository().iterator(); it.hasNext();) {
-
-				CRResolvableBean chBean = (CRResolvableBean) it.next();
-
-				JSONObject chElement = processElement(chBean);
-				childContainer.add(chElement);
-				// childContainer.element(chBean.getContentid(),chElement);
-			}
-			objElement.element("children", childContainer);
+	/**
+	 * Writes the start of the JSON response up to the opening bracket of the
+	 * objects array.
+	 * @param stream stream to write the response to
+	 * @throws CRException if the start cannot be written
+	 */
+	public void writeStreamStart(final OutputStream stream) throws CRException {
+		try {
+			streamWriter = new BufferedWriter(new OutputStreamWriter(stream, this.getResponseEncoding()));
+			jsonWriter = new JSONStreamWriter(streamWriter);
+			jsonWriter.startResponse();
+		} catch (IOException e) {
+			throw new CRException(e);
 		}
-		return objElement;
 	}
 
 	/**
-	 * 
-	 * @param bValue
-	 * @return
+	 * Writes an object to the objects array of the response.
+	 * @param resolvableBean object to write
+	 * @throws CRException if the object cannot be written
 	 */
-	private String convertToString(Object bValue) {
-		String value;
-		if (bValue instanceof String) {
-			value = (String) bValue;
-		} else if (bValue instanceof Number) {
-			value = bValue.toString();
-		} else if (bValue instanceof Date) {
-			value = Long.toString(((Date) bValue).getTime());
-		} else {
-			byte[] bs = (byte[]) bValue;
-			value = new String(bs);
+	public void writeStreamObject(final CRResolvableBean resolvableBean) throws CRException {
+		try {
+			jsonWriter.writeObject(resolvableBean);
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
 
+	/**
+	 * Closes the objects array and the response and closes the stream.
+	 * @throws CRException if the end cannot be written
+	 */
+	public void writeStreamEnd() throws CRException {
+		try {
+			jsonWriter.endResponse();
+			streamWriter.flush();
+			streamWriter.close();
+		} catch (IOException e) {
+			throw new CRException(e);
+		} finally {
+			jsonWriter = null;
+			streamWriter = null;
 		}
-		return value;
 	}
 
+	/**
+	 * Flushes the buffered objects to the stream.
+	 * @throws CRException if the stream cannot be flushed
+	 */
+	public void flushStream() throws CRException {
+		try {
+			streamWriter.flush();
+		} catch (IOException e) {
+			throw new CRException(e);
+		}
+	}
 }
@@ -0,0 +1,286 @@
+package com.gentics.cr.rest.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+import com.gentics.cr.CRResolvableBean;
+
+/**
+ * Writes {@link CRResolvableBean}s as JSON directly to a {@link Writer}
+ * without building a json-lib object tree first. The output is the same as
+ * the one of the json-lib objects previously built by
+ * {@link JSONContentRepository}: compact, with the keys in insertion order.
+ * Strings json-lib would interpret (e.g. strings containing JSON) are still
+ * converted by json-lib.
+ */
+class JSONStreamWriter {
+
+	/**
+	 * Writer the JSON is written to.
+	 */
+	private final Writer writer;
+
+	/**
+	 * Create a new stream writer.
+	 * @param writer writer the JSON is written to
+	 */
+	JSONStreamWriter(final Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * True until the first object of a streamed response is written.
+	 */
+	private boolean firstObject = true;
+
+	/**
+	 * Write the response object holding the status and the objects.
+	 * @param objects objects to write
+	 * @throws IOException if the writer fails
+	 */
+	void writeResponse(final Collection<CRResolvableBean> objects) throws IOException {
+		startResponse();
+		for (CRResolvableBean bean : objects) {
+			writeObject(bean);
+		}
+		endResponse();
+	}
+
+	/**
+	 * Write the start of the response object up to the array of the objects.
+	 * @throws IOException if the writer fails
+	 */
+	void startResponse() throws IOException {
+		writer.write("{\"status\":\"ok\",\"Objects\":[");
+		firstObject = true;
+	}
+
+	/**
+	 * Write an object of the response.
+	 * @param bean object to write
+	 * @throws IOException if the writer fails
+	 */
+	void writeObject(final CRResolvableBean bean) throws IOException {
+		if (!firstObject) {
+			writer.write(',');
+		}
+		firstObject = false;
+		writeBean(bean);
+	}
+
+	/**
+	 * Close the array of the objects and the response object.
+	 * @throws IOException if the writer fails
+	 */
+	void endResponse() throws IOException {
+		writer.write("]}");
+	}
+
+	/**
+	 * Write a JSON array of beans.
+	 * @param beans beans to write
+	 * @throws IOException if the writer fails
+	 */
+	private void writeBeans(final Collection<CRResolvableBean> beans) throws IOException {
+		writer.write('[');
+		boolean first = true;
+		for (CRResolvableBean bean : beans) {
+			if (!first) {
+				writer.write(',');
+			}
+			first = false;
+			writeBean(bean);
+		}
+		writer.write(']');
+	}
+
+	/**
+	 * Write a bean with its attributes and children.
+	 * @param crBean bean to write
+	 * @throws IOException if the writer fails
+	 */
+	private void writeBean(final CRResolvableBean crBean) throws IOException {
+		writer.write('{');
+		writeKey("contentid");
+		writeValue("" + crBean.getContentid());
+		writer.write(',');
+		writeKey("obj_id");
+		writeValue("" + crBean.getObj_id());
+		writer.write(',');
+		writeKey("obj_type");
+		writeValue("" + crBean.getObj_type());
+		writer.write(',');
+		writeKey("mother_id");
+		writeValue((crBean.getMother_id() == null) ? "" : "" + crBean.getMother_id());
+		writer.write(',');
+		writeKey("mother_type");
+		writeValue((crBean.getMother_type() == null) ? "" : "" + crBean.getMother_type());
+
+		Map<String, Object> attributes = crBean.getAttrMap();
+		if (attributes != null && !attributes.isEmpty()) {
+			writer.write(',');
+			writeKey("attributes");
+			writer.write('{');
+			boolean first = true;
+			for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+				String value = toJSON(entry.getValue());
+				if (value != null) {
+					if (!first) {
+						writer.write(',');
+					}
+					first = false;
+					writeKey(entry.getKey());
+					writer.write(value);
+				}
+			}
+			writer.write('}');
+		}
+
+		Collection<CRResolvableBean> children = crBean.getChildRepository();
+		if (children != null && children.size() > 0) {
+			writer.write(',');
+			writeKey("children");
+			writeBeans(children);
+		}
+		writer.write('}');
+	}
+
+	/**
+	 * Convert an attribute value to JSON.
+	 * @param bValue attribute value
+	 * @return JSON of the value or null if the attribute is not written
+	 */
+	@SuppressWarnings("unchecked")
+	private String toJSON(final Object bValue) {
+		if (bValue == null) {
+			return null;
+		}
+		// deal with multivalue attributes
+		if ((bValue.getClass().isArray() && !(bValue instanceof byte[])) || bValue instanceof List) {
+			StringBuilder value = new StringBuilder("[");
+			Iterable<Object> values;
+			if (bValue instanceof List) {
+				values = (List<Object>) bValue;
+			} else {
+				values = Arrays.asList((Object[]) bValue);
+			}
+			boolean first = true;
+			for (Object obj : values) {
+				String element = toArrayElement(convertToString(obj));
+				if (element != null) {
+					if (!first) {
+						value.append(',');
+					}
+					first = false;
+					value.append(element);
+				}
+			}
+			return value.append(']').toString();
+		} else if (bValue instanceof Map<?, ?>) {
+			return JSONObject.fromObject(bValue).toString();
+		}
+		// dealt with single value attributes (String, Number, ByteArray)
+		return toObjectValue(convertToString(bValue));
+	}
+
+	/**
+	 * Write a key of an object including the colon.
+	 * @param key key to write
+	 * @throws IOException if the writer fails
+	 */
+	private void writeKey(final String key) throws IOException {
+		writer.write(JSONUtils.quote(key));
+		writer.write(':');
+	}
+
+	/**
+	 * Write a string value of an object.
+	 * @param value value to write
+	 * @throws IOException if the writer fails
+	 */
+	private void writeValue(final String value) throws IOException {
+		String json = toObjectValue(value);
+		writer.write(json == null ? "null" : json);
+	}
+
+	/**
+	 * @param value string value of an object
+	 * @return JSON of the value as json-lib would write it or null if json-lib
+	 * would drop it
+	 */
+	private static String toObjectValue(final String value) {
+		if (!isInterpreted(value)) {
+			return JSONUtils.quote(value);
+		}
+		JSONObject holder = new JSONObject();
+		holder.element("v", value);
+		if (!holder.containsKey("v")) {
+			return null;
+		}
+		String json = holder.toString();
+		// strip {"v": and }
+		return json.substring(5, json.length() - 1);
+	}
+
+	/**
+	 * @param value string element of an array
+	 * @return JSON of the element as json-lib would write it or null if
+	 * json-lib would drop it
+	 */
+	private static String toArrayElement(final String value) {
+		if (!isInterpreted(value)) {
+			return JSONUtils.quote(value);
+		}
+		JSONArray holder = new JSONArray();
+		holder.element(value);
+		String json = holder.toString();
+		if (json.length() <= 2) {
+			return null;
+		}
+		// strip [ and ]
+		return json.substring(1, json.length() - 1);
+	}
+
+	/**
+	 * @param value string value
+	 * @return true if json-lib may convert the string into something else
+	 * than a plain JSON string (e.g. strings containing JSON, quoted strings or
+	 * keywords)
+	 */
+	private static boolean isInterpreted(final String value) {
+		if (value.length() == 0) {
+			return false;
+		}
+		char first = value.charAt(0);
+		return first == '{' || first == '[' || first == '"' || first == '\'' || value.startsWith("function")
+				|| "null".equals(value) || "true".equals(value) || "false".equals(value);
+	}
+
+	/**
+	 * @param bValue attribute value
+	 * @return value as string
+	 */
+	private static String convertToString(final Object bValue) {
+		String value;
+		if (bValue instanceof String) {
+			value = (String) bValue;
+		} else if (bValue instanceof Number) {
+			value = bValue.toString();
+		} else if (bValue instanceof Date) {
+			value = Long.toString(((Date) bValue).getTime());
+		} else {
+			byte[] bs = (byte[]) bValue;
+			value = new String(bs);
+		}
+		return value;
+	}
+}
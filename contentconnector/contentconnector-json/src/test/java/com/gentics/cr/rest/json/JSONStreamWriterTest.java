@@ -0,0 +1,186 @@
+package com.gentics.cr.rest.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+import com.gentics.cr.CRResolvableBean;
+
+/**
+ * Compares the output of {@link JSONStreamWriter} with the json-lib object
+ * tree {@link JSONContentRepository} built before the objects were streamed.
+ */
+public class JSONStreamWriterTest {
+
+	@Test
+	public void testPlainStrings() throws IOException {
+		CRResolvableBean bean = new CRResolvableBean("10007.1");
+		bean.set("name", "plain");
+		bean.set("empty", "");
+		bean.set("quotes", "say \"hello\"\n\t\\ / \u00e4\u20ac");
+		bean.set("number", 42);
+		bean.set("date", new Date(1234567890000L));
+		bean.set("bytes", "binary".getBytes());
+		assertGolden(bean);
+	}
+
+	@Test
+	public void testInterpretedStrings() throws IOException {
+		CRResolvableBean bean = new CRResolvableBean("10007.2");
+		bean.set("object", "{\"a\":1,\"b\":[1,2]}");
+		bean.set("array", "[1,\"two\",{\"three\":3}]");
+		bean.set("quoted", "\"quoted\"");
+		bean.set("singlequoted", "'single'");
+		bean.set("function", "function() { return 1; }");
+		bean.set("null", "null");
+		bean.set("true", "true");
+		bean.set("false", "false");
+		assertGolden(bean);
+	}
+
+	@Test
+	public void testMultivalueAttributes() throws IOException {
+		CRResolvableBean bean = new CRResolvableBean("10007.3");
+		bean.set("list", Arrays.asList((Object) "a", "null", 1, "{\"a\":1}", "[1]", ""));
+		bean.set("array", new Object[] { "b", 2L, "true", "\"quoted\"" });
+		bean.set("emptylist", new ArrayList<Object>());
+		assertGolden(bean);
+	}
+
+	@Test
+	public void testMapAttributes() throws IOException {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("string", "value");
+		map.put("number", 1);
+		map.put("json", "{\"a\":1}");
+		map.put("list", Arrays.asList("x", "y"));
+		map.put("map", Collections.singletonMap("nested", "value"));
+		CRResolvableBean bean = new CRResolvableBean("10007.4");
+		bean.set("map", map);
+		bean.set("emptymap", new LinkedHashMap<String, Object>());
+		assertGolden(bean);
+	}
+
+	@Test
+	public void testChildren() throws IOException {
+		CRResolvableBean child = new CRResolvableBean("10007.6");
+		child.set("name", "child");
+		child.set("json", "[\"a\"]");
+		child.setMother_id("5");
+		child.setMother_type("10007");
+		CRResolvableBean grandchild = new CRResolvableBean("10007.7");
+		grandchild.set("name", "null");
+		child.setChildRepository(new ArrayList<CRResolvableBean>(Arrays.asList(grandchild)));
+		CRResolvableBean bean = new CRResolvableBean("10007.5");
+		bean.set("name", "parent");
+		bean.setChildRepository(new ArrayList<CRResolvableBean>(Arrays.asList(child, new CRResolvableBean())));
+		assertGolden(bean, new CRResolvableBean("10002.8"));
+	}
+
+	/**
+	 * Assert that the stream writer writes the same JSON as json-lib.
+	 * @param beans objects of the response
+	 * @throws IOException if the JSON cannot be written
+	 */
+	private static void assertGolden(final CRResolvableBean... beans) throws IOException {
+		List<CRResolvableBean> objects = Arrays.asList(beans);
+		StringWriter streamed = new StringWriter();
+		new JSONStreamWriter(streamed).writeResponse(objects);
+
+		JSONObject root = new JSONObject();
+		root.element("status", "ok");
+		JSONArray array = new JSONArray();
+		for (CRResolvableBean bean : objects) {
+			array.add(processElement(bean));
+		}
+		root.element("Objects", array);
+		StringWriter golden = new StringWriter();
+		root.write(golden);
+
+		assertEquals(golden.toString(), streamed.toString());
+	}
+
+	/**
+	 * json-lib object of a bean as built by {@link JSONContentRepository}
+	 * before the objects were streamed.
+	 * @param crBean bean
+	 * @return json-lib object
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject processElement(final CRResolvableBean crBean) {
+		JSONObject objElement = new JSONObject();
+
+		objElement.element("contentid", "" + crBean.getContentid());
+		objElement.element("obj_id", "" + crBean.getObj_id());
+		objElement.element("obj_type", "" + crBean.getObj_type());
+		objElement.element("mother_id", ((crBean.getMother_id() == null) ? "" : "" + crBean.getMother_id()));
+		objElement.element("mother_type", ((crBean.getMother_type() == null) ? "" : "" + crBean.getMother_type()));
+
+		if (crBean.getAttrMap() != null && (!crBean.getAttrMap().isEmpty())) {
+			JSONObject attrContainer = new JSONObject();
+			for (Map.Entry<String, Object> entry : crBean.getAttrMap().entrySet()) {
+				Object bValue = entry.getValue();
+				if (bValue != null) {
+					if ((bValue.getClass().isArray() && !(bValue instanceof byte[])) || bValue instanceof List) {
+						Iterable<Object> values;
+						if (bValue instanceof List) {
+							values = (List<Object>) bValue;
+						} else {
+							values = Arrays.asList((Object[]) bValue);
+						}
+						List<Object> arr = new ArrayList<Object>();
+						for (Object obj : values) {
+							arr.add(convertToString(obj));
+						}
+						JSONArray value = new JSONArray();
+						value.addAll(arr);
+						attrContainer.element(entry.getKey(), value);
+					} else if (bValue instanceof Map<?, ?>) {
+						attrContainer.element(entry.getKey(), bValue);
+					} else {
+						attrContainer.element(entry.getKey(), convertToString(bValue));
+					}
+				}
+			}
+			objElement.element("attributes", attrContainer);
+		}
+		Collection<CRResolvableBean> children = crBean.getChildRepository();
+		if (children != null && children.size() > 0) {
+			JSONArray childContainer = new JSONArray();
+			for (CRResolvableBean chBean : children) {
+				childContainer.add(processElement(chBean));
+			}
+			objElement.element("children", childContainer);
+		}
+		return objElement;
+	}
+
+	/**
+	 * @param bValue attribute value
+	 * @return value as string
+	 */
+	private static String convertToString(final Object bValue) {
+		if (bValue instanceof String) {
+			return (String) bValue;
+		} else if (bValue instanceof Number) {
+			return bValue.toString();
+		} else if (bValue instanceof Date) {
+			return Long.toString(((Date) bValue).getTime());
+		}
+		return new String((byte[]) bValue);
+	}
+}
@@ -15,6 +15,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.log4j.Logger;
 
 import com.gentics.cr.CRConfigUtil;
+import com.gentics.cr.lucene.indexer.index.IndexStatistics;
+import com.gentics.cr.lucene.indexer.index.LuceneSingleIndexLocation;
 import com.gentics.cr.util.indexing.AbstractUpdateCheckerJob;
 import com.gentics.cr.util.indexing.IndexController;
 import com.gentics.cr.util.indexing.IndexJobQueue;
@@ -99,6 +101,13 @@ public class IndexJobNagiosServlet extends HttpServlet {
 					writer.write(e.getKey(), ".WorkerThread: NOK\n");
 				}
 				writer.write(e.getKey(), ".ObjectsInIndex: ", loc.getDocCount() + "", "\n");
+				if (loc instanceof LuceneSingleIndexLocation) {
+					IndexStatistics stats = ((LuceneSingleIndexLocation) loc).getStatistics();
+					if (stats != null) {
+						writer.write(e.getKey(), ".Segments: ", stats.getSegmentCount() + "", "\n");
+						writer.write(e.getKey(), ".DeletionRatio: ", stats.getDeletionRatio() + "", "\n");
+					}
+				}
 				if (queue != null) {
 					AbstractUpdateCheckerJob j = queue.getCurrentJob();
 					if (j != null) {
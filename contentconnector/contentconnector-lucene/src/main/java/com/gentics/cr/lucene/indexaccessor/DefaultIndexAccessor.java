@@ -20,15 +20,15 @@ package com.gentics.cr.lucene.indexaccessor;
  */
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -36,9 +36,13 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.Directory;
 
+import com.gentics.cr.lucene.LuceneVersion;
+
 /**
  * Provides a default implementation for {@link IndexAccessor}.
  */
@@ -83,6 +87,92 @@ class DefaultIndexAccessor implements IndexAccessor {
 		}
 	}
 
+	/**
+	 * A reference counted generation of a cached searcher. The generation holds
+	 * one reference itself as long as it is the current searcher for its
+	 * {@link Similarity}. Every user that checks out the searcher adds a
+	 * reference with a CAS, the reader of the searcher is closed when the last
+	 * reference is released.
+	 */
+	protected static final class SearcherGeneration {
+
+		/**
+		 * Searcher of this generation.
+		 */
+		private final IndexSearcher searcher;
+
+		/**
+		 * Reference count, starts with the reference held by the accessor cache.
+		 */
+		private final AtomicInteger refCount = new AtomicInteger(1);
+
+		/**
+		 * Create a new generation for the given searcher.
+		 * @param indexSearcher searcher to manage
+		 */
+		protected SearcherGeneration(final IndexSearcher indexSearcher) {
+			searcher = indexSearcher;
+		}
+
+		/**
+		 * @return searcher of this generation
+		 */
+		protected IndexSearcher getSearcher() {
+			return searcher;
+		}
+
+		/**
+		 * Try to add a reference to this generation.
+		 * @return <code>false</code> if the generation was already retired and
+		 * closed, the caller has to fetch the current generation again.
+		 */
+		protected boolean tryAcquire() {
+			while (true) {
+				int count = refCount.get();
+				if (count <= 0) {
+					return false;
+				}
+				if (refCount.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Remove a reference from this generation and close the reader if it
+		 * was the last one.
+		 * @return <code>false</code> if the generation was already closed and
+		 * the release was rejected
+		 */
+		protected boolean release() {
+			while (true) {
+				int count = refCount.get();
+				if (count <= 0) {
+					// never go below 0, the reader is already closed
+					LOGGER.warn("searcher generation was released more often than it was acquired");
+					return false;
+				}
+				if (refCount.compareAndSet(count, count - 1)) {
+					if (count == 1) {
+						try {
+							searcher.getIndexReader().close();
+						} catch (IOException e) {
+							LOGGER.error("error closing retired Searcher", e);
+						}
+					}
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * @return current number of references including the one of the cache
+		 */
+		protected int getRefCount() {
+			return refCount.get();
+		}
+	}
+
 	/**
 	 * Log4j logger for error and debug messages.
 	 */
@@ -100,30 +190,39 @@ class DefaultIndexAccessor implements IndexAccessor {
 	private final Map<IndexReader, Integer> oldReadingReaders = new HashMap<IndexReader, Integer>();
 
 	/**
-	 * cache for searchers.
+	 * cache for the current searcher generation per similarity.
 	 */
-	protected final Map<Similarity, IndexSearcher> cachedSearchers;
+	protected final ConcurrentMap<Similarity, SearcherGeneration> cachedSearchers;
+
+	/**
+	 * all searcher generations that are still referenced, either because they
+	 * are current or because a user did not return them yet.
+	 */
+	protected final ConcurrentMap<IndexSearcher, SearcherGeneration> searcherGenerations;
 
 	private IndexWriter cachedWriter = null;
 
 	private IndexReader cachedWritingReader = null;
 
-	protected boolean closed = true;
+	protected volatile boolean closed = true;
 
 	private Directory directory;
 
+	/**
+	 * settings for new writers, null for the lucene defaults.
+	 */
+	private IndexWriterSettings writerSettings = null;
+
 	protected int readingReaderUseCount = 0;
 
 	protected ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, new NamedThreadFactory(DefaultIndexAccessor.class.getSimpleName()));
 
-	protected int numReopening = 0;
-
-	protected boolean isReopening = false;
+	protected volatile int numReopening = 0;
 
 	/**
-	 * use count for cached searcher.
+	 * use count for cached searchers of all generations.
 	 */
-	protected int searcherUseCount = 0;
+	protected final AtomicInteger searcherUseCount = new AtomicInteger(0);
 
 	protected int writerUseCount = 0;
 
@@ -131,13 +230,6 @@ class DefaultIndexAccessor implements IndexAccessor {
 
 	protected int writingReaderUseCount = 0;
 
-	/**
-	 * marker for closing searchers currently in use. this is used when the
-	 * index should be reopened.
-	 * @see #reopen()
-	 */
-	private boolean closeAllReleasedSearchers = true;
-
 	/**
 	 * Creates a new instance with the given {@link Directory} and
 	 * {@link Analyzer}.
@@ -150,7 +242,17 @@ class DefaultIndexAccessor implements IndexAccessor {
 	public DefaultIndexAccessor(final Directory dir, final Analyzer indexAnalyzer) {
 		directory = dir;
 		analyzer = indexAnalyzer;
-		cachedSearchers = new HashMap<Similarity, IndexSearcher>();
+		cachedSearchers = new ConcurrentHashMap<Similarity, SearcherGeneration>();
+		searcherGenerations = new ConcurrentHashMap<IndexSearcher, SearcherGeneration>();
+	}
+
+	/**
+	 * Set the settings (merge policy and merge scheduling) used for writers
+	 * created by this accessor.
+	 * @param settings settings for new writers, null for the lucene defaults
+	 */
+	void setWriterSettings(final IndexWriterSettings settings) {
+		writerSettings = settings;
 	}
 
 	/**
@@ -173,7 +275,8 @@ class DefaultIndexAccessor implements IndexAccessor {
 			return;
 		}
 		closed = true;
-		while (readingReaderUseCount > 0 || searcherUseCount > 0 || writingReaderUseCount > 0 || writerUseCount > 0 || numReopening > 0) {
+		while (readingReaderUseCount > 0 || searcherUseCount.get() > 0 || writingReaderUseCount > 0 || writerUseCount > 0
+				|| numReopening > 0) {
 			try {
 				wait();
 			} catch (InterruptedException e) {
@@ -211,21 +314,59 @@ class DefaultIndexAccessor implements IndexAccessor {
 	}
 
 	/**
-	 * Closes all of the Searchers in the Searcher cache. This method is invoked
-	 * in a synchronized context.
+	 * Retires all of the Searchers in the Searcher cache. Searchers that are
+	 * still in use are closed when their last user releases them.
 	 */
 	protected void closeCachedSearchers() {
 		LOGGER.debug("closing cached searchers (" + cachedSearchers.size() + ")");
 
-		for (IndexSearcher searcher : cachedSearchers.values()) {
-			try {
-				searcher.getIndexReader().close();
-			} catch (IOException e) {
-				LOGGER.error("error closing cached Searcher", e);
+		for (Entry<Similarity, SearcherGeneration> entry : cachedSearchers.entrySet()) {
+			SearcherGeneration generation = entry.getValue();
+			if (cachedSearchers.remove(entry.getKey(), generation)) {
+				releaseGeneration(generation);
 			}
 		}
+	}
 
-		cachedSearchers.clear();
+	/**
+	 * Makes the given searcher the current one for the similarity if the
+	 * expected generation is still current. The replaced generation is retired
+	 * and closed as soon as its last user returns it, so searches running on
+	 * it are never blocked.
+	 * @param similarity key of the cached searcher
+	 * @param expected generation that is expected to be current
+	 * @param searcher new searcher to publish
+	 * @return <code>true</code> if the searcher was published, otherwise the
+	 * searcher was closed because a concurrent reopen was faster.
+	 */
+	protected boolean swapSearcher(final Similarity similarity, final SearcherGeneration expected, final IndexSearcher searcher) {
+		SearcherGeneration generation = new SearcherGeneration(searcher);
+		searcherGenerations.put(searcher, generation);
+		if (cachedSearchers.replace(similarity, expected, generation)) {
+			releaseGeneration(expected);
+			return true;
+		}
+		LOGGER.debug("searcher was already replaced by a concurrent reopen");
+		releaseGeneration(generation);
+		return false;
+	}
+
+	/**
+	 * Releases a reference of the given generation and forgets it if it was
+	 * the last one.
+	 * @param generation generation to release
+	 * @return <code>false</code> if the generation was already closed and
+	 * the release was rejected
+	 */
+	protected boolean releaseGeneration(final SearcherGeneration generation) {
+		if (!generation.release()) {
+			return false;
+		}
+		// a closed generation is never acquired again
+		if (generation.getRefCount() == 0) {
+			searcherGenerations.remove(generation.getSearcher());
+		}
+		return true;
 	}
 
 	/**
@@ -303,29 +444,11 @@ class DefaultIndexAccessor implements IndexAccessor {
 	 * @throws IOException
 	 */
 	public IndexSearcher getPrioritizedSearcher() throws IOException {
-		boolean reopened = this.numReopening > 0;
-		IndexSearcher searcher = (IndexSearcher) getSearcher();
-
-		if (reopened) {
+		if (this.numReopening > 0) {
 			//REOPEN SEARCHER AS IT WAS PRIORITIZED
-			synchronized (DefaultIndexAccessor.this) {
-				IndexReader reader = searcher.getIndexReader();
-				IndexSearcher oldSearcher = searcher;
-				IndexReader newReader = reader.reopen();
-				if (newReader != reader) {
-					searcher = new IndexSearcher(newReader);
-					searcher.setSimilarity(oldSearcher.getSimilarity());
-					oldSearcher.getIndexReader().close();
-					for (Map.Entry<Similarity, IndexSearcher> e : cachedSearchers.entrySet()) {
-						if (e.getValue() == oldSearcher) {
-							cachedSearchers.put(e.getKey(), searcher);
-						}
-					}
-				}
-			}
+			reopenCachedSearchers();
 		}
-
-		return searcher;
+		return getSearcher();
 	}
 
 	/*
@@ -352,22 +475,38 @@ class DefaultIndexAccessor implements IndexAccessor {
 	 * (non-Javadoc)
 	 * @see com.mhs.indexaccessor.IndexAccessor#getSearcher(org.apache.lucene.search.Similarity, org.apache.lucene.index.IndexReader)
 	 */
-	public synchronized IndexSearcher getSearcher(Similarity similarity, IndexReader indexReader) throws IOException {
+	public IndexSearcher getSearcher(Similarity similarity, IndexReader indexReader) throws IOException {
 
 		checkClosed();
 
-		IndexSearcher searcher = cachedSearchers.get(similarity);
-		if (searcher != null) {
-			LOGGER.debug("returning cached searcher");
-		} else {
-			LOGGER.debug("opening new searcher and caching it");
-			searcher = indexReader != null ? new IndexSearcher(indexReader) : new IndexSearcher(directory);
-			searcher.setSimilarity(similarity);
-			cachedSearchers.put(similarity, searcher);
+		while (true) {
+			SearcherGeneration generation = cachedSearchers.get(similarity);
+			if (generation != null) {
+				LOGGER.debug("returning cached searcher");
+			} else {
+				LOGGER.debug("opening new searcher and caching it");
+				IndexSearcher searcher = indexReader != null ? new IndexSearcher(indexReader) : new IndexSearcher(directory);
+				searcher.setSimilarity(similarity);
+				SearcherGeneration created = new SearcherGeneration(searcher);
+				searcherGenerations.put(searcher, created);
+				generation = cachedSearchers.putIfAbsent(similarity, created);
+				if (generation != null) {
+					// another thread was faster, use its searcher
+					releaseGeneration(created);
+				} else {
+					generation = created;
+				}
+			}
+			// the generation can be retired between the lookup and the acquire,
+			// in this case the current generation is fetched again
+			if (generation.tryAcquire()) {
+				searcherUseCount.incrementAndGet();
+				return generation.getSearcher();
+			}
+			// a generation that was released too often can still be cached,
+			// remove it so the next attempt opens a new searcher
+			cachedSearchers.remove(similarity, generation);
 		}
-		searcherUseCount++;
-		notifyAll();
-		return searcher;
 	}
 
 	/*
@@ -402,7 +541,11 @@ class DefaultIndexAccessor implements IndexAccessor {
 		} else {
 			LOGGER.debug("opening new writer and caching it:" + Thread.currentThread().getId());
 
-			cachedWriter = new IndexWriter(directory, analyzer, IndexWriter.MaxFieldLength.UNLIMITED);
+			if (writerSettings != null) {
+				cachedWriter = new IndexWriter(directory, writerSettings.createConfig(LuceneVersion.getVersion(), analyzer));
+			} else {
+				cachedWriter = new IndexWriter(directory, analyzer, IndexWriter.MaxFieldLength.UNLIMITED);
+			}
 			writerUseCount = 1;
 		}
 
@@ -521,9 +664,12 @@ class DefaultIndexAccessor implements IndexAccessor {
 						if (numReopening > 5) {
 							// there are too many reopens pending, so just bail
 							numReopening--;
+							DefaultIndexAccessor.this.notifyAll();
 							return;
 						}
-						waitForReadersAndReopenCached();
+					}
+					reopenCached();
+					synchronized (DefaultIndexAccessor.this) {
 						numReopening--;
 						DefaultIndexAccessor.this.notifyAll();
 					}
@@ -538,13 +684,28 @@ class DefaultIndexAccessor implements IndexAccessor {
 	 * (non-Javadoc)
 	 * @see com.mhs.indexaccessor.IndexAccessor#release(org.apache.lucene.search.Searcher)
 	 */
-	public synchronized void release(IndexSearcher searcher) {
-		searcherUseCount--;
-		if (searcherUseCount == 0 && closeAllReleasedSearchers) {
-			closeCachedSearchers();
-			closeAllReleasedSearchers = false;
+	public void release(IndexSearcher searcher) {
+		SearcherGeneration generation = searcherGenerations.get(searcher);
+		if (generation == null) {
+			LOGGER.warn("searcher not opened by this index accessor or already released");
+			return;
+		}
+		if (!releaseGeneration(generation)) {
+			// over-release of a retired searcher, it is not counted as in use
+			return;
+		}
+		int count;
+		do {
+			count = searcherUseCount.get();
+			if (count <= 0) {
+				return;
+			}
+		} while (!searcherUseCount.compareAndSet(count, count - 1));
+		if (count == 1 && closed) {
+			synchronized (this) {
+				notifyAll();
+			}
 		}
-		notifyAll();
 	}
 
 	/** Release the reader that was opened for read-only operations. */
@@ -611,7 +772,9 @@ class DefaultIndexAccessor implements IndexAccessor {
 						if (numReopening > 5) {
 							LOGGER.warn("Too many reopens");
 						}
-						waitForReadersAndReopenCached();
+					}
+					reopenCached();
+					synchronized (DefaultIndexAccessor.this) {
 						numReopening--;
 						DefaultIndexAccessor.this.notifyAll();
 					}
@@ -621,30 +784,34 @@ class DefaultIndexAccessor implements IndexAccessor {
 	}
 
 	/**
-	 * Reopens all of the Searchers in the Searcher cache. This method is invoked
-	 * in a synchronized context.
+	 * Reopens all of the Searchers in the Searcher cache. The new searchers are
+	 * swapped in atomically, searches running on the old generation keep it
+	 * until they release it.
 	 */
-	private void reopenCachedSearchers() {
+	protected void reopenCachedSearchers() {
 		LOGGER.debug("reopening cached searchers (" + cachedSearchers.size() + "):" + Thread.currentThread().getId());
-		Set<Similarity> keys = cachedSearchers.keySet();
-		for (Similarity key : keys) {
-			IndexSearcher searcher = cachedSearchers.get(key);
+		for (Entry<Similarity, SearcherGeneration> entry : cachedSearchers.entrySet()) {
+			SearcherGeneration generation = entry.getValue();
+			// hold a reference so the reader cannot be closed while reopening
+			if (!generation.tryAcquire()) {
+				cachedSearchers.remove(entry.getKey(), generation);
+				continue;
+			}
 			try {
-				IndexReader oldReader = searcher.getIndexReader();
-				IndexSearcher oldSearcher = searcher;
+				IndexSearcher oldSearcher = generation.getSearcher();
+				IndexReader oldReader = oldSearcher.getIndexReader();
 				IndexReader newReader = oldReader.reopen();
 
 				if (newReader != oldReader) {
-
-					cachedSearchers.remove(key);
-					searcher = new IndexSearcher(newReader);
+					IndexSearcher searcher = new IndexSearcher(newReader);
 					searcher.setSimilarity(oldSearcher.getSimilarity());
-					oldSearcher.getIndexReader().close();
-					cachedSearchers.put(key, searcher);
+					swapSearcher(entry.getKey(), generation, searcher);
 				}
 
 			} catch (IOException e) {
 				LOGGER.error("error reopening cached Searcher", e);
+			} finally {
+				releaseGeneration(generation);
 			}
 		}
 
@@ -682,12 +849,18 @@ class DefaultIndexAccessor implements IndexAccessor {
 
 	}
 
+	/**
+	 * The default accessor does not warm searchers, so queries are not recorded.
+	 */
+	public void recordQuery(final Query query, final Sort sort) {
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.mhs.indexaccessor.IndexAccessor#activeSearchers()
 	 */
 	public int searcherUseCount() {
-		return searcherUseCount;
+		return searcherUseCount.get();
 	}
 
 	protected void shutdownAndAwaitTermination(ExecutorService pool) {
@@ -715,19 +888,19 @@ class DefaultIndexAccessor implements IndexAccessor {
 		super.finalize();
 	}
 
-	/** This method assumes it is invoked in a synchronized context. */
-	private void waitForReadersAndReopenCached() {
-		while (readingReaderUseCount > 0 || searcherUseCount > 0) {
-			try {
-				wait();
-			} catch (InterruptedException e) {
+	/**
+	 * Reopens the cached reading reader and searchers. Readers and searchers
+	 * that are in use are kept open until they are released, so this never
+	 * waits for running searches.
+	 */
+	private void reopenCached() {
+		synchronized (this) {
+			if (numReopening > 1) {
+				// there are other calls to reopen pending, so we can bail
+				return;
 			}
+			reopenReadingReader();
 		}
-		if (numReopening > 1) {
-			// there are other calls to reopen pending, so we can bail
-			return;
-		}
-		reopenReadingReader();
 		reopenCachedSearchers();
 	}
 
@@ -765,16 +938,13 @@ class DefaultIndexAccessor implements IndexAccessor {
 	}
 
 	/**
-	 * release all searchers to reopen the index.
+	 * release all searchers to reopen the index. searchers in use are closed
+	 * when they are returned, the next call to getSearcher opens a new one.
 	 * @see #reopen()
 	 */
-	private synchronized void releaseAllSearchers() {
+	protected void releaseAllSearchers() {
 		LOGGER.debug("release all cached searchers");
-		if (searcherUseCount() == 0 && cachedSearchers.size() > 0) {
-			closeCachedSearchers();
-		} else {
-			closeAllReleasedSearchers = true;
-		}
+		closeCachedSearchers();
 	}
 	
 
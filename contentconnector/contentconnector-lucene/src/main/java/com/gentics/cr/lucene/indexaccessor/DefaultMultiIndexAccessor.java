@@ -17,9 +17,10 @@ package com.gentics.cr.lucene.indexaccessor;
  * limitations under the License.
  */
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.index.IndexReader;
@@ -27,8 +28,10 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searchable;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.Directory;
 
 /**
@@ -44,13 +47,19 @@ public class DefaultMultiIndexAccessor implements IndexAccessor {
 	 * Log4j logger for error and debug messages.
 	 */
 	private static final Logger LOGGER = Logger.getLogger(DefaultMultiIndexAccessor.class);
-	private final Map<IndexSearcher, IndexAccessor> multiSearcherAccessors = new HashMap<IndexSearcher, IndexAccessor>();
-	private final Map<IndexReader, IndexAccessor> multiReaderAccessors = new HashMap<IndexReader, IndexAccessor>();
+	private final ConcurrentMap<IndexSearcher, IndexAccessor> multiSearcherAccessors = new ConcurrentHashMap<IndexSearcher, IndexAccessor>();
+	private final ConcurrentMap<IndexReader, IndexAccessor> multiReaderAccessors = new ConcurrentHashMap<IndexReader, IndexAccessor>();
 
 	private Similarity similarity;
 
 	private Directory[] dirs;
 
+	/**
+	 * Executor used to search the sub indexes in parallel, null for
+	 * sequential search.
+	 */
+	private ExecutorService executor;
+
 	/**
 	 * Create new Instance.
 	* @param dirs 
@@ -70,11 +79,23 @@ public class DefaultMultiIndexAccessor implements IndexAccessor {
 		this.dirs = dirs;
 	}
 
+	/**
+	 * Create new instance that searches the sub indexes in parallel.
+	 * Searchers created by this accessor search all segments of all indexes
+	 * concurrently on the given executor and merge the top hits.
+	 * @param dirs directories of the sub indexes
+	 * @param executor bounded executor for the parallel search, null for sequential search
+	 */
+	public DefaultMultiIndexAccessor(Directory[] dirs, ExecutorService executor) {
+		this(dirs);
+		this.executor = executor;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.mhs.indexaccessor.MultiIndexAccessor#release(org.apache.lucene.search.Searcher)
 	 */
-	public synchronized void release(IndexSearcher multiSearcher) {
+	public void release(IndexSearcher multiSearcher) {
 		IndexReader reader = multiSearcher.getIndexReader();
 		release(reader, false);
 	}
@@ -158,7 +179,12 @@ public class DefaultMultiIndexAccessor implements IndexAccessor {
 			}
 			ir = new MultiReader(readers, false); 
 		}
-		IndexSearcher multiSearcher = new IndexSearcher(ir);
+		IndexSearcher multiSearcher;
+		if (executor != null) {
+			multiSearcher = new IndexSearcher(ir, executor);
+		} else {
+			multiSearcher = new IndexSearcher(ir);
+		}
 		multiSearcher.setSimilarity(similarity);
 		
 		return multiSearcher;
@@ -216,11 +242,17 @@ public class DefaultMultiIndexAccessor implements IndexAccessor {
 	public void release(IndexReader reader, boolean write) {
 		if (reader instanceof MultiReader) {
 			IndexReader[] readers = ((MultiReader) reader).getSequentialSubReaders();
-			for (IndexReader r : readers) {
-				IndexAccessor accessor = multiReaderAccessors.get(r);
+			IndexAccessorFactory factory = IndexAccessorFactory.getInstance();
+			for (int i = 0; i < readers.length; i++) {
+				IndexReader r = readers[i];
+				IndexAccessor accessor = multiReaderAccessors.remove(r);
+				if (readers.length == dirs.length) {
+					// the sub readers are shared between concurrent searches, so
+					// the accessor is looked up by the position of the directory
+					accessor = factory.getAccessor(dirs[i]);
+				}
 				if (accessor != null) {
 					accessor.release(r, write);
-					multiReaderAccessors.remove(r);
 				}
 			}
 		}
@@ -250,6 +282,13 @@ public class DefaultMultiIndexAccessor implements IndexAccessor {
 		return usecount;
 	}
 
+	public void recordQuery(final Query query, final Sort sort) {
+		IndexAccessorFactory factory = IndexAccessorFactory.getInstance();
+		for (Directory index : this.dirs) {
+			factory.getAccessor(index).recordQuery(query, sort);
+		}
+	}
+
 	public int writingReadersUseCount() {
 		int usecount = 0;
 		IndexAccessorFactory factory = IndexAccessorFactory.getInstance();
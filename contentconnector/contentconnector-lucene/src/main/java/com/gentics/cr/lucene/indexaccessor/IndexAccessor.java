@@ -23,7 +23,9 @@ import java.io.IOException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.Sort;
 
 /**
  * An IndexAccessor coordinates access to Writers, Readers, and Searchers in a
@@ -145,6 +147,14 @@ public interface IndexAccessor {
 
 	int writerUseCount();
 
+	/**
+	 * Records a query executed on live traffic. Accessors that warm up
+	 * reopened searchers use a sample of these queries for warming.
+	 * @param query query that was executed
+	 * @param sort sort that was used, null for relevance sorting
+	 */
+	void recordQuery(Query query, Sort sort);
+
 	int writingReadersUseCount();
 
 }
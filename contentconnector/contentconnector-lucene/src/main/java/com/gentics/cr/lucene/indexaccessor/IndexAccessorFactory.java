@@ -18,16 +18,15 @@ package com.gentics.cr.lucene.indexaccessor;
  */
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.LogManager;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 
@@ -131,21 +130,51 @@ public class IndexAccessorFactory {
 	}
 
 	public void createAccessor(final Directory dir, final Analyzer analyzer) throws IOException {
-		createAccessor(dir, analyzer, null, null);
+		createAccessor(dir, analyzer, null, null, null, 0);
 	}
 
 	public void createAccessor(final Directory dir, final Analyzer analyzer, final Query query) throws IOException {
-		createAccessor(dir, analyzer, query, null);
+		createAccessor(dir, analyzer, query, null, null, 0);
 	};
 
-	private void createAccessor(final Directory dir, final Analyzer analyzer, final Query query, final Set<Sort> sortFields)
-			throws IOException {
-		IndexAccessor accessor = null;
-		if (query != null) {
-			accessor = new WarmingIndexAccessor(dir, analyzer, query);
+	/**
+	 * Create an accessor that warms up reopened searchers before they are used.
+	 * @param dir directory of the index
+	 * @param analyzer analyzer for the index
+	 * @param query static warm query, may be null
+	 * @param sortFields fields to preload into the FieldCache for sorting, may be null
+	 * @param boostFields fields to preload into the FieldCache for boosting, may be null
+	 * @param sampleSize number of recent live queries used for warming, 0 to disable sampling
+	 * @throws IOException if the index cannot be initialized
+	 */
+	public void createAccessor(final Directory dir, final Analyzer analyzer, final Query query, final String[] sortFields,
+			final String[] boostFields, final int sampleSize) throws IOException {
+		createAccessor(dir, analyzer, query, sortFields, boostFields, sampleSize, null);
+	}
+
+	/**
+	 * Create an accessor that warms up reopened searchers before they are used
+	 * and creates its writers with the given settings.
+	 * @param dir directory of the index
+	 * @param analyzer analyzer for the index
+	 * @param query static warm query, may be null
+	 * @param sortFields fields to preload into the FieldCache for sorting, may be null
+	 * @param boostFields fields to preload into the FieldCache for boosting, may be null
+	 * @param sampleSize number of recent live queries used for warming, 0 to disable sampling
+	 * @param writerSettings merge settings for the writers, null for the lucene defaults
+	 * @throws IOException if the index cannot be initialized
+	 */
+	public void createAccessor(final Directory dir, final Analyzer analyzer, final Query query, final String[] sortFields,
+			final String[] boostFields, final int sampleSize, final IndexWriterSettings writerSettings) throws IOException {
+		DefaultIndexAccessor accessor = null;
+		boolean warming = query != null || sampleSize > 0 || (sortFields != null && sortFields.length > 0)
+				|| (boostFields != null && boostFields.length > 0);
+		if (warming) {
+			accessor = new WarmingIndexAccessor(dir, analyzer, query, sortFields, boostFields, sampleSize);
 		} else {
 			accessor = new DefaultIndexAccessor(dir, analyzer);
 		}
+		accessor.setWriterSettings(writerSettings);
 		accessor.open();
 
 		if (dir.listAll().length == 0) {
@@ -199,6 +228,16 @@ public class IndexAccessorFactory {
 		return multiIndexAccessor;
 	}
 
+	/**
+	 * Get an accessor that searches the given directories in parallel.
+	 * @param dirs directories of the sub indexes
+	 * @param executor bounded executor for the parallel search
+	 * @return accessor for the directories
+	 */
+	public IndexAccessor getMultiIndexAccessor(final Directory[] dirs, final ExecutorService executor) {
+		return new DefaultMultiIndexAccessor(dirs, executor);
+	}
+
 	public static void destroy() {
 		getInstance().close();
 	}
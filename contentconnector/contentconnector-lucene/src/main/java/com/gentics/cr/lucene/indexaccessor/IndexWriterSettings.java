@@ -0,0 +1,178 @@
+package com.gentics.cr.lucene.indexaccessor;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.util.Version;
+
+/**
+ * Settings for the {@link org.apache.lucene.index.IndexWriter} created by an
+ * {@link IndexAccessor}. The settings configure the merge policy and the
+ * background merging so the index can be kept in shape without a full
+ * optimize. Merges are throttled by limiting the number of merge threads and
+ * running them with a low priority.
+ *
+ * A new {@link MergePolicy} is created for every writer as a merge policy
+ * cannot be shared between writers.
+ */
+public class IndexWriterSettings {
+
+	/**
+	 * Name of the tiered merge policy.
+	 */
+	public static final String TIERED_MERGE_POLICY = "tiered";
+
+	/**
+	 * Name of the log byte size merge policy (the lucene default).
+	 */
+	public static final String LOG_BYTE_SIZE_MERGE_POLICY = "logbytesize";
+
+	/**
+	 * Log4j logger for error and debug messages.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(IndexWriterSettings.class);
+
+	/**
+	 * Value for settings that are not configured.
+	 */
+	private static final int UNSET = -1;
+
+	private String mergePolicy = null;
+
+	private double maxMergedSegmentMB = UNSET;
+
+	private double floorSegmentMB = UNSET;
+
+	private double segmentsPerTier = UNSET;
+
+	private int mergeFactor = UNSET;
+
+	private int maxMergeThreads = UNSET;
+
+	private double ramBufferSizeMB = UNSET;
+
+	/**
+	 * @return name of the merge policy, null for the lucene default
+	 */
+	public String getMergePolicy() {
+		return mergePolicy;
+	}
+
+	/**
+	 * @param mergePolicy name of the merge policy ({@link #TIERED_MERGE_POLICY}
+	 * or {@link #LOG_BYTE_SIZE_MERGE_POLICY}), null for the lucene default
+	 */
+	public void setMergePolicy(final String mergePolicy) {
+		this.mergePolicy = mergePolicy;
+	}
+
+	/**
+	 * @param maxMergedSegmentMB maximum size of a merged segment in MB, larger
+	 * segments are only merged to expunge deletes
+	 */
+	public void setMaxMergedSegmentMB(final double maxMergedSegmentMB) {
+		this.maxMergedSegmentMB = maxMergedSegmentMB;
+	}
+
+	/**
+	 * @param floorSegmentMB segments smaller than this are rounded up to this
+	 * size for the tiered merge policy (min merge size for log byte size)
+	 */
+	public void setFloorSegmentMB(final double floorSegmentMB) {
+		this.floorSegmentMB = floorSegmentMB;
+	}
+
+	/**
+	 * @param segmentsPerTier allowed number of segments per tier for the tiered
+	 * merge policy
+	 */
+	public void setSegmentsPerTier(final double segmentsPerTier) {
+		this.segmentsPerTier = segmentsPerTier;
+	}
+
+	/**
+	 * @param mergeFactor merge factor for the log byte size merge policy
+	 */
+	public void setMergeFactor(final int mergeFactor) {
+		this.mergeFactor = mergeFactor;
+	}
+
+	/**
+	 * @param maxMergeThreads maximum number of concurrent background merges
+	 */
+	public void setMaxMergeThreads(final int maxMergeThreads) {
+		this.maxMergeThreads = maxMergeThreads;
+	}
+
+	/**
+	 * @param ramBufferSizeMB size of the RAM buffer before documents are flushed
+	 */
+	public void setRamBufferSizeMB(final double ramBufferSizeMB) {
+		this.ramBufferSizeMB = ramBufferSizeMB;
+	}
+
+	/**
+	 * Create the configuration for a new writer.
+	 * @param version lucene version
+	 * @param analyzer analyzer of the writer
+	 * @return configuration with a new merge policy and merge scheduler
+	 */
+	public IndexWriterConfig createConfig(final Version version, final Analyzer analyzer) {
+		IndexWriterConfig config = new IndexWriterConfig(version, analyzer);
+		MergePolicy policy = createMergePolicy();
+		if (policy != null) {
+			config.setMergePolicy(policy);
+		}
+		ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler();
+		if (maxMergeThreads > 0) {
+			// the thread count must not exceed the number of pending merges
+			scheduler.setMaxMergeCount(Math.max(scheduler.getMaxMergeCount(), maxMergeThreads + 2));
+			scheduler.setMaxThreadCount(maxMergeThreads);
+		}
+		// merges should not compete with search threads
+		scheduler.setMergeThreadPriority(Thread.MIN_PRIORITY);
+		config.setMergeScheduler(scheduler);
+		if (ramBufferSizeMB > 0) {
+			config.setRAMBufferSizeMB(ramBufferSizeMB);
+		}
+		return config;
+	}
+
+	/**
+	 * @return new merge policy or null if the lucene default should be used
+	 */
+	private MergePolicy createMergePolicy() {
+		if (TIERED_MERGE_POLICY.equalsIgnoreCase(mergePolicy)) {
+			TieredMergePolicy policy = new TieredMergePolicy();
+			if (maxMergedSegmentMB > 0) {
+				policy.setMaxMergedSegmentMB(maxMergedSegmentMB);
+			}
+			if (floorSegmentMB > 0) {
+				policy.setFloorSegmentMB(floorSegmentMB);
+			}
+			if (segmentsPerTier > 0) {
+				policy.setSegmentsPerTier(segmentsPerTier);
+			}
+			return policy;
+		} else if (LOG_BYTE_SIZE_MERGE_POLICY.equalsIgnoreCase(mergePolicy)) {
+			LogByteSizeMergePolicy policy = new LogByteSizeMergePolicy();
+			if (maxMergedSegmentMB > 0) {
+				policy.setMaxMergeMB(maxMergedSegmentMB);
+			}
+			if (floorSegmentMB > 0) {
+				policy.setMinMergeMB(floorSegmentMB);
+			}
+			if (mergeFactor > 0) {
+				policy.setMergeFactor(mergeFactor);
+			}
+			return policy;
+		} else if (mergePolicy != null) {
+			LOGGER.error("Unknown merge policy " + mergePolicy + ", using the default merge policy.");
+		}
+		return null;
+	}
+}
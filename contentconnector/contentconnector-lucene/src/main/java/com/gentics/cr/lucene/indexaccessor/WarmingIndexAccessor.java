@@ -2,25 +2,74 @@ package com.gentics.cr.lucene.indexaccessor;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.store.Directory;
-
+import org.apache.lucene.util.ReaderUtil;
+
+/**
+ * {@link IndexAccessor} that warms up reopened searchers in the background
+ * before they are published. Warming runs the configured warm query, a sample
+ * of the most recent queries and sorts seen on live traffic and preloads the
+ * {@link FieldCache} for the configured sort and boost fields.
+ */
 class WarmingIndexAccessor extends DefaultIndexAccessor {
 
+	/**
+	 * Number of hits collected for each sampled query while warming.
+	 */
+	private static final int WARM_HITS = 10;
+
 	private Query warmQuery;
-	// look into making a Set again
-	private List<IndexSearcher> retiredSearchers;
+
+	/**
+	 * Fields that are loaded into the {@link FieldCache} as strings, these are
+	 * used for (locale aware) sorting.
+	 */
+	private String[] sortFields;
+
+	/**
+	 * Fields that are loaded into the {@link FieldCache} as ints, these are
+	 * used for boosting (e.g. recency boosting).
+	 */
+	private String[] boostFields;
+
+	/**
+	 * Maximum number of recent queries used to warm up a searcher.
+	 */
+	private int sampleSize;
+
+	/**
+	 * Most recently used queries, bounded to {@link #sampleSize} entries.
+	 */
+	private final Map<String, WarmingQuery> recentQueries;
+
+	/**
+	 * Similarities of the searchers that are currently warming up.
+	 */
+	private final Set<Similarity> warmingSimilarities = Collections.newSetFromMap(new ConcurrentHashMap<Similarity, Boolean>());
+
+	/**
+	 * Similarities that were reopened while their searcher was warming up. The
+	 * reader of the warming searcher may have been opened before the latest
+	 * commit, so the searcher is reopened again when warming is done.
+	 */
+	private final Set<Similarity> dirtySimilarities = Collections.newSetFromMap(new ConcurrentHashMap<Similarity, Boolean>());
 
 	/**
 	 * Log4j logger for error and debug messages.
@@ -34,10 +83,100 @@ class WarmingIndexAccessor extends DefaultIndexAccessor {
 	 * @param warmQuery
 	 */
 	public WarmingIndexAccessor(Directory dir, Analyzer analyzer, Query warmQuery) {
+		this(dir, analyzer, warmQuery, null, null, 0);
+	}
+
+	/**
+	 * Create new instance.
+	 * @param dir directory of the index
+	 * @param analyzer analyzer for the index
+	 * @param warmQuery static query to warm the searcher with, may be null
+	 * @param sortFields fields to preload into the FieldCache for sorting, may be null
+	 * @param boostFields fields to preload into the FieldCache for boosting, may be null
+	 * @param sampleSize number of recent queries to warm the searcher with
+	 */
+	public WarmingIndexAccessor(Directory dir, Analyzer analyzer, Query warmQuery, String[] sortFields, String[] boostFields,
+			final int sampleSize) {
 		super(dir, analyzer);
 
 		this.warmQuery = warmQuery;
-		retiredSearchers = new ArrayList<IndexSearcher>();
+		this.sortFields = sortFields != null ? sortFields : new String[0];
+		this.boostFields = boostFields != null ? boostFields : new String[0];
+		this.sampleSize = sampleSize;
+		recentQueries = new LinkedHashMap<String, WarmingQuery>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, WarmingQuery> eldest) {
+				return size() > WarmingIndexAccessor.this.sampleSize;
+			}
+		};
+	}
+
+	@Override
+	public void recordQuery(final Query query, final Sort sort) {
+		if (sampleSize <= 0 || query == null) {
+			return;
+		}
+		String key = query.toString() + "|" + sort;
+		synchronized (recentQueries) {
+			recentQueries.put(key, new WarmingQuery(query, sort));
+		}
+	}
+
+	/**
+	 * @return snapshot of the recently used queries
+	 */
+	private List<WarmingQuery> getRecentQueries() {
+		synchronized (recentQueries) {
+			return new ArrayList<WarmingQuery>(recentQueries.values());
+		}
+	}
+
+	/**
+	 * Warm up the searcher by preloading the FieldCache and running the warm
+	 * query and the sampled queries.
+	 * @param searcher searcher to warm up
+	 */
+	protected void warm(final IndexSearcher searcher) {
+		List<IndexReader> subReaders = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders(subReaders, searcher.getIndexReader());
+		for (IndexReader reader : subReaders) {
+			for (String field : sortFields) {
+				try {
+					FieldCache.DEFAULT.getStrings(reader, field);
+				} catch (Exception e) {
+					LOGGER.error("error preloading sort field " + field, e);
+				}
+			}
+			for (String field : boostFields) {
+				try {
+					FieldCache.DEFAULT.getInts(reader, field);
+				} catch (Exception e) {
+					LOGGER.error("error preloading boost field " + field, e);
+				}
+			}
+		}
+
+		if (warmQuery != null) {
+			try {
+				searcher.search(warmQuery, new NoopCollector());
+			} catch (IOException e) {
+				LOGGER.error("error warming up searcher with " + warmQuery, e);
+			}
+		}
+
+		for (WarmingQuery recent : getRecentQueries()) {
+			try {
+				if (recent.sort != null) {
+					searcher.search(recent.query, null, WARM_HITS, recent.sort);
+				} else {
+					searcher.search(recent.query, WARM_HITS);
+				}
+			} catch (Exception e) {
+				LOGGER.error("error warming up searcher with " + recent.query, e);
+			}
+		}
 	}
 
 	/*
@@ -50,7 +189,8 @@ class WarmingIndexAccessor extends DefaultIndexAccessor {
 			return;
 		}
 		closed = true;
-		while (readingReaderUseCount > 0 || searcherUseCount > 0 || writingReaderUseCount > 0 || writerUseCount > 0 || numReopening > 0) {
+		while (readingReaderUseCount > 0 || searcherUseCount.get() > 0 || writingReaderUseCount > 0 || writerUseCount > 0
+				|| numReopening > 0) {
 			try {
 				wait();
 			} catch (InterruptedException e) {
@@ -61,82 +201,141 @@ class WarmingIndexAccessor extends DefaultIndexAccessor {
 		closeCachedWritingReader();
 		closeCachedWriter();
 
-		// System.out.println("wait for warming s's:" + numSearchersForRetirment);
-
-		retireSearchers();
+		// wait for searchers that are still warming up
 		while (numSearchersForRetirment > 0) {
-
 			try {
 				wait();
 			} catch (InterruptedException e) {
 			}
-			retireSearchers();
 		}
 
 		closeCachedSearchers();
 		shutdownAndAwaitTermination(pool);
-
-		// int i = 0;
-		// for (IndexSearcher s : createdSearchers) {
-		// System.out.println(i++ + ":" + s.getIndexReader().refCount + " :" +
-		// s.getIndexReader());
-		// }
 	}
 
 	/**
-	 * Reopens all of the Searchers in the Searcher cache. This method is invoked
-	 * in a synchronized context.
+	 * Reopens all of the Searchers in the Searcher cache. The reopened searchers
+	 * are warmed up in the pool and published when warming is done, until then
+	 * the old generation keeps serving searches.
 	 */
 	protected void reopenCachedSearchers() {
 		LOGGER.debug("reopening cached searchers (" + cachedSearchers.size() + "):" + Thread.currentThread().getId());
-		Set<Similarity> keys = cachedSearchers.keySet();
-		for (Similarity key : keys) {
-			IndexSearcher searcher = cachedSearchers.get(key);
-			try {
-				IndexReader oldReader = searcher.getIndexReader();
-				IndexSearcher oldSearcher = searcher;
-				IndexReader newReader = oldReader.reopen();
-
-				if (newReader != oldReader) {
+		for (Similarity similarity : cachedSearchers.keySet()) {
+			reopenCachedSearcher(similarity);
+		}
+	}
 
-					retireSearchers();
-					IndexSearcher newSearcher = new IndexSearcher(newReader);
-					newSearcher.setSimilarity(oldSearcher.getSimilarity());
-					SearcherWarmer warmer = new SearcherWarmer(oldSearcher, newSearcher);
-					numSearchersForRetirment++;
+	/**
+	 * Reopens the cached searcher of a similarity. If a searcher of the
+	 * similarity is already warming up, the similarity is marked dirty and
+	 * reopened again by the warmer when it is done.
+	 * @param similarity similarity of the searcher
+	 */
+	private void reopenCachedSearcher(final Similarity similarity) {
+		while (!warmingSimilarities.add(similarity)) {
+			dirtySimilarities.add(similarity);
+			if (warmingSimilarities.contains(similarity)) {
+				// the warmer sees the dirty flag when it is done
+				return;
+			}
+		}
+		// the reader is reopened after this, so it contains all commits
+		dirtySimilarities.remove(similarity);
+		SearcherGeneration generation = cachedSearchers.get(similarity);
+		if (generation == null || !generation.tryAcquire()) {
+			if (generation != null) {
+				cachedSearchers.remove(similarity, generation);
+			}
+			finishWarming(similarity);
+			return;
+		}
+		boolean warming = false;
+		try {
+			IndexSearcher oldSearcher = generation.getSearcher();
+			IndexReader oldReader = oldSearcher.getIndexReader();
+			IndexReader newReader = oldReader.reopen();
+
+			if (newReader != oldReader) {
+				IndexSearcher newSearcher = new IndexSearcher(newReader);
+				newSearcher.setSimilarity(oldSearcher.getSimilarity());
+				SearcherWarmer warmer = new SearcherWarmer(similarity, generation, newSearcher);
+				synchronized (this) {
 					numSearchersForRetirment++;
-					pool.execute(warmer);
-
 				}
+				warming = true;
+				pool.execute(warmer);
+			}
 
-			} catch (IOException e) {
-				LOGGER.error("error reopening cached Searcher", e);
+		} catch (IOException e) {
+			LOGGER.error("error reopening cached Searcher", e);
+		} finally {
+			if (!warming) {
+				releaseGeneration(generation);
+				finishWarming(similarity);
 			}
 		}
+	}
 
+	/**
+	 * Marks the searcher of a similarity as no longer warming up and reopens
+	 * it again if it was marked dirty in the meantime.
+	 * @param similarity similarity of the searcher
+	 */
+	private void finishWarming(final Similarity similarity) {
+		warmingSimilarities.remove(similarity);
+		if (dirtySimilarities.remove(similarity) && !closed) {
+			reopenCachedSearcher(similarity);
+		}
 	}
 
-	private void retireSearchers() {
+	/**
+	 * Reopen the searchers in the background with warming instead of dropping
+	 * them, searches keep using the old searchers until the new ones are warm.
+	 */
+	@Override
+	protected void releaseAllSearchers() {
+		reopenCachedSearchers();
+	}
 
-		Iterator<IndexSearcher> it = retiredSearchers.iterator();
+	/**
+	 * Query and sort sampled from live traffic.
+	 */
+	private static final class WarmingQuery {
+		private final Query query;
+		private final Sort sort;
 
-		while (it.hasNext()) {
+		private WarmingQuery(final Query query, final Sort sort) {
+			this.query = query;
+			this.sort = sort;
+		}
+	}
 
-			IndexSearcher s = it.next();
-			LOGGER.debug("closing retired searcher:" + s.getIndexReader());
+	/**
+	 * Collector that ignores all hits, used to run the warm query.
+	 */
+	private static final class NoopCollector extends Collector {
+		@Override
+		public boolean acceptsDocsOutOfOrder() {
+			return true;
+		}
 
-			try {
-				s.getIndexReader().close();
-			} catch (IOException e) {
-				LOGGER.error("error closing cached Searcher", e);
-			}
-			numSearchersForRetirment--;
+		@Override
+		public void collect(int doc) throws IOException {
+		}
+
+		@Override
+		public void setNextReader(IndexReader reader, int docBase) throws IOException {
 		}
-		retiredSearchers.clear();
 
+		@Override
+		public void setScorer(Scorer scorer) throws IOException {
+		}
 	}
 
 	/**
+	 * Warms up a reopened searcher and swaps it in for the old generation.
+	 * The warmer holds a reference on the old generation until the new
+	 * searcher is published.
 	 * 
 	 * Last changed: $Date: 2009-09-02 17:57:48 +0200 (Mi, 02 Sep 2009) $
 	 * @version $Revision: 180 $
@@ -144,62 +343,36 @@ class WarmingIndexAccessor extends DefaultIndexAccessor {
 	 *
 	 */
 	public class SearcherWarmer implements Runnable {
+		private Similarity similarity;
+		private SearcherGeneration oldGeneration;
 		private IndexSearcher searcher;
-		private IndexSearcher oldSearcher;
 
 		/**
 		 * Create new instance.
-		 * @param oldSearcher
+		 * @param similarity
+		 * @param oldGeneration
 		 * @param searcher
 		 */
-		public SearcherWarmer(IndexSearcher oldSearcher, IndexSearcher searcher) {
+		public SearcherWarmer(Similarity similarity, SearcherGeneration oldGeneration, IndexSearcher searcher) {
+			this.similarity = similarity;
+			this.oldGeneration = oldGeneration;
 			this.searcher = searcher;
-			this.oldSearcher = oldSearcher;
-
 		}
 
 		public void run() {
 			LOGGER.debug("warming up searcher...");
 			try {
-
-				searcher.search(warmQuery, new Collector() {
-
-					@Override
-					public boolean acceptsDocsOutOfOrder() {
-						// TODO Auto-generated method stub
-						return false;
-					}
-
-					@Override
-					public void collect(int arg0) throws IOException {
-						// TODO Auto-generated method stub
-
-					}
-
-					@Override
-					public void setNextReader(IndexReader arg0, int arg1) throws IOException {
-						// TODO Auto-generated method stub
-
-					}
-
-					@Override
-					public void setScorer(Scorer arg0) throws IOException {
-						// TODO Auto-generated method stub
-
-					}
-				});
-
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
-
-			LOGGER.debug("warming done");
-
-			synchronized (WarmingIndexAccessor.this) {
-				retiredSearchers.add(cachedSearchers.put(searcher.getSimilarity(), searcher));
-				retiredSearchers.add(oldSearcher);
-
-				WarmingIndexAccessor.this.notifyAll();
+				warm(searcher);
+				LOGGER.debug("warming done");
+			} finally {
+				swapSearcher(similarity, oldGeneration, searcher);
+				releaseGeneration(oldGeneration);
+				// may start the next warmer before this one is counted down
+				finishWarming(similarity);
+				synchronized (WarmingIndexAccessor.this) {
+					numSearchersForRetirment--;
+					WarmingIndexAccessor.this.notifyAll();
+				}
 			}
 		}
 	}
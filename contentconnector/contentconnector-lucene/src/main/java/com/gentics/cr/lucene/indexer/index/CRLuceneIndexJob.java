@@ -82,6 +82,13 @@ public class CRLuceneIndexJob extends AbstractUpdateCheckerJob {
 	 * indicates the maximum amount of segments (files) used storing the index.
 	 */
 	private String maxSegmentsString = null;
+
+	/**
+	 * ratio of deleted documents above which the deletes are expunged after
+	 * indexing, 0 to leave the deletes to the merge policy.
+	 */
+	private float expungeDeletesRatio = 0;
+
 	/**
 	 * indicates if facets are activated
 	 */
@@ -100,6 +107,7 @@ public class CRLuceneIndexJob extends AbstractUpdateCheckerJob {
 			optimize = Boolean.parseBoolean(ignoreoptimizeString);
 		}
 		maxSegmentsString = config.getString(MAXSEGMENTS_KEY);
+		expungeDeletesRatio = config.getFloat(EXPUNGE_DELETES_RATIO_KEY, 0);
 		String storeVectorsString = config.getString(STORE_VECTORS_KEY);
 		if (storeVectorsString != null) {
 			storeVectors = Boolean.parseBoolean(storeVectorsString);
@@ -168,6 +176,11 @@ public class CRLuceneIndexJob extends AbstractUpdateCheckerJob {
 	 */
 	private static final String MAXSEGMENTS_KEY = "maxsegments";
 
+	/**
+	 * Configuration key for {@link #expungeDeletesRatio}.
+	 */
+	private static final String EXPUNGE_DELETES_RATIO_KEY = "expungedeletesratio";
+
 	/**
 	 * Configuration key to define if vectors are stored in the index or not.
 	 */
@@ -443,6 +456,14 @@ public class CRLuceneIndexJob extends AbstractUpdateCheckerJob {
 						} finally {
 							uc.stop();
 						}
+					} else if (expungeDeletesRatio > 0 && indexWriter.maxDoc() > 0) {
+						// only rewrite the segments with deletions in the
+						// background instead of merging the whole index
+						float deletesRatio = 1f - (float) indexWriter.numDocs() / indexWriter.maxDoc();
+						if (deletesRatio > expungeDeletesRatio) {
+							log.debug("Expunging deletes, ratio of deleted documents: " + deletesRatio);
+							indexWriter.forceMergeDeletes(false);
+						}
 					}
 				} else {
 					log.debug("Job has been interrupted and will now be closed." + " Missing objects " + "will be reindexed next run.");
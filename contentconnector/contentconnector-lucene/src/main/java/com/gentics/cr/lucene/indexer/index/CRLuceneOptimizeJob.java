@@ -15,10 +15,35 @@ import com.gentics.cr.util.indexing.IndexLocation;
 
 public class CRLuceneOptimizeJob extends AbstractUpdateCheckerJob {
 
+	/**
+	 * Configuration key for the optimize mode.
+	 */
+	private static final String OPTIMIZE_MODE_KEY = "optimizemode";
+
+	/**
+	 * Merge the whole index into a single segment (default).
+	 */
+	private static final String MODE_FULL = "full";
+
+	/**
+	 * Only rewrite the segments that contain deleted documents.
+	 */
+	private static final String MODE_DELETES = "deletes";
+
+	/**
+	 * Only run the merges the merge policy considers necessary.
+	 */
+	private static final String MODE_MERGE = "merge";
+
+	/**
+	 * configured optimize mode.
+	 */
+	private String optimizeMode;
+
 	public CRLuceneOptimizeJob(CRConfig config, IndexLocation indexLoc, ConcurrentHashMap<String, CRConfigUtil> configmap) {
 		super(config, indexLoc, configmap);
 		log = Logger.getLogger(CRLuceneOptimizeJob.class);
-		// TODO Auto-generated constructor stub
+		optimizeMode = config.getString(OPTIMIZE_MODE_KEY, MODE_FULL);
 	}
 
 	@Override
@@ -30,7 +55,13 @@ public class CRLuceneOptimizeJob extends AbstractUpdateCheckerJob {
 			IndexWriter writer = null;
 			try {
 				writer = ia.getWriter();
-				writer.optimize();
+				if (MODE_DELETES.equalsIgnoreCase(optimizeMode)) {
+					writer.forceMergeDeletes();
+				} else if (MODE_MERGE.equalsIgnoreCase(optimizeMode)) {
+					writer.maybeMerge();
+				} else {
+					writer.optimize();
+				}
 			} catch (IOException e) {
 				log.error("Optimize index.", e);
 			} finally {
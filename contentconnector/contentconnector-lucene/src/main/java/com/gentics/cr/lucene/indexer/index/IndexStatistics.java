@@ -0,0 +1,156 @@
+package com.gentics.cr.lucene.indexer.index;
+
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * Immutable snapshot of the statistics of an index. Snapshots are created when
+ * the index was committed or reopened and served from memory until then, so
+ * status pages and monitoring do not have to open readers or walk the index
+ * directory on every call.
+ */
+public final class IndexStatistics {
+
+	/**
+	 * Number of documents that are not deleted.
+	 */
+	private final int docCount;
+
+	/**
+	 * Number of documents including deleted ones.
+	 */
+	private final int maxDoc;
+
+	/**
+	 * Number of deleted documents.
+	 */
+	private final int deletedDocs;
+
+	/**
+	 * Number of segments.
+	 */
+	private final int segmentCount;
+
+	/**
+	 * Size of the index files in bytes.
+	 */
+	private final long sizeInBytes;
+
+	/**
+	 * Generation of the commit the statistics were created for.
+	 */
+	private final long generation;
+
+	/**
+	 * Time the statistics were created.
+	 */
+	private final long timestamp;
+
+	/**
+	 * Create new statistics.
+	 * @param docCount number of documents that are not deleted
+	 * @param maxDoc number of documents including deleted ones
+	 * @param segmentCount number of segments
+	 * @param sizeInBytes size of the index files in bytes
+	 * @param generation generation of the commit
+	 */
+	public IndexStatistics(final int docCount, final int maxDoc, final int segmentCount, final long sizeInBytes,
+			final long generation) {
+		this.docCount = docCount;
+		this.maxDoc = maxDoc;
+		this.deletedDocs = maxDoc - docCount;
+		this.segmentCount = segmentCount;
+		this.sizeInBytes = sizeInBytes;
+		this.generation = generation;
+		this.timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Create statistics from a reader.
+	 * @param reader reader of the index
+	 * @param sizeInBytes size of the index files in bytes
+	 * @param generation generation of the commit
+	 * @return statistics of the reader
+	 */
+	public static IndexStatistics create(final IndexReader reader, final long sizeInBytes, final long generation) {
+		IndexReader[] segments = reader.getSequentialSubReaders();
+		int segmentCount;
+		if (segments != null) {
+			segmentCount = segments.length;
+		} else {
+			segmentCount = 1;
+		}
+		return new IndexStatistics(reader.numDocs(), reader.maxDoc(), segmentCount, sizeInBytes, generation);
+	}
+
+	/**
+	 * @return number of documents that are not deleted
+	 */
+	public int getDocCount() {
+		return docCount;
+	}
+
+	/**
+	 * @return number of documents including deleted ones
+	 */
+	public int getMaxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @return number of deleted documents
+	 */
+	public int getDeletedDocs() {
+		return deletedDocs;
+	}
+
+	/**
+	 * @return ratio of deleted documents to all documents, between 0 and 1
+	 */
+	public double getDeletionRatio() {
+		if (maxDoc == 0) {
+			return 0;
+		}
+		return (double) deletedDocs / maxDoc;
+	}
+
+	/**
+	 * @return number of segments
+	 */
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * @return size of the index files in bytes
+	 */
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	/**
+	 * @return generation of the commit the statistics were created for
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return time the statistics were created
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return true if the index has a single segment without deletions
+	 */
+	public boolean isOptimized() {
+		return segmentCount <= 1 && deletedDocs == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "docs: " + docCount + ", deleted: " + deletedDocs + ", segments: " + segmentCount + ", size: " + sizeInBytes
+				+ ", generation: " + generation;
+	}
+}
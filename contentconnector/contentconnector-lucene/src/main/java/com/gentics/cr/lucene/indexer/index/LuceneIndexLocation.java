@@ -8,14 +8,20 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 
 import com.gentics.cr.CRConfig;
 import com.gentics.cr.configuration.GenericConfiguration;
+import com.gentics.cr.lucene.LuceneVersion;
 import com.gentics.cr.lucene.facets.taxonomy.taxonomyaccessor.TaxonomyAccessor;
 import com.gentics.cr.lucene.indexaccessor.IndexAccessor;
 import com.gentics.cr.lucene.indexaccessor.IndexAccessorFactory;
 import com.gentics.cr.lucene.indexaccessor.IndexAccessorToken;
+import com.gentics.cr.lucene.indexaccessor.IndexWriterSettings;
+import com.gentics.cr.lucene.indexer.IndexerUtil;
 import com.gentics.cr.lucene.information.SpecialDirectoryRegistry;
 import com.gentics.cr.util.Constants;
 import com.gentics.cr.util.indexing.IndexLocation;
@@ -33,6 +39,72 @@ public abstract class LuceneIndexLocation extends com.gentics.cr.util.indexing.I
 	// STATIC MEMBERS
 	protected static final Logger log = Logger.getLogger(LuceneIndexLocation.class);
 
+	/**
+	 * Configuration key for a static query used to warm up reopened searchers.
+	 */
+	protected static final String WARMING_QUERY_KEY = "warmingquery";
+
+	/**
+	 * Configuration key for a comma separated list of fields that are preloaded
+	 * into the FieldCache for sorting when a searcher is reopened.
+	 */
+	protected static final String WARMING_SORTFIELDS_KEY = "warmingsortfields";
+
+	/**
+	 * Configuration key for a comma separated list of numeric fields that are
+	 * preloaded into the FieldCache for boosting when a searcher is reopened.
+	 */
+	protected static final String WARMING_BOOSTFIELDS_KEY = "warmingboostfields";
+
+	/**
+	 * Configuration key for the number of recent queries that are replayed to
+	 * warm up a reopened searcher.
+	 */
+	protected static final String WARMING_SAMPLESIZE_KEY = "warmingsamplesize";
+
+	/**
+	 * Configuration key for the merge policy of the index writer
+	 * (tiered or logbytesize).
+	 */
+	protected static final String MERGE_POLICY_KEY = "mergepolicy";
+
+	/**
+	 * Configuration key for the maximum size of a merged segment in MB.
+	 */
+	protected static final String MAX_MERGED_SEGMENT_MB_KEY = "maxmergedsegmentmb";
+
+	/**
+	 * Configuration key for the size in MB below which segments are treated as
+	 * equally small by the merge policy.
+	 */
+	protected static final String FLOOR_SEGMENT_MB_KEY = "floorsegmentmb";
+
+	/**
+	 * Configuration key for the allowed number of segments per tier of the
+	 * tiered merge policy.
+	 */
+	protected static final String SEGMENTS_PER_TIER_KEY = "segmentspertier";
+
+	/**
+	 * Configuration key for the merge factor of the log byte size merge policy.
+	 */
+	protected static final String MERGE_FACTOR_KEY = "mergefactor";
+
+	/**
+	 * Configuration key for the maximum number of concurrent background merges.
+	 */
+	protected static final String MAX_MERGE_THREADS_KEY = "maxmergethreads";
+
+	/**
+	 * Configuration key for the RAM buffer size of the index writer in MB.
+	 */
+	protected static final String RAM_BUFFER_SIZE_MB_KEY = "rambuffersizemb";
+
+	/**
+	 * Default field for the warming query.
+	 */
+	private static final String WARMING_DEFAULT_FIELD = "content";
+
 	protected String name = null;
 
 	private boolean registered = false;
@@ -45,6 +117,68 @@ public abstract class LuceneIndexLocation extends com.gentics.cr.util.indexing.I
 		return LuceneAnalyzerFactory.createAnalyzer((GenericConfiguration) config);
 	}
 
+	/**
+	 * Create the {@link IndexAccessor} for the directory. If warming is
+	 * configured the accessor warms up reopened searchers before they are used.
+	 * @param dir directory to create the accessor for
+	 * @throws IOException if the accessor cannot be created
+	 */
+	protected void createAccessor(final Directory dir) throws IOException {
+		Analyzer analyzer = getConfiguredAnalyzer();
+		Query warmQuery = null;
+		String warmQueryString = config.getString(WARMING_QUERY_KEY);
+		if (warmQueryString != null && !"".equals(warmQueryString)) {
+			try {
+				warmQuery = new QueryParser(LuceneVersion.getVersion(), WARMING_DEFAULT_FIELD, analyzer).parse(warmQueryString);
+			} catch (ParseException e) {
+				log.error("Cannot parse warming query " + warmQueryString + " for " + config.getName(), e);
+			}
+		}
+		String[] sortFields = getWarmingFields(WARMING_SORTFIELDS_KEY);
+		String[] boostFields = getWarmingFields(WARMING_BOOSTFIELDS_KEY);
+		int sampleSize = config.getInteger(WARMING_SAMPLESIZE_KEY, 0);
+		IndexAccessorFactory.getInstance().createAccessor(dir, analyzer, warmQuery, sortFields, boostFields, sampleSize,
+			getWriterSettings());
+	}
+
+	/**
+	 * @return configured merge settings for the index writer or null if the
+	 * lucene defaults should be used
+	 */
+	private IndexWriterSettings getWriterSettings() {
+		String mergePolicy = config.getString(MERGE_POLICY_KEY);
+		int maxMergeThreads = config.getInteger(MAX_MERGE_THREADS_KEY, 0);
+		float ramBufferSize = config.getFloat(RAM_BUFFER_SIZE_MB_KEY, 0);
+		if (mergePolicy == null && maxMergeThreads <= 0 && ramBufferSize <= 0) {
+			return null;
+		}
+		IndexWriterSettings settings = new IndexWriterSettings();
+		settings.setMergePolicy(mergePolicy);
+		settings.setMaxMergedSegmentMB(config.getFloat(MAX_MERGED_SEGMENT_MB_KEY, -1));
+		settings.setFloorSegmentMB(config.getFloat(FLOOR_SEGMENT_MB_KEY, -1));
+		settings.setSegmentsPerTier(config.getFloat(SEGMENTS_PER_TIER_KEY, -1));
+		settings.setMergeFactor(config.getInteger(MERGE_FACTOR_KEY, -1));
+		settings.setMaxMergeThreads(maxMergeThreads);
+		settings.setRamBufferSizeMB(ramBufferSize);
+		return settings;
+	}
+
+	/**
+	 * @param key configuration key of a comma separated field list
+	 * @return configured fields or null if not configured
+	 */
+	private String[] getWarmingFields(final String key) {
+		List<String> fields = IndexerUtil.getListFromString(config.getString(key), ",");
+		if (fields == null) {
+			return null;
+		}
+		String[] ret = new String[fields.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = fields.get(i).trim();
+		}
+		return ret;
+	}
+
 	/**
 	 * Get a List of configured Attributes to be reversed.
 	 */
@@ -6,6 +6,10 @@ import java.util.Date;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.index.IndexReader;
@@ -27,8 +31,25 @@ import com.gentics.cr.lucene.indexaccessor.IndexAccessorFactory;
  */
 public class LuceneMultiIndexLocation extends LuceneIndexLocation {
 
+	/**
+	 * Configuration key to search the sub indexes in parallel.
+	 */
+	public static final String PARALLEL_SEARCH_KEY = "parallelsearch";
+
+	/**
+	 * Configuration key for the maximum number of threads used for the parallel
+	 * search. Defaults to the number of available processors.
+	 */
+	public static final String PARALLEL_SEARCH_THREADS_KEY = "parallelsearchthreads";
+
 	ConcurrentHashMap<String, Directory> dirs = new ConcurrentHashMap<String, Directory>();
 
+	/**
+	 * Bounded pool for the parallel search, null if the sub indexes are searched
+	 * sequentially.
+	 */
+	private ExecutorService searchPool = null;
+
 	/**
 	 * Timestamp to store the lastmodified value of the reopen file.
 	 */
@@ -54,6 +75,19 @@ public class LuceneMultiIndexLocation extends LuceneIndexLocation {
 			}
 		}
 
+		if (config.getBoolean(PARALLEL_SEARCH_KEY, false)) {
+			int threads = config.getInteger(PARALLEL_SEARCH_THREADS_KEY, Runtime.getRuntime().availableProcessors());
+			final String poolName = "LuceneMultiIndexLocation." + config.getName() + ".pool-";
+			searchPool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+				private final AtomicInteger number = new AtomicInteger(0);
+
+				public Thread newThread(final Runnable r) {
+					Thread thread = new Thread(r, poolName + number.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
 	}
 
 	private Directory loadDirectory(final String indexLocation, final CRConfig config) {
@@ -63,7 +97,7 @@ public class LuceneMultiIndexLocation extends LuceneIndexLocation {
 		IndexAccessorFactory factory = IndexAccessorFactory.getInstance();
 		if (!factory.hasAccessor(dir)) {
 			try {
-				factory.createAccessor(dir, getConfiguredAnalyzer());
+				createAccessor(dir);
 			} catch (IOException ex) {
 				log.fatal("COULD NOT CREATE INDEX ACCESSOR" + ex.getMessage());
 			}
@@ -76,7 +110,11 @@ public class LuceneMultiIndexLocation extends LuceneIndexLocation {
 	@Override
 	protected IndexAccessor getAccessorInstance() {
 		IndexAccessorFactory factory = IndexAccessorFactory.getInstance();
-		return factory.getMultiIndexAccessor(this.dirs.values().toArray(new Directory[] {}));
+		Directory[] directories = this.dirs.values().toArray(new Directory[] {});
+		if (searchPool != null) {
+			return factory.getMultiIndexAccessor(directories, searchPool);
+		}
+		return factory.getMultiIndexAccessor(directories);
 	}
 
 	@Override
@@ -241,4 +279,12 @@ public class LuceneMultiIndexLocation extends LuceneIndexLocation {
 		throw new UnsupportedOperationException("Method not implemented yet");
 	}
 
+	@Override
+	public void finalize() {
+		if (searchPool != null) {
+			searchPool.shutdown();
+		}
+		super.finalize();
+	}
+
 }
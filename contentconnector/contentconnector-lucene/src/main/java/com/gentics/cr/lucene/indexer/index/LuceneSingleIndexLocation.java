@@ -2,10 +2,17 @@ package com.gentics.cr.lucene.indexer.index;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 
@@ -39,6 +46,40 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 	private String taxonomyLocation;
 	private Directory taxonomyDir = null;
 
+	/**
+	 * Configuration key for the interval in milliseconds in which the commit
+	 * generation of the index is checked to refresh the cached statistics.
+	 */
+	private static final String STATISTICS_CHECK_INTERVAL_KEY = "statisticscheckinterval";
+
+	/**
+	 * Files in the index directory that are rewritten in place, all other index
+	 * files are written once and their size is cached.
+	 */
+	private static final Set<String> MUTABLE_FILES = new HashSet<String>(Arrays.asList(new String[] {
+			IndexFileNames.SEGMENTS_GEN, REOPEN_FILENAME, "write.lock" }));
+
+	/**
+	 * Interval in milliseconds in which the commit generation is checked.
+	 */
+	private long statisticsCheckInterval = 10000;
+
+	/**
+	 * Cached statistics of the index, null if they have to be created.
+	 */
+	private volatile IndexStatistics statistics = null;
+
+	/**
+	 * Time of the last check of the commit generation.
+	 */
+	private volatile long lastStatisticsCheck = 0;
+
+	/**
+	 * Cached sizes of the index files, only new files have to be measured when
+	 * the statistics are refreshed.
+	 */
+	private final Map<String, Long> fileSizes = new HashMap<String, Long>();
+
 	/**
 	 * Create a new Instance of LuceneSingleIndexLocation. 
 	 * This is the Default IndexLocation for Lucene.
@@ -48,11 +89,12 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 		super(config);
 		indexLocation = getFirstIndexLocation(config);
 		dir = createDirectory(indexLocation, config);
+		statisticsCheckInterval = config.getInteger(STATISTICS_CHECK_INTERVAL_KEY, (int) statisticsCheckInterval);
 		//Create index accessor
 		IndexAccessorFactory iAFactory = IndexAccessorFactory.getInstance();
 		if (!iAFactory.hasAccessor(dir)) {
 			try {
-				iAFactory.createAccessor(dir, getConfiguredAnalyzer());
+				createAccessor(dir);
 			} catch (IOException ex) {
 				log.fatal("COULD NOT CREATE INDEX ACCESSOR" + ex.getMessage());
 			}
@@ -109,19 +151,103 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 
 	@Override
 	public final int getDocCount() {
-		IndexAccessor indexAccessor = this.getAccessor();
+		IndexStatistics stats = getStatistics();
+		if (stats != null) {
+			return stats.getDocCount();
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the statistics of the index. The statistics are served from memory
+	 * and refreshed when the reading reader of the index was reopened on a new
+	 * commit.
+	 * @return statistics of the index or null if they cannot be created
+	 */
+	public final IndexStatistics getStatistics() {
+		IndexStatistics stats = statistics;
+		if (stats != null && System.currentTimeMillis() - lastStatisticsCheck < statisticsCheckInterval) {
+			return stats;
+		}
+		return refreshStatistics(stats);
+	}
+
+	/**
+	 * Discards the cached statistics, they are created again on the next
+	 * request.
+	 */
+	public final void invalidateStatistics() {
+		statistics = null;
+	}
+
+	/**
+	 * Refresh the statistics if the commit generation of the reading reader
+	 * changed. The generation is taken from the reader the statistics are
+	 * created from, so a reader that is behind the directory does not cause
+	 * a rebuild on every check.
+	 * @param expected statistics the caller has seen
+	 * @return current statistics
+	 */
+	private synchronized IndexStatistics refreshStatistics(final IndexStatistics expected) {
+		IndexStatistics stats = statistics;
+		if (stats != null && stats != expected) {
+			// another thread refreshed the statistics in the meantime
+			return stats;
+		}
+		lastStatisticsCheck = System.currentTimeMillis();
+		IndexAccessor indexAccessor = null;
 		IndexReader reader = null;
-		int count = 0;
 		try {
+			indexAccessor = this.getAccessor();
 			reader = indexAccessor.getReader(false);
-			count = reader.numDocs();
+			long generation;
+			try {
+				generation = reader.getIndexCommit().getGeneration();
+			} catch (UnsupportedOperationException e) {
+				generation = SegmentInfos.getLastCommitGeneration(dir);
+			}
+			if (stats != null && stats.getGeneration() == generation) {
+				return stats;
+			}
+			long size = updateFileSizes();
+			stats = IndexStatistics.create(reader, size, generation);
+			statistics = stats;
+			log.debug("Refreshed statistics of " + name + ": " + stats);
 		} catch (IOException ex) {
 			log.error("IOException happened during test of index. ", ex);
 		} finally {
-			indexAccessor.release(reader, false);
+			if (indexAccessor != null) {
+				indexAccessor.release(reader, false);
+			}
 		}
+		return stats;
+	}
 
-		return count;
+	/**
+	 * Update the cached sizes of the index files. Only files that were not seen
+	 * before and files that are rewritten in place are measured.
+	 * @return size of all files in the index directory in bytes
+	 * @throws IOException if the directory cannot be listed
+	 */
+	private long updateFileSizes() throws IOException {
+		String[] files = dir.listAll();
+		fileSizes.keySet().retainAll(Arrays.asList(files));
+		long size = 0;
+		for (String file : files) {
+			Long length = fileSizes.get(file);
+			if (length == null || MUTABLE_FILES.contains(file)) {
+				try {
+					length = dir.fileLength(file);
+				} catch (IOException e) {
+					// file was deleted by a concurrent merge
+					fileSizes.remove(file);
+					continue;
+				}
+				fileSizes.put(file, length);
+			}
+			size += length;
+		}
+		return size;
 	}
 
 	@Override
@@ -150,6 +276,7 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 	 * Creates the reopen file to make portlet reload the index.
 	 */
 	public final void createReopenFile() {
+		invalidateStatistics();
 		boolean writeReopenFile = config.getBoolean("writereopenfile");
 		if (writeReopenFile) {
 			String filename = this.getReopenFilename();
@@ -178,6 +305,7 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 						if (lastmodified != lastmodifiedStored) {
 							lastmodifiedStored = lastmodified;
 							indexAccessor.reopen();
+							invalidateStatistics();
 							if (taxonomyAccessor != null) {
 								taxonomyAccessor.refresh();
 							}
@@ -190,6 +318,7 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 					} else {
 						reopenFile.delete();
 						indexAccessor.reopen();
+						invalidateStatistics();
 						if (taxonomyAccessor != null) {
 							taxonomyAccessor.refresh();
 						}
@@ -208,10 +337,11 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 
 	@Override
 	public final long indexSize() {
-		File indexLocationFile = new File(indexLocation);
-		long directorySize = FileUtils.sizeOfDirectory(indexLocationFile);
-		//TODO add caching
-		return directorySize;
+		IndexStatistics stats = getStatistics();
+		if (stats != null) {
+			return stats.getSizeInBytes();
+		}
+		return 0;
 	}
 
 	@Override
@@ -234,19 +364,11 @@ public class LuceneSingleIndexLocation extends LuceneIndexLocation implements Ta
 	 * @return true if it is optimized
 	 */
 	public final boolean isOptimized() {
-		boolean ret = false;
-		IndexAccessor indexAccessor = this.getAccessor();
-		IndexReader reader = null;
-		try {
-			reader = indexAccessor.getReader(false);
-			ret = reader.isOptimized();
-		} catch (IOException ex) {
-			log.error("IOException happened during test of index. ", ex);
-		} finally {
-			indexAccessor.release(reader, false);
+		IndexStatistics stats = getStatistics();
+		if (stats != null) {
+			return stats.isOptimized();
 		}
-
-		return ret;
+		return false;
 	}
 
 	@Override
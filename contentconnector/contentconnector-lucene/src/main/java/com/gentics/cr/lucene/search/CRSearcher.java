@@ -49,6 +49,7 @@ import com.gentics.cr.lucene.facets.taxonomy.taxonomyaccessor.TaxonomyAccessor;
 import com.gentics.cr.lucene.indexaccessor.IndexAccessor;
 import com.gentics.cr.lucene.indexer.index.LuceneAnalyzerFactory;
 import com.gentics.cr.lucene.indexer.index.LuceneIndexLocation;
+import com.gentics.cr.lucene.indexer.index.LuceneMultiIndexLocation;
 import com.gentics.cr.lucene.search.query.BooleanQueryRewriter;
 import com.gentics.cr.lucene.search.query.CRQueryParserFactory;
 import com.gentics.cr.util.StringUtils;
@@ -166,6 +167,12 @@ public class CRSearcher {
 
 	private DidyoumeanIndexExtension didyoumeanprovider = null;
 
+	/**
+	 * search without a collector so a parallel multi index searcher can query
+	 * the sub indexes concurrently.
+	 */
+	private boolean parallelSearch = false;
+
 	/**
 	 * Create new instance of CRSearcher.
 	 * @param config
@@ -188,6 +195,7 @@ public class CRSearcher {
 		
 		retrieveUniqueMimeTypes = config.getBoolean(RETRIEVE_UNIQUE_MIMETYPES_KEY);
 		retrieveCollector = config.getBoolean(RETRIEVE_COLLECTOR_KEY);
+		parallelSearch = config.getBoolean(LuceneMultiIndexLocation.PARALLEL_SEARCH_KEY, parallelSearch);
 
 	}
 
@@ -195,11 +203,12 @@ public class CRSearcher {
 	 * Create the appropriate collector.
 	 * 
 	 * @param hits
-	 * @param sorting
+	 * @param sort sort created with {@link #createSort(String[])} or null for
+	 * relevance sorting
 	 * @return
 	 * @throws IOException
 	 */
-	TopDocsCollector<?> createCollector(final IndexSearcher searcher, final int hits, final String[] sorting, final boolean computescores,
+	TopDocsCollector<?> createCollector(final IndexSearcher searcher, final int hits, final Sort sort, final boolean computescores,
 			final String[] userPermissions) throws IOException {
 		TopDocsCollector<?> coll = null;
 		String collectorClassName = (String) config.get(COLLECTOR_CLASS_KEY);
@@ -221,9 +230,9 @@ public class CRSearcher {
 			}
 
 		}
-		if (coll == null && sorting != null) {
+		if (coll == null && sort != null) {
 			// TODO make collector configurable
-			coll = TopFieldCollector.create(createSort(sorting), hits, true, computescores, computescores, computescores);
+			coll = TopFieldCollector.create(sort, hits, true, computescores, computescores, computescores);
 		}
 		if (coll == null) {
 			coll = TopScoreDocCollector.create(hits, true);
@@ -314,43 +323,10 @@ public class CRSearcher {
 			
 			TopDocs tdocs = ttcollector.topDocs(start, count);
 
-			float maxScoreReturn = tdocs.getMaxScore();
-			log.debug("maxScoreReturn: " + maxScoreReturn);
-
-			ScoreDoc[] hits = tdocs.scoreDocs;
-			log.debug("hits (topdocs): \n" + StringUtils.getCollectionSummary(Arrays.asList(hits), "\n"));
-
-			LinkedHashMap<Document, Float> result = new LinkedHashMap<Document, Float>(hits.length);
-
-			// Calculate the number of documents to be fetched
-			int num = Math.min(hits.length, count);
-			for (int i = 0; i < num; i++) {
-				ScoreDoc currentDoc = hits[i];
-				if (currentDoc.doc != Integer.MAX_VALUE) {
-					log.debug("currentDoc id: " + currentDoc.doc + " ; score: " + currentDoc.score);
-					Document doc = searcher.doc(currentDoc.doc);
-					// add id field for AdvancedContentHighlighter
-					doc.add(new Field("id", hits[i].doc + "", Field.Store.YES, Field.Index.NO));
-					log.debug("adding contentid: " + doc.getFieldable("contentid"));
-					log.debug("with hits[" + i + "].score = " + hits[i].score);
-					result.put(doc, hits[i].score);
-					if (explain) {
-						Explanation ex = searcher.explain(parsedQuery, hits[i].doc);
-						log_explain.debug("Explanation for " + doc.toString() + " - " + ex.toString());
-					}
-				} else {
-					log.error("Loading search documents failed partly (document has MAX_INTEGER as document id");
-				}
-			}
-			log.debug("Fetched Document " + start + " to " + (start + num) + " of " + ttcollector.getTotalHits() + " found Documents");
-
-			HashMap<String, Object> ret = new HashMap<String, Object>(3);
-			
+			HashMap<String, Object> ret = collectDocuments(tdocs, searcher, parsedQuery, explain, count, start, ttcollector.getTotalHits());
 			if (retrieveCollector) {
 				ret.put(RESULT_COLLECTOR_KEY, collector);
 			}
-			ret.put(RESULT_RESULT_KEY, result);
-			ret.put(RESULT_MAXSCORE_KEY, maxScoreReturn);
 			return ret;
 
 		} catch (Exception e) {
@@ -359,6 +335,97 @@ public class CRSearcher {
 		return null;
 	}
 
+	/**
+	 * Run a Search against the lucene index without a collector. If the
+	 * searcher was created with an executor (parallel multi index search) the
+	 * sub indexes are searched concurrently and the top hits are merged.
+	 * 
+	 * @param searcher searcher to use
+	 * @param parsedQuery query to execute
+	 * @param explain if true the explanations are logged
+	 * @param count number of documents to fetch
+	 * @param start number of the first document to fetch
+	 * @param sort sort to use or null for relevance sorting
+	 * @return result map like {@link #executeSearcher(TopDocsCollector, IndexSearcher, Query, boolean, int, int)}
+	 */
+	private HashMap<String, Object> executeTopDocsSearcher(final IndexSearcher searcher, final Query parsedQuery, final boolean explain,
+			final int count, final int start, final Sort sort) {
+		try {
+			int hits = count + start;
+			TopDocs topDocs;
+			if (sort != null) {
+				searcher.setDefaultFieldSortScoring(computescores, computescores);
+				topDocs = searcher.search(parsedQuery, null, hits, sort);
+			} else {
+				topDocs = searcher.search(parsedQuery, null, hits);
+			}
+			int end = Math.min(topDocs.scoreDocs.length, hits);
+			ScoreDoc[] page;
+			if (start < end) {
+				page = Arrays.copyOfRange(topDocs.scoreDocs, start, end);
+			} else {
+				page = new ScoreDoc[0];
+			}
+			TopDocs tdocs = new TopDocs(topDocs.totalHits, page, topDocs.getMaxScore());
+			return collectDocuments(tdocs, searcher, parsedQuery, explain, count, start, topDocs.totalHits);
+		} catch (Exception e) {
+			log.error("Error running search for query " + parsedQuery, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Load the documents of the given top docs.
+	 * 
+	 * @param tdocs top docs of the requested page
+	 * @param searcher searcher to load the documents from
+	 * @param parsedQuery executed query
+	 * @param explain if true the explanations are logged
+	 * @param count number of documents to fetch
+	 * @param start number of the first document
+	 * @param totalHits total number of hits of the query
+	 * @return result map with the documents, the max score and the total hits
+	 * @throws IOException if a document cannot be loaded
+	 */
+	private HashMap<String, Object> collectDocuments(final TopDocs tdocs, final IndexSearcher searcher, final Query parsedQuery,
+			final boolean explain, final int count, final int start, final int totalHits) throws IOException {
+		float maxScoreReturn = tdocs.getMaxScore();
+		log.debug("maxScoreReturn: " + maxScoreReturn);
+
+		ScoreDoc[] hits = tdocs.scoreDocs;
+		log.debug("hits (topdocs): \n" + StringUtils.getCollectionSummary(Arrays.asList(hits), "\n"));
+
+		LinkedHashMap<Document, Float> result = new LinkedHashMap<Document, Float>(hits.length);
+
+		// Calculate the number of documents to be fetched
+		int num = Math.min(hits.length, count);
+		for (int i = 0; i < num; i++) {
+			ScoreDoc currentDoc = hits[i];
+			if (currentDoc.doc != Integer.MAX_VALUE) {
+				log.debug("currentDoc id: " + currentDoc.doc + " ; score: " + currentDoc.score);
+				Document doc = searcher.doc(currentDoc.doc);
+				// add id field for AdvancedContentHighlighter
+				doc.add(new Field("id", hits[i].doc + "", Field.Store.YES, Field.Index.NO));
+				log.debug("adding contentid: " + doc.getFieldable("contentid"));
+				log.debug("with hits[" + i + "].score = " + hits[i].score);
+				result.put(doc, hits[i].score);
+				if (explain) {
+					Explanation ex = searcher.explain(parsedQuery, hits[i].doc);
+					log_explain.debug("Explanation for " + doc.toString() + " - " + ex.toString());
+				}
+			} else {
+				log.error("Loading search documents failed partly (document has MAX_INTEGER as document id");
+			}
+		}
+		log.debug("Fetched Document " + start + " to " + (start + num) + " of " + totalHits + " found Documents");
+
+		HashMap<String, Object> ret = new HashMap<String, Object>(4);
+		ret.put(RESULT_RESULT_KEY, result);
+		ret.put(RESULT_MAXSCORE_KEY, maxScoreReturn);
+		ret.put(RESULT_HITS_KEY, totalHits);
+		return ret;
+	}
+
 	public HashMap<String, Object> search(final String query, final String[] searchedAttributes, final int count, final int start,
 			final boolean explain) throws IOException, CRException {
 		return search(query, searchedAttributes, count, start, explain, null);
@@ -434,7 +501,11 @@ public class CRSearcher {
 		if (userPermissionsObject instanceof String[]) {
 			userPermissions = (String[]) userPermissionsObject;
 		}
-		TopDocsCollector<?> collector = createCollector(searcher, hits, sorting, computescores, userPermissions);
+		Sort sort = null;
+		if (sorting != null) {
+			sort = createSort(sorting);
+		}
+		TopDocsCollector<?> collector = createCollector(searcher, hits, sort, computescores, userPermissions);
 		HashMap<String, Object> result = null;
 		try {
 			analyzer = LuceneAnalyzerFactory.createAnalyzer(config);
@@ -443,6 +514,8 @@ public class CRSearcher {
 				QueryParser parser = CRQueryParserFactory.getConfiguredParser(searchedAttributes, analyzer, request, config);
 
 				Query parsedQuery = parser.parse(query);
+				// remember the query so reopened searchers can be warmed up with it
+				indexAccessor.recordQuery(parsedQuery, sort);
 				// GENERATE A NATIVE QUERY
 
 				parsedQuery = searcher.rewrite(parsedQuery);
@@ -456,7 +529,12 @@ public class CRSearcher {
 					facetsCollector = facetsSearch.createFacetsCollector(facetsIndexReader, taAccessor, taReader);
 				}
 
-				Map<String, Object> ret = executeSearcher(collector, searcher, parsedQuery, explain, count, start, facetsCollector);
+				Map<String, Object> ret;
+				if (parallelSearch && facetsCollector == null && !retrieveCollector && config.get(COLLECTOR_CLASS_KEY) == null) {
+					ret = executeTopDocsSearcher(searcher, parsedQuery, explain, count, start, sort);
+				} else {
+					ret = executeSearcher(collector, searcher, parsedQuery, explain, count, start, facetsCollector);
+				}
 				if (log.isDebugEnabled()) {
 					for (Object res : ret.values()) {
 						if (res instanceof LinkedHashMap) {
@@ -476,7 +554,7 @@ public class CRSearcher {
 					LinkedHashMap<Document, Float> coll = (LinkedHashMap<Document, Float>) ret.get(RESULT_RESULT_KEY);
 					float maxScore = (Float) ret.get(RESULT_MAXSCORE_KEY);
 					result.put(RESULT_RESULT_KEY, coll);
-					int totalhits = collector.getTotalHits();
+					int totalhits = (Integer) ret.get(RESULT_HITS_KEY);
 
 					result.put(RESULT_HITS_KEY, totalhits);
 					result.put(RESULT_MAXSCORE_KEY, maxScore);
@@ -647,7 +725,11 @@ public class CRSearcher {
 			final String[] userPermissions) {
 		HashMap<String, Object> result = new HashMap<String, Object>(3);
 		try {
-			TopDocsCollector<?> bestcollector = createCollector(searcher, 1, sorting, computescores, userPermissions);
+			Sort sort = null;
+			if (sorting != null) {
+				sort = createSort(sorting);
+			}
+			TopDocsCollector<?> bestcollector = createCollector(searcher, 1, sort, computescores, userPermissions);
 			executeSearcher(bestcollector, searcher, query, false, 1, 0);
 			result.put(RESULT_BESTQUERY_KEY, query);
 			result.put(RESULT_BESTQUERYHITS_KEY, bestcollector.getTotalHits());
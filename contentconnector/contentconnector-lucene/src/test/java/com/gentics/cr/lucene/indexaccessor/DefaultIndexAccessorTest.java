@@ -2,6 +2,7 @@ package com.gentics.cr.lucene.indexaccessor;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 
 import java.io.File;
 import java.io.IOException;
@@ -10,10 +11,13 @@ import java.net.URISyntaxException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
@@ -173,4 +177,83 @@ public class DefaultIndexAccessorTest {
 		assertEquals(accessor.readingReadersOut(), 0);
 	}
 
+	@Test
+	public void testSearcherInUseSurvivesReopen() throws IOException {
+		factory.createAccessor(ramdir, analyzer);
+		IndexAccessor accessor = factory.getAccessor(ramdir);
+
+		IndexWriter writer = accessor.getWriter();
+		Document doc = new Document();
+		doc.add(new Field("contentid", "10007.1", Field.Store.YES, Field.Index.NOT_ANALYZED));
+		writer.addDocument(doc);
+		writer.commit();
+		accessor.release(writer);
+
+		IndexSearcher oldSearcher = accessor.getSearcher();
+		assertEquals(1, accessor.searcherUseCount());
+		accessor.reopen();
+		IndexSearcher newSearcher = accessor.getSearcher();
+		// the old generation was retired but stays usable until it is released
+		assertNotSame(oldSearcher, newSearcher);
+		assertEquals(1, oldSearcher.search(new MatchAllDocsQuery(), 10).totalHits);
+		assertEquals(2, accessor.searcherUseCount());
+		accessor.release(oldSearcher);
+		accessor.release(newSearcher);
+		assertEquals(0, accessor.searcherUseCount());
+		// releasing a searcher twice must not change the use count
+		accessor.release(oldSearcher);
+		assertEquals(0, accessor.searcherUseCount());
+		accessor.close();
+	}
+
+	@Test(timeout = 10000)
+	public void testDoubleReleaseOfCurrentSearcher() throws IOException {
+		factory.createAccessor(ramdir, analyzer);
+		IndexAccessor accessor = factory.getAccessor(ramdir);
+
+		IndexWriter writer = accessor.getWriter();
+		Document doc = new Document();
+		doc.add(new Field("contentid", "10007.1", Field.Store.YES, Field.Index.NOT_ANALYZED));
+		writer.addDocument(doc);
+		writer.commit();
+		accessor.release(writer);
+
+		IndexSearcher searcher = accessor.getSearcher();
+		accessor.release(searcher);
+		// the second release drops the reference of the cache and closes the reader
+		accessor.release(searcher);
+		accessor.release(searcher);
+		// the dead generation must be replaced instead of retried forever
+		IndexSearcher newSearcher = accessor.getSearcher();
+		assertNotSame(searcher, newSearcher);
+		assertEquals(1, newSearcher.search(new MatchAllDocsQuery(), 10).totalHits);
+		accessor.release(newSearcher);
+		accessor.close();
+	}
+
+	@Test
+	public void testRejectedReleaseKeepsUseCount() throws IOException {
+		factory.createAccessor(ramdir, analyzer);
+		DefaultIndexAccessor accessor = (DefaultIndexAccessor) factory.getAccessor(ramdir);
+
+		IndexWriter writer = accessor.getWriter();
+		Document doc = new Document();
+		doc.add(new Field("contentid", "10007.1", Field.Store.YES, Field.Index.NOT_ANALYZED));
+		writer.addDocument(doc);
+		writer.commit();
+		accessor.release(writer);
+
+		IndexSearcher searcher = accessor.getSearcher();
+		accessor.getSearcher();
+		assertEquals(2, accessor.searcherUseCount());
+		// close the generation behind the back of the accessor, like a
+		// concurrent over-release that has not yet forgotten the searcher
+		DefaultIndexAccessor.SearcherGeneration generation = accessor.searcherGenerations.get(searcher);
+		while (generation.getRefCount() > 0) {
+			generation.release();
+		}
+		accessor.release(searcher);
+		assertEquals(2, accessor.searcherUseCount());
+	}
+
 }
@@ -0,0 +1,37 @@
+package com.gentics.cr.lucene.indexaccessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.junit.Test;
+
+import com.gentics.cr.lucene.LuceneVersion;
+
+public class IndexWriterSettingsTest {
+
+	@Test
+	public void testLargeMaxMergeThreads() {
+		IndexWriterSettings settings = new IndexWriterSettings();
+		settings.setMaxMergeThreads(16);
+		IndexWriterConfig config = settings.createConfig(LuceneVersion.getVersion(), new WhitespaceAnalyzer(
+			LuceneVersion.getVersion()));
+		ConcurrentMergeScheduler scheduler = (ConcurrentMergeScheduler) config.getMergeScheduler();
+		assertEquals(16, scheduler.getMaxThreadCount());
+		assertTrue(scheduler.getMaxMergeCount() >= 16);
+	}
+
+	@Test
+	public void testTieredMergePolicy() {
+		IndexWriterSettings settings = new IndexWriterSettings();
+		settings.setMergePolicy(IndexWriterSettings.TIERED_MERGE_POLICY);
+		settings.setSegmentsPerTier(5);
+		IndexWriterConfig config = settings.createConfig(LuceneVersion.getVersion(), new WhitespaceAnalyzer(
+			LuceneVersion.getVersion()));
+		assertTrue(config.getMergePolicy() instanceof TieredMergePolicy);
+		assertEquals(5, ((TieredMergePolicy) config.getMergePolicy()).getSegmentsPerTier(), 0);
+	}
+}
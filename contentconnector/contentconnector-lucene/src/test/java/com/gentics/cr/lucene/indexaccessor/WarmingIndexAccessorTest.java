@@ -0,0 +1,81 @@
+package com.gentics.cr.lucene.indexaccessor;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import com.gentics.cr.lucene.LuceneVersion;
+
+public class WarmingIndexAccessorTest {
+
+	@Test(timeout = 20000)
+	public void testCommitDuringWarmIsPublished() throws IOException, InterruptedException {
+		final AtomicBoolean blockWarm = new AtomicBoolean();
+		final CountDownLatch warmStarted = new CountDownLatch(1);
+		final CountDownLatch finishWarm = new CountDownLatch(1);
+		WarmingIndexAccessor accessor = new WarmingIndexAccessor(new RAMDirectory(), new WhitespaceAnalyzer(
+				LuceneVersion.getVersion()), null) {
+			@Override
+			protected void warm(final IndexSearcher searcher) {
+				if (blockWarm.compareAndSet(true, false)) {
+					warmStarted.countDown();
+					try {
+						finishWarm.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				super.warm(searcher);
+			}
+		};
+		accessor.open();
+
+		addDocument(accessor, "10007.1");
+		accessor.release(accessor.getSearcher());
+
+		// the reopen after the second commit blocks in warm
+		blockWarm.set(true);
+		addDocument(accessor, "10007.2");
+		assertTrue("searcher was not warmed", warmStarted.await(10, TimeUnit.SECONDS));
+
+		// the reopen after the third commit arrives while the searcher warms up
+		addDocument(accessor, "10007.3");
+		accessor.reopen();
+		finishWarm.countDown();
+
+		while (countDocuments(accessor) != 3) {
+			Thread.sleep(10);
+		}
+		accessor.close();
+	}
+
+	private static void addDocument(final IndexAccessor accessor, final String contentid) throws IOException {
+		IndexWriter writer = accessor.getWriter();
+		Document doc = new Document();
+		doc.add(new Field("contentid", contentid, Field.Store.YES, Field.Index.NOT_ANALYZED));
+		writer.addDocument(doc);
+		writer.commit();
+		accessor.release(writer);
+	}
+
+	private static int countDocuments(final IndexAccessor accessor) throws IOException {
+		IndexSearcher searcher = accessor.getSearcher();
+		try {
+			return searcher.search(new MatchAllDocsQuery(), 10).totalHits;
+		} finally {
+			accessor.release(searcher);
+		}
+	}
+}
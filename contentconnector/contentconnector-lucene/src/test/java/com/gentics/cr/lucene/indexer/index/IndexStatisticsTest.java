@@ -0,0 +1,56 @@
+package com.gentics.cr.lucene.indexer.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import com.gentics.cr.lucene.LuceneVersion;
+
+public class IndexStatisticsTest {
+
+	@Test
+	public void testEmptyStatistics() {
+		IndexStatistics stats = new IndexStatistics(0, 0, 0, 0, -1);
+		assertEquals(0, stats.getDeletionRatio(), 0);
+		assertTrue(stats.isOptimized());
+	}
+
+	@Test
+	public void testStatisticsFromReader() throws IOException {
+		RAMDirectory dir = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(LuceneVersion.getVersion(), new WhitespaceAnalyzer(
+				LuceneVersion.getVersion())));
+		for (int i = 0; i < 4; i++) {
+			Document doc = new Document();
+			doc.add(new Field("contentid", "10007." + i, Field.Store.YES, Field.Index.NOT_ANALYZED));
+			writer.addDocument(doc);
+		}
+		writer.commit();
+		writer.deleteDocuments(new Term("contentid", "10007.0"));
+		writer.close();
+
+		IndexReader reader = IndexReader.open(dir);
+		IndexStatistics stats = IndexStatistics.create(reader, 100, reader.getIndexCommit().getGeneration());
+		reader.close();
+
+		assertEquals(3, stats.getDocCount());
+		assertEquals(4, stats.getMaxDoc());
+		assertEquals(1, stats.getDeletedDocs());
+		assertEquals(0.25, stats.getDeletionRatio(), 0.0001);
+		assertEquals(1, stats.getSegmentCount());
+		assertEquals(100, stats.getSizeInBytes());
+		assertFalse(stats.isOptimized());
+	}
+}
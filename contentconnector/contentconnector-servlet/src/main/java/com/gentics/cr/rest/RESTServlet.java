@@ -19,6 +19,8 @@ import com.gentics.cr.monitoring.UseCase;
 import com.gentics.cr.util.CRRequestBuilder;
 import com.gentics.cr.util.HttpSessionWrapper;
 import com.gentics.cr.util.RequestBeanWrapper;
+import com.gentics.cr.util.response.CompressingResponse;
+import com.gentics.cr.util.response.ResponseCompression;
 import com.gentics.cr.util.response.ServletResponseTypeSetter;
 
 /**
@@ -39,12 +41,17 @@ public class RESTServlet extends HttpServlet {
 	 */
 	private CRServletConfig crConf;
 	private RESTSimpleContainer container;
+	/**
+	 * Compression of the responses.
+	 */
+	private ResponseCompression compression;
 
 	public void init(ServletConfig config) throws ServletException {
 
 		super.init(config);
 		crConf = new CRServletConfig(config);
 		container = new RESTSimpleContainer(crConf);
+		compression = new ResponseCompression(crConf);
 
 	}
 
@@ -67,7 +74,9 @@ public class RESTServlet extends HttpServlet {
 		objects.put("session", new HttpSessionWrapper(request.getSession()));
 		CRRequestBuilder rB = new CRRequestBuilder(request, crConf);
 		//response.setContentType(rB.getContentRepository(this.crConf.getEncoding()).getContentType()+"; charset="+this.crConf.getEncoding());
-		container.processService(rB, objects, response.getOutputStream(), new ServletResponseTypeSetter(response));
+		CompressingResponse compressingResponse = compression.wrap(request.getHeader("Accept-Encoding"),
+			response.getOutputStream(), new ServletResponseTypeSetter(response));
+		container.processService(rB, objects, compressingResponse.getOutputStream(), compressingResponse);
 	}
 	
 	
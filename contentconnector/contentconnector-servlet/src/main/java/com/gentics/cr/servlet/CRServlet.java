@@ -18,6 +18,8 @@ import com.gentics.cr.rest.RESTBinaryContainer;
 import com.gentics.cr.util.BeanWrapper;
 import com.gentics.cr.util.CRBinaryRequestBuilder;
 import com.gentics.cr.util.HttpSessionWrapper;
+import com.gentics.cr.util.response.CompressingResponse;
+import com.gentics.cr.util.response.ResponseCompression;
 import com.gentics.cr.util.response.ServletResponseTypeSetter;
 
 /**
@@ -34,6 +36,10 @@ public class CRServlet extends HttpServlet {
 	private static final long serialVersionUID = -6943138512221124880L;
 	private Logger log;
 	private RESTBinaryContainer container;
+	/**
+	 * Compression of the responses.
+	 */
+	private ResponseCompression compression;
 
 	public void init(ServletConfig config) throws ServletException {
 
@@ -41,6 +47,7 @@ public class CRServlet extends HttpServlet {
 		this.log = Logger.getLogger("com.gentics.cr");
 		CRServletConfig crConf = new CRServletConfig(config);
 		container = new RESTBinaryContainer(crConf);
+		compression = new ResponseCompression(crConf);
 
 	}
 
@@ -77,11 +84,13 @@ public class CRServlet extends HttpServlet {
 		HashMap<String, Resolvable> objects = new HashMap<String, Resolvable>();
 		objects.put("request", new BeanWrapper(request));
 		objects.put("session", new HttpSessionWrapper(request.getSession()));
+		CompressingResponse compressingResponse = compression.wrap(request.getHeader("Accept-Encoding"),
+			response.getOutputStream(), new ServletResponseTypeSetter(response));
 		container.processService(
 			new CRBinaryRequestBuilder(request),
 			objects,
-			response.getOutputStream(),
-			new ServletResponseTypeSetter(response));
+			compressingResponse.getOutputStream(),
+			compressingResponse);
 
 		if (contentDisposition != null && contentDisposition != "") {
 			response.addHeader("Content-Disposition", "attachment; filename=\"" + contentDisposition + "\"");
@@ -46,4 +46,9 @@ public class ServletResponseTypeSetter implements IResponseTypeSetter {
 		}
 	}
 
+	@Override
+	public void setHeader(String name, String value) {
+		this.response.setHeader(name, value);
+	}
+
 }